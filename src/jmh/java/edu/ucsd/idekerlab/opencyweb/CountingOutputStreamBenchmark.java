@@ -0,0 +1,70 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing {@link #TOTAL_BYTES} through a {@link CountingOutputStream} in chunks of {@link
+ * #chunkBytes} (single byte writes for 1), either only counting or also passing the bytes on to a
+ * capture buffer as the buffered transport does, held on the heap or in pooled direct segments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CountingOutputStreamBenchmark {
+
+    private static final int TOTAL_BYTES = 4 * 1024 * 1024;
+
+    @Param({"1", "512", "8192"})
+    public int chunkBytes;
+
+    @Param({"false", "true"})
+    public boolean capture;
+
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private byte[] chunk;
+    private Cx2Buffer buffer;
+
+    @Setup
+    public void setUp() {
+        chunk = new byte[chunkBytes];
+        DirectBufferPool pool = new DirectBufferPool();
+        pool.setMaxBytes(TOTAL_BYTES);
+        buffer = new Cx2Buffer(1L, TOTAL_BYTES, offHeap ? pool : null);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        buffer.reset();
+        CountingOutputStream out =
+                new CountingOutputStream(capture ? buffer : null, Long.MAX_VALUE);
+        out.setProgressListener(bytes -> {}, 256 * 1024);
+        if (chunkBytes == 1) {
+            for (int i = 0; i < TOTAL_BYTES; i++) {
+                out.write(i);
+            }
+        } else {
+            for (int i = 0; i < TOTAL_BYTES; i += chunkBytes) {
+                out.write(chunk, 0, chunkBytes);
+            }
+        }
+        return out.getByteCount();
+    }
+}
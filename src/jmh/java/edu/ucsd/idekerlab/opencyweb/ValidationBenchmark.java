@@ -0,0 +1,135 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
+
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.property.CyProperty;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+
+/**
+ * Measures the network validation pipeline against synthetic networks of {@link #elements} nodes
+ * and edges (one third nodes) with {@link #columns} string attributes of {@link #valueLength}
+ * characters on every node and edge, and edges spread over the nodes by {@link #degree}. Limits are
+ * raised so every network passes validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ValidationBenchmark {
+
+    private static final long NETWORK_SUID = 1L;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int elements;
+
+    @Param({"2", "20"})
+    public int columns;
+
+    @Param({"8", "64"})
+    public int valueLength;
+
+    @Param({"UNIFORM", "SCALE_FREE"})
+    public String degree;
+
+    private CyNetworkView networkView;
+    private NetworkChangeTracker changeTracker;
+    private Cx2SizeEstimator sizeEstimator;
+    private OpenInCytoscapeWebTaskFactoryImpl factory;
+
+    @Setup
+    public void setUp() {
+        int nodeCount = elements / 3;
+        networkView =
+                SyntheticNetworks.createNetworkView(
+                        NETWORK_SUID,
+                        nodeCount,
+                        elements - nodeCount,
+                        columns,
+                        valueLength,
+                        SyntheticNetworks.Degree.valueOf(degree));
+
+        Properties props = new Properties();
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_ELEMENTS, "100000000");
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_EDGES, "100000000");
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_FILESIZE_MB, "100000");
+        // Serialize on every changed network instead of trusting the estimate
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_FILESIZE_ESTIMATE, "false");
+
+        changeTracker =
+                new NetworkChangeTracker(
+                        SyntheticNetworks.proxy(
+                                CyNetworkTableManager.class, Collections.emptyMap()));
+        sizeEstimator =
+                new Cx2SizeEstimator(
+                        SyntheticNetworks.proxy(
+                                RenderingEngineManager.class, Collections.emptyMap()));
+        CyProperty<Properties> cyProperties = SyntheticNetworks.createProperties(props);
+        Cx2SizeCache sizeCache = new Cx2SizeCache(changeTracker);
+        OpenMetrics metrics = new OpenMetrics();
+        factory =
+                new OpenInCytoscapeWebTaskFactoryImpl(
+                        null,
+                        null,
+                        null,
+                        new ShowDialogUtil(),
+                        cyProperties,
+                        SyntheticNetworks.createWriterManager(),
+                        sizeCache,
+                        sizeEstimator,
+                        new Cx2SizeTracker(null, sizeEstimator),
+                        metrics,
+                        new Cx2Transport(
+                                cyProperties,
+                                SyntheticNetworks.createProperties(new Properties()),
+                                new Cx2PayloadStore(),
+                                new Cx2LiveSessions(null),
+                                metrics),
+                        new Cx2ExportPlanner(
+                                new Cx2MemoryGuard(cyProperties), sizeCache, sizeEstimator));
+    }
+
+    /** Validation of a network edited since its last check, which serializes it. */
+    @Benchmark
+    public String validateChangedNetwork() {
+        changeTracker.markChanged(NETWORK_SUID);
+        return factory.validateNetwork(networkView);
+    }
+
+    /** Validation of an unchanged network, answered by the size cache. */
+    @Benchmark
+    public String validateUnchangedNetwork() {
+        return factory.validateNetwork(networkView);
+    }
+
+    /** Unbounded CX2 serialization into a counting stream. */
+    @Benchmark
+    public long measureCx2ExportSize() {
+        return factory.measureCx2ExportSize(networkView);
+    }
+
+    /** Uncalibrated size estimate from counts and sampled rows. */
+    @Benchmark
+    public long estimateCx2ExportSize() {
+        return sizeEstimator.rawEstimate(networkView);
+    }
+}
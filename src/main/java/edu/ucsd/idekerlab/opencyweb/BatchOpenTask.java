@@ -0,0 +1,291 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Opens several networks selected in the network panel in Cytoscape Web. The networks are validated
+ * in parallel on a bounded pool sized by {@link
+ * OpenInCytoscapeWebTaskFactoryImpl#getBatchParallelism(int)}, running the same count and CX2 size
+ * checks as a single open. One report listing the networks that passed and failed is then shown, in
+ * an error dialog if any network failed and otherwise as a task message that does not hold up the
+ * opens, and a {@link DoTask} is inserted for every network that passed. Cancelling the task stops
+ * all running serializations and opens nothing.
+ */
+public class BatchOpenTask extends AbstractTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchOpenTask.class);
+    private static final long TERMINATION_TIMEOUT_SECONDS = 30;
+
+    private final OpenInCytoscapeWebTaskFactoryImpl factory;
+    private final List<CyNetwork> networks;
+
+    /**
+     * Constructor for BatchOpenTask
+     *
+     * @param factory factory that holds the validation settings
+     * @param networks the networks to open
+     */
+    public BatchOpenTask(
+            OpenInCytoscapeWebTaskFactoryImpl factory, Collection<CyNetwork> networks) {
+        this.factory = factory;
+        this.networks = new ArrayList<>(networks);
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) {
+        taskMonitor.setTitle("Open in Cytoscape Web");
+        taskMonitor.setStatusMessage("Validating " + networks.size() + " networks");
+        taskMonitor.setProgress(0.0);
+
+        List<Validation> validations = new ArrayList<>();
+        for (CyNetwork network : networks) {
+            validations.add(new Validation(network, factory.getNetworkView(network)));
+        }
+        validateAll(validations, taskMonitor);
+        if (cancelled) {
+            for (Validation validation : validations) {
+                validation.abandon("cancelled");
+            }
+            return;
+        }
+        taskMonitor.setProgress(1.0);
+
+        String report = createReport(validations);
+        LOGGER.info(report);
+        boolean anyFailed = false;
+        for (Validation validation : validations) {
+            anyFailed |= validation.error != null;
+        }
+        if (anyFailed) {
+            factory.showErrorDialog(report);
+        } else {
+            taskMonitor.showMessage(TaskMonitor.Level.INFO, report);
+        }
+
+        List<DoTask> openTasks = new ArrayList<>();
+        for (Validation validation : validations) {
+            if (validation.error != null) {
+                continue;
+            }
+            URI uri;
+            try (OpenMetrics.Scope scope = validation.trace.attach()) {
+                uri =
+                        factory.createCytoscapeWebURI(
+                                validation.network,
+                                validation.networkView,
+                                validation.capture,
+                                validation.strategy);
+            }
+            if (uri == null) {
+                // The base URL is shared, so every other URL would be invalid as well
+                for (Validation remaining : validations) {
+                    remaining.abandon("invalid URL");
+                }
+                return;
+            }
+            validation.capture = null;
+            openTasks.add(factory.createOpenTask(validation.network, uri, validation.trace));
+        }
+        insertTasksAfterCurrentTask(openTasks.toArray(new DoTask[0]));
+    }
+
+    private void validateAll(List<Validation> validations, TaskMonitor taskMonitor) {
+        int threads = factory.getBatchParallelism(validations.size());
+        LOGGER.debug("Validating " + validations.size() + " networks on " + threads + " threads");
+        ExecutorService executor =
+                Executors.newFixedThreadPool(
+                        threads, new ValidationThreads("opencyweb-batch-validation-"));
+        try {
+            CompletionService<Validation> completion = new ExecutorCompletionService<>(executor);
+            for (Validation validation : validations) {
+                completion.submit(validation, validation);
+            }
+            for (int done = 1; done <= validations.size(); done++) {
+                completion.take().get();
+                taskMonitor.setProgress((double) done / validations.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            LOGGER.error("Network validation failed", e.getCause());
+            cancel();
+        } finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    /** Waits for cancelled validations to stop writing, so their captures can be released. */
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Network validations did not stop after cancellation");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the report listing the validated networks, with the exceeded limits of each network
+     * that failed.
+     */
+    private static String createReport(List<Validation> validations) {
+        List<String> passed = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (Validation validation : validations) {
+            String name = networkName(validation.network);
+            if (validation.error == null) {
+                passed.add(name);
+            } else {
+                failed.add(name + ": " + summarizeError(validation.error));
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        report.append("Validated ")
+                .append(validations.size())
+                .append(" networks for Cytoscape Web: ")
+                .append(passed.size())
+                .append(" passed, ")
+                .append(failed.size())
+                .append(" failed.");
+        if (!passed.isEmpty()) {
+            report.append("\n\nOpening:");
+            for (String line : passed) {
+                report.append("\n  - ").append(line);
+            }
+        }
+        if (!failed.isEmpty()) {
+            report.append("\n\nNot opened:");
+            for (String line : failed) {
+                report.append("\n  - ").append(line);
+            }
+            report.append(
+                    "\n\nYou can adjust these limits in"
+                            + " Edit > Preferences > Properties (opencyweb).");
+        }
+        return report.toString();
+    }
+
+    /** Keeps the indented detail lines of a validation error message, joined on one line. */
+    private static String summarizeError(String error) {
+        return String.join("; ", errorDetails(error));
+    }
+
+    /**
+     * @param error validation error message
+     * @return the exceeded limits listed in the message, or the whole message if it lists none
+     */
+    static List<String> errorDetails(String error) {
+        List<String> details = new ArrayList<>();
+        for (String line : error.split("\n")) {
+            if (line.startsWith("  ")) {
+                details.add(line.trim());
+            }
+        }
+        if (details.isEmpty()) {
+            details.add(error.trim());
+        }
+        return details;
+    }
+
+    /**
+     * @param network the network
+     * @return the name of the network, or its SUID if it has none
+     */
+    static String networkName(CyNetwork network) {
+        CyRow row = network.getRow(network);
+        String name = row == null ? null : row.get(CyNetwork.NAME, String.class);
+        return name != null ? name : "Network SUID " + network.getSUID();
+    }
+
+    /** Validation of one network of the batch, run on the pool. */
+    final class Validation implements Runnable {
+        private final CyNetwork network;
+        private final CyNetworkView networkView;
+        private final OpenMetrics.Trace trace;
+        private volatile String error;
+        private volatile Cx2Buffer capture;
+        private volatile Cx2MemoryGuard.Strategy strategy = Cx2MemoryGuard.Strategy.BUFFER;
+
+        Validation(CyNetwork network, CyNetworkView networkView) {
+            this.network = network;
+            this.networkView = networkView;
+            this.trace = factory.getMetrics().startTrace(network.getSUID());
+        }
+
+        @Override
+        public void run() {
+            try (OpenMetrics.Scope scope = trace.attach()) {
+                error = factory.checkElementCounts(network);
+                if (error == null) {
+                    Cx2MemoryGuard.Plan plan = factory.planExport(network, networkView);
+                    strategy = plan.getStrategy();
+                    error = plan.getRefusal();
+                }
+                if (error == null) {
+                    capture =
+                            factory.createCaptureBuffer(
+                                    network,
+                                    networkView,
+                                    strategy == Cx2MemoryGuard.Strategy.BUFFER);
+                    error =
+                            factory.checkExportSize(
+                                    network, networkView, null, () -> cancelled, capture);
+                }
+            }
+            if (error != null) {
+                trace.finish("rejected");
+            }
+        }
+
+        /** Releases the captured export of a network that will not be opened. */
+        void abandon(String outcome) {
+            Cx2Buffer abandoned = capture;
+            capture = null;
+            if (abandoned != null) {
+                abandoned.release();
+            }
+            trace.finish(outcome);
+        }
+    }
+
+    /** Daemon threads at low priority, so a batch does not compete with the Swing thread. */
+    static final class ValidationThreads implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        ValidationThreads(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * An {@link OutputStream} that transcodes the JSON written to it into CBOR while it is written. The
+ * JSON is fed to a non-blocking parser chunk by chunk as the CX writer produces it, and every
+ * complete token is copied to a CBOR generator writing to the target, so neither encoding of the
+ * export is ever held in full. Tokens split across writes are completed by the next write.
+ *
+ * <p>{@link #finish()} must be called once the writer is done to flush the last tokens; closing the
+ * stream finishes it as well. The target is never closed.
+ */
+public class CborTranscodingOutputStream extends OutputStream {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final JsonGenerator generator;
+    private final byte[] singleByte = new byte[1];
+    private boolean finished;
+
+    /**
+     * Constructor for CborTranscodingOutputStream
+     *
+     * @param target receives the CBOR bytes
+     * @throws IOException if the generator cannot be created
+     */
+    public CborTranscodingOutputStream(OutputStream target) throws IOException {
+        parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        generator = CBOR_FACTORY.createGenerator(target);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        singleByte[0] = (byte) b;
+        write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("CBOR transcoding already finished");
+        }
+        if (len == 0) {
+            return;
+        }
+        // The parser reads from the caller's array, so every token must be copied before returning
+        feeder.feedInput(b, off, off + len);
+        copyAvailableTokens();
+    }
+
+    private void copyAvailableTokens() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    /** Flushes the CBOR written so far; an incomplete trailing token stays pending. */
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Copies the last tokens and flushes the CBOR to the target.
+     *
+     * @throws IOException if the JSON ended inside a token or writing fails
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        feeder.endOfInput();
+        copyAvailableTokens();
+        generator.close();
+        parser.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
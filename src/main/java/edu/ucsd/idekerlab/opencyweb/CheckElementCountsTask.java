@@ -0,0 +1,74 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * First validation stage of opening a network in Cytoscape Web. Checks the node and edge count
+ * thresholds, which is cheap, and only inserts the expensive {@link MeasureExportSizeTask} when
+ * they pass. On failure the error dialog is shown and no further tasks run. Starts the {@link
+ * OpenMetrics.Trace} that follows the open through the later stages. A network whose Cytoscape Web
+ * tab is still connected to its live session ({@link Cx2LiveSessions}) is not opened again.
+ */
+public class CheckElementCountsTask extends AbstractTask {
+
+    private final OpenInCytoscapeWebTaskFactoryImpl factory;
+    private final CyNetwork network;
+    private final CyNetworkView networkView;
+
+    /**
+     * Constructor for CheckElementCountsTask
+     *
+     * @param factory factory that holds the validation settings
+     * @param networkView the network view to validate
+     */
+    public CheckElementCountsTask(
+            OpenInCytoscapeWebTaskFactoryImpl factory, CyNetworkView networkView) {
+        this(factory, networkView.getModel(), networkView);
+    }
+
+    /**
+     * Constructor for CheckElementCountsTask
+     *
+     * @param factory factory that holds the validation settings
+     * @param network the network to validate
+     * @param networkView the view that is exported, or null to export the network without a view
+     */
+    public CheckElementCountsTask(
+            OpenInCytoscapeWebTaskFactoryImpl factory,
+            CyNetwork network,
+            CyNetworkView networkView) {
+        this.factory = factory;
+        this.network = network;
+        this.networkView = networkView;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) {
+        taskMonitor.setTitle("Open in Cytoscape Web");
+        taskMonitor.setStatusMessage("Checking network element counts");
+
+        OpenMetrics.Trace trace = factory.getMetrics().startTrace(network.getSUID());
+        if (factory.showInLiveSession(network)) {
+            trace.finish("live session");
+            taskMonitor.showMessage(
+                    TaskMonitor.Level.INFO,
+                    "This network is already open in Cytoscape Web,"
+                            + " which receives your changes as you make them.");
+            return;
+        }
+        String validationError;
+        try (OpenMetrics.Scope scope = trace.attach()) {
+            validationError = factory.checkElementCounts(network);
+        }
+        if (validationError != null) {
+            trace.finish("rejected");
+            factory.showErrorDialog(validationError);
+            return;
+        }
+        insertTasksAfterCurrentTask(
+                new MeasureExportSizeTask(factory, network, networkView, trace));
+    }
+}
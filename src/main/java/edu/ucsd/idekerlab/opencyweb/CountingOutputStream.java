@@ -1,27 +1,182 @@
 package edu.ucsd.idekerlab.opencyweb;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
 
 /**
  * A lightweight {@link OutputStream} that counts bytes written without storing any data. Used by
  * {@link OpenInCytoscapeWebTaskFactoryImpl#measureCx2ExportSize} to measure the CX2 export size of
- * a network without allocating heap memory for the serialized content.
+ * a network without allocating heap memory for the serialized content. Optionally the bytes are
+ * passed on to a target stream, so a single serialization can be both measured and kept.
+ *
+ * <p>When constructed with a byte limit, the stream throws {@link LimitExceededException} from the
+ * first write that takes the count past the limit, which stops the writer feeding it. The count at
+ * that point is a lower bound of the full export size.
+ *
+ * <p>A progress listener can be attached to follow the count while a writer runs, and a cancel
+ * check makes the next write fail with {@link InterruptedIOException} so that a cancelled task
+ * stops the writer feeding the stream.
+ *
+ * <p>With {@link #enableContentHash()}, the accepted bytes are also fingerprinted with {@link
+ * XxHash64}, so a captured export can be recognized when the same bytes are produced again.
  */
 public class CountingOutputStream extends OutputStream {
 
+    private final OutputStream target;
+    private final long limit;
     private long byteCount;
 
+    private LongConsumer progressListener;
+    private long progressInterval = Long.MAX_VALUE;
+    private long nextProgressAt = Long.MAX_VALUE;
+    private BooleanSupplier cancelCheck;
+    private XxHash64 contentHash;
+
+    /** Creates an unbounded counting stream. */
+    public CountingOutputStream() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a counting stream that aborts once more than {@code limit} bytes are written.
+     *
+     * @param limit maximum number of bytes accepted before writes fail
+     */
+    public CountingOutputStream(long limit) {
+        this(null, limit);
+    }
+
+    /**
+     * Creates a counting stream that passes accepted bytes on to {@code target}. Bytes of the write
+     * that crosses {@code limit} are not passed on.
+     *
+     * @param target stream that receives every accepted byte, may be null
+     * @param limit maximum number of bytes accepted before writes fail
+     */
+    public CountingOutputStream(OutputStream target, long limit) {
+        this.target = target;
+        this.limit = limit;
+    }
+
+    /**
+     * Reports the byte count to {@code listener} each time another {@code intervalBytes} have been
+     * written.
+     *
+     * @param listener receives the current byte count
+     * @param intervalBytes number of bytes between reports
+     */
+    public void setProgressListener(LongConsumer listener, long intervalBytes) {
+        this.progressListener = listener;
+        this.progressInterval = intervalBytes;
+        this.nextProgressAt = byteCount + intervalBytes;
+    }
+
+    /**
+     * @param cancelCheck polled on every write; once it returns true writes fail with {@link
+     *     InterruptedIOException}
+     */
+    public void setCancelCheck(BooleanSupplier cancelCheck) {
+        this.cancelCheck = cancelCheck;
+    }
+
+    /** Starts hashing the accepted bytes; call before the first write. */
+    public void enableContentHash() {
+        contentHash = new XxHash64();
+    }
+
     @Override
-    public void write(int b) {
+    public void write(int b) throws IOException {
+        checkCancelled();
         byteCount++;
+        checkLimit();
+        if (target != null) {
+            target.write(b);
+        }
+        if (contentHash != null) {
+            contentHash.update(b);
+        }
+        reportProgress();
     }
 
     @Override
-    public void write(byte[] b, int off, int len) {
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkCancelled();
         byteCount += len;
+        checkLimit();
+        if (target != null) {
+            target.write(b, off, len);
+        }
+        if (contentHash != null) {
+            contentHash.update(b, off, len);
+        }
+        reportProgress();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (target != null) {
+            target.flush();
+        }
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelCheck != null && cancelCheck.getAsBoolean()) {
+            throw new InterruptedIOException("Cancelled after " + byteCount + " bytes");
+        }
+    }
+
+    private void checkLimit() throws LimitExceededException {
+        if (byteCount > limit) {
+            throw new LimitExceededException(byteCount, limit);
+        }
+    }
+
+    private void reportProgress() {
+        if (byteCount >= nextProgressAt) {
+            nextProgressAt = byteCount + progressInterval;
+            progressListener.accept(byteCount);
+        }
     }
 
     public long getByteCount() {
         return byteCount;
     }
+
+    /**
+     * @return XXH64 of the accepted bytes
+     * @throws IllegalStateException if {@link #enableContentHash()} was not called
+     */
+    public long getContentHash() {
+        if (contentHash == null) {
+            throw new IllegalStateException("Content hash not enabled");
+        }
+        return contentHash.getValue();
+    }
+
+    /**
+     * @return true if the byte limit was crossed and the count is only a lower bound
+     */
+    public boolean isLimitExceeded() {
+        return byteCount > limit;
+    }
+
+    /**
+     * @return true if the cancel check reports that the measurement was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelCheck != null && cancelCheck.getAsBoolean();
+    }
+
+    /** Thrown when a bounded {@link CountingOutputStream} receives more bytes than its limit. */
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        LimitExceededException(long byteCount, long limit) {
+            super("Byte limit of " + limit + " exceeded after " + byteCount + " bytes");
+        }
+    }
 }
@@ -0,0 +1,401 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retains the CX2 bytes written while a network is validated, so that the same serialization can be
+ * served to Cytoscape Web. The buffer is only marked complete once the writer finished and the size
+ * check passed; partial output from a failed, cancelled or oversized export is never served.
+ *
+ * <p>With a {@link DirectBufferPool}, the bytes are written to pooled direct segments outside the
+ * heap; once the pool's budget is used up, the rest of the export continues in the inherited heap
+ * array. The segments go back to the pool when the buffer is released, discarded or spilled.
+ *
+ * <p>A complete buffer may carry a content key (XXH64 and length of its bytes) and the network
+ * stamp taken before it was written. Once {@link #share() shared} with the content index of {@link
+ * Cx2PayloadStore}, {@link #release()} no longer frees it; only the store discards it. A shared
+ * buffer written to the {@link Cx2DiskCache} drops its bytes and is served from the file with
+ * {@link FileChannel#transferTo}, without reading the export back into the heap.
+ *
+ * <p>{@link #writeTo(OutputStream)} takes a snapshot of the bytes under the lock and writes it
+ * outside, so a slow client does not hold up other requests or a release. Segments released while a
+ * response is being written are counted as read and only go back to the pool after the last
+ * response.
+ */
+public class Cx2Buffer extends ByteArrayOutputStream implements Cx2Payload {
+
+    /** Network SUID of exports found on disk after a restart, whose network is not known. */
+    static final long UNKNOWN_NETWORK_SUID = -1;
+
+    private final long networkSuid;
+
+    private volatile boolean complete;
+    private volatile boolean shared;
+    private volatile String contentKey;
+    private volatile long stamp;
+    private volatile Cx2Encoding encoding = Cx2Encoding.JSON;
+    private File file;
+    private long fileLength;
+
+    // Off-heap prefix of the export; the heap array holds the rest
+    private final DirectBufferPool pool;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long segmentBytes;
+    private boolean poolExhausted;
+
+    // Responses writing a snapshot of the segments, and segments released while they were
+    private int readers;
+    private final List<ByteBuffer> retiredSegments = new ArrayList<>();
+
+    /**
+     * Constructor for Cx2Buffer
+     *
+     * @param networkSuid SUID of the network being serialized
+     * @param initialCapacity expected size in bytes, to avoid regrowing the buffer
+     */
+    public Cx2Buffer(long networkSuid, int initialCapacity) {
+        this(networkSuid, initialCapacity, null);
+    }
+
+    /**
+     * Constructor for Cx2Buffer that keeps the bytes off the heap
+     *
+     * @param networkSuid SUID of the network being serialized
+     * @param initialCapacity expected size in bytes, for the heap array used without a pool
+     * @param pool pool of direct segments, may be null to keep the bytes on the heap
+     */
+    public Cx2Buffer(long networkSuid, int initialCapacity, DirectBufferPool pool) {
+        super(pool != null ? 0 : initialCapacity);
+        this.networkSuid = networkSuid;
+        this.pool = pool;
+        this.poolExhausted = pool == null;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ByteBuffer segment = currentSegment();
+        if (segment != null) {
+            segment.put((byte) b);
+            segmentBytes++;
+        } else {
+            super.write(b);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            ByteBuffer segment = currentSegment();
+            if (segment == null) {
+                super.write(b, off, len);
+                return;
+            }
+            int chunk = Math.min(len, segment.remaining());
+            segment.put(b, off, chunk);
+            segmentBytes += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /** Returns the segment with room for the next byte, or null once writing to the heap. */
+    private ByteBuffer currentSegment() {
+        if (poolExhausted) {
+            return null;
+        }
+        if (!segments.isEmpty()) {
+            ByteBuffer last = segments.get(segments.size() - 1);
+            if (last.hasRemaining()) {
+                return last;
+            }
+        }
+        ByteBuffer segment = pool.acquire();
+        if (segment == null) {
+            // Keep the order of the bytes: everything after this goes to the heap array
+            poolExhausted = true;
+            return null;
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    private void releaseSegments() {
+        if (readers > 0) {
+            retiredSegments.addAll(segments);
+        } else {
+            for (ByteBuffer segment : segments) {
+                pool.release(segment);
+            }
+        }
+        segments.clear();
+        segmentBytes = 0;
+    }
+
+    /** Ends a response started by {@link #writeTo}, returning retired segments after the last. */
+    private synchronized void endRead() {
+        if (--readers == 0) {
+            for (ByteBuffer segment : retiredSegments) {
+                pool.release(segment);
+            }
+            retiredSegments.clear();
+        }
+    }
+
+    /**
+     * @return bytes of the export held off the heap
+     */
+    synchronized long getOffHeapBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Creates a complete, shared buffer served from an export on disk.
+     *
+     * @param contentKey content key of the export
+     * @param file file holding the export
+     * @return the buffer
+     */
+    static Cx2Buffer ofFile(String contentKey, File file) {
+        Cx2Buffer buffer = new Cx2Buffer(UNKNOWN_NETWORK_SUID, 0);
+        buffer.contentKey = contentKey;
+        buffer.encoding = Cx2Encoding.forFileName(file.getName());
+        buffer.file = file;
+        buffer.fileLength = file.length();
+        buffer.shared = true;
+        buffer.complete = true;
+        return buffer;
+    }
+
+    @Override
+    public long getNetworkSuid() {
+        return networkSuid;
+    }
+
+    /** Marks the buffer as holding a complete CX2 export that passed validation. */
+    void markComplete() {
+        complete = true;
+    }
+
+    /**
+     * Marks the buffer as holding a complete CX2 export that passed validation, identified by the
+     * hash of its bytes.
+     *
+     * @param contentHash XXH64 of the bytes
+     * @param stamp modification stamp of the network taken before the bytes were written
+     */
+    void markComplete(long contentHash, long stamp) {
+        markComplete(contentHash, stamp, Cx2Encoding.JSON);
+    }
+
+    /**
+     * Marks the buffer as holding a complete CX2 export in the given encoding that passed
+     * validation, identified by the hash of its bytes.
+     *
+     * @param contentHash XXH64 of the bytes
+     * @param stamp modification stamp of the network taken before the bytes were written
+     * @param encoding encoding of the bytes
+     */
+    synchronized void markComplete(long contentHash, long stamp, Cx2Encoding encoding) {
+        this.contentKey = String.format("%016x-%d", contentHash, getContentLength());
+        this.stamp = stamp;
+        this.encoding = encoding;
+        complete = true;
+    }
+
+    @Override
+    public Cx2Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return true if the buffer holds a complete CX2 export
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return XXH64 and length of the bytes as {@code <16 hex digits>-<length>}, or null if the
+     *     bytes were not hashed
+     */
+    String getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * @return modification stamp of the network taken before the bytes were written
+     */
+    long getStamp() {
+        return stamp;
+    }
+
+    /** Hands the buffer to the content index; {@link #release()} no longer frees it. */
+    void share() {
+        shared = true;
+    }
+
+    /**
+     * Drops the bytes in favor of a file holding the same export.
+     *
+     * @param file file written from this buffer
+     * @return false if the buffer was discarded or is already served from a file
+     */
+    synchronized boolean spillTo(File file) {
+        if (!complete || this.file != null) {
+            return false;
+        }
+        fileLength = getContentLength();
+        this.file = file;
+        releaseSegments();
+        buf = new byte[0];
+        count = 0;
+        return true;
+    }
+
+    /**
+     * @return true if the export is served from a file instead of the heap
+     */
+    synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return size of the export, also when it is served from a file, at most {@link
+     *     Integer#MAX_VALUE}; use {@link #getContentLength()} for exports that may be larger
+     */
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, getContentLength());
+    }
+
+    /**
+     * @return size of the export, also when it is served from a file
+     */
+    @Override
+    public synchronized long getContentLength() {
+        return file != null ? fileLength : segmentBytes + count;
+    }
+
+    /**
+     * Writes the export to the response.
+     *
+     * @throws IOException if the buffer was released in the meantime
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        File source;
+        long length;
+        List<ByteBuffer> written;
+        byte[] heapBytes;
+        int heapCount;
+        synchronized (this) {
+            if (!complete) {
+                throw new IOException(
+                        "CX2 export of network SUID " + networkSuid + " was released");
+            }
+            source = file;
+            length = fileLength;
+            written = new ArrayList<>(segments.size());
+            for (ByteBuffer segment : segments) {
+                ByteBuffer duplicate = segment.duplicate();
+                duplicate.flip();
+                written.add(duplicate);
+            }
+            // A release replaces the array instead of overwriting it
+            heapBytes = buf;
+            heapCount = count;
+            if (source == null) {
+                readers++;
+            }
+        }
+        // Outside the lock, so the same export can be served to several requests at once
+        if (source == null) {
+            try {
+                if (!written.isEmpty()) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    for (ByteBuffer segment : written) {
+                        while (segment.hasRemaining()) {
+                            target.write(segment);
+                        }
+                    }
+                }
+                if (heapCount > 0) {
+                    out.write(heapBytes, 0, heapCount);
+                }
+            } finally {
+                endRead();
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < length) {
+                long transferred = channel.transferTo(position, length - position, target);
+                if (transferred == 0 && channel.size() <= position) {
+                    throw new IOException("Cached CX2 export " + source + " is truncated");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /** Drops the captured bytes, keeping only a minimal array, unless the buffer is shared. */
+    @Override
+    public synchronized void release() {
+        if (!shared) {
+            discard();
+        }
+    }
+
+    /** Drops the captured bytes even if the buffer is shared. */
+    synchronized void discard() {
+        shared = false;
+        complete = false;
+        contentKey = null;
+        file = null;
+        releaseSegments();
+        buf = new byte[0];
+        count = 0;
+    }
+
+    /**
+     * @return copy of the bytes held in segments and on the heap; empty once spilled to a file
+     */
+    @Override
+    public synchronized byte[] toByteArray() {
+        byte[] bytes = new byte[(int) (segmentBytes + count)];
+        int position = 0;
+        for (ByteBuffer segment : segments) {
+            ByteBuffer copied = segment.duplicate();
+            copied.flip();
+            int length = copied.remaining();
+            copied.get(bytes, position, length);
+            position += length;
+        }
+        System.arraycopy(buf, 0, bytes, position, count);
+        return bytes;
+    }
+
+    /** Drops the bytes written so far, returning the segments to the pool. */
+    @Override
+    public synchronized void reset() {
+        releaseSegments();
+        poolExhausted = pool == null;
+        if (readers > 0) {
+            // Responses still write the old array
+            buf = new byte[buf.length];
+        }
+        super.reset();
+    }
+}
@@ -0,0 +1,171 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Directory of CX2 exports named after their content key ({@link Cx2Buffer#getContentKey()}) and
+ * suffixed by their {@link Cx2Encoding#getFileSuffix() encoding}, so that served exports survive
+ * restarts of Cytoscape. Each file is written once, to a temporary file that is then moved into
+ * place, so a crash never leaves a partial export under a valid name. The least recently used files
+ * are deleted once the cache exceeds the size or entry limits passed to {@link #evict(long, int)};
+ * use is tracked through the file modification times, which also order the files found by {@link
+ * #load()} after a restart.
+ */
+public class Cx2DiskCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2DiskCache.class);
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{16}-[0-9]+");
+
+    private final File directory;
+
+    // Least recently used first
+    private final Map<String, File> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Constructor for Cx2DiskCache
+     *
+     * @param directory directory holding the exports, created when the first export is written
+     */
+    public Cx2DiskCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Indexes the exports left in the directory by earlier sessions and deletes temporary files of
+     * interrupted writes.
+     *
+     * @return the exports found, least recently used first
+     */
+    public synchronized Map<String, File> load() {
+        File[] listed = directory.listFiles();
+        if (listed == null) {
+            return new LinkedHashMap<>();
+        }
+        Arrays.sort(listed, Comparator.comparingLong(File::lastModified));
+        Map<String, File> loaded = new LinkedHashMap<>();
+        for (File file : listed) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                delete(file);
+                continue;
+            }
+            Cx2Encoding encoding = Cx2Encoding.forFileName(name);
+            if (encoding == null) {
+                continue;
+            }
+            String key = name.substring(0, name.length() - encoding.getFileSuffix().length());
+            if (KEY_PATTERN.matcher(key).matches() && !files.containsKey(key)) {
+                files.put(key, file);
+                totalBytes += file.length();
+                loaded.put(key, file);
+            }
+        }
+        LOGGER.debug("Found " + loaded.size() + " cached CX2 exports in " + directory);
+        return loaded;
+    }
+
+    /**
+     * Writes an export unless a file with its content key exists already.
+     *
+     * @param key content key of the export
+     * @param content complete export
+     * @return the file holding the export
+     * @throws IOException if the export could not be written
+     */
+    public File write(String key, Cx2Payload content) throws IOException {
+        File existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File file = new File(directory, key + content.getEncoding().getFileSuffix());
+        File temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                content.writeTo(out);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            delete(temp);
+        }
+        synchronized (this) {
+            if (files.put(key, file) == null) {
+                totalBytes += file.length();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the file of an export and marks it as recently used.
+     *
+     * @param key content key of the export
+     * @return the file, or null if the export is not cached
+     */
+    public synchronized File get(String key) {
+        File file = files.get(key);
+        if (file != null && !file.setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Unable to mark " + file + " as used");
+        }
+        return file;
+    }
+
+    /**
+     * Deletes the least recently used exports until the cache is within both limits.
+     *
+     * @param maxBytes total size limit
+     * @param maxEntries entry limit
+     * @return content keys of the deleted exports
+     */
+    public synchronized List<String> evict(long maxBytes, int maxEntries) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, File>> it = files.entrySet().iterator();
+        while ((totalBytes > maxBytes || files.size() > maxEntries) && it.hasNext()) {
+            Map.Entry<String, File> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue().length();
+            delete(eldest.getValue());
+            evicted.add(eldest.getKey());
+        }
+        return evicted;
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    synchronized int size() {
+        return files.size();
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Unable to delete " + file);
+        }
+    }
+}
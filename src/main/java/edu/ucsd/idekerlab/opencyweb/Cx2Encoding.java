@@ -0,0 +1,78 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+/**
+ * Encodings a CX2 export can be sent to Cytoscape Web in. The CX writer produces {@link #JSON};
+ * {@link #CBOR} is transcoded from it on the fly by {@link CborTranscodingOutputStream}.
+ */
+public enum Cx2Encoding {
+    /** CX2 as written by the CX writer. */
+    JSON("json", "application/json", ".cx2", ""),
+    /** CX2 transcoded to CBOR (RFC 8949), with the same structure as the JSON. */
+    CBOR("cbor", "application/cbor", ".cbor", ".cbor");
+
+    private final String name;
+    private final String mediaType;
+    private final String fileSuffix;
+    private final String urlSuffix;
+
+    Cx2Encoding(String name, String mediaType, String fileSuffix, String urlSuffix) {
+        this.name = name;
+        this.mediaType = mediaType;
+        this.fileSuffix = fileSuffix;
+        this.urlSuffix = urlSuffix;
+    }
+
+    /**
+     * @return value of {@code transport.encoding} selecting the encoding
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Content-Type of a response holding the export
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return suffix of the export's file in the {@link Cx2DiskCache}
+     */
+    public String getFileSuffix() {
+        return fileSuffix;
+    }
+
+    /**
+     * @return suffix appended to the import URL to advertise the encoding
+     */
+    public String getUrlSuffix() {
+        return urlSuffix;
+    }
+
+    /**
+     * @param name value of {@code transport.encoding}
+     * @return the encoding, or null if the name is unknown
+     */
+    public static Cx2Encoding forName(String name) {
+        for (Cx2Encoding encoding : values()) {
+            if (encoding.name.equals(name)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param fileName name of a file in the disk cache
+     * @return the encoding of the export in the file, or null if it is not an export
+     */
+    public static Cx2Encoding forFileName(String fileName) {
+        for (Cx2Encoding encoding : values()) {
+            if (fileName.endsWith(encoding.fileSuffix)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+
+/**
+ * Predicts the heap a CX2 export of a network needs and asks the {@link Cx2MemoryGuard} how it may
+ * be exported. Counting or streaming the export needs the CX writer's bookkeeping for every node
+ * and edge. Holding the whole export, in a capture buffer or in CyREST's own export, needs twice
+ * the expected export size on top, as the buffer is copied while it grows. The expected size is the
+ * cached exact size of the network, or its {@link Cx2SizeEstimator} estimate.
+ */
+public class Cx2ExportPlanner {
+
+    private final Cx2MemoryGuard memoryGuard;
+    private final Cx2SizeCache sizeCache;
+    private final Cx2SizeEstimator sizeEstimator;
+
+    /**
+     * Constructor for Cx2ExportPlanner
+     *
+     * @param memoryGuard Chooses how networks are exported from the free heap, stops exports when
+     *     it runs low
+     * @param sizeCache Cache of measured export sizes, invalidated when a network changes
+     * @param sizeEstimator Predicts export sizes of networks that were not measured
+     */
+    public Cx2ExportPlanner(
+            Cx2MemoryGuard memoryGuard, Cx2SizeCache sizeCache, Cx2SizeEstimator sizeEstimator) {
+        this.memoryGuard = memoryGuard;
+        this.sizeCache = sizeCache;
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * @return the guard that plans exports and watches the heap while they run
+     */
+    Cx2MemoryGuard getMemoryGuard() {
+        return memoryGuard;
+    }
+
+    /**
+     * Chooses how to export a network from the free heap.
+     *
+     * @param network the network to export
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param streamingConfigured true if {@code transport.mode} already streams exports
+     * @return the plan for the export
+     */
+    Cx2MemoryGuard.Plan plan(
+            CyNetwork network, CyNetworkView networkView, boolean streamingConfigured) {
+        long streamBytes = predictWriterHeapBytes(network);
+        long bufferBytes = streamBytes + 2 * getExpectedExportBytes(network, networkView);
+        return memoryGuard.plan(bufferBytes, streamBytes, streamingConfigured);
+    }
+
+    /**
+     * @param network the network to serialize
+     * @return true if the heap has room for the CX writer to serialize the network
+     */
+    boolean hasWriterHeadroom(CyNetwork network) {
+        return memoryGuard.hasHeadroomFor(predictWriterHeapBytes(network));
+    }
+
+    /**
+     * @param network the network to serialize
+     * @return heap the CX writer holds while serializing the network
+     */
+    static long predictWriterHeapBytes(CyNetwork network) {
+        return ((long) network.getNodeCount() + network.getEdgeCount())
+                * Cx2MemoryGuard.WRITER_BYTES_PER_ELEMENT;
+    }
+
+    /**
+     * @param network the network to export
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @return the cached exact export size of the network, or its estimate
+     */
+    long getExpectedExportBytes(CyNetwork network, CyNetworkView networkView) {
+        Cx2ExportSize cachedSize = sizeCache.get(network.getSUID());
+        return cachedSize != null && cachedSize.isExact()
+                ? cachedSize.getBytes()
+                : sizeEstimator.estimate(network, networkView).getBytes();
+    }
+}
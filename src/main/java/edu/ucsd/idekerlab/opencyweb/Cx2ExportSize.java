@@ -0,0 +1,91 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+/**
+ * Result of a CX2 export size lookup: either the exact size, a lower bound from a measurement that
+ * was stopped once it crossed the size limit, an estimate from {@link Cx2SizeEstimator} that was
+ * confidently far from the limit, or unknown when the size could not be measured. A measurement
+ * stopped by the {@link Cx2MemoryGuard} is unknown as well, but fails validation.
+ */
+public final class Cx2ExportSize {
+
+    /** Size could not be determined (e.g. CX writer unavailable); validation fails open. */
+    public static final Cx2ExportSize UNKNOWN = new Cx2ExportSize(-1, true, false);
+
+    /** Serialization was refused or stopped because the Java heap ran low; validation fails. */
+    public static final Cx2ExportSize LOW_MEMORY = new Cx2ExportSize(-1, false, false);
+
+    private final long bytes;
+    private final boolean exact;
+    private final boolean estimated;
+
+    private Cx2ExportSize(long bytes, boolean exact, boolean estimated) {
+        this.bytes = bytes;
+        this.exact = exact;
+        this.estimated = estimated;
+    }
+
+    /**
+     * @param bytes complete export size in bytes
+     * @return an exact size
+     */
+    public static Cx2ExportSize exact(long bytes) {
+        return new Cx2ExportSize(bytes, true, false);
+    }
+
+    /**
+     * @param bytes number of bytes counted before serialization was stopped
+     * @return a lower bound of the export size
+     */
+    public static Cx2ExportSize atLeast(long bytes) {
+        return new Cx2ExportSize(bytes, false, false);
+    }
+
+    /**
+     * @param bytes predicted export size in bytes
+     * @return an estimate made without serializing the network
+     */
+    public static Cx2ExportSize estimated(long bytes) {
+        return new Cx2ExportSize(bytes, false, true);
+    }
+
+    /**
+     * @return size in bytes, or -1 if unknown
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return true if {@link #getBytes()} is the complete export size, false if it is a lower bound
+     *     or an estimate
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return true if {@link #getBytes()} was predicted rather than measured
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    public boolean isKnown() {
+        return bytes >= 0;
+    }
+
+    /**
+     * @return true if the export was not measured for lack of heap
+     */
+    public boolean isLowMemory() {
+        return this == LOW_MEMORY;
+    }
+
+    /**
+     * @param limitBytes size limit in bytes
+     * @return true if the export is known to be larger than the limit
+     */
+    public boolean exceeds(long limitBytes) {
+        return isKnown() && bytes > limitBytes;
+    }
+}
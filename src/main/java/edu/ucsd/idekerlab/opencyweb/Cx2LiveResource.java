@@ -0,0 +1,55 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * JAX-RS resource, published by CyREST on its localhost port, that streams the changes of a network
+ * opened with {@code live.enabled} as Server-Sent Events from {@code /opencyweb/v1/live/{suid}}.
+ * See {@link Cx2LiveSessions} for the events. The response stays open until the network is
+ * destroyed, the app stops or the tab goes away; it holds one CyREST request thread while open.
+ */
+@Path(Cx2LiveSessions.PATH)
+public class Cx2LiveResource {
+
+    static final String EVENT_STREAM_MEDIA_TYPE = "text/event-stream";
+
+    private final Cx2LiveSessions liveSessions;
+
+    /**
+     * Constructor for Cx2LiveResource
+     *
+     * @param liveSessions channels of the networks opened with a live session
+     */
+    public Cx2LiveResource(Cx2LiveSessions liveSessions) {
+        this.liveSessions = liveSessions;
+    }
+
+    /**
+     * Subscribes to the changes of a network.
+     *
+     * @param suid SUID of the network
+     * @return the event stream, or 404 if the network was not opened with a live session
+     */
+    @GET
+    @Path("/{suid}")
+    @Produces(EVENT_STREAM_MEDIA_TYPE)
+    public Response getEvents(@PathParam("suid") long suid) {
+        Cx2LiveSessions.Subscription subscription = liveSessions.subscribe(suid);
+        if (subscription == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(output(subscription), EVENT_STREAM_MEDIA_TYPE)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .build();
+    }
+
+    StreamingOutput output(Cx2LiveSessions.Subscription subscription) {
+        return subscription::writeTo;
+    }
+}
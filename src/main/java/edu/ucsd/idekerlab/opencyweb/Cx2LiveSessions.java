@@ -0,0 +1,549 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.events.AboutToRemoveEdgesEvent;
+import org.cytoscape.model.events.AboutToRemoveEdgesListener;
+import org.cytoscape.model.events.AboutToRemoveNodesEvent;
+import org.cytoscape.model.events.AboutToRemoveNodesListener;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedEdgesListener;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.AddedNodesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedListener;
+import org.cytoscape.view.vizmap.events.VisualStyleSetEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleSetListener;
+
+/**
+ * Live sessions of networks opened in Cytoscape Web with {@code live.enabled}. Opening a network
+ * creates a channel for it, to which the Cytoscape Web tab subscribes through {@link
+ * Cx2LiveResource} as a Server-Sent Events stream. Model events are turned into CX2 fragments and
+ * sent to every subscriber of the network, so the tab can apply edits without importing the network
+ * again:
+ *
+ * <ul>
+ *   <li>{@code nodes}, {@code edges}: added elements with their attributes, as in the CX2 aspects
+ *   <li>{@code removedNodes}, {@code removedEdges}: arrays of the removed element ids
+ *   <li>{@code nodeAttributes}, {@code edgeAttributes}: {@code [{"id":..,"v":{..}}]} with the
+ *       changed values; {@code networkAttributes}: {@code [{..}]}
+ *   <li>{@code reload}: the change has no incremental form, import the network again
+ *   <li>{@code open}: the user opened the network again; {@code closed}: it was destroyed
+ * </ul>
+ *
+ * <p>Element ids are SUIDs, as in the CX2 export. Visual style changes, batches of more than {@link
+ * #MAX_EVENT_ELEMENTS} elements or values, and subscribers that fall {@link #MAX_PENDING_EVENTS}
+ * events behind get a {@code reload} instead. Events of networks without subscribers are dropped
+ * before they are encoded. Selection changes are not sent.
+ */
+public class Cx2LiveSessions
+        implements AddedNodesListener,
+                AddedEdgesListener,
+                AboutToRemoveNodesListener,
+                AboutToRemoveEdgesListener,
+                RowsSetListener,
+                VisualStyleChangedListener,
+                VisualStyleSetListener,
+                NetworkAboutToBeDestroyedListener {
+
+    static final String PATH = "/opencyweb/v1/live";
+
+    static final int MAX_EVENT_ELEMENTS = 10000;
+    static final int MAX_PENDING_EVENTS = 256;
+    static final long HEARTBEAT_SECONDS = 15;
+
+    static final String EVENT_NODES = "nodes";
+    static final String EVENT_EDGES = "edges";
+    static final String EVENT_REMOVED_NODES = "removedNodes";
+    static final String EVENT_REMOVED_EDGES = "removedEdges";
+    static final String EVENT_NODE_ATTRIBUTES = "nodeAttributes";
+    static final String EVENT_EDGE_ATTRIBUTES = "edgeAttributes";
+    static final String EVENT_NETWORK_ATTRIBUTES = "networkAttributes";
+    static final String EVENT_RELOAD = "reload";
+    static final String EVENT_OPEN = "open";
+    static final String EVENT_CLOSED = "closed";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2LiveSessions.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Sent without an id when a subscriber fell behind and lost events
+    private static final String OVERFLOW_EVENT =
+            "event: " + EVENT_RELOAD + "\ndata: {\"reason\":\"overflow\"}\n\n";
+    private static final byte[] CONNECTED = ": connected\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": keep-alive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final CyNetworkTableManager networkTableManager;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    /** Writes the JSON data of an event. */
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /** The subscribers of one network and the ids of the events sent to them. */
+    private static final class Channel {
+        private final AtomicLong eventIds = new AtomicLong();
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * One Cytoscape Web tab listening to a network. Events are queued by the threads that deliver
+     * model events and written to the response by {@link #writeTo(OutputStream)}.
+     */
+    public final class Subscription {
+        private final long networkSuid;
+        private final BlockingQueue<String> events = new ArrayBlockingQueue<>(MAX_PENDING_EVENTS);
+        private volatile boolean closed;
+
+        private Subscription(long networkSuid) {
+            this.networkSuid = networkSuid;
+        }
+
+        private void offer(String event) {
+            if (!events.offer(event)) {
+                // The tab has to import the network again anyway, so the queued events are moot
+                events.clear();
+                events.offer(OVERFLOW_EVENT);
+            }
+        }
+
+        /**
+         * Writes events to a response until the subscription is closed or the client goes away,
+         * with a comment line every {@link #HEARTBEAT_SECONDS} seconds to detect the latter. The
+         * subscription is removed when this returns.
+         *
+         * @param out the response
+         * @throws IOException if the client disconnected
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                out.write(CONNECTED);
+                out.flush();
+                while (true) {
+                    String event =
+                            closed
+                                    ? events.poll()
+                                    : events.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                    if (event != null) {
+                        out.write(event.getBytes(StandardCharsets.UTF_8));
+                    } else if (closed) {
+                        return;
+                    } else {
+                        out.write(HEARTBEAT);
+                    }
+                    out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unsubscribe(this);
+            }
+        }
+
+        /** Ends {@link #writeTo(OutputStream)} once the queued events are written. */
+        public void close() {
+            closed = true;
+            // Wakes up a writer waiting for events
+            events.offer("");
+        }
+
+        /**
+         * @return SUID of the network the subscription listens to
+         */
+        public long getNetworkSuid() {
+            return networkSuid;
+        }
+    }
+
+    /**
+     * Constructor for Cx2LiveSessions
+     *
+     * @param networkTableManager used to resolve the network and element type of a changed table
+     */
+    public Cx2LiveSessions(CyNetworkTableManager networkTableManager) {
+        this.networkTableManager = networkTableManager;
+    }
+
+    /**
+     * Creates the channel of a network that is being opened, if it has none yet.
+     *
+     * @param networkSuid SUID of the network
+     */
+    public void open(long networkSuid) {
+        channels.computeIfAbsent(networkSuid, suid -> new Channel());
+    }
+
+    /**
+     * @param networkSuid SUID of the network
+     * @return a new subscription to the network's channel, or null if it was never opened
+     */
+    public Subscription subscribe(long networkSuid) {
+        Channel channel = channels.get(networkSuid);
+        if (channel == null) {
+            return null;
+        }
+        Subscription subscription = new Subscription(networkSuid);
+        channel.subscriptions.add(subscription);
+        LOGGER.info("Live session subscribed to network SUID: " + networkSuid);
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        Channel channel = channels.get(subscription.networkSuid);
+        if (channel != null && channel.subscriptions.remove(subscription)) {
+            LOGGER.info("Live session ended for network SUID: " + subscription.networkSuid);
+        }
+    }
+
+    /**
+     * @param networkSuid SUID of the network
+     * @return true if a Cytoscape Web tab is listening to the network
+     */
+    public boolean isConnected(long networkSuid) {
+        return activeChannel(networkSuid) != null;
+    }
+
+    /**
+     * Tells the tabs listening to a network that it was opened again, so one of them can come to
+     * the front instead of a new tab importing it.
+     *
+     * @param networkSuid SUID of the network
+     * @return true if a tab was told, false if none is listening
+     */
+    public boolean sendOpen(long networkSuid) {
+        Channel channel = activeChannel(networkSuid);
+        if (channel == null) {
+            return false;
+        }
+        send(channel, EVENT_OPEN, Cx2LiveSessions::writeEmptyObject);
+        return true;
+    }
+
+    /** Closes every subscription. Called when the app is stopped. */
+    public void dispose() {
+        for (Channel channel : channels.values()) {
+            channel.subscriptions.forEach(Subscription::close);
+        }
+        channels.clear();
+    }
+
+    private Channel activeChannel(long networkSuid) {
+        Channel channel = channels.get(networkSuid);
+        return channel == null || channel.subscriptions.isEmpty() ? null : channel;
+    }
+
+    private Channel activeChannel(CyNetwork network) {
+        return network == null ? null : activeChannel(network.getSUID());
+    }
+
+    private void send(Channel channel, String type, JsonBody body) {
+        StringWriter data = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(data)) {
+            body.write(generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // JSON escapes line breaks in strings, so the data fits one line
+        String event =
+                "id: "
+                        + channel.eventIds.incrementAndGet()
+                        + "\nevent: "
+                        + type
+                        + "\ndata: "
+                        + data
+                        + "\n\n";
+        for (Subscription subscription : channel.subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    private void sendReload(Channel channel, String reason) {
+        send(
+                channel,
+                EVENT_RELOAD,
+                generator -> {
+                    generator.writeStartObject();
+                    generator.writeStringField("reason", reason);
+                    generator.writeEndObject();
+                });
+    }
+
+    @Override
+    public void handleEvent(AddedNodesEvent e) {
+        CyNetwork network = e.getSource();
+        Channel channel = activeChannel(network);
+        if (channel == null) {
+            return;
+        }
+        Collection<CyNode> nodes = e.getPayloadCollection();
+        if (nodes.size() > MAX_EVENT_ELEMENTS) {
+            sendReload(channel, EVENT_NODES);
+            return;
+        }
+        send(
+                channel,
+                EVENT_NODES,
+                generator -> {
+                    generator.writeStartArray();
+                    for (CyNode node : nodes) {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", node.getSUID());
+                        writeValues(generator, network.getRow(node));
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                });
+    }
+
+    @Override
+    public void handleEvent(AddedEdgesEvent e) {
+        CyNetwork network = e.getSource();
+        Channel channel = activeChannel(network);
+        if (channel == null) {
+            return;
+        }
+        Collection<CyEdge> edges = e.getPayloadCollection();
+        if (edges.size() > MAX_EVENT_ELEMENTS) {
+            sendReload(channel, EVENT_EDGES);
+            return;
+        }
+        send(
+                channel,
+                EVENT_EDGES,
+                generator -> {
+                    generator.writeStartArray();
+                    for (CyEdge edge : edges) {
+                        generator.writeStartObject();
+                        generator.writeNumberField("id", edge.getSUID());
+                        generator.writeNumberField("s", edge.getSource().getSUID());
+                        generator.writeNumberField("t", edge.getTarget().getSUID());
+                        writeValues(generator, network.getRow(edge));
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                });
+    }
+
+    @Override
+    public void handleEvent(AboutToRemoveNodesEvent e) {
+        sendRemoved(e.getSource(), EVENT_REMOVED_NODES, e.getNodes());
+    }
+
+    @Override
+    public void handleEvent(AboutToRemoveEdgesEvent e) {
+        sendRemoved(e.getSource(), EVENT_REMOVED_EDGES, e.getEdges());
+    }
+
+    private void sendRemoved(
+            CyNetwork network, String type, Collection<? extends CyIdentifiable> elements) {
+        Channel channel = activeChannel(network);
+        if (channel == null || elements.isEmpty()) {
+            return;
+        }
+        send(
+                channel,
+                type,
+                generator -> {
+                    generator.writeStartArray();
+                    for (CyIdentifiable element : elements) {
+                        generator.writeNumber(element.getSUID());
+                    }
+                    generator.writeEndArray();
+                });
+    }
+
+    @Override
+    public void handleEvent(RowsSetEvent e) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        CyNetwork network = networkTableManager.getNetworkForTable(e.getSource());
+        if (network instanceof CyRootNetwork) {
+            // Shared columns surface in every subnetwork of the root
+            for (CySubNetwork subNetwork : ((CyRootNetwork) network).getSubNetworkList()) {
+                sendRows(activeChannel(subNetwork), e);
+            }
+        } else {
+            sendRows(activeChannel(network), e);
+        }
+    }
+
+    private void sendRows(Channel channel, RowsSetEvent e) {
+        if (channel == null) {
+            return;
+        }
+        Class<? extends CyIdentifiable> tableType = networkTableManager.getTableType(e.getSource());
+        String type;
+        if (CyNode.class.equals(tableType)) {
+            type = EVENT_NODE_ATTRIBUTES;
+        } else if (CyEdge.class.equals(tableType)) {
+            type = EVENT_EDGE_ATTRIBUTES;
+        } else if (CyNetwork.class.equals(tableType)) {
+            type = EVENT_NETWORK_ATTRIBUTES;
+        } else {
+            return;
+        }
+        // Changed values grouped by row, in the order they were set
+        Map<Long, Map<String, Object>> rows = new LinkedHashMap<>();
+        int values = 0;
+        for (RowSetRecord record : e.getPayloadCollection()) {
+            if (CyNetwork.SELECTED.equals(record.getColumn())
+                    || CyIdentifiable.SUID.equals(record.getColumn())) {
+                continue;
+            }
+            if (++values > MAX_EVENT_ELEMENTS) {
+                sendReload(channel, type);
+                return;
+            }
+            Object suid = record.getRow().getRaw(CyIdentifiable.SUID);
+            if (suid instanceof Long) {
+                rows.computeIfAbsent((Long) suid, key -> new LinkedHashMap<>())
+                        .put(record.getColumn(), record.getRawValue());
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        boolean networkRows = EVENT_NETWORK_ATTRIBUTES.equals(type);
+        send(
+                channel,
+                type,
+                generator -> {
+                    generator.writeStartArray();
+                    for (Map.Entry<Long, Map<String, Object>> row : rows.entrySet()) {
+                        generator.writeStartObject();
+                        if (networkRows) {
+                            writeFields(generator, row.getValue());
+                        } else {
+                            generator.writeNumberField("id", row.getKey());
+                            generator.writeFieldName("v");
+                            generator.writeStartObject();
+                            writeFields(generator, row.getValue());
+                            generator.writeEndObject();
+                        }
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                });
+    }
+
+    @Override
+    public void handleEvent(VisualStyleChangedEvent e) {
+        for (Channel channel : channels.values()) {
+            if (!channel.subscriptions.isEmpty()) {
+                sendReload(channel, "style");
+            }
+        }
+    }
+
+    @Override
+    public void handleEvent(VisualStyleSetEvent e) {
+        CyNetworkView view = e.getNetworkView();
+        Channel channel = view == null ? null : activeChannel(view.getModel());
+        if (channel != null) {
+            sendReload(channel, "style");
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        Channel channel = channels.remove(e.getNetwork().getSUID());
+        if (channel == null) {
+            return;
+        }
+        send(channel, EVENT_CLOSED, Cx2LiveSessions::writeEmptyObject);
+        channel.subscriptions.forEach(Subscription::close);
+    }
+
+    /** Writes the row's values, except its SUID and selection, as the {@code v} member. */
+    private static void writeValues(JsonGenerator generator, CyRow row) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>(row.getAllValues());
+        values.remove(CyIdentifiable.SUID);
+        values.remove(CyNetwork.SELECTED);
+        values.values().removeIf(value -> value == null);
+        if (values.isEmpty()) {
+            return;
+        }
+        generator.writeFieldName("v");
+        generator.writeStartObject();
+        writeFields(generator, values);
+        generator.writeEndObject();
+    }
+
+    private static void writeFields(JsonGenerator generator, Map<String, Object> values)
+            throws IOException {
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            generator.writeFieldName(value.getKey());
+            writeObject(generator, value.getValue());
+        }
+    }
+
+    // Browsers only dispatch events with data
+    private static void writeEmptyObject(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeObject(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                // Not representable in JSON
+                generator.writeNull();
+            } else {
+                generator.writeNumber(number);
+            }
+        } else if (value instanceof List) {
+            generator.writeStartArray();
+            for (Object element : (List<?>) value) {
+                writeObject(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
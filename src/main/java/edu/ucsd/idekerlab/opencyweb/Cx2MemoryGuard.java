@@ -0,0 +1,298 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.property.CyProperty;
+
+/**
+ * Keeps CX2 exports from running Cytoscape out of Java heap. Before a network is serialized, the
+ * {@link Cx2ExportPlanner} predicts the peak heap the export needs with each strategy and {@link
+ * #plan} picks one that fits the live headroom: up to {@code memory.guard-percent} of the maximum
+ * heap, minus the heap still in use after the last garbage collection. An export that holds the
+ * whole CX2 document (buffered capture, or CyREST's own export) is downgraded to counting the bytes
+ * and streaming them to Cytoscape Web without buffering, and refused with an explanation if even
+ * that does not fit.
+ *
+ * <p>Once {@link #start()}ed, the guard sets the collection usage threshold of the heap pools to
+ * the same percentage and listens to the {@link MemoryMXBean}: a notification that the heap is
+ * still that full after a collection trips every {@link Watch}, and serializations polling a watch
+ * stop at their next write. {@code memory.guard-percent=0} disables the guard.
+ */
+public class Cx2MemoryGuard implements NotificationListener {
+
+    static final String PROP_GUARD_PERCENT = "memory.guard-percent";
+    static final int DEFAULT_GUARD_PERCENT = 90;
+
+    // Heap the CX writer holds per node and edge while exporting (attribute maps, visual
+    // properties)
+    static final long WRITER_BYTES_PER_ELEMENT = 512;
+
+    /** Validation message of an export stopped for lack of heap. */
+    static final String LOW_MEMORY_MESSAGE =
+            "Cytoscape ran low on memory while exporting this network, so the export was stopped."
+                    + "\n  Java heap nearly full after garbage collection"
+                    + "\n\nClose networks you no longer need, or give Cytoscape more memory"
+                    + " (-Xmx in Cytoscape.vmoptions).";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2MemoryGuard.class);
+
+    /** How a network is exported, from most to least heap. */
+    public enum Strategy {
+        /** The whole export is held in memory, as configured by {@code transport.mode}. */
+        BUFFER,
+        /** Validation only counts the bytes; the export is streamed to Cytoscape Web. */
+        STREAM,
+        /** Not enough heap to export the network at all. */
+        REFUSE
+    }
+
+    /** The strategy chosen for an export, with the numbers it was based on. */
+    public static final class Plan {
+        private final Strategy strategy;
+        private final long neededBytes;
+        private final long headroomBytes;
+        private final long maxHeapBytes;
+
+        Plan(Strategy strategy, long neededBytes, long headroomBytes, long maxHeapBytes) {
+            this.strategy = strategy;
+            this.neededBytes = neededBytes;
+            this.headroomBytes = headroomBytes;
+            this.maxHeapBytes = maxHeapBytes;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * @return the explanation shown when the export is refused, null otherwise
+         */
+        public String getRefusal() {
+            if (strategy != Strategy.REFUSE) {
+                return null;
+            }
+            return String.format(
+                    Locale.ROOT,
+                    "There is not enough free memory to export this network to Cytoscape Web."
+                            + "\n  Memory needed: about %.1f MB (free: %.1f MB of %.1f MB)"
+                            + "\n\nClose networks you no longer need, or give Cytoscape more"
+                            + " memory (-Xmx in Cytoscape.vmoptions).",
+                    megabytes(neededBytes),
+                    megabytes(Math.max(0, headroomBytes)),
+                    megabytes(maxHeapBytes));
+        }
+    }
+
+    /**
+     * Trips when a low-memory notification arrives, or an export runs out of memory, after it was
+     * created.
+     */
+    public final class Watch {
+        private final long startEvents;
+
+        private Watch(long startEvents) {
+            this.startEvents = startEvents;
+        }
+
+        public boolean isTripped() {
+            return lowMemoryEvents.get() != startEvents;
+        }
+    }
+
+    private final MemoryMXBean memoryBean;
+    private final List<MemoryPoolMXBean> heapPools;
+    private final CyProperty<Properties> cyProperties;
+    private final AtomicLong lowMemoryEvents = new AtomicLong();
+    private final List<MemoryPoolMXBean> thresholdPools = new ArrayList<>();
+    private boolean listening;
+
+    /**
+     * Constructor for Cx2MemoryGuard
+     *
+     * @param cyProperties App properties from opencyweb.props
+     */
+    public Cx2MemoryGuard(CyProperty<Properties> cyProperties) {
+        this(
+                ManagementFactory.getMemoryMXBean(),
+                ManagementFactory.getMemoryPoolMXBeans(),
+                cyProperties);
+    }
+
+    Cx2MemoryGuard(
+            MemoryMXBean memoryBean,
+            List<MemoryPoolMXBean> memoryPools,
+            CyProperty<Properties> cyProperties) {
+        this.memoryBean = memoryBean;
+        this.cyProperties = cyProperties;
+        this.heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : memoryPools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    /**
+     * Starts listening for low-memory notifications after garbage collections. Only pools without a
+     * collection usage threshold get one, so thresholds set by others are left alone.
+     */
+    public synchronized void start() {
+        int percent = getGuardPercent();
+        if (percent <= 0 || listening) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            long max = pool.getUsage().getMax();
+            if (pool.isCollectionUsageThresholdSupported()
+                    && max > 0
+                    && pool.getCollectionUsageThreshold() == 0) {
+                pool.setCollectionUsageThreshold(max / 100 * percent);
+                thresholdPools.add(pool);
+            }
+        }
+        if (memoryBean instanceof NotificationEmitter) {
+            ((NotificationEmitter) memoryBean).addNotificationListener(this, null, null);
+            listening = true;
+        }
+    }
+
+    /** Stops listening and clears the thresholds set by {@link #start()}. */
+    public synchronized void dispose() {
+        if (listening) {
+            try {
+                ((NotificationEmitter) memoryBean).removeNotificationListener(this);
+            } catch (ListenerNotFoundException e) {
+                // Already removed
+            }
+            listening = false;
+        }
+        for (MemoryPoolMXBean pool : thresholdPools) {
+            pool.setCollectionUsageThreshold(0);
+        }
+        thresholdPools.clear();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+                        notification.getType())
+                && getGuardPercent() > 0) {
+            lowMemoryEvents.incrementAndGet();
+            LOGGER.warn(
+                    "Java heap is still more than "
+                            + getGuardPercent()
+                            + "% full after garbage collection, stopping CX2 exports");
+        }
+    }
+
+    /**
+     * Records an {@link OutOfMemoryError} thrown while exporting, which trips running watches like
+     * a low-memory notification.
+     */
+    void reportOutOfMemory() {
+        lowMemoryEvents.incrementAndGet();
+    }
+
+    /**
+     * @return a watch that trips on the next low-memory notification or {@link OutOfMemoryError}
+     */
+    Watch watch() {
+        return new Watch(lowMemoryEvents.get());
+    }
+
+    /**
+     * Chooses how to export a network.
+     *
+     * @param bufferBytes predicted peak heap if the whole export is held in memory
+     * @param streamBytes predicted peak heap if the export is only counted or streamed
+     * @param streamingConfigured true if {@code transport.mode} streams the export anyway
+     * @return the plan; {@link Strategy#BUFFER} if the guard is off
+     */
+    Plan plan(long bufferBytes, long streamBytes, boolean streamingConfigured) {
+        long maxHeap = getMaxHeapBytes();
+        if (getGuardPercent() <= 0 || maxHeap <= 0) {
+            return new Plan(Strategy.BUFFER, 0, Long.MAX_VALUE, maxHeap);
+        }
+        long headroom = getHeadroomBytes();
+        if (!streamingConfigured && bufferBytes <= headroom) {
+            return new Plan(Strategy.BUFFER, bufferBytes, headroom, maxHeap);
+        }
+        if (streamBytes <= headroom) {
+            return new Plan(Strategy.STREAM, streamBytes, headroom, maxHeap);
+        }
+        LOGGER.warn(
+                "Refusing CX2 export: "
+                        + streamBytes
+                        + " bytes of heap needed, "
+                        + headroom
+                        + " bytes free");
+        return new Plan(Strategy.REFUSE, streamBytes, headroom, maxHeap);
+    }
+
+    /**
+     * @param bytes predicted peak heap of a counting serialization
+     * @return true if it fits in the headroom, or the guard is off
+     */
+    boolean hasHeadroomFor(long bytes) {
+        return plan(bytes, bytes, true).getStrategy() != Strategy.REFUSE;
+    }
+
+    /**
+     * Heap that exports may still use: {@code memory.guard-percent} of the maximum heap minus the
+     * heap in use. Pools that report their usage after the last collection count with that usage,
+     * so garbage waiting to be collected is not held against the export.
+     *
+     * @return headroom in bytes, negative if the heap is already fuller than the guard allows
+     */
+    long getHeadroomBytes() {
+        long used = 0;
+        if (heapPools.isEmpty()) {
+            used = memoryBean.getHeapMemoryUsage().getUsed();
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage afterCollection = pool.getCollectionUsage();
+            used += afterCollection != null ? afterCollection.getUsed() : pool.getUsage().getUsed();
+        }
+        return getMaxHeapBytes() / 100 * getGuardPercent() - used;
+    }
+
+    private long getMaxHeapBytes() {
+        MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+        return heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+    }
+
+    int getGuardPercent() {
+        String rawPercent = cyProperties.getProperties().getProperty(PROP_GUARD_PERCENT);
+        if (rawPercent == null) {
+            return DEFAULT_GUARD_PERCENT;
+        }
+        try {
+            return Math.max(0, Math.min(100, Integer.parseInt(rawPercent.trim())));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid " + PROP_GUARD_PERCENT + ": " + rawPercent);
+            return DEFAULT_GUARD_PERCENT;
+        }
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
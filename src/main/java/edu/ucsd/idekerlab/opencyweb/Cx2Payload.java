@@ -0,0 +1,40 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A CX2 export waiting in {@link Cx2PayloadStore} to be fetched by Cytoscape Web through {@link
+ * Cx2PayloadResource}.
+ */
+public interface Cx2Payload {
+
+    /**
+     * @return SUID of the exported network
+     */
+    long getNetworkSuid();
+
+    /**
+     * @return number of bytes {@link #writeTo(OutputStream)} will write, or -1 if not known in
+     *     advance (the response is then sent with chunked transfer encoding)
+     */
+    long getContentLength();
+
+    /**
+     * @return encoding of the bytes {@link #writeTo(OutputStream)} writes
+     */
+    default Cx2Encoding getEncoding() {
+        return Cx2Encoding.JSON;
+    }
+
+    /**
+     * Writes the CX2 export to the response.
+     *
+     * @param out response stream
+     * @throws IOException if writing fails or the export cannot be completed
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /** Frees resources held by the payload. Called once it is served, evicted or expires. */
+    void release();
+}
@@ -0,0 +1,127 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JAX-RS resource, published by CyREST on its localhost port, that serves CX2 exports registered in
+ * {@link Cx2PayloadStore}. Cytoscape Web imports from {@code /opencyweb/v1/cx2/{token}}; each token
+ * can be fetched once. Exports of known size are sent with a Content-Length header, streamed
+ * exports with chunked transfer encoding. Binary exports are advertised with an encoding suffix on
+ * the URL (e.g. {@code {token}.cbor}) and sent with the encoding's Content-Type.
+ *
+ * <p>Exports in the content index are served from {@code /opencyweb/v1/cx2/content/{key}} as often
+ * as requested. As the key is derived from the bytes, these responses are marked immutable and
+ * carry the key as ETag, so a browser revalidating them gets 304 Not Modified. They hold the user's
+ * network, so they are private: only the browser may cache them, not shared caches or proxies.
+ */
+@Path(Cx2PayloadResource.BASE_PATH)
+public class Cx2PayloadResource {
+
+    static final String BASE_PATH = "/opencyweb/v1/cx2";
+    static final String CONTENT_PATH = BASE_PATH + "/content";
+
+    private static final String CBOR_MEDIA_TYPE = "application/cbor";
+    private static final String IMMUTABLE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2PayloadResource.class);
+
+    private final Cx2PayloadStore payloadStore;
+
+    /**
+     * Constructor for Cx2PayloadResource
+     *
+     * @param payloadStore store holding the captured exports
+     */
+    public Cx2PayloadResource(Cx2PayloadStore payloadStore) {
+        this.payloadStore = payloadStore;
+    }
+
+    /**
+     * Serves the CX2 export registered under a token.
+     *
+     * @param token one-time token from the import URL
+     * @return the CX2 bytes, or 404 if the token is unknown, already used or expired
+     */
+    @GET
+    @Path("/{token}")
+    @Produces({MediaType.APPLICATION_JSON, CBOR_MEDIA_TYPE})
+    public Response getCx2(@PathParam("token") String token) {
+        Cx2Payload payload = payloadStore.take(stripEncodingSuffix(token));
+        if (payload == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        Response.ResponseBuilder response =
+                Response.ok(output(payload), payload.getEncoding().getMediaType());
+        long contentLength = payload.getContentLength();
+        if (contentLength >= 0) {
+            response.header(HttpHeaders.CONTENT_LENGTH, contentLength);
+        }
+        return response.build();
+    }
+
+    /**
+     * Serves an export from the content index.
+     *
+     * @param key content key from the import URL
+     * @param ifNoneMatch ETag the client already holds, may be null
+     * @return the CX2 bytes, 304 if the client holds them already, or 404 if the key is not indexed
+     */
+    @GET
+    @Path("/content/{key}")
+    @Produces({MediaType.APPLICATION_JSON, CBOR_MEDIA_TYPE})
+    public Response getContent(
+            @PathParam("key") String key,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        key = stripEncodingSuffix(key);
+        Cx2Buffer content = payloadStore.getContent(key);
+        if (content == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        String etag = "\"" + key + "\"";
+        if (etag.equals(ifNoneMatch)) {
+            return Response.notModified().header(HttpHeaders.ETAG, etag).build();
+        }
+        return Response.ok(contentOutput(content), content.getEncoding().getMediaType())
+                .header(HttpHeaders.CONTENT_LENGTH, content.getContentLength())
+                .header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL)
+                .build();
+    }
+
+    /** Removes the encoding suffix advertised on the URL; tokens and keys contain no dots. */
+    static String stripEncodingSuffix(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /** Writes an indexed export to the response; it stays indexed for later requests. */
+    StreamingOutput contentOutput(Cx2Buffer content) {
+        return os -> {
+            content.writeTo(os);
+            LOGGER.info("Served indexed CX2 for network SUID: " + content.getNetworkSuid());
+        };
+    }
+
+    /** Writes the payload to the response and frees it once sent. */
+    StreamingOutput output(Cx2Payload payload) {
+        return os -> {
+            try {
+                payload.writeTo(os);
+                LOGGER.info("Served CX2 for network SUID: " + payload.getNetworkSuid());
+            } finally {
+                payload.release();
+            }
+        };
+    }
+}
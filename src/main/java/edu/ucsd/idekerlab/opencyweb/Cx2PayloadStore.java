@@ -0,0 +1,354 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds CX2 exports waiting for Cytoscape Web to fetch them from {@link Cx2PayloadResource}: bytes
+ * captured during validation ({@link Cx2Buffer}) or exports streamed on request ({@link
+ * StreamingCx2Payload}). Each export is registered under a random one-time token: taking it removes
+ * it, so its resources can be freed as soon as it is served. Exports that are never fetched (e.g.
+ * the browser did not open) are dropped after {@link #DEFAULT_TTL_MILLIS}; an export that was not
+ * fetched is never dropped before then. Instead, registration is refused once {@link
+ * #DEFAULT_MAX_ENTRIES} exports are waiting, or when the captured bytes waiting would exceed the
+ * budget given on registration, and the caller serves the network another way.
+ *
+ * <p>Complete captures can also be kept in a content index keyed by the hash and length of their
+ * bytes ({@link Cx2Buffer#getContentKey()}), so that reopening an unchanged network serves the same
+ * bytes again from a stable, cacheable URL without serializing it. Identical exports of different
+ * networks share one entry. The index keeps at most {@link #DEFAULT_MAX_CONTENT_ENTRIES} exports
+ * within a byte budget given on registration, evicting the least recently used.
+ *
+ * <p>With a {@link Cx2DiskCache}, indexed exports can be {@link #persistContent persisted}: they
+ * are written to disk once, their heap bytes are dropped and they no longer count against the heap
+ * budget. Exports persisted by earlier sessions are indexed again on construction, so they are
+ * served and deduplicated across restarts.
+ */
+public class Cx2PayloadStore {
+
+    static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+    static final int DEFAULT_MAX_ENTRIES = 256;
+    static final int DEFAULT_MAX_CONTENT_ENTRIES = 16;
+
+    // Networks remembered with the content they exported last
+    private static final int MAX_NETWORK_CONTENTS = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2PayloadStore.class);
+    private static final int TOKEN_BYTES = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Captured bytes of the exports waiting to be fetched
+    private long pendingBytes;
+
+    // Least recently served first
+    private final Map<String, Cx2Buffer> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, NetworkContent> networkContents =
+            new LinkedHashMap<Long, NetworkContent>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, NetworkContent> eldest) {
+                    return size() > MAX_NETWORK_CONTENTS;
+                }
+            };
+    private final int maxContentEntries;
+    private final Cx2DiskCache diskCache;
+
+    // Exports of the index held in the heap, not spilled to disk
+    private int heapEntries;
+    private long heapBytes;
+
+    /** Constructor for Cx2PayloadStore */
+    public Cx2PayloadStore() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CONTENT_ENTRIES, null);
+    }
+
+    /**
+     * Constructor for Cx2PayloadStore that persists indexed exports
+     *
+     * @param diskCache disk cache holding persisted exports, indexed again right away
+     */
+    public Cx2PayloadStore(Cx2DiskCache diskCache) {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CONTENT_ENTRIES, diskCache);
+    }
+
+    Cx2PayloadStore(long ttlMillis, int maxEntries) {
+        this(ttlMillis, maxEntries, DEFAULT_MAX_CONTENT_ENTRIES, null);
+    }
+
+    Cx2PayloadStore(long ttlMillis, int maxEntries, int maxContentEntries, Cx2DiskCache diskCache) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.maxContentEntries = maxContentEntries;
+        this.diskCache = diskCache;
+        if (diskCache != null) {
+            for (Map.Entry<String, File> persisted : diskCache.load().entrySet()) {
+                contents.put(
+                        persisted.getKey(),
+                        Cx2Buffer.ofFile(persisted.getKey(), persisted.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Registers a CX2 export, without a budget for the captured bytes waiting to be fetched.
+     *
+     * @param payload the export
+     * @return one-time token that identifies the export, or null if {@link #DEFAULT_MAX_ENTRIES}
+     *     exports are already waiting
+     */
+    public String register(Cx2Payload payload) {
+        return register(payload, Long.MAX_VALUE);
+    }
+
+    /**
+     * Registers a CX2 export. Exports waiting to be fetched are never dropped to make room, so that
+     * opening several networks before Cytoscape Web fetches the first one serves all of them.
+     *
+     * @param payload the export
+     * @param maxBytes budget of the captured bytes waiting to be fetched, this export included
+     * @return one-time token that identifies the export, or null if the store is full; the export
+     *     is then left to the caller
+     */
+    public synchronized String register(Cx2Payload payload, long maxBytes) {
+        evictExpired();
+        long bytes = heldBytes(payload);
+        if (entries.size() >= maxEntries || pendingBytes + bytes > maxBytes) {
+            LOGGER.debug(
+                    "Not registering CX2 export of network SUID "
+                            + payload.getNetworkSuid()
+                            + ": "
+                            + entries.size()
+                            + " exports, "
+                            + pendingBytes
+                            + " bytes waiting");
+            return null;
+        }
+        String token = newToken();
+        entries.put(token, new Entry(payload, bytes, System.currentTimeMillis() + ttlMillis));
+        pendingBytes += bytes;
+        return token;
+    }
+
+    /** Bytes a waiting export holds; streamed exports are only written when fetched. */
+    private static long heldBytes(Cx2Payload payload) {
+        return Math.max(0, payload.getContentLength());
+    }
+
+    /**
+     * Removes and returns the export registered under a token.
+     *
+     * @param token token returned by {@link #register(Cx2Payload)}
+     * @return the export, or null if the token is unknown, already used or expired
+     */
+    public synchronized Cx2Payload take(String token) {
+        evictExpired();
+        Entry entry = entries.remove(token);
+        if (entry == null) {
+            return null;
+        }
+        pendingBytes -= entry.bytes;
+        return entry.payload;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return captured bytes of the exports waiting to be fetched
+     */
+    synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Adds a complete, hashed capture to the content index. If the index already holds the same
+     * bytes, the capture is released and the indexed export is returned instead. Either way the
+     * capture's network is recorded as having exported these bytes at the capture's stamp.
+     *
+     * @param capture complete capture with a content key
+     * @param maxBytes byte budget of the index
+     * @return the indexed export, or null if the capture is larger than the budget
+     */
+    public synchronized Cx2Buffer registerContent(Cx2Buffer capture, long maxBytes) {
+        String key = capture.getContentKey();
+        if (key == null || !capture.isComplete() || capture.getContentLength() > maxBytes) {
+            return null;
+        }
+        networkContents.put(capture.getNetworkSuid(), new NetworkContent(key, capture.getStamp()));
+        Cx2Buffer indexed = contents.get(key);
+        if (indexed != null) {
+            if (indexed != capture) {
+                capture.release();
+            }
+            return indexed;
+        }
+        capture.share();
+        contents.put(key, capture);
+        heapEntries++;
+        heapBytes += capture.getContentLength();
+
+        // Spilled exports are bounded by the disk cache instead
+        List<Cx2Buffer> evicted = new ArrayList<>();
+        Iterator<Cx2Buffer> it = contents.values().iterator();
+        while ((heapEntries > maxContentEntries || heapBytes > maxBytes) && heapEntries > 1) {
+            Cx2Buffer eldest = it.next();
+            if (eldest.isSpilled()) {
+                continue;
+            }
+            it.remove();
+            heapEntries--;
+            heapBytes -= eldest.getContentLength();
+            evicted.add(eldest);
+        }
+        for (Cx2Buffer buffer : evicted) {
+            buffer.discard();
+        }
+        return capture;
+    }
+
+    /**
+     * Writes an indexed export to the disk cache, unless it is there already, and serves it from
+     * the file from then on. The least recently used persisted exports are then deleted until the
+     * disk cache is within its limits. Does nothing without a disk cache.
+     *
+     * @param content export returned by {@link #registerContent}
+     * @param maxDiskBytes size limit of the disk cache; larger exports are not persisted
+     * @param maxDiskEntries entry limit of the disk cache
+     */
+    public void persistContent(Cx2Buffer content, long maxDiskBytes, int maxDiskEntries) {
+        if (diskCache == null) {
+            return;
+        }
+        String key = content.getContentKey();
+        File file = null;
+        if (key != null
+                && !content.isSpilled()
+                && content.getContentLength() <= maxDiskBytes
+                && maxDiskEntries > 0) {
+            try {
+                // Written outside the store lock; the buffer's own lock keeps it intact
+                file = diskCache.write(key, content);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to cache CX2 export " + key + " on disk", e);
+            }
+        }
+        List<Cx2Buffer> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (file != null && contents.get(key) == content) {
+                long bytes = content.getContentLength();
+                if (content.spillTo(file)) {
+                    heapEntries--;
+                    heapBytes -= bytes;
+                }
+            }
+            for (String evictedKey : diskCache.evict(maxDiskBytes, maxDiskEntries)) {
+                Cx2Buffer buffer = contents.get(evictedKey);
+                if (buffer != null && buffer.isSpilled()) {
+                    contents.remove(evictedKey);
+                    evicted.add(buffer);
+                }
+            }
+        }
+        for (Cx2Buffer buffer : evicted) {
+            buffer.discard();
+        }
+    }
+
+    /**
+     * Looks up the export a network produced when it was last registered with {@link
+     * #registerContent}.
+     *
+     * @param networkSuid SUID of the network
+     * @param stamp current modification stamp of the network
+     * @param encoding encoding the export is needed in
+     * @return the indexed export, or null if the network changed since, the export was evicted or
+     *     it is in another encoding
+     */
+    public synchronized Cx2Buffer findContent(long networkSuid, long stamp, Cx2Encoding encoding) {
+        NetworkContent networkContent = networkContents.get(networkSuid);
+        if (networkContent == null || networkContent.stamp != stamp) {
+            return null;
+        }
+        Cx2Buffer content = contents.get(networkContent.key);
+        return content != null && content.getEncoding() == encoding ? content : null;
+    }
+
+    /**
+     * @param key content key of an indexed export
+     * @return the export, or null if it is not (or no longer) indexed
+     */
+    public synchronized Cx2Buffer getContent(String key) {
+        Cx2Buffer content = contents.get(key);
+        if (content != null && content.isSpilled()) {
+            diskCache.get(key);
+        }
+        return content;
+    }
+
+    synchronized int contentSize() {
+        return contents.size();
+    }
+
+    synchronized long heapContentBytes() {
+        return heapBytes;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt <= now) {
+                entry.payload.release();
+                pendingBytes -= entry.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(TOKEN_BYTES * 2);
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    /** Content key a network exported, and its modification stamp taken before exporting. */
+    private static class NetworkContent {
+        private final String key;
+        private final long stamp;
+
+        NetworkContent(String key, long stamp) {
+            this.key = key;
+            this.stamp = stamp;
+        }
+    }
+
+    private static class Entry {
+        private final Cx2Payload payload;
+        private final long bytes;
+        private final long expiresAt;
+
+        Entry(Cx2Payload payload, long bytes, long expiresAt) {
+            this.payload = payload;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.events.SetCurrentNetworkEvent;
+import org.cytoscape.application.events.SetCurrentNetworkListener;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.property.CyProperty;
+
+/**
+ * Keeps the current network validated in the background so that "Open in Cytoscape Web" finds its
+ * size (or, with the buffered transport, its bytes) ready. When enabled with {@code
+ * prefetch.enabled}, switching the current network or editing it schedules a prefetch after {@code
+ * prefetch.delay-ms} of quiet; every further change restarts the delay and abandons a prefetch that
+ * is already running. Prefetches run one at a time on a single low priority daemon thread.
+ */
+public class Cx2Prefetcher
+        implements SetCurrentNetworkListener, NetworkChangeTracker.ChangeListener {
+
+    static final String PROP_PREFETCH_ENABLED = "prefetch.enabled";
+    static final String PROP_PREFETCH_DELAY_MS = "prefetch.delay-ms";
+    static final long DEFAULT_DELAY_MS = 2000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2Prefetcher.class);
+
+    private final CyApplicationManager appManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl taskFactory;
+    private final CyProperty<Properties> cyProperties;
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> pending;
+    private volatile long generation;
+
+    /**
+     * Constructor for Cx2Prefetcher
+     *
+     * @param appManager Cytoscape application manager, provides the current network view
+     * @param taskFactory factory that validates and captures the network
+     * @param cyProperties App properties from opencyweb.props
+     */
+    public Cx2Prefetcher(
+            CyApplicationManager appManager,
+            OpenInCytoscapeWebTaskFactoryImpl taskFactory,
+            CyProperty<Properties> cyProperties) {
+        this(
+                appManager,
+                taskFactory,
+                cyProperties,
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "opencyweb-prefetch");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }));
+    }
+
+    Cx2Prefetcher(
+            CyApplicationManager appManager,
+            OpenInCytoscapeWebTaskFactoryImpl taskFactory,
+            CyProperty<Properties> cyProperties,
+            ScheduledExecutorService executor) {
+        this.appManager = appManager;
+        this.taskFactory = taskFactory;
+        this.cyProperties = cyProperties;
+        this.executor = executor;
+    }
+
+    @Override
+    public void handleEvent(SetCurrentNetworkEvent e) {
+        schedule();
+    }
+
+    @Override
+    public void networkChanged(Long networkSuid) {
+        CyNetwork current = appManager.getCurrentNetwork();
+        if (current != null && (networkSuid == null || networkSuid.equals(current.getSUID()))) {
+            schedule();
+        }
+    }
+
+    /** Restarts the quiet period before the next prefetch, abandoning a running one. */
+    synchronized void schedule() {
+        if (executor.isShutdown() || !isEnabled()) {
+            return;
+        }
+        final long scheduledGeneration = ++generation;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending =
+                executor.schedule(
+                        () -> prefetch(scheduledGeneration),
+                        getDelayMillis(),
+                        TimeUnit.MILLISECONDS);
+    }
+
+    void prefetch(long scheduledGeneration) {
+        CyNetwork network = appManager.getCurrentNetwork();
+        if (network == null || scheduledGeneration != generation) {
+            return;
+        }
+        try {
+            taskFactory.prefetch(
+                    network, () -> scheduledGeneration != generation || executor.isShutdown());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Background CX2 prefetch failed: " + e.getMessage(), e);
+        }
+    }
+
+    /** Stops the prefetch thread. Called when the app is stopped. */
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    private boolean isEnabled() {
+        return Boolean.parseBoolean(
+                cyProperties.getProperties().getProperty(PROP_PREFETCH_ENABLED, "false").trim());
+    }
+
+    private long getDelayMillis() {
+        String rawDelay = cyProperties.getProperties().getProperty(PROP_PREFETCH_DELAY_MS);
+        if (rawDelay == null) {
+            return DEFAULT_DELAY_MS;
+        }
+        try {
+            return Math.max(0, Long.parseLong(rawDelay.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid " + PROP_PREFETCH_DELAY_MS + ": " + rawDelay);
+            return DEFAULT_DELAY_MS;
+        }
+    }
+}
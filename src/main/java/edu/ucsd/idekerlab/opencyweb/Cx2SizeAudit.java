@@ -0,0 +1,321 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.property.CyProperty;
+
+/**
+ * Measures the CX2 export size of every network in the session in the background, for the size
+ * audit panel. An audit lists the networks of the {@link CyNetworkManager} smallest first (by node
+ * and edge count) and measures them in that order on at most {@code audit.threads} low priority
+ * daemon threads, fewer if free memory allows fewer validations at once. Results are kept per
+ * network with the {@link NetworkChangeTracker} stamp taken before measuring, and the next audit
+ * reuses them until the network changes or {@code network.max-filesize-mb} does. Listeners are
+ * called on the worker threads.
+ */
+public class Cx2SizeAudit implements NetworkAboutToBeDestroyedListener {
+
+    static final String PROP_AUDIT_THREADS = "audit.threads";
+    static final int DEFAULT_THREADS = 2;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2SizeAudit.class);
+
+    /** Notified of the progress of audits. */
+    public interface Listener {
+
+        /**
+         * An audit started.
+         *
+         * @param networks the networks to audit, smallest first
+         */
+        void auditStarted(List<CyNetwork> networks);
+
+        /**
+         * A network was measured, or its previous result was reused.
+         *
+         * @param result the result
+         */
+        void networkMeasured(Result result);
+
+        /**
+         * Every network of the audit was measured, or the audit was stopped.
+         *
+         * @param stopped true if {@link #stop()} ended the audit early
+         */
+        void auditFinished(boolean stopped);
+
+        /**
+         * A network is about to be destroyed; its result is dropped.
+         *
+         * @param networkSuid SUID of the network
+         */
+        void networkRemoved(long networkSuid);
+    }
+
+    /** The outcome of measuring one network. */
+    public static final class Result {
+        private final long stamp;
+        private final long maxFileSizeBytes;
+        private final NetworkMeasurement measurement;
+        private final String failure;
+
+        Result(long stamp, long maxFileSizeBytes, NetworkMeasurement measurement, String failure) {
+            this.stamp = stamp;
+            this.maxFileSizeBytes = maxFileSizeBytes;
+            this.measurement = measurement;
+            this.failure = failure;
+        }
+
+        long getNetworkSuid() {
+            return measurement.getNetwork().getSUID();
+        }
+
+        long getMaxFileSizeBytes() {
+            return maxFileSizeBytes;
+        }
+
+        NetworkMeasurement getMeasurement() {
+            return measurement;
+        }
+
+        /**
+         * @return why the measurement failed, or null if it completed
+         */
+        String getFailure() {
+            return failure;
+        }
+    }
+
+    private final CyNetworkManager networkManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory;
+    private final NetworkChangeTracker changeTracker;
+    private final CyProperty<Properties> cyProperties;
+    private final IntFunction<ExecutorService> executorFactory;
+    private final Map<Long, Result> results = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private ExecutorService executor;
+    private volatile long generation;
+    private boolean running;
+
+    /**
+     * Constructor for Cx2SizeAudit
+     *
+     * @param networkManager Cytoscape network manager, lists the networks of the session
+     * @param openFactory factory that holds the validation settings and measures the networks
+     * @param changeTracker source of network modification stamps
+     * @param cyProperties App properties from opencyweb.props
+     */
+    public Cx2SizeAudit(
+            CyNetworkManager networkManager,
+            OpenInCytoscapeWebTaskFactoryImpl openFactory,
+            NetworkChangeTracker changeTracker,
+            CyProperty<Properties> cyProperties) {
+        this(
+                networkManager,
+                openFactory,
+                changeTracker,
+                cyProperties,
+                threads ->
+                        Executors.newFixedThreadPool(
+                                threads,
+                                r -> {
+                                    Thread thread = new Thread(r, "opencyweb-audit");
+                                    thread.setDaemon(true);
+                                    thread.setPriority(Thread.MIN_PRIORITY);
+                                    return thread;
+                                }));
+    }
+
+    Cx2SizeAudit(
+            CyNetworkManager networkManager,
+            OpenInCytoscapeWebTaskFactoryImpl openFactory,
+            NetworkChangeTracker changeTracker,
+            CyProperty<Properties> cyProperties,
+            IntFunction<ExecutorService> executorFactory) {
+        this.networkManager = networkManager;
+        this.openFactory = openFactory;
+        this.changeTracker = changeTracker;
+        this.cyProperties = cyProperties;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * @param listener notified of the progress of audits
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Starts auditing every network of the session, stopping an audit that is still running.
+     * Results of unchanged networks are reported again right away, on the calling thread.
+     */
+    public synchronized void start() {
+        stop();
+        final long auditGeneration = ++generation;
+        final long maxBytes = openFactory.getMaxFileSizeBytes();
+        List<CyNetwork> networks = new ArrayList<>(networkManager.getNetworkSet());
+        networks.sort(
+                Comparator.comparingLong(
+                        (CyNetwork network) ->
+                                (long) network.getNodeCount() + network.getEdgeCount()));
+        for (Listener listener : listeners) {
+            listener.auditStarted(networks);
+        }
+        List<CyNetwork> pending = new ArrayList<>();
+        for (CyNetwork network : networks) {
+            Result previous = getResult(network.getSUID(), maxBytes);
+            if (previous != null) {
+                fireMeasured(previous);
+            } else {
+                pending.add(network);
+            }
+        }
+        LOGGER.info(
+                "Auditing CX2 sizes of "
+                        + networks.size()
+                        + " networks, "
+                        + pending.size()
+                        + " to measure");
+        if (pending.isEmpty()) {
+            fireFinished(false);
+            return;
+        }
+        int threads = Math.min(getMaxThreads(), openFactory.getBatchParallelism(pending.size()));
+        executor = executorFactory.apply(threads);
+        running = true;
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        for (CyNetwork network : pending) {
+            executor.execute(() -> measure(network, maxBytes, auditGeneration, remaining));
+        }
+        // Queued measurements still run; the threads exit after the last one
+        executor.shutdown();
+    }
+
+    /** Stops the running audit, if any. Results measured so far are kept. */
+    public synchronized void stop() {
+        generation++;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (running) {
+            running = false;
+            fireFinished(true);
+        }
+    }
+
+    /**
+     * @return true while an audit is measuring networks
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the kept result of a network if it is still valid.
+     *
+     * @param networkSuid SUID of the network
+     * @param maxBytes the current size limit
+     * @return the result, or null if the network was not measured, changed since or was measured
+     *     against another limit
+     */
+    Result getResult(long networkSuid, long maxBytes) {
+        Result result = results.get(networkSuid);
+        if (result == null
+                || result.stamp != changeTracker.getStamp(networkSuid)
+                || result.maxFileSizeBytes != maxBytes) {
+            return null;
+        }
+        return result;
+    }
+
+    private void measure(
+            CyNetwork network, long maxBytes, long auditGeneration, AtomicInteger remaining) {
+        if (auditGeneration != generation) {
+            return;
+        }
+        long stamp = changeTracker.getStamp(network.getSUID());
+        NetworkMeasurement measurement = new NetworkMeasurement(network);
+        String failure = null;
+        try {
+            measurement.run(openFactory, () -> auditGeneration != generation);
+        } catch (RuntimeException e) {
+            LOGGER.warn("CX2 size audit of network " + network.getSUID() + " failed", e);
+            failure = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        synchronized (this) {
+            if (auditGeneration != generation) {
+                // Stopped: the size of an interrupted measurement is meaningless
+                return;
+            }
+            Result result = new Result(stamp, maxBytes, measurement, failure);
+            if (failure == null) {
+                results.put(network.getSUID(), result);
+            }
+            fireMeasured(result);
+            if (remaining.decrementAndGet() == 0) {
+                running = false;
+                executor = null;
+                fireFinished(false);
+            }
+        }
+    }
+
+    private void fireMeasured(Result result) {
+        for (Listener listener : listeners) {
+            listener.networkMeasured(result);
+        }
+    }
+
+    private void fireFinished(boolean stopped) {
+        for (Listener listener : listeners) {
+            listener.auditFinished(stopped);
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        long networkSuid = e.getNetwork().getSUID();
+        results.remove(networkSuid);
+        for (Listener listener : listeners) {
+            listener.networkRemoved(networkSuid);
+        }
+    }
+
+    /** Stops the running audit. Called when the app is stopped. */
+    public void dispose() {
+        stop();
+    }
+
+    int getMaxThreads() {
+        String rawThreads = cyProperties.getProperties().getProperty(PROP_AUDIT_THREADS);
+        if (rawThreads == null) {
+            return DEFAULT_THREADS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(rawThreads.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid " + PROP_AUDIT_THREADS + ": " + rawThreads);
+            return DEFAULT_THREADS;
+        }
+    }
+}
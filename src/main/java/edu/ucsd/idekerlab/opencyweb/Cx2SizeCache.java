@@ -0,0 +1,114 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+
+/**
+ * Remembers measured CX2 export sizes keyed by network SUID. Sizes from measurements that were
+ * stopped at the size limit are kept as lower bounds. Each entry records the {@link
+ * NetworkChangeTracker} stamp taken before the measurement started, and is only returned while the
+ * network's stamp is unchanged, so any edit to the network invalidates its entry. The least
+ * recently used entries are evicted once {@link #DEFAULT_MAX_ENTRIES} is reached, and entries of
+ * destroyed networks are dropped immediately.
+ */
+public class Cx2SizeCache implements NetworkAboutToBeDestroyedListener {
+
+    static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private final NetworkChangeTracker changeTracker;
+    private final Map<Long, Entry> entries;
+
+    /**
+     * Constructor for Cx2SizeCache
+     *
+     * @param changeTracker source of network modification stamps
+     */
+    public Cx2SizeCache(NetworkChangeTracker changeTracker) {
+        this(changeTracker, DEFAULT_MAX_ENTRIES);
+    }
+
+    Cx2SizeCache(NetworkChangeTracker changeTracker, final int maxEntries) {
+        this.changeTracker = changeTracker;
+        this.entries =
+                new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                        return size() > maxEntries;
+                    }
+                };
+    }
+
+    /**
+     * Returns the current modification stamp of a network. Callers take the stamp before measuring
+     * and hand it back to {@link #put(long, long, Cx2ExportSize)}, so a change made during the
+     * measurement leaves the stored entry already stale.
+     *
+     * @param networkSuid SUID of the network
+     * @return modification stamp
+     */
+    public long currentStamp(long networkSuid) {
+        return changeTracker.getStamp(networkSuid);
+    }
+
+    /**
+     * Looks up the cached CX2 export size of a network.
+     *
+     * @param networkSuid SUID of the network
+     * @return exact size or lower bound, or null if nothing is cached or the network changed since
+     */
+    public synchronized Cx2ExportSize get(long networkSuid) {
+        Entry entry = entries.get(networkSuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.stamp != changeTracker.getStamp(networkSuid)) {
+            entries.remove(networkSuid);
+            return null;
+        }
+        return entry.size;
+    }
+
+    /**
+     * Stores a measured CX2 export size.
+     *
+     * @param networkSuid SUID of the network
+     * @param stamp modification stamp taken before the measurement started
+     * @param size measured export size
+     */
+    public synchronized void put(long networkSuid, long stamp, Cx2ExportSize size) {
+        entries.put(networkSuid, new Entry(stamp, size));
+    }
+
+    /**
+     * Removes the cached entry of a network, if any.
+     *
+     * @param networkSuid SUID of the network
+     */
+    public synchronized void invalidate(long networkSuid) {
+        entries.remove(networkSuid);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        invalidate(e.getNetwork().getSUID());
+    }
+
+    private static class Entry {
+        private final long stamp;
+        private final Cx2ExportSize size;
+
+        Entry(long stamp, Cx2ExportSize size) {
+            this.stamp = stamp;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualLexicon;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+
+/**
+ * Predicts the CX2 export size of a network without serializing it. The raw estimate is built from
+ * the node and edge counts, the columns of the default node, edge and network tables (with value
+ * lengths sampled from up to {@link #SAMPLE_SIZE} rows) and the number of visual property bypasses
+ * on a sample of node and edge views.
+ *
+ * <p>The raw estimate is then scaled by the geometric mean ratio of exact measurements to raw
+ * estimates seen so far. Once {@link #MIN_CALIBRATION_SAMPLES} exact measurements have been
+ * recorded, the estimate carries an error band wide enough to cover the worst calibration error
+ * (plus {@link #ERROR_MARGIN}); before that the estimate is never considered confident. Rejecting a
+ * network on an estimate alone keeps the user from opening it, so {@link
+ * Estimate#isConfidentlyAbove(long)} needs {@link #REJECT_CALIBRATION_SAMPLES} measurements and the
+ * wider {@link #REJECT_ERROR_MARGIN}.
+ */
+public class Cx2SizeEstimator {
+
+    static final int SAMPLE_SIZE = 500;
+    static final int MIN_CALIBRATION_SAMPLES = 3;
+    static final int MAX_CALIBRATION_SAMPLES = 20;
+    static final double ERROR_MARGIN = 1.25;
+    static final int REJECT_CALIBRATION_SAMPLES = 10;
+    static final double REJECT_ERROR_MARGIN = 2.0;
+
+    // Approximate CX2 byte costs: descriptor, visual properties and attribute declarations, then
+    // {"id":..,"v":{..},"x":..,"y":..,"z":..}, {"id":..,"s":..,"t":..,"v":{..}} and a bypass entry
+    private static final long FIXED_BYTES = 4096;
+    private static final int NODE_BYTES = 60;
+    private static final int EDGE_BYTES = 40;
+    private static final int ATTRIBUTE_OVERHEAD_BYTES = 4;
+    private static final int BYPASS_BYTES = 32;
+
+    private final RenderingEngineManager renderingEngineManager;
+    private final Deque<Double> logRatios = new ArrayDeque<>();
+
+    /**
+     * Constructor for Cx2SizeEstimator
+     *
+     * @param renderingEngineManager provides the visual lexicon used to count bypasses
+     */
+    public Cx2SizeEstimator(RenderingEngineManager renderingEngineManager) {
+        this.renderingEngineManager = renderingEngineManager;
+    }
+
+    /**
+     * Estimates the CX2 export size of a network view.
+     *
+     * @param networkView the network view to estimate
+     * @return calibrated estimate with its error band
+     */
+    public Estimate estimate(CyNetworkView networkView) {
+        return estimate(networkView.getModel(), networkView);
+    }
+
+    /**
+     * Estimates the CX2 export size of a network, exported through its view if it has one.
+     *
+     * @param network the network to estimate
+     * @param networkView the view that is exported, or null if the network is exported without one
+     * @return calibrated estimate with its error band
+     */
+    public Estimate estimate(CyNetwork network, CyNetworkView networkView) {
+        long rawBytes = rawEstimate(network, networkView);
+        synchronized (this) {
+            if (logRatios.isEmpty()) {
+                return new Estimate(rawBytes, rawBytes, 0, Long.MAX_VALUE, false);
+            }
+            double mean = 0;
+            for (double r : logRatios) {
+                mean += r;
+            }
+            mean /= logRatios.size();
+            double maxDeviation = 0;
+            for (double r : logRatios) {
+                maxDeviation = Math.max(maxDeviation, Math.abs(r - mean));
+            }
+            double errorFactor = Math.exp(maxDeviation) * ERROR_MARGIN;
+            double bytes = rawBytes * Math.exp(mean);
+            boolean calibrated = logRatios.size() >= MIN_CALIBRATION_SAMPLES;
+            boolean rejectable = logRatios.size() >= REJECT_CALIBRATION_SAMPLES;
+            return new Estimate(
+                    rawBytes,
+                    Math.round(bytes),
+                    calibrated ? Math.round(bytes / errorFactor) : 0,
+                    calibrated ? Math.round(bytes * errorFactor) : Long.MAX_VALUE,
+                    calibrated,
+                    rejectable
+                            ? Math.round(bytes / (Math.exp(maxDeviation) * REJECT_ERROR_MARGIN))
+                            : Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Records an exact measurement so later estimates are scaled and bounded by it. Only the most
+     * recent {@link #MAX_CALIBRATION_SAMPLES} measurements are kept.
+     *
+     * @param estimate the estimate made for the measured network
+     * @param exactBytes the exact CX2 export size
+     */
+    public synchronized void calibrate(Estimate estimate, long exactBytes) {
+        if (estimate.getRawBytes() <= 0 || exactBytes <= 0) {
+            return;
+        }
+        logRatios.addLast(Math.log((double) exactBytes / estimate.getRawBytes()));
+        if (logRatios.size() > MAX_CALIBRATION_SAMPLES) {
+            logRatios.removeFirst();
+        }
+    }
+
+    synchronized int getCalibrationCount() {
+        return logRatios.size();
+    }
+
+    /**
+     * Computes the uncalibrated size estimate.
+     *
+     * @param networkView the network view to estimate
+     * @return estimated size in bytes before calibration
+     */
+    long rawEstimate(CyNetworkView networkView) {
+        return rawEstimate(networkView.getModel(), networkView);
+    }
+
+    private long rawEstimate(CyNetwork network, CyNetworkView networkView) {
+        return rawElementCosts(network, networkView)
+                .total(network.getNodeCount(), network.getEdgeCount());
+    }
+
+    /**
+     * Computes the uncalibrated byte cost of a node, an edge and the rest of the export. Bypasses
+     * are only counted when the network is exported through a view.
+     *
+     * @param network the network to estimate
+     * @param networkView the view that is exported, or null if the network is exported without one
+     * @return per-element costs before calibration
+     */
+    ElementCosts rawElementCosts(CyNetwork network, CyNetworkView networkView) {
+        Map<String, ColumnWidth> columnWidths = new HashMap<>();
+        double nodeBytes =
+                NODE_BYTES + averageRowBytes(network.getDefaultNodeTable(), columnWidths);
+        double edgeBytes =
+                EDGE_BYTES + averageRowBytes(network.getDefaultEdgeTable(), columnWidths);
+        double networkBytes = averageRowBytes(network.getDefaultNetworkTable(), columnWidths);
+
+        VisualLexicon lexicon =
+                networkView == null ? null : renderingEngineManager.getDefaultVisualLexicon();
+        if (lexicon != null) {
+            nodeBytes +=
+                    BYPASS_BYTES
+                            * averageBypasses(
+                                    networkView.getNodeViews(),
+                                    visualProperties(lexicon, CyNode.class));
+            edgeBytes +=
+                    BYPASS_BYTES
+                            * averageBypasses(
+                                    networkView.getEdgeViews(),
+                                    visualProperties(lexicon, CyEdge.class));
+        }
+        return new ElementCosts(FIXED_BYTES + networkBytes, nodeBytes, edgeBytes, columnWidths);
+    }
+
+    /**
+     * Approximate CX2 bytes of one attribute entry.
+     *
+     * @param name attribute (column) name
+     * @param value attribute value, may be null
+     * @return serialized bytes, 0 for a null value since nulls are not exported
+     */
+    static int attributeBytes(String name, Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return name.length() + ATTRIBUTE_OVERHEAD_BYTES + valueBytes(value);
+    }
+
+    /**
+     * @return approximate CX2 bytes of a visual property bypass entry
+     */
+    static int bypassBytes() {
+        return BYPASS_BYTES;
+    }
+
+    /**
+     * Average serialized attribute bytes per row, over the first rows of the table. The bytes of
+     * each value are also added to the width of its column in {@code columnWidths}.
+     */
+    private static double averageRowBytes(CyTable table, Map<String, ColumnWidth> columnWidths) {
+        if (table == null || table.getRowCount() == 0) {
+            return 0;
+        }
+        List<CyColumn> columns = new ArrayList<>();
+        List<ColumnWidth> widths = new ArrayList<>();
+        for (CyColumn column : table.getColumns()) {
+            if (!CyIdentifiable.SUID.equals(column.getName())) {
+                columns.add(column);
+                widths.add(columnWidths.computeIfAbsent(column.getName(), n -> new ColumnWidth()));
+            }
+        }
+        long totalBytes = 0;
+        int sampled = 0;
+        // Stops after the sample instead of indexing into the list across the whole table
+        Iterator<CyRow> it = table.getAllRows().iterator();
+        while (it.hasNext() && sampled < SAMPLE_SIZE) {
+            CyRow row = it.next();
+            for (int i = 0; i < columns.size(); i++) {
+                String name = columns.get(i).getName();
+                int bytes = attributeBytes(name, row.getRaw(name));
+                totalBytes += bytes;
+                widths.get(i).add(bytes);
+            }
+            sampled++;
+        }
+        return sampled == 0 ? 0 : (double) totalBytes / sampled;
+    }
+
+    static int valueBytes(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length() + 2;
+        }
+        if (value instanceof List) {
+            List<?> elements = (List<?>) value;
+            int bytes = 2 + Math.max(0, elements.size() - 1);
+            for (Object element : elements) {
+                bytes += element == null ? 4 : valueBytes(element);
+            }
+            return bytes;
+        }
+        return String.valueOf(value).length();
+    }
+
+    private static List<VisualProperty<?>> visualProperties(
+            VisualLexicon lexicon, Class<?> targetType) {
+        List<VisualProperty<?>> properties = new ArrayList<>();
+        for (VisualProperty<?> vp : lexicon.getAllVisualProperties()) {
+            if (targetType.equals(vp.getTargetDataType())) {
+                properties.add(vp);
+            }
+        }
+        return properties;
+    }
+
+    /** Average number of bypassed visual properties over the first views of the collection. */
+    private static double averageBypasses(
+            Collection<? extends View<?>> views, List<VisualProperty<?>> properties) {
+        if (views == null || views.isEmpty() || properties.isEmpty()) {
+            return 0;
+        }
+        long bypasses = 0;
+        int sampled = 0;
+        Iterator<? extends View<?>> it = views.iterator();
+        while (it.hasNext() && sampled < SAMPLE_SIZE) {
+            View<?> view = it.next();
+            for (VisualProperty<?> vp : properties) {
+                if (view.isDirectlyLocked(vp)) {
+                    bypasses++;
+                }
+            }
+            sampled++;
+        }
+        return (double) bypasses / sampled;
+    }
+
+    /**
+     * Attribute bytes of the sampled values of a column, in any of the node, edge and network
+     * tables: their average and the narrowest and widest of them. Nulls count as 0 bytes.
+     */
+    static final class ColumnWidth {
+        private long totalBytes;
+        private int values;
+        private int minBytes = Integer.MAX_VALUE;
+        private int maxBytes;
+
+        void add(int bytes) {
+            totalBytes += bytes;
+            values++;
+            widen(bytes);
+        }
+
+        /** Extends the range to a value that is not part of the sample. */
+        void widen(int bytes) {
+            minBytes = Math.min(minBytes, bytes);
+            maxBytes = Math.max(maxBytes, bytes);
+        }
+
+        double getAverageBytes() {
+            return values == 0 ? 0 : (double) totalBytes / values;
+        }
+
+        int getMinBytes() {
+            return minBytes == Integer.MAX_VALUE ? 0 : minBytes;
+        }
+
+        int getMaxBytes() {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Byte cost of the fixed part of an export and of each node and edge, and the sampled widths of
+     * the columns.
+     */
+    static final class ElementCosts {
+        private final double fixedBytes;
+        private final double nodeBytes;
+        private final double edgeBytes;
+        private final Map<String, ColumnWidth> columnWidths;
+
+        ElementCosts(
+                double fixedBytes,
+                double nodeBytes,
+                double edgeBytes,
+                Map<String, ColumnWidth> columnWidths) {
+            this.fixedBytes = fixedBytes;
+            this.nodeBytes = nodeBytes;
+            this.edgeBytes = edgeBytes;
+            this.columnWidths = columnWidths;
+        }
+
+        double getNodeBytes() {
+            return nodeBytes;
+        }
+
+        double getEdgeBytes() {
+            return edgeBytes;
+        }
+
+        /**
+         * @param column the column name
+         * @return sampled widths of the column, or null if no sampled table has it
+         */
+        ColumnWidth getColumnWidth(String column) {
+            return columnWidths.get(column);
+        }
+
+        long total(long nodeCount, long edgeCount) {
+            return Math.round(fixedBytes + nodeCount * nodeBytes + edgeCount * edgeBytes);
+        }
+
+        /** Scales all costs so that they add up to {@code exactBytes} for the given counts. */
+        ElementCosts scaledTo(long exactBytes, long nodeCount, long edgeCount) {
+            long rawBytes = total(nodeCount, edgeCount);
+            if (rawBytes <= 0) {
+                return this;
+            }
+            double factor = (double) exactBytes / rawBytes;
+            return new ElementCosts(
+                    fixedBytes * factor, nodeBytes * factor, edgeBytes * factor, columnWidths);
+        }
+    }
+
+    /** A calibrated size estimate and the range the true size is expected to fall in. */
+    public static final class Estimate {
+        private final long rawBytes;
+        private final long bytes;
+        private final long lowBytes;
+        private final long highBytes;
+        private final boolean calibrated;
+        private final long rejectLowBytes;
+
+        Estimate(long rawBytes, long bytes, long lowBytes, long highBytes, boolean calibrated) {
+            this(rawBytes, bytes, lowBytes, highBytes, calibrated, lowBytes);
+        }
+
+        /**
+         * @param rejectLowBytes lower bound the export must exceed before it may be rejected
+         *     without a measurement, {@link Long#MAX_VALUE} to never reject
+         */
+        Estimate(
+                long rawBytes,
+                long bytes,
+                long lowBytes,
+                long highBytes,
+                boolean calibrated,
+                long rejectLowBytes) {
+            this.rawBytes = rawBytes;
+            this.bytes = bytes;
+            this.lowBytes = lowBytes;
+            this.highBytes = highBytes;
+            this.calibrated = calibrated;
+            this.rejectLowBytes = rejectLowBytes;
+        }
+
+        long getRawBytes() {
+            return rawBytes;
+        }
+
+        /**
+         * @return estimated export size in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLowBytes() {
+            return lowBytes;
+        }
+
+        public long getHighBytes() {
+            return highBytes;
+        }
+
+        /**
+         * @return true if enough exact measurements were recorded to trust the error band
+         */
+        public boolean isCalibrated() {
+            return calibrated;
+        }
+
+        /**
+         * @param limitBytes size limit in bytes
+         * @return true if the export is confidently no larger than the limit
+         */
+        public boolean isConfidentlyWithin(long limitBytes) {
+            return calibrated && highBytes <= limitBytes;
+        }
+
+        /**
+         * @param limitBytes size limit in bytes
+         * @return true if the export is confident enough larger than the limit to reject it without
+         *     a measurement
+         */
+        public boolean isConfidentlyAbove(long limitBytes) {
+            return calibrated && rejectLowBytes != Long.MAX_VALUE && rejectLowBytes > limitBytes;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Breakdown of a CX2 export by aspect and by table column, produced by {@link Cx2SizeProfiler}.
+ * Every byte of the export is attributed to exactly one {@link Aspect}; bytes of attribute values
+ * (including the column name and separators) are additionally attributed to their column.
+ */
+public final class Cx2SizeProfile {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /** Categories the bytes of a CX2 export are attributed to. */
+    public enum Aspect {
+        /** Node elements: ids and framing, without their attributes and coordinates. */
+        NODES("nodes"),
+        /** Edge elements: ids, sources, targets and framing, without their attributes. */
+        EDGES("edges"),
+        /** Node, edge and network attribute values and the attribute declarations. */
+        ATTRIBUTES("attributes"),
+        /** Visual style defaults and mappings, and visual editor properties. */
+        VISUAL_PROPERTIES("visual properties"),
+        /** Node and edge bypasses. */
+        BYPASSES("bypasses"),
+        /** Node coordinates. */
+        LAYOUT("layout"),
+        /** Version, metadata, status and aspects not listed above. */
+        OTHER("other");
+
+        private final String label;
+
+        Aspect(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** Bytes of the values of one node, edge or network table column. */
+    public static final class ColumnSize {
+        private final String table;
+        private final String name;
+        private final long bytes;
+
+        ColumnSize(String table, String name, long bytes) {
+            this.table = table;
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return "node", "edge" or "network"
+         */
+        public String getTable() {
+            return table;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    private final long totalBytes;
+    private final long[] aspectBytes;
+    private final List<ColumnSize> columns;
+
+    Cx2SizeProfile(long totalBytes, long[] aspectBytes, List<ColumnSize> columns) {
+        this.totalBytes = totalBytes;
+        this.aspectBytes = aspectBytes.clone();
+        List<ColumnSize> sorted = new ArrayList<>(columns);
+        sorted.sort(Comparator.comparingLong(ColumnSize::getBytes).reversed());
+        this.columns = Collections.unmodifiableList(sorted);
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @param aspect the aspect
+     * @return bytes attributed to the aspect
+     */
+    public long getBytes(Aspect aspect) {
+        return aspectBytes[aspect.ordinal()];
+    }
+
+    /**
+     * @return the columns that have values in the export, largest first
+     */
+    public List<ColumnSize> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the aspects with any bytes, largest first
+     */
+    public List<Aspect> getAspects() {
+        List<Aspect> aspects = new ArrayList<>();
+        for (Aspect aspect : Aspect.values()) {
+            if (getBytes(aspect) > 0) {
+                aspects.add(aspect);
+            }
+        }
+        aspects.sort(Comparator.comparingLong(this::getBytes).reversed());
+        return aspects;
+    }
+
+    /**
+     * Lists the aspects and the largest columns with their share of the export, one indented line
+     * each.
+     *
+     * @param maxColumns maximum number of columns listed
+     * @return the breakdown as human readable text
+     */
+    public String toSummary(int maxColumns) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(
+                String.format(
+                        "Largest contributors to the CX2 export (%.3f MB):",
+                        megabytes(totalBytes)));
+        for (Aspect aspect : getAspects()) {
+            appendLine(summary, aspect.getLabel(), getBytes(aspect));
+        }
+        for (ColumnSize column : columns.subList(0, Math.min(maxColumns, columns.size()))) {
+            appendLine(
+                    summary,
+                    column.getTable() + " column \"" + column.getName() + "\"",
+                    column.getBytes());
+        }
+        return summary.toString();
+    }
+
+    private void appendLine(StringBuilder summary, String label, long bytes) {
+        double percent = totalBytes > 0 ? 100.0 * bytes / totalBytes : 0;
+        summary.append(
+                String.format("\n    %s: %.3f MB (%.1f%%)", label, megabytes(bytes), percent));
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * @param maxColumns maximum number of columns listed
+     * @return the breakdown as a JSON object
+     */
+    public String toJSON(int maxColumns) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeNumberField("totalBytes", totalBytes);
+            generator.writeObjectFieldStart("aspects");
+            for (Aspect aspect : Aspect.values()) {
+                generator.writeNumberField(aspect.getLabel(), getBytes(aspect));
+            }
+            generator.writeEndObject();
+            generator.writeArrayFieldStart("columns");
+            for (ColumnSize column : columns.subList(0, Math.min(maxColumns, columns.size()))) {
+                generator.writeStartObject();
+                generator.writeStringField("table", column.getTable());
+                generator.writeStringField("name", column.getName());
+                generator.writeNumberField("bytes", column.getBytes());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Cx2SizeProfile[" + totalBytes + " bytes, " + Arrays.toString(aspectBytes) + "]";
+    }
+}
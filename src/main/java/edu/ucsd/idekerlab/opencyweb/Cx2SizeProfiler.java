@@ -0,0 +1,366 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link OutputStream} that attributes the bytes of a CX2 export to aspects and table columns
+ * while it is written, for {@link Cx2SizeProfile}. The JSON is scanned byte by byte as it arrives,
+ * keeping only the nesting of the current position and the key being read, so profiling needs no
+ * memory for the export itself. Intended as the target of a {@link CountingOutputStream}.
+ *
+ * <p>A CX2 document is an array of single-key aspect objects, e.g. {@code [{"nodes":[{"id":1,
+ * "x":0.5,"v":{"name":"a"}}]}, ...]}. Aspect names are read at depth 2, element fields at depth 4
+ * and attribute columns at depth 5 ({@code networkAttributes} elements hold the columns directly at
+ * depth 4). Bytes between two keys belong to the member introduced by the first; opening brackets
+ * belong to the enclosing member and closing brackets to the last member inside them.
+ */
+public class Cx2SizeProfiler extends OutputStream {
+
+    private static final int ASPECT_DEPTH = 2;
+    private static final int ELEMENT_DEPTH = 4;
+    private static final int VALUES_DEPTH = 5;
+
+    // Longer keys are truncated; only column names can plausibly be this long
+    private static final int MAX_KEY_BYTES = 256;
+
+    /** What an element field of a node or edge holds. */
+    private enum Field {
+        NONE,
+        VALUES,
+        LAYOUT,
+        OTHER
+    }
+
+    private final long[] aspectBytes = new long[Cx2SizeProfile.Aspect.values().length];
+    private final ColumnTable nodeColumns = new ColumnTable("node");
+    private final ColumnTable edgeColumns = new ColumnTable("edge");
+    private final ColumnTable networkColumns = new ColumnTable("network");
+    private long totalBytes;
+
+    // Scanner state: nesting, string and key reading
+    private boolean[] objectAtDepth = new boolean[16];
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private boolean expectKey;
+    private boolean readingKey;
+    private final byte[] keyBytes = new byte[MAX_KEY_BYTES];
+    private int keyLength;
+    private int keyHash;
+
+    // Keys of the current position
+    private Cx2SizeProfile.Aspect aspect;
+    private boolean nodeAspect;
+    private ColumnTable aspectColumns;
+    private int columnDepth;
+    private Field field = Field.NONE;
+    private Column column;
+
+    // Bytes scanned since they were last attributed, and where they go
+    private long pendingBytes;
+    private Cx2SizeProfile.Aspect pendingAspect = Cx2SizeProfile.Aspect.OTHER;
+    private Column pendingColumn;
+
+    @Override
+    public void write(int b) {
+        scan((byte) b);
+        totalBytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            scan(b[i]);
+        }
+        totalBytes += len;
+    }
+
+    private void scan(byte b) {
+        pendingBytes++;
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+                captureKeyByte(b);
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+                if (readingKey) {
+                    readingKey = false;
+                    keyRead();
+                }
+            } else {
+                captureKeyByte(b);
+            }
+            return;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                readingKey = expectKey;
+                expectKey = false;
+                keyLength = 0;
+                keyHash = 0;
+                break;
+            case '{':
+                attribute();
+                push(true);
+                expectKey = true;
+                break;
+            case '[':
+                push(false);
+                break;
+            case '}':
+            case ']':
+                // The closing bracket belongs to the last member; what follows to the parent
+                attribute();
+                pop();
+                break;
+            case ',':
+                if (depth > 0 && objectAtDepth[depth]) {
+                    attribute();
+                    clearKey(depth);
+                    expectKey = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void captureKeyByte(byte b) {
+        if (readingKey && keyLength < MAX_KEY_BYTES) {
+            keyBytes[keyLength++] = b;
+            keyHash = 31 * keyHash + b;
+        }
+    }
+
+    private void push(boolean object) {
+        depth++;
+        if (depth == objectAtDepth.length) {
+            objectAtDepth = Arrays.copyOf(objectAtDepth, depth * 2);
+        }
+        objectAtDepth[depth] = object;
+    }
+
+    private void pop() {
+        if (depth == 0) {
+            return;
+        }
+        clearKey(depth);
+        depth--;
+        expectKey = false;
+        resolve();
+    }
+
+    /** Forgets the key read at {@code keyDepth}, as its value has ended. */
+    private void clearKey(int keyDepth) {
+        if (keyDepth == ASPECT_DEPTH) {
+            aspect = null;
+            aspectColumns = null;
+        }
+        if (keyDepth == ELEMENT_DEPTH) {
+            field = Field.NONE;
+        }
+        if (keyDepth == columnDepth) {
+            column = null;
+        }
+        resolve();
+    }
+
+    private void keyRead() {
+        if (depth == ASPECT_DEPTH) {
+            readAspect(new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8));
+        } else if (depth == ELEMENT_DEPTH && aspectColumns != null) {
+            if (aspectColumns == networkColumns) {
+                column = networkColumns.get(keyBytes, keyLength, keyHash);
+            } else {
+                field = readField();
+            }
+        } else if (depth == VALUES_DEPTH && field == Field.VALUES) {
+            column = aspectColumns.get(keyBytes, keyLength, keyHash);
+        }
+        resolve();
+    }
+
+    private void readAspect(String name) {
+        nodeAspect = false;
+        aspectColumns = null;
+        columnDepth = VALUES_DEPTH;
+        switch (name) {
+            case "nodes":
+                aspect = Cx2SizeProfile.Aspect.NODES;
+                nodeAspect = true;
+                aspectColumns = nodeColumns;
+                break;
+            case "edges":
+                aspect = Cx2SizeProfile.Aspect.EDGES;
+                aspectColumns = edgeColumns;
+                break;
+            case "networkAttributes":
+                aspect = Cx2SizeProfile.Aspect.ATTRIBUTES;
+                aspectColumns = networkColumns;
+                columnDepth = ELEMENT_DEPTH;
+                break;
+            case "attributeDeclarations":
+                aspect = Cx2SizeProfile.Aspect.ATTRIBUTES;
+                break;
+            case "visualProperties":
+            case "visualEditorProperties":
+                aspect = Cx2SizeProfile.Aspect.VISUAL_PROPERTIES;
+                break;
+            case "nodeBypasses":
+            case "edgeBypasses":
+                aspect = Cx2SizeProfile.Aspect.BYPASSES;
+                break;
+            default:
+                aspect = Cx2SizeProfile.Aspect.OTHER;
+                break;
+        }
+    }
+
+    private Field readField() {
+        if (keyLength != 1) {
+            return Field.OTHER;
+        }
+        switch (keyBytes[0]) {
+            case 'v':
+                return Field.VALUES;
+            case 'x':
+            case 'y':
+            case 'z':
+                return nodeAspect ? Field.LAYOUT : Field.OTHER;
+            default:
+                return Field.OTHER;
+        }
+    }
+
+    /** Points the bytes scanned from now on at the aspect and column of the current position. */
+    private void resolve() {
+        if (aspect == null) {
+            pendingAspect = Cx2SizeProfile.Aspect.OTHER;
+        } else if (field == Field.VALUES) {
+            pendingAspect = Cx2SizeProfile.Aspect.ATTRIBUTES;
+        } else if (field == Field.LAYOUT) {
+            pendingAspect = Cx2SizeProfile.Aspect.LAYOUT;
+        } else {
+            pendingAspect = aspect;
+        }
+        pendingColumn = column;
+    }
+
+    /** Attributes the bytes scanned so far, including the current one, to the current position. */
+    private void attribute() {
+        aspectBytes[pendingAspect.ordinal()] += pendingBytes;
+        if (pendingColumn != null) {
+            pendingColumn.bytes += pendingBytes;
+        }
+        pendingBytes = 0;
+    }
+
+    @Override
+    public void flush() {
+        attribute();
+    }
+
+    public long getByteCount() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the breakdown of the bytes written so far
+     */
+    public Cx2SizeProfile getProfile() {
+        attribute();
+        List<Cx2SizeProfile.ColumnSize> columns = new ArrayList<>();
+        nodeColumns.addTo(columns);
+        edgeColumns.addTo(columns);
+        networkColumns.addTo(columns);
+        return new Cx2SizeProfile(totalBytes, aspectBytes, columns);
+    }
+
+    /** Byte counter of one column. */
+    private static final class Column {
+        private final byte[] name;
+        private final int hash;
+        private Column next;
+        private long bytes;
+
+        Column(byte[] name, int hash, Column next) {
+            this.name = name;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Columns of one table, looked up by the raw bytes of their key so that reading a key of a
+     * known column allocates nothing.
+     */
+    private static final class ColumnTable {
+        private final String table;
+        private Column[] buckets = new Column[64];
+        private int size;
+
+        ColumnTable(String table) {
+            this.table = table;
+        }
+
+        Column get(byte[] key, int length, int hash) {
+            int index = hash & (buckets.length - 1);
+            for (Column column = buckets[index]; column != null; column = column.next) {
+                if (column.hash == hash && column.name.length == length && equal(column, key)) {
+                    return column;
+                }
+            }
+            if (size >= buckets.length) {
+                rehash();
+                index = hash & (buckets.length - 1);
+            }
+            Column column = new Column(Arrays.copyOf(key, length), hash, buckets[index]);
+            buckets[index] = column;
+            size++;
+            return column;
+        }
+
+        private static boolean equal(Column column, byte[] key) {
+            for (int i = 0; i < column.name.length; i++) {
+                if (column.name[i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            Column[] old = buckets;
+            buckets = new Column[old.length * 2];
+            for (Column head : old) {
+                Column column = head;
+                while (column != null) {
+                    Column next = column.next;
+                    int index = column.hash & (buckets.length - 1);
+                    column.next = buckets[index];
+                    buckets[index] = column;
+                    column = next;
+                }
+            }
+        }
+
+        void addTo(List<Cx2SizeProfile.ColumnSize> columns) {
+            for (Column head : buckets) {
+                for (Column column = head; column != null; column = column.next) {
+                    columns.add(
+                            new Cx2SizeProfile.ColumnSize(
+                                    table,
+                                    new String(column.name, StandardCharsets.UTF_8),
+                                    column.bytes));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedEdgesListener;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.AddedNodesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RemovedEdgesEvent;
+import org.cytoscape.model.events.RemovedEdgesListener;
+import org.cytoscape.model.events.RemovedNodesEvent;
+import org.cytoscape.model.events.RemovedNodesListener;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.events.ViewChangeRecord;
+import org.cytoscape.view.model.events.ViewChangedEvent;
+import org.cytoscape.view.model.events.ViewChangedListener;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedListener;
+import org.cytoscape.view.vizmap.events.VisualStyleSetEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleSetListener;
+
+/**
+ * Keeps a running CX2 size for every network that has been measured exactly, so that an edited
+ * network can be checked against the size limit without serializing it again.
+ *
+ * <p>{@link #rebase(CyNetworkView, long)} records an exact measurement together with per-node and
+ * per-edge byte costs (the {@link Cx2SizeEstimator} costs, scaled to agree with the measurement).
+ * Added and removed nodes and edges, set attribute values and visual property bypasses then move
+ * the tracked size by their estimated cost, and widen an error band by the part of that cost that
+ * is uncertain. The value a set attribute replaced is not known, so its cost is taken from the
+ * width of its column sampled at the rebase, and the error from the range of that width. Once the
+ * band grows past {@link #REBASE_UNCERTAINTY_FRACTION} of the tracked size, or more than {@link
+ * #REBASE_AFTER_CHANGES} changes were applied, the entry is dropped so that the next size check
+ * measures the network exactly and rebases it. Visual style changes cannot be accounted for and
+ * drop the entries they affect.
+ */
+public class Cx2SizeTracker
+        implements AddedNodesListener,
+                AddedEdgesListener,
+                RemovedNodesListener,
+                RemovedEdgesListener,
+                RowsSetListener,
+                ViewChangedListener,
+                VisualStyleChangedListener,
+                VisualStyleSetListener,
+                NetworkAboutToBeDestroyedListener {
+
+    static final double REBASE_UNCERTAINTY_FRACTION = 0.1;
+    static final int REBASE_AFTER_CHANGES = 100_000;
+
+    // Share of a per-element cost that is uncertain, since the cost is an average over all elements
+    private static final double ELEMENT_COST_ERROR = 0.5;
+    // Uncertainty of a non-bypass view change, e.g. a node position with a different digit count
+    private static final int VIEW_CHANGE_UNCERTAINTY_BYTES = 4;
+
+    private final CyNetworkTableManager networkTableManager;
+    private final Cx2SizeEstimator sizeEstimator;
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    /**
+     * Constructor for Cx2SizeTracker
+     *
+     * @param networkTableManager used to resolve the network that owns a changed table
+     * @param sizeEstimator provides the per-element byte costs
+     */
+    public Cx2SizeTracker(
+            CyNetworkTableManager networkTableManager, Cx2SizeEstimator sizeEstimator) {
+        this.networkTableManager = networkTableManager;
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * Starts tracking a network from an exact measurement, replacing any running size.
+     *
+     * @param networkView the measured network view
+     * @param exactBytes its exact CX2 export size
+     */
+    public void rebase(CyNetworkView networkView, long exactBytes) {
+        rebase(networkView.getModel(), networkView, exactBytes);
+    }
+
+    /**
+     * Starts tracking a network from an exact measurement, replacing any running size.
+     *
+     * @param network the measured network
+     * @param networkView the view it was exported through, or null if it was exported without one
+     * @param exactBytes its exact CX2 export size
+     */
+    public void rebase(CyNetwork network, CyNetworkView networkView, long exactBytes) {
+        long nodeCount = network.getNodeCount();
+        long edgeCount = network.getEdgeCount();
+        // Sample the tables outside the lock, events only need the resulting costs
+        Cx2SizeEstimator.ElementCosts costs =
+                sizeEstimator
+                        .rawElementCosts(network, networkView)
+                        .scaledTo(exactBytes, nodeCount, edgeCount);
+        synchronized (this) {
+            entries.put(network.getSUID(), new Entry(costs, nodeCount, edgeCount, exactBytes));
+        }
+    }
+
+    /**
+     * Returns the tracked size of a network.
+     *
+     * @param networkSuid SUID of the network
+     * @return calibrated estimate with its error band, or null if the network is not tracked or has
+     *     drifted too far from its last exact measurement
+     */
+    public synchronized Cx2SizeEstimator.Estimate get(long networkSuid) {
+        Entry entry = entries.get(networkSuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.changes > REBASE_AFTER_CHANGES
+                || entry.uncertainty > entry.bytes * REBASE_UNCERTAINTY_FRACTION) {
+            entries.remove(networkSuid);
+            return null;
+        }
+        long bytes = Math.round(entry.bytes);
+        long uncertainty = (long) Math.ceil(entry.uncertainty);
+        return new Cx2SizeEstimator.Estimate(
+                bytes, bytes, Math.max(0, bytes - uncertainty), bytes + uncertainty, true);
+    }
+
+    /**
+     * Stops tracking a network.
+     *
+     * @param networkSuid SUID of the network
+     */
+    public synchronized void invalidate(long networkSuid) {
+        entries.remove(networkSuid);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void handleEvent(AddedNodesEvent e) {
+        recount(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(AddedEdgesEvent e) {
+        recount(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(RemovedNodesEvent e) {
+        recount(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(RemovedEdgesEvent e) {
+        recount(e.getSource());
+    }
+
+    /**
+     * Applies the change in node and edge counts since the last event. Comparing counts rather than
+     * payload sizes also covers edges removed together with their nodes.
+     */
+    private synchronized void recount(CyNetwork network) {
+        Entry entry = network == null ? null : entries.get(network.getSUID());
+        if (entry == null) {
+            return;
+        }
+        long nodeCount = network.getNodeCount();
+        long edgeCount = network.getEdgeCount();
+        long nodeDelta = nodeCount - entry.nodeCount;
+        long edgeDelta = edgeCount - entry.edgeCount;
+        double nodeBytes = nodeDelta * entry.costs.getNodeBytes();
+        double edgeBytes = edgeDelta * entry.costs.getEdgeBytes();
+        entry.apply(
+                nodeBytes + edgeBytes,
+                (Math.abs(nodeBytes) + Math.abs(edgeBytes)) * ELEMENT_COST_ERROR,
+                Math.abs(nodeDelta) + Math.abs(edgeDelta));
+        entry.nodeCount = nodeCount;
+        entry.edgeCount = edgeCount;
+    }
+
+    @Override
+    public void handleEvent(RowsSetEvent e) {
+        Collection<RowSetRecord> records = e.getPayloadCollection();
+        if (records.isEmpty()) {
+            return;
+        }
+        CyNetwork network = networkTableManager.getNetworkForTable(e.getSource());
+        synchronized (this) {
+            if (network instanceof CyRootNetwork) {
+                // Shared columns surface in every subnetwork of the root
+                for (CySubNetwork subNetwork : ((CyRootNetwork) network).getSubNetworkList()) {
+                    applyRowChanges(subNetwork, records);
+                }
+            } else if (network != null) {
+                applyRowChanges(network, records);
+            }
+        }
+    }
+
+    /**
+     * Moves the size by the set values minus the average width of their columns. The replaced value
+     * may have been anywhere between the narrowest and widest sampled values, so the error grows by
+     * the larger distance from the average to either; the range then takes in the new value, which
+     * a later write may replace. A column that was not sampled may gain the full cost of the value
+     * (a new attribute) or nothing (a replaced one of the same length): half of it counts and the
+     * rest is error.
+     */
+    private void applyRowChanges(CyNetwork network, Collection<RowSetRecord> records) {
+        Entry entry = entries.get(network.getSUID());
+        if (entry == null) {
+            return;
+        }
+        double delta = 0;
+        double uncertainty = 0;
+        for (RowSetRecord record : records) {
+            int cost = Cx2SizeEstimator.attributeBytes(record.getColumn(), record.getRawValue());
+            Cx2SizeEstimator.ColumnWidth width = entry.costs.getColumnWidth(record.getColumn());
+            if (width == null) {
+                delta += cost / 2.0;
+                uncertainty += cost / 2.0;
+            } else {
+                double average = width.getAverageBytes();
+                delta += cost - average;
+                uncertainty +=
+                        Math.max(average - width.getMinBytes(), width.getMaxBytes() - average);
+                width.widen(cost);
+            }
+        }
+        entry.apply(delta, uncertainty, records.size());
+    }
+
+    @Override
+    public void handleEvent(ViewChangedEvent<?> e) {
+        CyNetworkView view = e.getSource();
+        if (view == null) {
+            return;
+        }
+        double delta = 0;
+        double uncertainty = 0;
+        int changes = 0;
+        for (ViewChangeRecord<?> record : e.getPayloadCollection()) {
+            if (record.isLockedValue()) {
+                // A null locked value clears the bypass
+                int bypassBytes = Cx2SizeEstimator.bypassBytes();
+                delta += record.getValue() == null ? -bypassBytes : bypassBytes;
+                uncertainty += bypassBytes * ELEMENT_COST_ERROR;
+                changes++;
+            } else {
+                uncertainty += VIEW_CHANGE_UNCERTAINTY_BYTES;
+            }
+        }
+        synchronized (this) {
+            Entry entry = entries.get(view.getModel().getSUID());
+            if (entry != null) {
+                entry.apply(delta, uncertainty, changes);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void handleEvent(VisualStyleChangedEvent e) {
+        entries.clear();
+    }
+
+    @Override
+    public void handleEvent(VisualStyleSetEvent e) {
+        CyNetworkView view = e.getNetworkView();
+        if (view != null) {
+            invalidate(view.getModel().getSUID());
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        invalidate(e.getNetwork().getSUID());
+    }
+
+    private static class Entry {
+        private final Cx2SizeEstimator.ElementCosts costs;
+        private long nodeCount;
+        private long edgeCount;
+        private double bytes;
+        private double uncertainty;
+        private long changes;
+
+        Entry(Cx2SizeEstimator.ElementCosts costs, long nodeCount, long edgeCount, long bytes) {
+            this.costs = costs;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+            this.bytes = bytes;
+        }
+
+        void apply(double delta, double uncertaintyDelta, long changeCount) {
+            bytes = Math.max(0, bytes + delta);
+            uncertainty += uncertaintyDelta;
+            changes += changeCount;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.property.CyProperty;
+
+/**
+ * How Cytoscape Web receives the CX2 export of a network: the {@code transport.*}, {@code cache.*}
+ * and {@code live.enabled} settings, the registration of exports with the {@link Cx2PayloadStore},
+ * and the Cytoscape Web URL that imports them. With {@code transport.mode=cyrest} Cytoscape Web
+ * imports the network from CyREST; with {@code buffered} or {@code streaming} it imports the export
+ * from the app's own {@link Cx2PayloadResource}.
+ */
+public class Cx2Transport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2Transport.class);
+
+    // Cytoscape Web URL template - placeholders are substituted at runtime from app properties
+    private static final String CYTOSCAPE_WEB_URL_TEMPLATE =
+            "${cytoscape_web_base_url}?import=http://localhost:${cyrest_port}/v1/networks/${network_suid}.cx?version=2";
+
+    // Buffered and streaming transports: Cytoscape Web imports from the app's own resource
+    private static final String CYTOSCAPE_WEB_BUFFERED_URL_TEMPLATE =
+            "${cytoscape_web_base_url}?import=http://localhost:${cyrest_port}"
+                    + Cx2PayloadResource.BASE_PATH
+                    + "/${token}";
+
+    // Buffered transport serving an export from the content index
+    private static final String CYTOSCAPE_WEB_CONTENT_URL_TEMPLATE =
+            "${cytoscape_web_base_url}?import=http://localhost:${cyrest_port}"
+                    + Cx2PayloadResource.CONTENT_PATH
+                    + "/${content_key}";
+
+    // Live sessions: the tab subscribes to the network's changes (appended to any import URL)
+    private static final String CYTOSCAPE_WEB_LIVE_PARAMETER_TEMPLATE =
+            "&live=http://localhost:${cyrest_port}" + Cx2LiveSessions.PATH + "/${network_suid}";
+
+    // Property key for CyREST port (read from Cytoscape core "cytoscape3" properties)
+    static final String PROP_CYREST_PORT = "rest.port";
+    static final String PROP_CYTOSCAPE_WEB_BASE_URL = "cytoscapeweb.baseurl";
+
+    // Transport property: how Cytoscape Web receives the CX2 export
+    static final String PROP_TRANSPORT_MODE = "transport.mode";
+    static final String TRANSPORT_CYREST = "cyrest";
+    static final String TRANSPORT_BUFFERED = "buffered";
+    static final String TRANSPORT_STREAMING = "streaming";
+    static final String PROP_TRANSPORT_ENCODING = "transport.encoding";
+    static final String PROP_TRANSPORT_PROGRESSIVE = "transport.progressive";
+    static final String PROP_LIVE_ENABLED = "live.enabled";
+
+    static final String PROP_DEDUP_MAX_MB = "transport.dedup-max-mb";
+    static final String PROP_PENDING_MAX_MB = "transport.pending-max-mb";
+    static final String PROP_OFFHEAP_MAX_MB = "transport.offheap-max-mb";
+    static final String PROP_DISK_CACHE_MAX_MB = "cache.disk-max-mb";
+    static final String PROP_DISK_CACHE_MAX_ENTRIES = "cache.disk-max-entries";
+
+    private static final double DEFAULT_DEDUP_MAX_MB = 64.0;
+    private static final double DEFAULT_PENDING_MAX_MB = 256.0;
+    private static final double DEFAULT_OFFHEAP_MAX_MB = 128.0;
+    private static final double DEFAULT_DISK_CACHE_MAX_MB = 512.0;
+    private static final int DEFAULT_DISK_CACHE_MAX_ENTRIES = 64;
+
+    // Default values matching opencyweb.props defaults
+    private static final String DEFAULT_CYREST_PORT = "1234";
+    private static final String DEFAULT_CYTOSCAPE_WEB_BASE_URL = "https://web.cytoscape.org";
+
+    private final CyProperty<Properties> cyProperties;
+    private final CyProperty<Properties> coreProperties;
+    private final Cx2PayloadStore payloadStore;
+    private final Cx2LiveSessions liveSessions;
+    private final OpenMetrics metrics;
+
+    /**
+     * Constructor for Cx2Transport
+     *
+     * @param cyProperties App properties from opencyweb.props (editable via Edit > Preferences)
+     * @param coreProperties Cytoscape core properties from cytoscape3.props (provides rest.port)
+     * @param payloadStore Holds exports until Cytoscape Web fetches them
+     * @param liveSessions Streams the changes of networks opened with {@code live.enabled}
+     * @param metrics Records the time spent building URLs
+     */
+    public Cx2Transport(
+            CyProperty<Properties> cyProperties,
+            CyProperty<Properties> coreProperties,
+            Cx2PayloadStore payloadStore,
+            Cx2LiveSessions liveSessions,
+            OpenMetrics metrics) {
+        this.cyProperties = cyProperties;
+        this.coreProperties = coreProperties;
+        this.payloadStore = payloadStore;
+        this.liveSessions = liveSessions;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if {@code transport.mode} captures exports during validation
+     */
+    boolean isBuffered() {
+        return TRANSPORT_BUFFERED.equals(getMode());
+    }
+
+    /**
+     * @return true if {@code transport.mode} serializes exports straight into the response
+     */
+    boolean isStreaming() {
+        return TRANSPORT_STREAMING.equals(getMode());
+    }
+
+    private String getMode() {
+        return cyProperties
+                .getProperties()
+                .getProperty(PROP_TRANSPORT_MODE, TRANSPORT_CYREST)
+                .trim()
+                .toLowerCase();
+    }
+
+    /**
+     * @return encoding of exports served by the buffered and streaming transports from {@code
+     *     transport.encoding}; CyREST always serves JSON
+     */
+    Cx2Encoding getEncoding() {
+        if (!isBuffered() && !isStreaming()) {
+            return Cx2Encoding.JSON;
+        }
+        String rawEncoding =
+                cyProperties
+                        .getProperties()
+                        .getProperty(PROP_TRANSPORT_ENCODING, Cx2Encoding.JSON.getName());
+        Cx2Encoding encoding = Cx2Encoding.forName(rawEncoding.trim().toLowerCase());
+        if (encoding == null) {
+            LOGGER.warn("Invalid " + PROP_TRANSPORT_ENCODING + ": " + rawEncoding);
+            return Cx2Encoding.JSON;
+        }
+        return encoding;
+    }
+
+    /**
+     * @return true if {@code transport.progressive} flushes exports served by the app after each
+     *     aspect for early rendering
+     */
+    boolean isProgressiveDelivery() {
+        return Boolean.parseBoolean(
+                cyProperties.getProperties().getProperty(PROP_TRANSPORT_PROGRESSIVE, "false"));
+    }
+
+    /**
+     * @return true if {@code live.enabled} keeps opened networks connected to their tab
+     */
+    private boolean isLiveSession() {
+        return Boolean.parseBoolean(
+                cyProperties.getProperties().getProperty(PROP_LIVE_ENABLED, "false"));
+    }
+
+    /**
+     * @return direct memory for captured exports from {@code transport.offheap-max-mb}, 0 if
+     *     disabled
+     */
+    long getOffHeapMaxBytes() {
+        return getMegabytesProperty(PROP_OFFHEAP_MAX_MB, DEFAULT_OFFHEAP_MAX_MB);
+    }
+
+    /**
+     * @return byte budget of the content index from {@code transport.dedup-max-mb}, 0 if disabled
+     */
+    private long getDedupMaxBytes() {
+        return getMegabytesProperty(PROP_DEDUP_MAX_MB, DEFAULT_DEDUP_MAX_MB);
+    }
+
+    /**
+     * @return byte budget of captured exports waiting to be fetched from {@code
+     *     transport.pending-max-mb}
+     */
+    private long getPendingMaxBytes() {
+        return getMegabytesProperty(PROP_PENDING_MAX_MB, DEFAULT_PENDING_MAX_MB);
+    }
+
+    private long getMegabytesProperty(String key, double defaultMegabytes) {
+        String rawMegabytes =
+                cyProperties.getProperties().getProperty(key, String.valueOf(defaultMegabytes));
+        try {
+            return (long)
+                    (Math.max(0.0, Double.parseDouble(rawMegabytes.trim())) * 1024.0 * 1024.0);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid " + key + ": " + rawMegabytes);
+            return 0;
+        }
+    }
+
+    /**
+     * Looks up the export a network produced when it was last opened, in the current encoding.
+     *
+     * @param networkSuid SUID of the network
+     * @param stamp current modification stamp of the network
+     * @return the indexed export, or null if there is none or the content index is disabled
+     */
+    Cx2Buffer findIndexedContent(long networkSuid, long stamp) {
+        if (getDedupMaxBytes() <= 0) {
+            return null;
+        }
+        return payloadStore.findContent(networkSuid, stamp, getEncoding());
+    }
+
+    /** Writes an indexed export to the disk cache, within {@code cache.disk-max-mb/-entries}. */
+    private void persistIndexedContent(Cx2Buffer indexed) {
+        String rawMaxEntries =
+                cyProperties
+                        .getProperties()
+                        .getProperty(
+                                PROP_DISK_CACHE_MAX_ENTRIES,
+                                String.valueOf(DEFAULT_DISK_CACHE_MAX_ENTRIES));
+        int maxEntries;
+        try {
+            maxEntries = Math.max(0, Integer.parseInt(rawMaxEntries.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid " + PROP_DISK_CACHE_MAX_ENTRIES + ": " + rawMaxEntries);
+            maxEntries = DEFAULT_DISK_CACHE_MAX_ENTRIES;
+        }
+        payloadStore.persistContent(
+                indexed,
+                getMegabytesProperty(PROP_DISK_CACHE_MAX_MB, DEFAULT_DISK_CACHE_MAX_MB),
+                maxEntries);
+    }
+
+    /**
+     * Tells the Cytoscape Web tab of a live session that the network was opened again. The tab
+     * already has the network and its changes, so the open needs no validation, export or new tab.
+     *
+     * @param network the network being opened
+     * @return true if a connected tab was told, false if the network has to be opened as usual
+     */
+    boolean showInLiveSession(CyNetwork network) {
+        return isLiveSession() && liveSessions.sendOpen(network.getSUID());
+    }
+
+    /**
+     * Registers the export of a network and builds the Cytoscape Web URL that imports it. A
+     * complete capture that fits {@code transport.dedup-max-mb} goes to the content index and is
+     * imported from its content URL, so later opens of the same bytes reuse it; with a disk cache
+     * it is also written to disk within {@code cache.disk-max-mb} and {@code
+     * cache.disk-max-entries}. A capture that does not fit the exports still waiting to be fetched
+     * ({@code transport.pending-max-mb}) is released and the network is streamed on request
+     * instead; if the store is full, or there is no export, the network is imported from CyREST.
+     * With {@code live.enabled} the network's live channel is opened and advertised on the URL.
+     *
+     * @param network the validated network
+     * @param payload export to serve, a complete capture or a streaming export; null to import the
+     *     network from CyREST
+     * @param streamingFallback creates a streaming export of the network, or returns null if the CX
+     *     writer is missing
+     * @return the URI
+     * @throws URISyntaxException if the configured base URL produces an invalid URL, whose input is
+     *     the URL; nothing stays registered
+     */
+    URI createImportURI(
+            CyNetwork network, Cx2Payload payload, Supplier<StreamingCx2Payload> streamingFallback)
+            throws URISyntaxException {
+        Cx2Buffer capture = payload instanceof Cx2Buffer ? (Cx2Buffer) payload : null;
+        Cx2Buffer indexed =
+                capture != null ? payloadStore.registerContent(capture, getDedupMaxBytes()) : null;
+        String token = null;
+        String cytowebUrl = null;
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.URL_BUILD)) {
+            if (indexed != null) {
+                persistIndexedContent(indexed);
+                cytowebUrl =
+                        buildContentWebURI(
+                                indexed.getContentKey() + indexed.getEncoding().getUrlSuffix());
+            } else if (payload != null) {
+                token = payloadStore.register(payload, getPendingMaxBytes());
+                if (token == null && capture != null) {
+                    // Exports opened earlier are still waiting; stream this one when fetched
+                    capture.release();
+                    payload = streamingFallback.get();
+                    token = payload != null ? payloadStore.register(payload) : null;
+                }
+                if (token == null) {
+                    LOGGER.warn(
+                            "Too many CX2 exports waiting to be fetched, importing network SUID "
+                                    + network.getSUID()
+                                    + " from CyREST");
+                    cytowebUrl = buildCytoscapeWebURI(network.getSUID());
+                } else {
+                    cytowebUrl = buildBufferedWebURI(token + payload.getEncoding().getUrlSuffix());
+                }
+            } else {
+                cytowebUrl = buildCytoscapeWebURI(network.getSUID());
+            }
+            if (isLiveSession()) {
+                liveSessions.open(network.getSUID());
+                cytowebUrl += buildLiveParameter(network.getSUID());
+            }
+            return new URL(cytowebUrl).toURI();
+        } catch (MalformedURLException | URISyntaxException e) {
+            if (token != null) {
+                payloadStore.take(token).release();
+            }
+            URISyntaxException invalid =
+                    new URISyntaxException(cytowebUrl, String.valueOf(e.getMessage()));
+            invalid.initCause(e);
+            throw invalid;
+        }
+    }
+
+    String buildCytoscapeWebURI(Long networkSuid) {
+        return fillUrlTemplate(CYTOSCAPE_WEB_URL_TEMPLATE)
+                .replace("${network_suid}", networkSuid.toString());
+    }
+
+    String buildLiveParameter(Long networkSuid) {
+        return fillUrlTemplate(CYTOSCAPE_WEB_LIVE_PARAMETER_TEMPLATE)
+                .replace("${network_suid}", networkSuid.toString());
+    }
+
+    String buildBufferedWebURI(String token) {
+        return fillUrlTemplate(CYTOSCAPE_WEB_BUFFERED_URL_TEMPLATE).replace("${token}", token);
+    }
+
+    String buildContentWebURI(String contentKey) {
+        return fillUrlTemplate(CYTOSCAPE_WEB_CONTENT_URL_TEMPLATE)
+                .replace("${content_key}", contentKey);
+    }
+
+    private String fillUrlTemplate(String template) {
+        Properties coreProps = coreProperties.getProperties();
+        String cyrestPort = coreProps.getProperty(PROP_CYREST_PORT, DEFAULT_CYREST_PORT);
+        Properties props = cyProperties.getProperties();
+        String baseUrl =
+                props.getProperty(PROP_CYTOSCAPE_WEB_BASE_URL, DEFAULT_CYTOSCAPE_WEB_BASE_URL);
+
+        return template.replace("${cytoscape_web_base_url}", baseUrl)
+                .replace("${cyrest_port}", cyrestPort);
+    }
+}
@@ -0,0 +1,160 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.SavePolicy;
+import org.cytoscape.property.CyProperty;
+
+/**
+ * Prepares the export path once Cytoscape has started, so that the first "Open in Cytoscape Web" is
+ * as fast as later ones. When enabled with {@code warmup.enabled}, a small synthetic network is
+ * built with private tables (it is never registered, so it does not appear in the session, and its
+ * events are kept out of the {@link NetworkChangeTracker}) and exported {@link #WARM_UP_ROUNDS}
+ * times through {@link OpenInCytoscapeWebTaskFactoryImpl#warmUpExport}. This resolves and caches
+ * the CX writer filter and loads and JIT-compiles the writer, the configured output streams and
+ * hashing before the user's first click. The warm-up runs once on a low priority daemon thread.
+ */
+public class Cx2WarmUp {
+
+    static final String PROP_WARMUP_ENABLED = "warmup.enabled";
+    static final int WARM_UP_NODES = 500;
+    static final int WARM_UP_EDGES = 1000;
+    static final int WARM_UP_ROUNDS = 10;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cx2WarmUp.class);
+    private static final String SCORE_COLUMN = "score";
+
+    private final CyNetworkFactory networkFactory;
+    private final OpenInCytoscapeWebTaskFactoryImpl taskFactory;
+    private final NetworkChangeTracker changeTracker;
+    private final CyProperty<Properties> cyProperties;
+    private final ExecutorService executor;
+
+    private volatile boolean disposed;
+
+    /**
+     * Constructor for Cx2WarmUp
+     *
+     * @param networkFactory Cytoscape network factory, creates the synthetic network
+     * @param taskFactory factory whose export path is warmed up
+     * @param changeTracker tracker that must ignore the synthetic network
+     * @param cyProperties App properties from opencyweb.props
+     */
+    public Cx2WarmUp(
+            CyNetworkFactory networkFactory,
+            OpenInCytoscapeWebTaskFactoryImpl taskFactory,
+            NetworkChangeTracker changeTracker,
+            CyProperty<Properties> cyProperties) {
+        this(
+                networkFactory,
+                taskFactory,
+                changeTracker,
+                cyProperties,
+                Executors.newSingleThreadExecutor(
+                        r -> {
+                            Thread thread = new Thread(r, "opencyweb-warmup");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }));
+    }
+
+    Cx2WarmUp(
+            CyNetworkFactory networkFactory,
+            OpenInCytoscapeWebTaskFactoryImpl taskFactory,
+            NetworkChangeTracker changeTracker,
+            CyProperty<Properties> cyProperties,
+            ExecutorService executor) {
+        this.networkFactory = networkFactory;
+        this.taskFactory = taskFactory;
+        this.changeTracker = changeTracker;
+        this.cyProperties = cyProperties;
+        this.executor = executor;
+    }
+
+    /** Starts the warm-up in the background if {@code warmup.enabled}; called once apps started. */
+    public void start() {
+        if (isEnabled()) {
+            executor.execute(this::warmUp);
+        }
+        // The thread ends once the warm-up is done
+        executor.shutdown();
+    }
+
+    void warmUp() {
+        if (disposed) {
+            return;
+        }
+        long start = System.nanoTime();
+        CyNetwork network;
+        try {
+            network = createNetwork();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to create network for CX2 export warm-up: " + e.getMessage(), e);
+            return;
+        }
+        long bytes = -1;
+        int rounds = 0;
+        while (rounds < WARM_UP_ROUNDS && !disposed) {
+            bytes = taskFactory.warmUpExport(network);
+            if (bytes < 0) {
+                LOGGER.info("Skipped CX2 export warm-up: CX writer unavailable or failed");
+                return;
+            }
+            rounds++;
+        }
+        LOGGER.info(
+                "Warmed up CX2 export with "
+                        + rounds
+                        + " exports of "
+                        + bytes
+                        + " bytes in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                        + " ms");
+    }
+
+    /** Builds a network of {@link #WARM_UP_NODES} named and scored nodes and a mesh of edges. */
+    CyNetwork createNetwork() {
+        CyNetwork network = networkFactory.createNetworkWithPrivateTables(SavePolicy.DO_NOT_SAVE);
+        // Its events are delivered later, so it is excluded before it changes
+        changeTracker.exclude(network);
+        network.getDefaultNodeTable().createColumn(SCORE_COLUMN, Double.class, false);
+        List<CyNode> nodes = new ArrayList<>(WARM_UP_NODES);
+        for (int i = 0; i < WARM_UP_NODES; i++) {
+            CyNode node = network.addNode();
+            CyRow row = network.getRow(node);
+            row.set(CyNetwork.NAME, "node " + i);
+            row.set(SCORE_COLUMN, i / 7.0);
+            nodes.add(node);
+        }
+        for (int i = 0; i < WARM_UP_EDGES; i++) {
+            CyNode source = nodes.get(i % WARM_UP_NODES);
+            CyNode target = nodes.get((i * 31 + 1) % WARM_UP_NODES);
+            network.getRow(network.addEdge(source, target, true)).set(CyNetwork.NAME, "edge " + i);
+        }
+        return network;
+    }
+
+    /** Abandons a running warm-up. Called when the app is stopped. */
+    public void dispose() {
+        disposed = true;
+        executor.shutdownNow();
+    }
+
+    private boolean isEnabled() {
+        return Boolean.parseBoolean(
+                cyProperties.getProperties().getProperty(PROP_WARMUP_ENABLED, "true").trim());
+    }
+}
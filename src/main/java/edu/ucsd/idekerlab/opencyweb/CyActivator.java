@@ -1,10 +1,17 @@
 package edu.ucsd.idekerlab.opencyweb;
 
+import static org.cytoscape.work.ServiceProperties.COMMAND;
+import static org.cytoscape.work.ServiceProperties.COMMAND_DESCRIPTION;
+import static org.cytoscape.work.ServiceProperties.COMMAND_EXAMPLE_JSON;
+import static org.cytoscape.work.ServiceProperties.COMMAND_LONG_DESCRIPTION;
+import static org.cytoscape.work.ServiceProperties.COMMAND_NAMESPACE;
+import static org.cytoscape.work.ServiceProperties.COMMAND_SUPPORTS_JSON;
 import static org.cytoscape.work.ServiceProperties.ENABLE_FOR;
 import static org.cytoscape.work.ServiceProperties.ID;
 import static org.cytoscape.work.ServiceProperties.IN_NETWORK_PANEL_CONTEXT_MENU;
 import static org.cytoscape.work.ServiceProperties.TITLE;
 
+import java.io.File;
 import java.util.Properties;
 
 import org.osgi.framework.BundleContext;
@@ -15,24 +22,41 @@ import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
 
 import org.cytoscape.app.event.AppsFinishedStartingEvent;
 import org.cytoscape.app.event.AppsFinishedStartingListener;
+import org.cytoscape.application.CyApplicationConfiguration;
 import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.application.events.SetCurrentNetworkListener;
 import org.cytoscape.application.swing.CyAction;
 import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.application.swing.CytoPanelComponent;
+import org.cytoscape.io.write.CyNetworkViewWriterFactory;
 import org.cytoscape.io.write.CyNetworkViewWriterManager;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
 import org.cytoscape.model.events.NetworkAddedListener;
 import org.cytoscape.model.events.NetworkDestroyedListener;
 import org.cytoscape.property.AbstractConfigDirPropsReader;
 import org.cytoscape.property.CyProperty;
 import org.cytoscape.service.util.AbstractCyActivator;
 import org.cytoscape.task.NetworkCollectionTaskFactory;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+import org.cytoscape.work.TaskFactory;
 import org.cytoscape.work.swing.DialogTaskManager;
 
 public class CyActivator extends AbstractCyActivator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CyActivator.class);
     private static final String CYTOSCAPE3_PROPERTY_GROUP = "cytoscape3.props";
+    private static final String DISK_CACHE_DIRECTORY = "cx2-cache";
 
     private BundleContext bundleContext;
+    private Cx2Prefetcher prefetcher;
+    private Cx2WarmUp warmUp;
+    private Cx2LiveSessions liveSessions;
+    private Cx2SizeAudit sizeAudit;
+    private Cx2MemoryGuard memoryGuard;
 
     public CyActivator() {
         super();
@@ -56,6 +80,26 @@ public class CyActivator extends AbstractCyActivator {
         registerService(bc, listener, AppsFinishedStartingListener.class, new Properties());
     }
 
+    @Override
+    public void shutDown() {
+        if (prefetcher != null) {
+            prefetcher.dispose();
+        }
+        if (warmUp != null) {
+            warmUp.dispose();
+        }
+        if (liveSessions != null) {
+            // Ends the event streams, which would otherwise hold CyREST threads
+            liveSessions.dispose();
+        }
+        if (sizeAudit != null) {
+            sizeAudit.dispose();
+        }
+        if (memoryGuard != null) {
+            memoryGuard.dispose();
+        }
+    }
+
     /**
      * Reads app properties from opencyweb.props bundled in the JAR, then merges any user overrides
      * from the Cytoscape config directory. Properties are visible and editable via Edit >
@@ -77,6 +121,14 @@ public class CyActivator extends AbstractCyActivator {
         final DialogTaskManager taskManager = getService(bundleContext, DialogTaskManager.class);
         final CyNetworkViewWriterManager writerManager =
                 getService(bundleContext, CyNetworkViewWriterManager.class);
+        final CyNetworkViewManager viewManager =
+                getService(bundleContext, CyNetworkViewManager.class);
+        final CyNetworkTableManager networkTableManager =
+                getService(bundleContext, CyNetworkTableManager.class);
+        final RenderingEngineManager renderingEngineManager =
+                getService(bundleContext, RenderingEngineManager.class);
+        final CyNetworkFactory networkFactory = getService(bundleContext, CyNetworkFactory.class);
+        final CyNetworkManager networkManager = getService(bundleContext, CyNetworkManager.class);
 
         // Register app properties so users can view and edit in Edit > Preferences > Properties
         PropsReader propsReader = new PropsReader("opencyweb", "opencyweb.props");
@@ -97,15 +149,174 @@ public class CyActivator extends AbstractCyActivator {
 
         ShowDialogUtil dialogUtil = new ShowDialogUtil();
 
+        // Track network modifications so measured CX2 export sizes can be reused until they change
+        NetworkChangeTracker changeTracker = new NetworkChangeTracker(networkTableManager);
+        registerAllServices(bundleContext, changeTracker, new Properties());
+        Cx2SizeCache sizeCache = new Cx2SizeCache(changeTracker);
+        registerService(
+                bundleContext,
+                sizeCache,
+                NetworkAboutToBeDestroyedListener.class,
+                new Properties());
+        Cx2SizeEstimator sizeEstimator = new Cx2SizeEstimator(renderingEngineManager);
+        Cx2SizeTracker sizeTracker = new Cx2SizeTracker(networkTableManager, sizeEstimator);
+        registerAllServices(bundleContext, sizeTracker, new Properties());
+
+        // Serve CX2 exports captured during validation (transport.mode=buffered) through CyREST
+        // Exports served before are kept on disk under the app's configuration directory
+        CyApplicationConfiguration appConfiguration =
+                getService(bundleContext, CyApplicationConfiguration.class);
+        File diskCacheDirectory =
+                new File(
+                        appConfiguration.getAppConfigurationDirectoryLocation(CyActivator.class),
+                        DISK_CACHE_DIRECTORY);
+        Cx2PayloadStore payloadStore = new Cx2PayloadStore(new Cx2DiskCache(diskCacheDirectory));
+        registerService(
+                bundleContext,
+                new Cx2PayloadResource(payloadStore),
+                Cx2PayloadResource.class,
+                new Properties());
+
+        // Stream the changes of networks opened with live.enabled to their Cytoscape Web tab
+        liveSessions = new Cx2LiveSessions(networkTableManager);
+        registerAllServices(bundleContext, liveSessions, new Properties());
+        registerService(
+                bundleContext,
+                new Cx2LiveResource(liveSessions),
+                Cx2LiveResource.class,
+                new Properties());
+
+        // Time every phase of an open, reported by the "opencyweb metrics" command
+        OpenMetrics metrics = new OpenMetrics();
+        Properties metricsCommandProps = new Properties();
+        metricsCommandProps.setProperty(COMMAND_NAMESPACE, MetricsTaskFactory.COMMAND_NAMESPACE);
+        metricsCommandProps.setProperty(COMMAND, MetricsTaskFactory.COMMAND);
+        metricsCommandProps.setProperty(
+                COMMAND_DESCRIPTION, "Report timing and allocation of Open in Cytoscape Web");
+        metricsCommandProps.setProperty(
+                COMMAND_LONG_DESCRIPTION,
+                "Returns histograms of the wall time, CPU time and allocated bytes of each phase"
+                        + " of opening networks in Cytoscape Web since startup or the last reset.");
+        metricsCommandProps.setProperty(COMMAND_SUPPORTS_JSON, "true");
+        metricsCommandProps.setProperty(
+                COMMAND_EXAMPLE_JSON,
+                "{\"opens\":1,\"phases\":{\"serialization\":{\"count\":1,"
+                        + "\"wallMillis\":{\"mean\":12.5,\"p50\":12.5,\"p90\":12.5,"
+                        + "\"p99\":12.5,\"max\":12.5,\"buckets\":[0,0,1]}}}}");
+        registerService(
+                bundleContext,
+                new MetricsTaskFactory(metrics),
+                TaskFactory.class,
+                metricsCommandProps);
+
+        // Pick an export strategy that fits the free heap, stop exports when it runs low
+        memoryGuard = new Cx2MemoryGuard(cyProperties);
+        memoryGuard.start();
+
+        Cx2ExportPlanner exportPlanner =
+                new Cx2ExportPlanner(memoryGuard, sizeCache, sizeEstimator);
+
+        // Register exports and build the Cytoscape Web URLs that import them
+        Cx2Transport transport =
+                new Cx2Transport(cyProperties, coreProperties, payloadStore, liveSessions, metrics);
+
         // Create task factory for opening networks in Cytoscape Web
         OpenInCytoscapeWebTaskFactoryImpl openFac =
                 new OpenInCytoscapeWebTaskFactoryImpl(
                         appManager,
+                        viewManager,
                         swingApplication,
                         dialogUtil,
                         cyProperties,
-                        coreProperties,
-                        writerManager);
+                        writerManager,
+                        sizeCache,
+                        sizeEstimator,
+                        sizeTracker,
+                        metrics,
+                        transport,
+                        exportPlanner);
+
+        // Resolve the CX2 writer again whenever writer factories come and go
+        registerServiceListener(
+                bundleContext,
+                openFac,
+                "addWriterFactory",
+                "removeWriterFactory",
+                CyNetworkViewWriterFactory.class);
+
+        // Break the CX2 export size down by aspect and column ("opencyweb profile")
+        Properties profileCommandProps = new Properties();
+        profileCommandProps.setProperty(COMMAND_NAMESPACE, MetricsTaskFactory.COMMAND_NAMESPACE);
+        profileCommandProps.setProperty(COMMAND, ProfileTaskFactory.COMMAND);
+        profileCommandProps.setProperty(
+                COMMAND_DESCRIPTION, "Break down the CX2 export size of a network");
+        profileCommandProps.setProperty(
+                COMMAND_LONG_DESCRIPTION,
+                "Serializes the network to CX2 and returns the bytes of each aspect (nodes, edges,"
+                        + " attributes, visual properties, bypasses, layout) and of the largest"
+                        + " node, edge and network columns.");
+        profileCommandProps.setProperty(COMMAND_SUPPORTS_JSON, "true");
+        profileCommandProps.setProperty(
+                COMMAND_EXAMPLE_JSON,
+                "{\"network\":52,\"profile\":{\"totalBytes\":1048576,\"aspects\":{"
+                        + "\"nodes\":120000,\"edges\":180000,\"attributes\":700000,"
+                        + "\"visual properties\":20000,\"bypasses\":0,\"layout\":28000,"
+                        + "\"other\":576},\"columns\":[{\"table\":\"node\","
+                        + "\"name\":\"sequence\",\"bytes\":500000}]}}");
+        registerService(
+                bundleContext,
+                new ProfileTaskFactory(appManager, openFac),
+                TaskFactory.class,
+                profileCommandProps);
+
+        // Check networks against the limits without opening them ("opencyweb measure")
+        Properties measureCommandProps = new Properties();
+        measureCommandProps.setProperty(COMMAND_NAMESPACE, MetricsTaskFactory.COMMAND_NAMESPACE);
+        measureCommandProps.setProperty(COMMAND, MeasureTaskFactory.COMMAND);
+        measureCommandProps.setProperty(
+                COMMAND_DESCRIPTION,
+                "Check whether networks fit Cytoscape Web without opening them");
+        measureCommandProps.setProperty(
+                COMMAND_LONG_DESCRIPTION,
+                "Runs the element count and CX2 size checks of Open in Cytoscape Web on the given"
+                        + " networks in parallel, without dialogs, and returns the counts, exact"
+                        + " CX2 size, time taken and pass/fail of each network.");
+        measureCommandProps.setProperty(COMMAND_SUPPORTS_JSON, "true");
+        measureCommandProps.setProperty(
+                COMMAND_EXAMPLE_JSON,
+                "{\"concurrency\":2,\"millis\":84.512,\"maxFileSizeBytes\":10485760,"
+                        + "\"networks\":[{\"suid\":52,\"name\":\"galFiltered\",\"nodes\":331,"
+                        + "\"edges\":362,\"passed\":true,\"size\":{\"bytes\":245760,"
+                        + "\"exact\":true},\"millis\":80.125,\"errors\":[]}]}");
+        registerService(
+                bundleContext,
+                new MeasureTaskFactory(networkManager, appManager, openFac),
+                TaskFactory.class,
+                measureCommandProps);
+
+        // Measure every network of the session in the background for the size audit panel
+        sizeAudit = new Cx2SizeAudit(networkManager, openFac, changeTracker, cyProperties);
+        registerService(
+                bundleContext,
+                sizeAudit,
+                NetworkAboutToBeDestroyedListener.class,
+                new Properties());
+        registerService(
+                bundleContext,
+                new SizeAuditPanel(sizeAudit),
+                CytoPanelComponent.class,
+                new Properties());
+        registerService(
+                bundleContext,
+                new SizeAuditAction(swingApplication, sizeAudit),
+                CyAction.class,
+                new Properties());
+
+        // Validate the current network in the background (prefetch.enabled=true)
+        prefetcher = new Cx2Prefetcher(appManager, openFac, cyProperties);
+        changeTracker.addChangeListener(prefetcher);
+        registerService(
+                bundleContext, prefetcher, SetCurrentNetworkListener.class, new Properties());
 
         // Register right-click context menu action
         Properties openMenuProps = new Properties();
@@ -124,5 +335,9 @@ public class CyActivator extends AbstractCyActivator {
         registerService(bundleContext, toolbarAction, NetworkAddedListener.class, new Properties());
         registerService(
                 bundleContext, toolbarAction, NetworkDestroyedListener.class, new Properties());
+
+        // Warm up the export path in the background before the first open (warmup.enabled)
+        warmUp = new Cx2WarmUp(networkFactory, openFac, changeTracker, cyProperties);
+        warmUp.start();
     }
 }
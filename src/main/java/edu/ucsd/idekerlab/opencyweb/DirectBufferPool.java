@@ -0,0 +1,106 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of fixed-size direct {@link ByteBuffer} segments that hold retained CX2 exports outside the
+ * Java heap, so that large captures add nothing to the heap the garbage collector has to trace or
+ * compact. Segments are allocated lazily up to a budget and recycled on release, as allocating
+ * direct memory is slow and only freed once the buffer object is collected. When the budget is
+ * lowered, released segments above it are dropped instead of being kept for reuse.
+ */
+public class DirectBufferPool {
+
+    static final int DEFAULT_SEGMENT_BYTES = 256 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferPool.class);
+
+    private final int segmentBytes;
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private long maxBytes;
+    private long allocatedBytes;
+    private long usedBytes;
+
+    /** Constructor for DirectBufferPool with {@link #DEFAULT_SEGMENT_BYTES} segments */
+    public DirectBufferPool() {
+        this(DEFAULT_SEGMENT_BYTES);
+    }
+
+    DirectBufferPool(int segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Sets the total direct memory the pool may allocate.
+     *
+     * @param maxBytes budget in bytes, 0 to allocate nothing
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        while (allocatedBytes > maxBytes && !free.isEmpty()) {
+            free.pop();
+            allocatedBytes -= segmentBytes;
+        }
+    }
+
+    /**
+     * @return an empty segment, or null if the budget is used up
+     */
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer segment = free.poll();
+        if (segment == null) {
+            if (allocatedBytes + segmentBytes > maxBytes) {
+                return null;
+            }
+            try {
+                segment = ByteBuffer.allocateDirect(segmentBytes);
+            } catch (OutOfMemoryError e) {
+                // -XX:MaxDirectMemorySize is lower than the budget
+                LOGGER.warn("Unable to allocate direct memory for CX2 export: " + e.getMessage());
+                return null;
+            }
+            allocatedBytes += segmentBytes;
+        }
+        usedBytes += segmentBytes;
+        return segment;
+    }
+
+    /**
+     * Returns a segment obtained from {@link #acquire()}.
+     *
+     * @param segment the segment, which must not be used afterwards
+     */
+    public synchronized void release(ByteBuffer segment) {
+        usedBytes -= segmentBytes;
+        if (allocatedBytes > maxBytes) {
+            // Collected with the buffer object
+            allocatedBytes -= segmentBytes;
+            return;
+        }
+        segment.clear();
+        free.push(segment);
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * @return direct memory held by the pool, in use or free
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return direct memory held by segments in use
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
@@ -12,8 +12,9 @@ import org.cytoscape.work.AbstractTask;
 import org.cytoscape.work.TaskMonitor;
 
 /**
- * Task to open current network in Cytoscape Web. Validation is performed by the factory before this
- * task is created; this task only handles browser launching.
+ * Task to open current network in Cytoscape Web. Validation is performed by {@link
+ * CheckElementCountsTask} and {@link MeasureExportSizeTask}, which insert this task once every
+ * check passes; this task only handles browser launching.
  *
  * @author churas
  */
@@ -24,6 +25,7 @@ public class DoTask extends AbstractTask {
     private final Desktop desktop;
     private final CyNetwork network;
     private final URI uri;
+    private final OpenMetrics.Trace trace;
 
     /**
      * Constructor for DoTask
@@ -33,9 +35,29 @@ public class DoTask extends AbstractTask {
      * @param uri The validated URI for Cytoscape Web
      */
     public DoTask(Desktop desktop, CyNetwork network, URI uri) {
+        this(desktop, network, uri, null);
+    }
+
+    /**
+     * Constructor for DoTask that times the browser launch and finishes the open's metrics trace
+     *
+     * @param desktop Desktop instance for browser operations
+     * @param network The network to be used
+     * @param uri The validated URI for Cytoscape Web
+     * @param trace metrics of the open, may be null
+     */
+    public DoTask(Desktop desktop, CyNetwork network, URI uri, OpenMetrics.Trace trace) {
         this.desktop = desktop;
         this.network = network;
         this.uri = uri;
+        this.trace = trace;
+    }
+
+    /**
+     * @return the validated Cytoscape Web URI this task opens
+     */
+    public URI getUri() {
+        return uri;
     }
 
     @Override
@@ -43,10 +65,14 @@ public class DoTask extends AbstractTask {
         String suidStr = Long.toString(network.getSUID());
         LOGGER.info("Opening Network SUID: " + suidStr);
 
+        LOGGER.info("Opening " + uri + " in default browser");
         try {
-            LOGGER.info("Opening " + uri + " in default browser");
-            desktop.browse(uri);
+            try (OpenMetrics.Scope scope = startBrowserLaunch()) {
+                desktop.browse(uri);
+            }
+            finishTrace("opened");
         } catch (IOException e) {
+            finishTrace("failed to launch browser");
             LOGGER.error("Unable to open default browser window", e);
             taskMonitor.showMessage(
                     TaskMonitor.Level.ERROR,
@@ -55,4 +81,14 @@ public class DoTask extends AbstractTask {
                             + uri);
         }
     }
+
+    private OpenMetrics.Scope startBrowserLaunch() {
+        return trace == null ? () -> {} : trace.start(OpenMetrics.Phase.BROWSER_LAUNCH);
+    }
+
+    private void finishTrace(String outcome) {
+        if (trace != null) {
+            trace.finish(outcome);
+        }
+    }
 }
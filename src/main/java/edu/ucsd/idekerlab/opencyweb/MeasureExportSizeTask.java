@@ -0,0 +1,108 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.net.URI;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Second validation stage of opening a network in Cytoscape Web. Serializes the network to measure
+ * its CX2 export size, reporting progress as bytes counted against the cached or estimated size.
+ * Cancelling the task stops the writer at its next write. When the size and the Cytoscape Web URL
+ * are valid, a {@link DoTask} is inserted to open the browser. With the buffered transport, the
+ * serialized bytes are kept and served to Cytoscape Web instead of being exported again through
+ * CyREST; with the streaming transport, the export is written straight into the response when it is
+ * requested. When the size check fails and {@code network.filesize-profile} is enabled, the
+ * rejection lists the aspects and columns that contribute most to the export size.
+ */
+public class MeasureExportSizeTask extends AbstractTask {
+
+    private final OpenInCytoscapeWebTaskFactoryImpl factory;
+    private final CyNetwork network;
+    private final CyNetworkView networkView;
+    private final OpenMetrics.Trace trace;
+
+    /**
+     * Constructor for MeasureExportSizeTask
+     *
+     * @param factory factory that holds the validation settings
+     * @param network the network to measure
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param trace metrics of the open this task belongs to
+     */
+    public MeasureExportSizeTask(
+            OpenInCytoscapeWebTaskFactoryImpl factory,
+            CyNetwork network,
+            CyNetworkView networkView,
+            OpenMetrics.Trace trace) {
+        this.factory = factory;
+        this.network = network;
+        this.networkView = networkView;
+        this.trace = trace;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) {
+        taskMonitor.setStatusMessage("Measuring CX2 export size");
+        taskMonitor.setProgress(0.0);
+
+        Cx2MemoryGuard.Plan plan = factory.planExport(network, networkView);
+        if (plan.getStrategy() == Cx2MemoryGuard.Strategy.REFUSE) {
+            trace.finish("refused");
+            factory.showErrorDialog(plan.getRefusal());
+            return;
+        }
+        Cx2Buffer capture;
+        String validationError;
+        try (OpenMetrics.Scope scope = trace.attach()) {
+            capture =
+                    factory.createCaptureBuffer(
+                            network,
+                            networkView,
+                            plan.getStrategy() == Cx2MemoryGuard.Strategy.BUFFER);
+            validationError =
+                    factory.checkExportSize(
+                            network, networkView, taskMonitor, () -> cancelled, capture);
+        }
+        if (cancelled) {
+            // The capture may be complete if the cancel came after the measurement
+            if (capture != null) {
+                capture.release();
+            }
+            trace.finish("cancelled");
+            return;
+        }
+        if (validationError != null) {
+            try (OpenMetrics.Scope scope = trace.attach()) {
+                validationError =
+                        factory.addSizeProfile(
+                                validationError,
+                                network,
+                                networkView,
+                                taskMonitor,
+                                () -> cancelled);
+            }
+            if (cancelled) {
+                trace.finish("cancelled");
+                return;
+            }
+            trace.finish("rejected");
+            factory.showErrorDialog(validationError);
+            return;
+        }
+        taskMonitor.setProgress(1.0);
+
+        URI uri;
+        try (OpenMetrics.Scope scope = trace.attach()) {
+            uri = factory.createCytoscapeWebURI(network, networkView, capture, plan.getStrategy());
+        }
+        if (uri == null) {
+            // createCytoscapeWebURI() released a capture it did not index
+            trace.finish("invalid URL");
+            return;
+        }
+        insertTasksAfterCurrentTask(factory.createOpenTask(network, uri, trace));
+    }
+}
@@ -0,0 +1,260 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.json.JSONResult;
+
+/**
+ * Runs the count and CX2 size checks of an open on several networks in parallel and reports, for
+ * each network, its node and edge counts, its exact export size, how long the checks took and
+ * whether it would pass, as text or JSON. Nothing is opened and no dialog is shown, so pipelines
+ * driving Cytoscape through CyREST can find out in advance which networks fit Cytoscape Web.
+ *
+ * <p>Sizes are never estimated: networks within the limits are serialized unless their size is
+ * cached, and serialization stops at {@code network.max-filesize-mb}, in which case the size is a
+ * lower bound. The size of a network that fails the count checks is not measured.
+ */
+public class MeasureTask extends AbstractTask implements ObservableTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeasureTask.class);
+    private static final long TERMINATION_TIMEOUT_SECONDS = 30;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    static final String ALL_NETWORKS = "all";
+    static final String CURRENT_NETWORK = "current";
+
+    @Tunable(
+            description = "Networks",
+            longDescription =
+                    "Comma-separated SUIDs of the networks to measure, \"all\" for every network"
+                            + " or \"current\" for the current network.",
+            exampleStringValue = "all")
+    public String networks = CURRENT_NETWORK;
+
+    @Tunable(
+            description = "Concurrency",
+            longDescription =
+                    "Number of networks measured at once. 0 measures as many at once as there are"
+                            + " cores and free memory for.",
+            exampleStringValue = "4")
+    public int concurrency = 0;
+
+    private final CyNetworkManager networkManager;
+    private final CyApplicationManager appManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory;
+    private String summary;
+    private String json;
+
+    /**
+     * Constructor for MeasureTask
+     *
+     * @param networkManager Cytoscape network manager, to resolve SUIDs and list all networks
+     * @param appManager Cytoscape application manager, for the current network
+     * @param openFactory factory that holds the validation settings
+     */
+    public MeasureTask(
+            CyNetworkManager networkManager,
+            CyApplicationManager appManager,
+            OpenInCytoscapeWebTaskFactoryImpl openFactory) {
+        this.networkManager = networkManager;
+        this.appManager = appManager;
+        this.openFactory = openFactory;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Measure networks for Cytoscape Web");
+        List<NetworkMeasurement> measurements = new ArrayList<>();
+        for (CyNetwork network : resolveNetworks()) {
+            measurements.add(new NetworkMeasurement(network));
+        }
+        int threads =
+                concurrency > 0
+                        ? Math.max(1, Math.min(concurrency, measurements.size()))
+                        : openFactory.getBatchParallelism(measurements.size());
+        taskMonitor.setStatusMessage(
+                "Measuring " + measurements.size() + " networks on " + threads + " threads");
+        long start = System.nanoTime();
+        measureAll(measurements, threads, taskMonitor);
+        if (cancelled) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long maxFileSizeBytes = openFactory.getMaxFileSizeBytes();
+        summary = createSummary(measurements, threads, elapsedNanos, maxFileSizeBytes);
+        json = createJSON(measurements, threads, elapsedNanos, maxFileSizeBytes);
+        LOGGER.info(summary);
+    }
+
+    /** Resolves the {@link #networks} tunable, in SUID order for "all". */
+    List<CyNetwork> resolveNetworks() {
+        String spec = networks == null ? "" : networks.trim();
+        List<CyNetwork> resolved = new ArrayList<>();
+        if (spec.isEmpty() || CURRENT_NETWORK.equalsIgnoreCase(spec)) {
+            CyNetwork current = appManager.getCurrentNetwork();
+            if (current == null) {
+                throw new IllegalArgumentException("No current network to measure");
+            }
+            resolved.add(current);
+        } else if (ALL_NETWORKS.equalsIgnoreCase(spec)) {
+            resolved.addAll(networkManager.getNetworkSet());
+            resolved.sort(Comparator.comparing(CyNetwork::getSUID));
+        } else {
+            for (String suid : spec.split(",")) {
+                CyNetwork network;
+                try {
+                    network = networkManager.getNetwork(Long.parseLong(suid.trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid network SUID: " + suid.trim());
+                }
+                if (network == null) {
+                    throw new IllegalArgumentException("Unknown network SUID: " + suid.trim());
+                }
+                resolved.add(network);
+            }
+        }
+        return resolved;
+    }
+
+    private void measureAll(
+            List<NetworkMeasurement> measurements, int threads, TaskMonitor taskMonitor) {
+        if (measurements.isEmpty()) {
+            return;
+        }
+        ExecutorService executor =
+                Executors.newFixedThreadPool(
+                        threads, new BatchOpenTask.ValidationThreads("opencyweb-measure-"));
+        try {
+            CompletionService<NetworkMeasurement> completion =
+                    new ExecutorCompletionService<>(executor);
+            for (NetworkMeasurement measurement : measurements) {
+                completion.submit(() -> measurement.run(openFactory, () -> cancelled), measurement);
+            }
+            for (int done = 1; done <= measurements.size(); done++) {
+                completion.take().get();
+                taskMonitor.setProgress((double) done / measurements.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Network measurement failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String createSummary(
+            List<NetworkMeasurement> measurements, int threads, long elapsedNanos, long maxBytes) {
+        int passed = 0;
+        for (NetworkMeasurement measurement : measurements) {
+            if (measurement.passed(maxBytes)) {
+                passed++;
+            }
+        }
+        StringBuilder summary = new StringBuilder();
+        summary.append("Measured ")
+                .append(measurements.size())
+                .append(" networks on ")
+                .append(threads)
+                .append(" threads in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                .append(" ms: ")
+                .append(passed)
+                .append(" passed, ")
+                .append(measurements.size() - passed)
+                .append(" failed");
+        for (NetworkMeasurement measurement : measurements) {
+            summary.append("\n  - ")
+                    .append(measurement.getName())
+                    .append(" (SUID ")
+                    .append(measurement.getNetwork().getSUID())
+                    .append("): ")
+                    .append(measurement.passed(maxBytes) ? "passed" : "failed")
+                    .append(", ")
+                    .append(measurement.getNodeCount())
+                    .append(" nodes, ")
+                    .append(measurement.getEdgeCount())
+                    .append(" edges");
+            if (measurement.getSize() != null && measurement.getSize().isKnown()) {
+                summary.append(", ")
+                        .append(
+                                OpenInCytoscapeWebTaskFactoryImpl.describeExportSize(
+                                        measurement.getSize(), maxBytes / (1024.0 * 1024.0)));
+            }
+            summary.append(", ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(measurement.getElapsedNanos()))
+                    .append(" ms");
+        }
+        return summary.toString();
+    }
+
+    private static String createJSON(
+            List<NetworkMeasurement> measurements, int threads, long elapsedNanos, long maxBytes) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeNumberField("concurrency", threads);
+            generator.writeFieldName("millis");
+            generator.writeNumber(NetworkMeasurement.millis(elapsedNanos));
+            generator.writeNumberField("maxFileSizeBytes", maxBytes);
+            generator.writeArrayFieldStart("networks");
+            for (NetworkMeasurement measurement : measurements) {
+                measurement.writeJSON(generator, maxBytes);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> R getResults(Class<? extends R> type) {
+        if (type == JSONResult.class) {
+            JSONResult result = () -> json;
+            return (R) result;
+        }
+        if (type == String.class) {
+            return (R) summary;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Class<?>> getResultClasses() {
+        return Arrays.asList(String.class, JSONResult.class);
+    }
+}
@@ -0,0 +1,41 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Creates the {@link MeasureTask} behind the {@code opencyweb measure} command, which checks
+ * networks against the Cytoscape Web limits without opening them or showing dialogs. CyREST exposes
+ * the command at {@code /v1/commands/opencyweb/measure}.
+ */
+public class MeasureTaskFactory extends AbstractTaskFactory {
+
+    static final String COMMAND = "measure";
+
+    private final CyNetworkManager networkManager;
+    private final CyApplicationManager appManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory;
+
+    /**
+     * Constructor for MeasureTaskFactory
+     *
+     * @param networkManager Cytoscape network manager, to resolve SUIDs and list all networks
+     * @param appManager Cytoscape application manager, for the current network
+     * @param openFactory factory that holds the validation settings
+     */
+    public MeasureTaskFactory(
+            CyNetworkManager networkManager,
+            CyApplicationManager appManager,
+            OpenInCytoscapeWebTaskFactoryImpl openFactory) {
+        this.networkManager = networkManager;
+        this.appManager = appManager;
+        this.openFactory = openFactory;
+    }
+
+    @Override
+    public TaskIterator createTaskIterator() {
+        return new TaskIterator(new MeasureTask(networkManager, appManager, openFactory));
+    }
+}
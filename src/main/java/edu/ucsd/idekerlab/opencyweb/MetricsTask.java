@@ -0,0 +1,75 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.json.JSONResult;
+
+/**
+ * Reports the wall time, CPU time and allocation histograms of every phase of opening networks in
+ * Cytoscape Web, as text or JSON, and writes the text to the log. Optionally clears the metrics
+ * afterwards so the next report covers only the opens that follow.
+ */
+public class MetricsTask extends AbstractTask implements ObservableTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsTask.class);
+
+    @Tunable(
+            description = "Reset metrics",
+            longDescription =
+                    "If true, the metrics are cleared after they are reported so the next report"
+                            + " covers only later opens.",
+            exampleStringValue = "false")
+    public boolean reset = false;
+
+    private final OpenMetrics metrics;
+    private String summary;
+    private String json;
+
+    /**
+     * Constructor for MetricsTask
+     *
+     * @param metrics metrics to report
+     */
+    public MetricsTask(OpenMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) {
+        taskMonitor.setTitle("Open in Cytoscape Web metrics");
+        synchronized (metrics) {
+            summary = metrics.toSummary();
+            json = metrics.toJSON();
+            if (reset) {
+                metrics.reset();
+            }
+        }
+        LOGGER.info(summary);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> R getResults(Class<? extends R> type) {
+        if (type == JSONResult.class) {
+            JSONResult result = () -> json;
+            return (R) result;
+        }
+        if (type == String.class) {
+            return (R) summary;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Class<?>> getResultClasses() {
+        return Arrays.asList(String.class, JSONResult.class);
+    }
+}
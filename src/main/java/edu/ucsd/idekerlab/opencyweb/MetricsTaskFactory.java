@@ -0,0 +1,31 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Creates the {@link MetricsTask} behind the {@code opencyweb metrics} command, which reports the
+ * per-phase metrics of opening networks in Cytoscape Web. CyREST exposes the command at {@code
+ * /v1/commands/opencyweb/metrics}.
+ */
+public class MetricsTaskFactory extends AbstractTaskFactory {
+
+    static final String COMMAND_NAMESPACE = "opencyweb";
+    static final String COMMAND = "metrics";
+
+    private final OpenMetrics metrics;
+
+    /**
+     * Constructor for MetricsTaskFactory
+     *
+     * @param metrics metrics recorded by the open task factory
+     */
+    public MetricsTaskFactory(OpenMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TaskIterator createTaskIterator() {
+        return new TaskIterator(new MetricsTask(metrics));
+    }
+}
@@ -0,0 +1,217 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedEdgesListener;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.AddedNodesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RemovedEdgesEvent;
+import org.cytoscape.model.events.RemovedEdgesListener;
+import org.cytoscape.model.events.RemovedNodesEvent;
+import org.cytoscape.model.events.RemovedNodesListener;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.events.ViewChangedEvent;
+import org.cytoscape.view.model.events.ViewChangedListener;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedListener;
+import org.cytoscape.view.vizmap.events.VisualStyleSetEvent;
+import org.cytoscape.view.vizmap.events.VisualStyleSetListener;
+
+/**
+ * Tracks a modification stamp for every network, advanced by the Cytoscape model and view events
+ * that can change the CX2 export of that network. Stamps come from a single monotonic clock, so two
+ * reads of {@link #getStamp(long)} that return the same value guarantee that no tracked change
+ * happened to that network in between.
+ *
+ * <p>Changes to a root network's tables (shared columns, such as the shared name) advance the
+ * stamps of its subnetworks, and changes to tables no network owns are ignored. Changes that cannot
+ * be attributed to any network (visual style edits) advance a global stamp that applies to every
+ * network.
+ *
+ * <p>Registered {@link ChangeListener}s are told about every stamp change, on the thread that
+ * delivered the event.
+ *
+ * <p>Networks the app builds for itself, such as the {@link Cx2WarmUp} network, are {@link #exclude
+ * excluded}: their events change no stamp.
+ */
+public class NetworkChangeTracker
+        implements AddedNodesListener,
+                AddedEdgesListener,
+                RemovedNodesListener,
+                RemovedEdgesListener,
+                RowsSetListener,
+                ViewChangedListener,
+                VisualStyleChangedListener,
+                VisualStyleSetListener,
+                NetworkAboutToBeDestroyedListener {
+
+    private final CyNetworkTableManager networkTableManager;
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Long, Long> networkStamps = new ConcurrentHashMap<>();
+    private final Set<Long> excludedNetworks = ConcurrentHashMap.newKeySet();
+    private volatile long globalStamp;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Notified whenever the stamp of a network, or of all networks, advances. */
+    public interface ChangeListener {
+
+        /**
+         * @param networkSuid SUID of the changed network, or null if every network changed
+         */
+        void networkChanged(Long networkSuid);
+    }
+
+    /**
+     * Constructor for NetworkChangeTracker
+     *
+     * @param networkTableManager used to resolve the network that owns a changed table
+     */
+    public NetworkChangeTracker(CyNetworkTableManager networkTableManager) {
+        this.networkTableManager = networkTableManager;
+    }
+
+    /**
+     * Returns the current modification stamp of a network. The value only ever increases, and
+     * changes whenever a tracked event touches the network (or all networks).
+     *
+     * @param networkSuid SUID of the network
+     * @return modification stamp, 0 if the network has not changed since tracking started
+     */
+    public long getStamp(long networkSuid) {
+        Long stamp = networkStamps.get(networkSuid);
+        return Math.max(stamp == null ? 0L : stamp, globalStamp);
+    }
+
+    /**
+     * @param listener notified of every stamp change
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener listener to stop notifying
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Ignores the events of a network and of its root network from now on, and drops their stamps.
+     * Call it before the network is first changed, since events may be delivered later.
+     *
+     * @param network a network only the app uses, never registered with the network manager
+     */
+    public void exclude(CyNetwork network) {
+        excludedNetworks.add(network.getSUID());
+        networkStamps.remove(network.getSUID());
+        if (network instanceof CySubNetwork) {
+            CyRootNetwork root = ((CySubNetwork) network).getRootNetwork();
+            if (root != null) {
+                excludedNetworks.add(root.getSUID());
+                networkStamps.remove(root.getSUID());
+            }
+        }
+    }
+
+    /** Advances the stamp of a single network. */
+    void markChanged(long networkSuid) {
+        networkStamps.put(networkSuid, clock.incrementAndGet());
+        for (ChangeListener listener : listeners) {
+            listener.networkChanged(networkSuid);
+        }
+    }
+
+    /** Advances the stamp of every network. */
+    void markAllChanged() {
+        globalStamp = clock.incrementAndGet();
+        for (ChangeListener listener : listeners) {
+            listener.networkChanged(null);
+        }
+    }
+
+    private void markChanged(CyNetwork network) {
+        if (network == null || excludedNetworks.contains(network.getSUID())) {
+            return;
+        }
+        if (network instanceof CyRootNetwork) {
+            // Shared columns surface in every subnetwork of the root
+            for (CySubNetwork subNetwork : ((CyRootNetwork) network).getSubNetworkList()) {
+                if (!excludedNetworks.contains(subNetwork.getSUID())) {
+                    markChanged(subNetwork.getSUID());
+                }
+            }
+        } else {
+            markChanged(network.getSUID());
+        }
+    }
+
+    @Override
+    public void handleEvent(AddedNodesEvent e) {
+        markChanged(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(AddedEdgesEvent e) {
+        markChanged(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(RemovedNodesEvent e) {
+        markChanged(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(RemovedEdgesEvent e) {
+        markChanged(e.getSource());
+    }
+
+    @Override
+    public void handleEvent(RowsSetEvent e) {
+        // Selection changes too: the export carries the selected column, and kept exports are
+        // reused for as long as the stamp does not move
+        CyTable table = e.getSource();
+        markChanged(networkTableManager.getNetworkForTable(table));
+    }
+
+    @Override
+    public void handleEvent(ViewChangedEvent<?> e) {
+        CyNetworkView view = e.getSource();
+        if (view != null) {
+            markChanged(view.getModel());
+        }
+    }
+
+    @Override
+    public void handleEvent(VisualStyleChangedEvent e) {
+        markAllChanged();
+    }
+
+    @Override
+    public void handleEvent(VisualStyleSetEvent e) {
+        CyNetworkView view = e.getNetworkView();
+        if (view != null) {
+            markChanged(view.getModel());
+        }
+    }
+
+    @Override
+    public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+        networkStamps.remove(e.getNetwork().getSUID());
+    }
+}
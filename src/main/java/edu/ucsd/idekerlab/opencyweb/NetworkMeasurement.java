@@ -0,0 +1,148 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.cytoscape.model.CyNetwork;
+
+/**
+ * The count and exact CX2 size checks of one network, without dialogs, as run by the {@code
+ * opencyweb measure} command and the size audit panel. The size is only measured when the count
+ * checks pass, and is never estimated (see {@link
+ * OpenInCytoscapeWebTaskFactoryImpl#measureExportSize}).
+ */
+public class NetworkMeasurement {
+
+    private final CyNetwork network;
+    private String name;
+    private int nodeCount;
+    private int edgeCount;
+    private String countError;
+    private Cx2ExportSize size;
+    private long elapsedNanos;
+
+    /**
+     * Constructor for NetworkMeasurement
+     *
+     * @param network the network to measure
+     */
+    public NetworkMeasurement(CyNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Runs the checks on the calling thread.
+     *
+     * @param openFactory factory that holds the validation settings
+     * @param cancelled polled during serialization; returning true stops the writer
+     */
+    void run(OpenInCytoscapeWebTaskFactoryImpl openFactory, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        name = BatchOpenTask.networkName(network);
+        nodeCount = network.getNodeCount();
+        edgeCount = network.getEdgeCount();
+        countError = openFactory.checkElementCounts(network);
+        if (countError == null) {
+            size =
+                    openFactory.measureExportSize(
+                            network, openFactory.getNetworkView(network), cancelled);
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    CyNetwork getNetwork() {
+        return network;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return the measured size, or null if the count checks failed
+     */
+    Cx2ExportSize getSize() {
+        return size;
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    boolean hasCountError() {
+        return countError != null;
+    }
+
+    /** Unknown sizes pass, as they do when opening the network, unless the heap ran low. */
+    boolean passed(long maxBytes) {
+        return countError == null && !size.isLowMemory() && !size.exceeds(maxBytes);
+    }
+
+    /**
+     * @param maxBytes the size limit
+     * @return the limit details an open would report, empty if the network passed
+     */
+    List<String> errors(long maxBytes) {
+        List<String> errors = new ArrayList<>();
+        if (countError != null) {
+            errors.addAll(BatchOpenTask.errorDetails(countError));
+        } else if (size.isLowMemory()) {
+            errors.add("Not enough free memory to measure the CX2 export");
+        } else if (size.exceeds(maxBytes)) {
+            errors.add(
+                    OpenInCytoscapeWebTaskFactoryImpl.describeExportSize(
+                            size, maxBytes / (1024.0 * 1024.0)));
+        }
+        return errors;
+    }
+
+    /**
+     * Writes the measurement as a JSON object.
+     *
+     * @param generator receives the object
+     * @param maxBytes the size limit
+     * @throws IOException if the generator fails
+     */
+    void writeJSON(JsonGenerator generator, long maxBytes) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("suid", network.getSUID());
+        generator.writeStringField("name", name);
+        generator.writeNumberField("nodes", nodeCount);
+        generator.writeNumberField("edges", edgeCount);
+        generator.writeBooleanField("passed", passed(maxBytes));
+        generator.writeFieldName("size");
+        if (size == null || !size.isKnown()) {
+            generator.writeNull();
+        } else {
+            generator.writeStartObject();
+            generator.writeNumberField("bytes", size.getBytes());
+            generator.writeBooleanField("exact", size.isExact());
+            generator.writeEndObject();
+        }
+        generator.writeFieldName("millis");
+        generator.writeNumber(millis(elapsedNanos));
+        generator.writeArrayFieldStart("errors");
+        for (String error : errors(maxBytes)) {
+            generator.writeString(error);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
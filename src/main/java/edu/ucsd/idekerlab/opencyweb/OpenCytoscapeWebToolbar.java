@@ -15,7 +15,6 @@ import org.cytoscape.model.events.NetworkAddedEvent;
 import org.cytoscape.model.events.NetworkAddedListener;
 import org.cytoscape.model.events.NetworkDestroyedEvent;
 import org.cytoscape.model.events.NetworkDestroyedListener;
-import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.swing.DialogTaskManager;
 
@@ -71,17 +70,18 @@ public class OpenCytoscapeWebToolbar extends AbstractCyAction
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        CyNetworkView networkView = appManager.getCurrentNetworkView();
+        CyNetwork network = appManager.getCurrentNetwork();
 
-        if (networkView == null) {
-            // No current network view available
+        if (network == null) {
+            // No current network available
             return;
         }
 
         LOGGER.info("Opening network in Cytoscape Web from toolbar action");
 
-        // Create and execute task using the existing task factory
-        TaskIterator taskIterator = taskFactory.createTaskIterator(networkView);
+        // Create and execute task using the existing task factory; networks without a view are
+        // exported without creating one
+        TaskIterator taskIterator = taskFactory.createTaskIterator(network);
         taskManager.execute(taskIterator);
     }
 
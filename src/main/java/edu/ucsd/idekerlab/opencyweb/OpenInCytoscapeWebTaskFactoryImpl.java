@@ -1,15 +1,21 @@
 package edu.ucsd.idekerlab.opencyweb;
 
 import java.awt.Desktop;
+import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,21 +25,26 @@ import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
 import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.io.write.CyNetworkViewWriterFactory;
 import org.cytoscape.io.write.CyNetworkViewWriterManager;
-import org.cytoscape.io.write.CyWriter;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.property.CyProperty;
 import org.cytoscape.task.NetworkCollectionTaskFactory;
 import org.cytoscape.view.model.CyNetworkView;
-import org.cytoscape.work.AbstractTask;
+import org.cytoscape.view.model.CyNetworkViewManager;
 import org.cytoscape.work.AbstractTaskFactory;
 import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.TaskMonitor;
 
 /**
  * Implementation of {@link NetworkCollectionTaskFactory} to open the current network in Cytoscape
- * Web. Performs all validation (network element counts, file size, and URL) before task creation so
- * that error dialogs are shown outside the task lifecycle.
+ * Web. Validation (network element counts, file size, and URL) runs as background task stages ahead
+ * of the {@link DoTask}, so large networks are measured without blocking the Swing thread. Several
+ * networks selected in the network panel are validated in parallel by a {@link BatchOpenTask}.
+ *
+ * <p>A network is exported through its view when it has one. Networks without a view (Cytoscape
+ * does not create views for large networks) are measured and exported through the network writer,
+ * so no view has to be created for them; {@code networkView} parameters are null in that case.
  */
 public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
         implements NetworkCollectionTaskFactory {
@@ -41,56 +52,106 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
     private static final Logger LOGGER =
             LoggerFactory.getLogger(OpenInCytoscapeWebTaskFactoryImpl.class);
 
-    // Cytoscape Web URL template - placeholders are substituted at runtime from app properties
-    private static final String CYTOSCAPE_WEB_URL_TEMPLATE =
-            "${cytoscape_web_base_url}?import=http://localhost:${cyrest_port}/v1/networks/${network_suid}.cx?version=2";
-
-    // Property key for CyREST port (read from Cytoscape core "cytoscape3" properties)
-    static final String PROP_CYREST_PORT = "rest.port";
-    static final String PROP_CYTOSCAPE_WEB_BASE_URL = "cytoscapeweb.baseurl";
-
     // Network validation property keys and defaults
     static final String PROP_MAX_ELEMENTS = "network.max-elements";
     static final String PROP_MAX_EDGES = "network.max-edges";
     static final String PROP_MAX_FILESIZE_MB = "network.max-filesize-mb";
+    static final String PROP_FILESIZE_ESTIMATE = "network.filesize-estimate";
+    static final String PROP_FILESIZE_PROFILE = "network.filesize-profile";
+
     private static final int DEFAULT_MAX_ELEMENTS = 26000;
     private static final int DEFAULT_MAX_EDGES = 20000;
     private static final double DEFAULT_MAX_FILESIZE_MB = 10.0;
 
-    // Default values matching opencyweb.props defaults
-    private static final String DEFAULT_CYREST_PORT = "1234";
-    private static final String DEFAULT_CYTOSCAPE_WEB_BASE_URL = "https://web.cytoscape.org";
+    // Serialization progress is reported each time this many more bytes have been counted
+    private static final long PROGRESS_INTERVAL_BYTES = 256 * 1024;
+
+    // Bounds for the initial capacity of a capture buffer sized from a cached or estimated size
+    private static final int MIN_CAPTURE_CAPACITY = 64 * 1024;
+    private static final int MAX_CAPTURE_CAPACITY = 64 * 1024 * 1024;
+
+    // Number of columns listed in the size profile added to a rejection
+    private static final int PROFILE_DIALOG_COLUMNS = 5;
+
+    // Number of striped locks serializing measurements of the same network
+    private static final int MEASUREMENT_LOCKS = 16;
 
     private final CyApplicationManager appManager;
+    private final CyNetworkViewManager viewManager;
     private final ShowDialogUtil dialogUtil;
     private final CySwingApplication swingApplication;
     private final CyProperty<Properties> cyProperties;
-    private final CyProperty<Properties> coreProperties;
     private final CyNetworkViewWriterManager writerManager;
+    private final Cx2SizeCache sizeCache;
+    private final Cx2SizeEstimator sizeEstimator;
+    private final Cx2SizeTracker sizeTracker;
+    private final OpenMetrics metrics;
+    private final Cx2Transport transport;
+    private final Cx2ExportPlanner exportPlanner;
+
+    // An open waits for a running prefetch of the same network and then reuses its result
+    private final ReentrantLock[] measurementLocks = new ReentrantLock[MEASUREMENT_LOCKS];
+
+    // Direct memory holding captured exports, bounded by transport.offheap-max-mb
+    private final DirectBufferPool bufferPool = new DirectBufferPool();
+
+    // CX2 writer filter, resolved on first use and dropped whenever writer factories change
+    private volatile CyFileFilter cxFileFilter;
+
+    // Bytes of the current network captured in the background, handed out while still current
+    private final AtomicReference<PrefetchedCapture> prefetchedCapture = new AtomicReference<>();
 
     /**
      * Constructor for OpenInCytoscapeWebTaskFactoryImpl
      *
      * @param appManager Cytoscape application manager
+     * @param viewManager Cytoscape network view manager, to find the views of selected networks
      * @param swingApplication Cytoscape Swing application
      * @param dialogUtil Utility for showing dialogs
      * @param cyProperties App properties from opencyweb.props (editable via Edit > Preferences)
-     * @param coreProperties Cytoscape core properties from cytoscape3.props (provides rest.port)
      * @param writerManager Cytoscape network view writer manager for measuring export size
+     * @param sizeCache Cache of measured export sizes, invalidated when a network changes
+     * @param sizeEstimator Predicts export sizes so serialization can be skipped far from the limit
+     * @param sizeTracker Running export sizes of edited networks since their last measurement
+     * @param metrics Records the duration, CPU time and allocation of every phase of an open
+     * @param transport Registers exports and builds the Cytoscape Web URLs that import them
+     * @param exportPlanner Chooses how networks are exported from the heap they need
      */
     public OpenInCytoscapeWebTaskFactoryImpl(
             final CyApplicationManager appManager,
+            CyNetworkViewManager viewManager,
             CySwingApplication swingApplication,
             ShowDialogUtil dialogUtil,
             CyProperty<Properties> cyProperties,
-            CyProperty<Properties> coreProperties,
-            CyNetworkViewWriterManager writerManager) {
+            CyNetworkViewWriterManager writerManager,
+            Cx2SizeCache sizeCache,
+            Cx2SizeEstimator sizeEstimator,
+            Cx2SizeTracker sizeTracker,
+            OpenMetrics metrics,
+            Cx2Transport transport,
+            Cx2ExportPlanner exportPlanner) {
         this.appManager = appManager;
+        this.viewManager = viewManager;
         this.swingApplication = swingApplication;
         this.dialogUtil = dialogUtil;
         this.cyProperties = cyProperties;
-        this.coreProperties = coreProperties;
         this.writerManager = writerManager;
+        this.sizeCache = sizeCache;
+        this.sizeEstimator = sizeEstimator;
+        this.sizeTracker = sizeTracker;
+        this.metrics = metrics;
+        this.transport = transport;
+        this.exportPlanner = exportPlanner;
+        for (int i = 0; i < MEASUREMENT_LOCKS; i++) {
+            measurementLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @return metrics of the opens started by this factory
+     */
+    OpenMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
@@ -100,75 +161,164 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
 
     @Override
     public TaskIterator createTaskIterator() {
-        return this.createTaskIterator(appManager.getCurrentNetworkView());
+        return this.createTaskIterator(appManager.getCurrentNetwork());
     }
 
     @Override
     public boolean isReady(Collection<CyNetwork> clctn) {
-        return appManager.getCurrentNetwork() != null && clctn.size() == 1;
+        return !clctn.isEmpty();
     }
 
+    /**
+     * Creates a TaskIterator for opening the given networks in Cytoscape Web. A single network goes
+     * through {@link #createTaskIterator(CyNetwork)}; several networks are validated in parallel by
+     * a {@link BatchOpenTask}, which reports the result and opens the networks that passed.
+     *
+     * @param clctn the networks selected in the network panel
+     * @return TaskIterator that validates and then opens the networks
+     */
     @Override
     public TaskIterator createTaskIterator(Collection<CyNetwork> clctn) {
-        return this.createTaskIterator(appManager.getCurrentNetworkView());
+        if (clctn.size() == 1) {
+            return this.createTaskIterator(clctn.iterator().next());
+        }
+        return new TaskIterator(new BatchOpenTask(this, clctn));
     }
 
     /**
-     * Creates a TaskIterator for opening the current network in Cytoscape Web. Validates network
-     * element counts, file size, and URL before creating the task. If validation fails, an error
-     * dialog is shown and a no-op task is returned (the framework requires a valid TaskIterator).
+     * Finds the view to export for a network: the current view if it shows the network, otherwise
+     * the first of its views.
      *
-     * @param networkView The CyNetworkView for which to create the task
-     * @return TaskIterator containing the DoTask to open the network, or a no-op task on validation
-     *     failure
+     * @param network the network
+     * @return a view of the network, or null if it has none
      */
-    public TaskIterator createTaskIterator(CyNetworkView networkView) {
-        CyNetwork network = networkView.getModel();
-
-        // Validate network
-        String validationError = validateNetwork(networkView);
-        if (validationError != null) {
-            dialogUtil.showMessageDialog(swingApplication.getJFrame(), validationError);
-            return new TaskIterator(new NoOpTask());
+    CyNetworkView getNetworkView(CyNetwork network) {
+        CyNetworkView currentView = appManager.getCurrentNetworkView();
+        if (currentView != null && network.equals(currentView.getModel())) {
+            return currentView;
         }
+        Collection<CyNetworkView> views = viewManager.getNetworkViews(network);
+        return views == null || views.isEmpty() ? null : views.iterator().next();
+    }
 
-        // Build and validate URL
-        String cytowebUrl = buildCytoscapeWebURI(network.getSUID());
-        URI uri;
-        try {
-            uri = new URL(cytowebUrl).toURI();
-        } catch (MalformedURLException | URISyntaxException e) {
-            LOGGER.error("Invalid Cytoscape Web URL: " + cytowebUrl, e);
-            dialogUtil.showMessageDialog(
-                    swingApplication.getJFrame(),
-                    "Invalid URL: "
-                            + cytowebUrl
-                            + "\n\nPlease check your settings in"
-                            + " Edit > Preferences > Properties (opencyweb).");
-            return new TaskIterator(new NoOpTask());
-        }
+    /**
+     * Number of networks a {@link BatchOpenTask} validates at once: at most one per core, and only
+     * as many as fit in half of the free heap when each may hold an export of up to {@code
+     * network.max-filesize-mb} (the capture buffer with the buffered transport, the writer's
+     * working set otherwise).
+     *
+     * @param networkCount number of networks to validate
+     * @return number of validation threads, at least 1
+     */
+    int getBatchParallelism(int networkCount) {
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+        return batchParallelism(
+                networkCount,
+                runtime.availableProcessors(),
+                runtime.maxMemory() - usedHeap,
+                getMaxFileSizeBytes());
+    }
+
+    static int batchParallelism(
+            int networkCount, int cores, long freeHeapBytes, long bytesPerValidation) {
+        long byMemory =
+                bytesPerValidation > 0 ? freeHeapBytes / 2 / bytesPerValidation : networkCount;
+        return (int) Math.max(1, Math.min(networkCount, Math.min(cores, byMemory)));
+    }
 
-        return new TaskIterator(new DoTask(Desktop.getDesktop(), network, uri));
+    /**
+     * Chooses how to export a network from the free heap (see {@link Cx2ExportPlanner}), given
+     * whether {@code transport.mode} already streams exports.
+     *
+     * @param network the network to export
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @return the plan for the export
+     */
+    Cx2MemoryGuard.Plan planExport(CyNetwork network, CyNetworkView networkView) {
+        return exportPlanner.plan(network, networkView, transport.isStreaming());
+    }
+
+    /**
+     * Creates a TaskIterator for opening the given network in Cytoscape Web. Validation runs inside
+     * the iterator as background task stages so the calling (Swing) thread is never blocked: {@link
+     * CheckElementCountsTask} performs the cheap count checks, then {@link MeasureExportSizeTask}
+     * serializes the network with progress and cancel support. The {@link DoTask} is appended only
+     * when every check passes; otherwise an error dialog is shown.
+     *
+     * @param networkView The CyNetworkView for which to create the task
+     * @return TaskIterator that validates and then opens the network
+     */
+    public TaskIterator createTaskIterator(CyNetworkView networkView) {
+        return new TaskIterator(
+                3, new CheckElementCountsTask(this, networkView.getModel(), networkView));
+    }
+
+    /**
+     * Creates a TaskIterator for opening the given network in Cytoscape Web, through its view if it
+     * has one (see {@link #getNetworkView(CyNetwork)}) and without one otherwise.
+     *
+     * @param network The CyNetwork for which to create the task
+     * @return TaskIterator that validates and then opens the network
+     */
+    public TaskIterator createTaskIterator(CyNetwork network) {
+        return new TaskIterator(
+                3, new CheckElementCountsTask(this, network, getNetworkView(network)));
     }
 
     /**
      * Validates network against Cytoscape Web thresholds: total elements (nodes+edges), edge count,
      * and CX2 export file size. Count checks run first (cheap, O(1)) to gate the expensive file
-     * size check.
+     * size check. Runs synchronously on the calling thread.
      *
      * @param networkView the network view to validate
      * @return error message string if any threshold is exceeded, null if OK
      */
     String validateNetwork(CyNetworkView networkView) {
-        CyNetwork network = networkView.getModel();
-        Properties props = cyProperties.getProperties();
-        int maxElements =
-                Integer.parseInt(
-                        props.getProperty(PROP_MAX_ELEMENTS, String.valueOf(DEFAULT_MAX_ELEMENTS)));
-        int maxEdges =
-                Integer.parseInt(
-                        props.getProperty(PROP_MAX_EDGES, String.valueOf(DEFAULT_MAX_EDGES)));
+        return validateNetwork(networkView.getModel(), networkView);
+    }
 
+    /**
+     * Validates a network against Cytoscape Web thresholds like {@link
+     * #validateNetwork(CyNetworkView)}.
+     *
+     * @param network the network to validate
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @return error message string if any threshold is exceeded, null if OK
+     */
+    String validateNetwork(CyNetwork network, CyNetworkView networkView) {
+        String countError = checkElementCounts(network);
+        if (countError != null) {
+            return countError;
+        }
+        return checkExportSize(network, networkView, null, () -> false, null);
+    }
+
+    /**
+     * Checks the total element (nodes+edges) and edge count thresholds.
+     *
+     * @param network the network to check
+     * @return error message string if a threshold is exceeded, null if OK
+     */
+    String checkElementCounts(CyNetwork network) {
+        int maxElements;
+        int maxEdges;
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.PROPERTIES)) {
+            Properties props = cyProperties.getProperties();
+            maxElements =
+                    Integer.parseInt(
+                            props.getProperty(
+                                    PROP_MAX_ELEMENTS, String.valueOf(DEFAULT_MAX_ELEMENTS)));
+            maxEdges =
+                    Integer.parseInt(
+                            props.getProperty(PROP_MAX_EDGES, String.valueOf(DEFAULT_MAX_EDGES)));
+        }
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.COUNT_CHECK)) {
+            return checkElementCounts(network, maxElements, maxEdges);
+        }
+    }
+
+    private static String checkElementCounts(CyNetwork network, int maxElements, int maxEdges) {
         int nodeCount = network.getNodeCount();
         int edgeCount = network.getEdgeCount();
         int elementCount = nodeCount + edgeCount;
@@ -176,7 +326,6 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
         boolean elementsExceeded = elementCount > maxElements;
         boolean edgesExceeded = edgeCount > maxEdges;
 
-        // Check count-based thresholds first (cheap checks)
         if (elementsExceeded || edgesExceeded) {
             StringBuilder msg = new StringBuilder();
             msg.append(
@@ -197,23 +346,61 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
                             + " Edit > Preferences > Properties (opencyweb).");
             return msg.toString();
         }
+        return null;
+    }
 
-        // Check file size threshold (expensive — requires CX2 serialization)
-        String rawFileSizeMb =
-                props.getProperty(PROP_MAX_FILESIZE_MB, String.valueOf(DEFAULT_MAX_FILESIZE_MB));
-        double maxFileSizeMb = Double.parseDouble(rawFileSizeMb);
-        normalizeFileSizeProperty(props, rawFileSizeMb);
+    /**
+     * Checks the CX2 export file size threshold, keeping the serialized bytes in {@code capture}.
+     * This is the expensive check, as it may require serializing the whole network. The capture
+     * buffer is marked complete only if the network was serialized in full within the limit;
+     * otherwise it is released.
+     *
+     * @param network the network to check
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param taskMonitor receives serialization progress, may be null
+     * @param cancelled polled during serialization; returning true stops the writer
+     * @param capture receives the CX2 bytes, may be null to only measure
+     * @return error message string if the threshold is exceeded, null if OK, cancelled, or the size
+     *     could not be measured
+     */
+    String checkExportSize(
+            CyNetwork network,
+            CyNetworkView networkView,
+            TaskMonitor taskMonitor,
+            BooleanSupplier cancelled,
+            Cx2Buffer capture) {
+        double maxFileSizeMb;
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.PROPERTIES)) {
+            Properties props = cyProperties.getProperties();
+            String rawFileSizeMb =
+                    props.getProperty(
+                            PROP_MAX_FILESIZE_MB, String.valueOf(DEFAULT_MAX_FILESIZE_MB));
+            maxFileSizeMb = Double.parseDouble(rawFileSizeMb);
+            normalizeFileSizeProperty(props, rawFileSizeMb);
+        }
         long maxFileSizeBytes = (long) (maxFileSizeMb * 1024.0 * 1024.0);
-        long exportSize = measureCx2ExportSize(networkView);
+        Cx2ExportSize exportSize =
+                getCx2ExportSize(
+                        network,
+                        networkView,
+                        maxFileSizeBytes,
+                        taskMonitor,
+                        cancelled,
+                        capture,
+                        true);
 
-        if (exportSize > maxFileSizeBytes) {
-            double sizeMb = exportSize / (1024.0 * 1024.0);
+        if ((exportSize.isLowMemory() || exportSize.exceeds(maxFileSizeBytes)) && capture != null) {
+            // Cached and estimated rejections return before the capture is written or released
+            capture.release();
+        }
+        if (exportSize.isLowMemory()) {
+            return Cx2MemoryGuard.LOW_MEMORY_MESSAGE;
+        }
+        if (exportSize.exceeds(maxFileSizeBytes)) {
             StringBuilder msg = new StringBuilder();
             msg.append(
                     "The selected network exceeds the threshold limits for web-based rendering.");
-            msg.append(
-                    String.format(
-                            "\n  CX2 export size: %.3f MB (max: %.3f MB)", sizeMb, maxFileSizeMb));
+            msg.append("\n  ").append(describeExportSize(exportSize, maxFileSizeMb));
             msg.append(
                     "\n\nYou can adjust these limits in"
                             + " Edit > Preferences > Properties (opencyweb).");
@@ -223,6 +410,217 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
         return null;
     }
 
+    /**
+     * @param exportSize a known export size
+     * @param maxFileSizeMb the {@code network.max-filesize-mb} limit
+     * @return the size and the limit as listed in validation messages
+     */
+    static String describeExportSize(Cx2ExportSize exportSize, double maxFileSizeMb) {
+        return String.format(
+                "CX2 export size: %s%.3f MB (max: %.3f MB)",
+                sizePrefix(exportSize), exportSize.getBytes() / (1024.0 * 1024.0), maxFileSizeMb);
+    }
+
+    private static String sizePrefix(Cx2ExportSize exportSize) {
+        if (exportSize.isExact()) {
+            return "";
+        }
+        return exportSize.isEstimated() ? "about " : "at least ";
+    }
+
+    /**
+     * Returns the CX2 export size of the given network view, reusing the cached size when the
+     * network has not changed since it was last measured. A cached lower bound is reused only while
+     * it still exceeds the limit. Failed or cancelled measurements are not cached.
+     *
+     * <p>If {@code estimate} is set and {@code network.filesize-estimate} does not disable it, a
+     * calibrated {@link Cx2SizeEstimator} prediction that is confidently below or above the limit
+     * is returned without serializing the network. Exact measurements near the limit calibrate the
+     * estimator.
+     *
+     * <p>When {@code capture} is given, sizes known to be within the limit are not taken from the
+     * cache or estimator, since the network has to be serialized into the buffer anyway. A capture
+     * that is already complete (prefetched) is used as is.
+     *
+     * <p>Measurements of the same network are serialized, so a call made while a prefetch of the
+     * network is running waits for it (polling {@code cancelled}) and reuses its result.
+     *
+     * @param network the network to measure
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param limitBytes size limit in bytes; serialization stops once it is exceeded
+     * @param taskMonitor receives progress as bytes counted against the cached or estimated size
+     *     (at most the limit), may be null
+     * @param cancelled polled during serialization; returning true stops the writer
+     * @param capture receives the CX2 bytes, may be null to only measure
+     * @param estimate true to accept tracked and estimated sizes that settle the check
+     * @return the exact export size, a lower bound above {@code limitBytes}, an estimate, or {@link
+     *     Cx2ExportSize#UNKNOWN} if it could not be measured
+     */
+    Cx2ExportSize getCx2ExportSize(
+            CyNetwork network,
+            CyNetworkView networkView,
+            long limitBytes,
+            TaskMonitor taskMonitor,
+            BooleanSupplier cancelled,
+            Cx2Buffer capture,
+            boolean estimate) {
+        long suid = network.getSUID();
+        ReentrantLock lock =
+                measurementLocks[Math.floorMod(Long.hashCode(suid), MEASUREMENT_LOCKS)];
+        if (!lockMeasurement(lock, cancelled)) {
+            return Cx2ExportSize.UNKNOWN;
+        }
+        try {
+            return lookupOrMeasureCx2ExportSize(
+                    network, networkView, limitBytes, taskMonitor, cancelled, capture, estimate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean lockMeasurement(ReentrantLock lock, BooleanSupplier cancelled) {
+        try {
+            while (!lock.tryLock(100, TimeUnit.MILLISECONDS)) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Cx2ExportSize lookupOrMeasureCx2ExportSize(
+            CyNetwork network,
+            CyNetworkView networkView,
+            long limitBytes,
+            TaskMonitor taskMonitor,
+            BooleanSupplier cancelled,
+            Cx2Buffer capture,
+            boolean estimateAllowed) {
+        long suid = network.getSUID();
+        Cx2Encoding encoding = transport.getEncoding();
+        if (capture != null && capture.isComplete()) {
+            long capturedBytes = capture.getContentLength();
+            if (capturedBytes > limitBytes) {
+                capture.release();
+            }
+            return Cx2ExportSize.exact(capturedBytes);
+        }
+
+        // Cached, tracked and estimated sizes are of the JSON export
+        boolean json = encoding == Cx2Encoding.JSON;
+        Cx2ExportSize cachedSize = json ? sizeCache.get(suid) : null;
+        if (cachedSize != null
+                && (cachedSize.exceeds(limitBytes) || (cachedSize.isExact() && capture == null))) {
+            LOGGER.debug("Using cached CX2 export size for network SUID: " + suid);
+            return cachedSize;
+        }
+
+        Cx2SizeEstimator.Estimate estimate = null;
+        if (json && estimateAllowed && isFileSizeEstimateEnabled()) {
+            Cx2SizeEstimator.Estimate trackedSize = sizeTracker.get(suid);
+            if (trackedSize != null && isConclusive(trackedSize, limitBytes, capture)) {
+                LOGGER.debug(
+                        "Using tracked CX2 export size for network SUID: "
+                                + suid
+                                + ", "
+                                + trackedSize.getBytes()
+                                + " bytes");
+                return Cx2ExportSize.estimated(trackedSize.getBytes());
+            }
+            estimate = sizeEstimator.estimate(network, networkView);
+            if (isConclusive(estimate, limitBytes, capture)) {
+                LOGGER.debug(
+                        "Skipping CX2 serialization for network SUID: "
+                                + suid
+                                + ", estimated size "
+                                + estimate.getBytes()
+                                + " bytes");
+                return Cx2ExportSize.estimated(estimate.getBytes());
+            }
+        }
+
+        if (!exportPlanner.hasWriterHeadroom(network)) {
+            if (capture != null) {
+                capture.release();
+            }
+            return Cx2ExportSize.LOW_MEMORY;
+        }
+
+        // Take the stamp first so edits made while serializing leave the entry stale
+        long stamp = sizeCache.currentStamp(suid);
+        CountingOutputStream countingStream = new CountingOutputStream(capture, limitBytes);
+        Cx2MemoryGuard.Watch memoryWatch = exportPlanner.getMemoryGuard().watch();
+        countingStream.setCancelCheck(() -> cancelled.getAsBoolean() || memoryWatch.isTripped());
+        if (capture != null) {
+            countingStream.enableContentHash();
+        }
+        if (taskMonitor != null) {
+            // The writer stops at the limit, so a larger expected size would never reach the end
+            final double expectedBytes =
+                    Math.max(
+                            1,
+                            Math.min(
+                                    limitBytes,
+                                    estimate != null && cachedSize == null
+                                            ? estimate.getBytes()
+                                            : exportPlanner.getExpectedExportBytes(
+                                                    network, networkView)));
+            countingStream.setProgressListener(
+                    bytes -> taskMonitor.setProgress(Math.min(1.0, bytes / expectedBytes)),
+                    PROGRESS_INTERVAL_BYTES);
+        }
+        long measuredBytes = measureCx2ExportSize(network, networkView, countingStream, encoding);
+        if (measuredBytes < 0) {
+            if (capture != null) {
+                capture.release();
+            }
+            return memoryWatch.isTripped() ? Cx2ExportSize.LOW_MEMORY : Cx2ExportSize.UNKNOWN;
+        }
+        Cx2ExportSize exportSize =
+                measuredBytes > limitBytes
+                        ? Cx2ExportSize.atLeast(measuredBytes)
+                        : Cx2ExportSize.exact(measuredBytes);
+        if (capture != null) {
+            if (exportSize.isExact()) {
+                capture.markComplete(countingStream.getContentHash(), stamp, encoding);
+            } else {
+                capture.release();
+            }
+        }
+        if (estimate != null && exportSize.isExact()) {
+            sizeEstimator.calibrate(estimate, measuredBytes);
+        }
+        if (!json) {
+            return exportSize;
+        }
+        if (exportSize.isExact() && sizeCache.currentStamp(suid) == stamp) {
+            sizeTracker.rebase(network, networkView, measuredBytes);
+        } else {
+            sizeTracker.invalidate(suid);
+        }
+        sizeCache.put(suid, stamp, exportSize);
+        return exportSize;
+    }
+
+    /**
+     * An estimate settles the size check without serializing when it is confidently above the
+     * limit, or confidently within it and no bytes need to be captured.
+     */
+    private static boolean isConclusive(
+            Cx2SizeEstimator.Estimate estimate, long limitBytes, Cx2Buffer capture) {
+        return (estimate.isConfidentlyWithin(limitBytes) && capture == null)
+                || estimate.isConfidentlyAbove(limitBytes);
+    }
+
+    private boolean isFileSizeEstimateEnabled() {
+        return Boolean.parseBoolean(
+                cyProperties.getProperties().getProperty(PROP_FILESIZE_ESTIMATE, "true"));
+    }
+
     /**
      * Measures the CX2 export size of the given network view by serializing through the registered
      * CX writer. Uses {@link CountingOutputStream} to count bytes without storing data on the heap.
@@ -232,6 +630,58 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
      *     fails (fail-open: validation passes)
      */
     long measureCx2ExportSize(CyNetworkView networkView) {
+        return measureCx2ExportSize(networkView, Long.MAX_VALUE);
+    }
+
+    /**
+     * Measures the CX2 export size of the given network view, stopping the writer as soon as more
+     * than {@code limitBytes} have been written. Rejecting an oversized network therefore costs
+     * about as much as serializing {@code limitBytes}, regardless of the full network size.
+     *
+     * @param networkView the network view to measure
+     * @param limitBytes byte budget for the serialization
+     * @return the export size in bytes if it fits in the budget, a lower bound greater than {@code
+     *     limitBytes} if the budget was exceeded, or -1 if the CX writer is unavailable or
+     *     serialization fails (fail-open: validation passes)
+     */
+    long measureCx2ExportSize(CyNetworkView networkView, long limitBytes) {
+        return measureCx2ExportSize(
+                networkView.getModel(), networkView, new CountingOutputStream(limitBytes));
+    }
+
+    /**
+     * Measures the CX2 export size of the given network by serializing into {@code countingStream},
+     * which carries the byte limit, progress listener and cancel check. The network is written
+     * through the view writer if a view is given, and through the network writer otherwise.
+     *
+     * @param network the network to measure
+     * @param networkView the view to export, or null to export the network without a view
+     * @param countingStream stream that receives the CX2 output
+     * @return the byte count, which is a lower bound if the stream limit was exceeded, or -1 if the
+     *     CX writer is unavailable, serialization fails or was cancelled
+     */
+    long measureCx2ExportSize(
+            CyNetwork network, CyNetworkView networkView, CountingOutputStream countingStream) {
+        return measureCx2ExportSize(network, networkView, countingStream, Cx2Encoding.JSON);
+    }
+
+    /**
+     * Measures the size of the export in the given encoding. With {@link Cx2Encoding#CBOR} the
+     * writer output is transcoded before it reaches {@code countingStream}, so the count, the limit
+     * and any capture apply to the CBOR bytes.
+     *
+     * @param network the network to measure
+     * @param networkView the view to export, or null to export the network without a view
+     * @param countingStream stream that receives the encoded export
+     * @param encoding encoding of the export
+     * @return the byte count, which is a lower bound if the stream limit was exceeded, or -1 if the
+     *     CX writer is unavailable, serialization fails or was cancelled
+     */
+    long measureCx2ExportSize(
+            CyNetwork network,
+            CyNetworkView networkView,
+            CountingOutputStream countingStream,
+            Cx2Encoding encoding) {
         try {
             CyFileFilter cxFilter = findCxFileFilter();
             if (cxFilter == null) {
@@ -239,14 +689,115 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
                 return -1;
             }
 
-            CountingOutputStream countingStream = new CountingOutputStream();
-            CyWriter writer = writerManager.getWriter(networkView, cxFilter, countingStream);
-            writer.run(null);
+            try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.SERIALIZATION)) {
+                StreamingCx2Payload.writeCx2(
+                        writerManager,
+                        cxFilter,
+                        network,
+                        networkView,
+                        countingStream,
+                        encoding,
+                        false);
+            }
             return countingStream.getByteCount();
         } catch (Exception e) {
+            // The writer may wrap or swallow the abort, so check the stream rather than the cause
+            if (countingStream.isLimitExceeded()) {
+                LOGGER.debug(
+                        "Stopped CX2 serialization after "
+                                + countingStream.getByteCount()
+                                + " bytes, limit exceeded");
+                return countingStream.getByteCount();
+            }
+            if (countingStream.isCancelled()) {
+                LOGGER.info("CX2 export size measurement cancelled");
+                return -1;
+            }
             LOGGER.warn("Failed to measure CX2 export size: " + e.getMessage(), e);
             return -1;
+        } catch (OutOfMemoryError e) {
+            // The writer's garbage is unreachable once it has unwound; running watches trip
+            exportPlanner.getMemoryGuard().reportOutOfMemory();
+            LOGGER.error("Ran out of memory measuring CX2 export size", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Adds the largest contributors to the CX2 export size to the message of a failed size check
+     * when {@code network.filesize-profile} is enabled. The size check stops serializing at the
+     * limit, so the network is serialized again in full into a {@link Cx2SizeProfiler}.
+     *
+     * @param error message of the failed size check
+     * @param network the rejected network
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param taskMonitor receives profiling progress, may be null
+     * @param cancelled polled during serialization; returning true stops the writer
+     * @return the message with the profile before its closing hint, or {@code error} unchanged if
+     *     profiling is disabled, failed or was cancelled
+     */
+    String addSizeProfile(
+            String error,
+            CyNetwork network,
+            CyNetworkView networkView,
+            TaskMonitor taskMonitor,
+            BooleanSupplier cancelled) {
+        if (!Boolean.parseBoolean(
+                        cyProperties.getProperties().getProperty(PROP_FILESIZE_PROFILE, "false"))
+                || Cx2MemoryGuard.LOW_MEMORY_MESSAGE.equals(error)
+                || !exportPlanner.hasWriterHeadroom(network)) {
+            return error;
         }
+        if (taskMonitor != null) {
+            taskMonitor.setStatusMessage("Profiling CX2 export size");
+            taskMonitor.setProgress(0.0);
+        }
+        Cx2SizeProfile profile = profileCx2Export(network, networkView, taskMonitor, cancelled);
+        if (profile == null) {
+            return error;
+        }
+        LOGGER.info(
+                "CX2 export of network SUID "
+                        + network.getSUID()
+                        + ": "
+                        + profile.toSummary(Integer.MAX_VALUE));
+        String summary = "\n\n" + profile.toSummary(PROFILE_DIALOG_COLUMNS);
+        int hint = error.lastIndexOf("\n\n");
+        return hint < 0
+                ? error + summary
+                : error.substring(0, hint) + summary + error.substring(hint);
+    }
+
+    /**
+     * Serializes the network in full and attributes the bytes of the CX2 export to aspects and
+     * table columns as they are written. No limit applies and nothing is cached.
+     *
+     * @param network the network to profile
+     * @param networkView the view to export, or null to export the network without a view
+     * @param taskMonitor receives progress against the cached or estimated size, may be null
+     * @param cancelled polled during serialization; returning true stops the writer
+     * @return the profile, or null if the CX writer is unavailable, serialization failed or was
+     *     cancelled
+     */
+    Cx2SizeProfile profileCx2Export(
+            CyNetwork network,
+            CyNetworkView networkView,
+            TaskMonitor taskMonitor,
+            BooleanSupplier cancelled) {
+        Cx2SizeProfiler profiler = new Cx2SizeProfiler();
+        CountingOutputStream countingStream = new CountingOutputStream(profiler, Long.MAX_VALUE);
+        Cx2MemoryGuard.Watch memoryWatch = exportPlanner.getMemoryGuard().watch();
+        countingStream.setCancelCheck(() -> cancelled.getAsBoolean() || memoryWatch.isTripped());
+        if (taskMonitor != null) {
+            final double expectedBytes = exportPlanner.getExpectedExportBytes(network, networkView);
+            countingStream.setProgressListener(
+                    bytes -> taskMonitor.setProgress(Math.min(1.0, bytes / expectedBytes)),
+                    PROGRESS_INTERVAL_BYTES);
+        }
+        if (measureCx2ExportSize(network, networkView, countingStream) < 0) {
+            return null;
+        }
+        return profiler.getProfile();
     }
 
     /**
@@ -267,33 +818,373 @@ public class OpenInCytoscapeWebTaskFactoryImpl extends AbstractTaskFactory
     }
 
     private CyFileFilter findCxFileFilter() {
-        List<CyFileFilter> filters = writerManager.getAvailableWriterFilters();
-        for (CyFileFilter filter : filters) {
-            if (filter.getExtensions().contains("cx")) {
-                return filter;
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.FIND_WRITER)) {
+            CyFileFilter cached = cxFileFilter;
+            if (cached != null) {
+                return cached;
             }
+            List<CyFileFilter> filters = writerManager.getAvailableWriterFilters();
+            for (CyFileFilter filter : filters) {
+                if (filter.getExtensions().contains("cx")) {
+                    cxFileFilter = filter;
+                    return filter;
+                }
+            }
+            return null;
         }
-        return null;
     }
 
-    String buildCytoscapeWebURI(Long networkSuid) {
-        Properties coreProps = coreProperties.getProperties();
-        String cyrestPort = coreProps.getProperty(PROP_CYREST_PORT, DEFAULT_CYREST_PORT);
-        Properties props = cyProperties.getProperties();
-        String baseUrl =
-                props.getProperty(PROP_CYTOSCAPE_WEB_BASE_URL, DEFAULT_CYTOSCAPE_WEB_BASE_URL);
+    /**
+     * Service listener callback for registered writer factories: the CX2 writer may have been
+     * installed or replaced, so the filter is resolved again on next use.
+     *
+     * @param writerFactory the registered writer factory
+     * @param properties its service properties
+     */
+    public void addWriterFactory(CyNetworkViewWriterFactory writerFactory, Map<?, ?> properties) {
+        cxFileFilter = null;
+    }
+
+    /**
+     * Service listener callback for unregistered writer factories: the CX2 writer may be gone, so
+     * the filter is resolved again on next use.
+     *
+     * @param writerFactory the unregistered writer factory
+     * @param properties its service properties
+     */
+    public void removeWriterFactory(
+            CyNetworkViewWriterFactory writerFactory, Map<?, ?> properties) {
+        cxFileFilter = null;
+    }
+
+    /**
+     * Serializes a network through the same writer and streams as the size check of an open in the
+     * configured transport, without a limit, metrics or caching, so that the code of the export
+     * path is loaded and compiled before the first open.
+     *
+     * @param network the network to export without a view
+     * @return bytes written, or -1 if the CX writer is unavailable or failed
+     */
+    long warmUpExport(CyNetwork network) {
+        CyFileFilter cxFilter = findCxFileFilter();
+        if (cxFilter == null) {
+            return -1;
+        }
+        CountingOutputStream countingStream = new CountingOutputStream(Long.MAX_VALUE);
+        countingStream.enableContentHash();
+        try {
+            StreamingCx2Payload.writeCx2(
+                    writerManager,
+                    cxFilter,
+                    network,
+                    null,
+                    countingStream,
+                    transport.getEncoding(),
+                    false);
+            return countingStream.getByteCount();
+        } catch (Exception e) {
+            LOGGER.debug("CX2 warm-up export failed: " + e.getMessage(), e);
+            return -1;
+        }
+    }
 
-        return CYTOSCAPE_WEB_URL_TEMPLATE
-                .replace("${cytoscape_web_base_url}", baseUrl)
-                .replace("${cyrest_port}", cyrestPort)
-                .replace("${network_suid}", networkSuid.toString());
+    /**
+     * Creates the buffer that captures the CX2 export during validation when {@code transport.mode}
+     * is {@code buffered}. A prefetched export, or the export the network produced when it was last
+     * opened if it has not changed since, is returned complete so that it is not serialized again.
+     * Otherwise a new buffer keeps the bytes in direct memory up to {@code
+     * transport.offheap-max-mb} across all captures, and on the heap (sized from the cached or
+     * estimated export size) beyond that.
+     *
+     * @param network the network that will be validated
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @return capture buffer, or null if the network is imported through CyREST
+     */
+    Cx2Buffer createCaptureBuffer(CyNetwork network, CyNetworkView networkView) {
+        return createCaptureBuffer(network, networkView, true);
     }
 
-    /** A no-op task returned when validation fails, to satisfy the TaskIterator contract. */
-    private static class NoOpTask extends AbstractTask {
-        @Override
-        public void run(TaskMonitor taskMonitor) {
-            // Intentionally empty — validation error was already shown via dialog
+    /**
+     * Creates the capture buffer, or only hands out a complete one if the {@link Cx2MemoryGuard}
+     * does not leave room to capture the export again.
+     *
+     * @param network the network that will be validated
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param allowNew false to return only an export that is already complete
+     * @return capture buffer, or null if the network is imported through CyREST or no complete
+     *     export exists and {@code allowNew} is false
+     */
+    Cx2Buffer createCaptureBuffer(CyNetwork network, CyNetworkView networkView, boolean allowNew) {
+        if (!transport.isBuffered()) {
+            return null;
+        }
+        long suid = network.getSUID();
+        PrefetchedCapture prefetched = prefetchedCapture.getAndSet(null);
+        if (prefetched != null) {
+            if (prefetched.isCurrent(suid)) {
+                LOGGER.debug("Using prefetched CX2 export for network SUID: " + suid);
+                return prefetched.capture;
+            }
+            if (prefetched.capture.getNetworkSuid() == suid
+                    || !prefetchedCapture.compareAndSet(null, prefetched)) {
+                prefetched.capture.release();
+            }
+        }
+        Cx2Buffer indexed = findIndexedContent(suid);
+        if (indexed != null) {
+            LOGGER.debug("Reusing indexed CX2 export for network SUID: " + suid);
+            return indexed;
+        }
+        return allowNew ? newCaptureBuffer(network, networkView) : null;
+    }
+
+    private Cx2Buffer newCaptureBuffer(CyNetwork network, CyNetworkView networkView) {
+        long suid = network.getSUID();
+        long expectedBytes = exportPlanner.getExpectedExportBytes(network, networkView);
+        int capacity =
+                (int) Math.max(MIN_CAPTURE_CAPACITY, Math.min(MAX_CAPTURE_CAPACITY, expectedBytes));
+        long offHeapBytes = transport.getOffHeapMaxBytes();
+        bufferPool.setMaxBytes(offHeapBytes);
+        return new Cx2Buffer(suid, capacity, offHeapBytes > 0 ? bufferPool : null);
+    }
+
+    /**
+     * Validates a network in the background so that opening it later needs no serialization: the
+     * measured size goes to the size cache, and with the buffered transport the captured bytes are
+     * kept until the network changes. Networks failing the count checks are skipped.
+     *
+     * @param network the network to prefetch, exported through its view if it has one
+     * @param cancelled polled during serialization; returning true abandons the prefetch
+     */
+    void prefetch(CyNetwork network, BooleanSupplier cancelled) {
+        prefetch(network, getNetworkView(network), cancelled);
+    }
+
+    void prefetch(CyNetworkView networkView, BooleanSupplier cancelled) {
+        prefetch(networkView.getModel(), networkView, cancelled);
+    }
+
+    private void prefetch(CyNetwork network, CyNetworkView networkView, BooleanSupplier cancelled) {
+        if (checkElementCounts(network) != null) {
+            return;
+        }
+        Cx2MemoryGuard.Strategy strategy = planExport(network, networkView).getStrategy();
+        if (strategy == Cx2MemoryGuard.Strategy.REFUSE) {
+            return;
+        }
+        long suid = network.getSUID();
+        Cx2Buffer capture = null;
+        if (transport.isBuffered() && strategy == Cx2MemoryGuard.Strategy.BUFFER) {
+            PrefetchedCapture current = prefetchedCapture.get();
+            if ((current != null && current.isCurrent(suid)) || findIndexedContent(suid) != null) {
+                return;
+            }
+            capture = newCaptureBuffer(network, networkView);
+        } else {
+            // Only JSON sizes are cached, so measuring a binary stream in advance saves nothing
+            Cx2ExportSize cachedSize = sizeCache.get(suid);
+            if ((cachedSize != null && cachedSize.isExact())
+                    || transport.getEncoding() != Cx2Encoding.JSON) {
+                return;
+            }
+        }
+
+        long stamp = sizeCache.currentStamp(suid);
+        checkExportSize(network, networkView, null, cancelled, capture);
+        if (capture != null && capture.isComplete()) {
+            PrefetchedCapture previous =
+                    prefetchedCapture.getAndSet(new PrefetchedCapture(capture, stamp));
+            if (previous != null) {
+                previous.capture.release();
+            }
+            LOGGER.debug("Prefetched CX2 export for network SUID: " + suid);
+        }
+    }
+
+    /** Bytes captured by {@link #prefetch} and the network stamp taken before serializing them. */
+    private class PrefetchedCapture {
+        private final Cx2Buffer capture;
+        private final long stamp;
+
+        PrefetchedCapture(Cx2Buffer capture, long stamp) {
+            this.capture = capture;
+            this.stamp = stamp;
+        }
+
+        boolean isCurrent(long networkSuid) {
+            return capture.getNetworkSuid() == networkSuid
+                    && stamp == sizeCache.currentStamp(networkSuid)
+                    && capture.getEncoding() == transport.getEncoding();
+        }
+    }
+
+    private Cx2Buffer findIndexedContent(long suid) {
+        return transport.findIndexedContent(suid, sizeCache.currentStamp(suid));
+    }
+
+    /**
+     * Tells the Cytoscape Web tab of a live session that the network was opened again (see {@link
+     * Cx2Transport#showInLiveSession}).
+     *
+     * @param network the network being opened
+     * @return true if a connected tab was told, false if the network has to be opened as usual
+     */
+    boolean showInLiveSession(CyNetwork network) {
+        return transport.showInLiveSession(network);
+    }
+
+    /**
+     * Measures the CX2 export size of a network for a report, without showing dialogs. Unlike the
+     * size check of an open, sizes are never estimated: the result is exact, a lower bound if the
+     * network exceeds {@code network.max-filesize-mb}, or unknown if the CX writer is missing.
+     * Cached measurements are reused and new ones are cached.
+     *
+     * @param network the network to measure
+     * @param networkView the view that is exported, or null to export the network without a view
+     * @param cancelled polled during serialization; returning true stops the writer
+     * @return the measured export size
+     */
+    Cx2ExportSize measureExportSize(
+            CyNetwork network, CyNetworkView networkView, BooleanSupplier cancelled) {
+        return getCx2ExportSize(
+                network, networkView, getMaxFileSizeBytes(), null, cancelled, null, false);
+    }
+
+    /**
+     * @return the {@code network.max-filesize-mb} limit in bytes
+     */
+    long getMaxFileSizeBytes() {
+        String rawFileSizeMb =
+                cyProperties
+                        .getProperties()
+                        .getProperty(PROP_MAX_FILESIZE_MB, String.valueOf(DEFAULT_MAX_FILESIZE_MB));
+        return (long) (Double.parseDouble(rawFileSizeMb) * 1024.0 * 1024.0);
+    }
+
+    /**
+     * Creates an export that is serialized straight into the HTTP response when {@code
+     * transport.mode} is {@code streaming}.
+     *
+     * @param network the validated network
+     * @param networkView the view to export, or null to export the network without a view
+     * @return streaming export, or null if the mode is not streaming or the CX writer is missing
+     */
+    StreamingCx2Payload createStreamingPayload(CyNetwork network, CyNetworkView networkView) {
+        if (!transport.isStreaming()) {
+            return null;
+        }
+        return newStreamingPayload(network, networkView);
+    }
+
+    /**
+     * @return streaming export stopped by the {@link Cx2MemoryGuard} and flushed after each aspect
+     *     with {@code transport.progressive}, or null if the CX writer is missing
+     */
+    private StreamingCx2Payload newStreamingPayload(CyNetwork network, CyNetworkView networkView) {
+        CyFileFilter cxFilter = findCxFileFilter();
+        if (cxFilter == null) {
+            return null;
+        }
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(
+                        writerManager,
+                        cxFilter,
+                        network,
+                        networkView,
+                        getMaxFileSizeBytes(),
+                        transport.getEncoding());
+        payload.setMemoryGuard(exportPlanner.getMemoryGuard());
+        if (transport.isProgressiveDelivery()) {
+            payload.enableProgressiveDelivery();
+        }
+        return payload;
+    }
+
+    /**
+     * Builds the Cytoscape Web URL for a network and validates it. If {@code capture} holds a
+     * complete export, or {@code transport.mode} is {@code streaming}, the export is registered by
+     * the {@link Cx2Transport} and the URL imports it from {@link Cx2PayloadResource}; otherwise
+     * the URL imports the network from CyREST. An error dialog is shown if the configured base URL
+     * produces an invalid URL.
+     *
+     * @param network the validated network
+     * @param networkView the view to export, or null to export the network without a view
+     * @param capture export captured during validation, may be null
+     * @return the validated URI, or null if it is invalid
+     */
+    URI createCytoscapeWebURI(CyNetwork network, CyNetworkView networkView, Cx2Buffer capture) {
+        return createCytoscapeWebURI(network, networkView, capture, Cx2MemoryGuard.Strategy.BUFFER);
+    }
+
+    /**
+     * Builds the Cytoscape Web URL for a network exported with the strategy chosen by {@link
+     * #planExport}. With {@link Cx2MemoryGuard.Strategy#STREAM}, an export that was not captured is
+     * streamed to Cytoscape Web whatever {@code transport.mode} says, so that neither the app nor
+     * CyREST holds it in memory.
+     *
+     * @param network the validated network
+     * @param networkView the view to export, or null to export the network without a view
+     * @param capture export captured during validation, may be null
+     * @param strategy how the network may be exported
+     * @return the validated URI, or null if it is invalid
+     */
+    URI createCytoscapeWebURI(
+            CyNetwork network,
+            CyNetworkView networkView,
+            Cx2Buffer capture,
+            Cx2MemoryGuard.Strategy strategy) {
+        Cx2Payload payload;
+        if (capture != null && capture.isComplete()) {
+            payload = capture;
+        } else if (strategy == Cx2MemoryGuard.Strategy.STREAM) {
+            payload = newStreamingPayload(network, networkView);
+        } else {
+            payload = createStreamingPayload(network, networkView);
+        }
+        try {
+            return transport.createImportURI(
+                    network, payload, () -> newStreamingPayload(network, networkView));
+        } catch (URISyntaxException e) {
+            LOGGER.error("Invalid Cytoscape Web URL: " + e.getInput(), e);
+            showErrorDialog(
+                    "Invalid URL: "
+                            + e.getInput()
+                            + "\n\nPlease check your settings in"
+                            + " Edit > Preferences > Properties (opencyweb).");
+            return null;
+        }
+    }
+
+    /**
+     * Creates the task that launches the browser once validation has passed.
+     *
+     * @param network the validated network
+     * @param uri the validated Cytoscape Web URI
+     * @param trace metrics of the open, finished once the browser has been launched
+     * @return task that opens the URI in the default browser
+     */
+    DoTask createOpenTask(CyNetwork network, URI uri, OpenMetrics.Trace trace) {
+        return new DoTask(Desktop.getDesktop(), network, uri, trace);
+    }
+
+    /**
+     * Shows a validation error dialog on the Swing event thread, waiting until it is dismissed so
+     * that the calling task does not finish underneath it.
+     *
+     * @param message the error message
+     */
+    void showErrorDialog(String message) {
+        Runnable show = () -> dialogUtil.showMessageDialog(swingApplication.getJFrame(), message);
+        if (SwingUtilities.isEventDispatchThread()) {
+            show.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(show);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            LOGGER.error("Unable to show dialog: " + message, e.getCause());
         }
     }
 }
@@ -0,0 +1,435 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records wall time, thread CPU time and thread-allocated bytes for each {@link Phase} of opening a
+ * network in Cytoscape Web, aggregated into log2 histograms per phase.
+ *
+ * <p>An open is followed by a {@link Trace}, which the validation tasks attach to their thread
+ * while they run so that phases measured deep inside the task factory are added to it. When the
+ * trace finishes, its phases are logged as one line, and every {@link #SUMMARY_EVERY_OPENS} opens
+ * the aggregated histograms are logged as well. Phases measured without an attached trace (e.g. by
+ * the background prefetch) only count towards the histograms.
+ *
+ * <p>CPU time and allocated bytes are read from the JVM's {@link ThreadMXBean} and are reported as
+ * -1 when the JVM does not support them.
+ */
+public class OpenMetrics {
+
+    static final int SUMMARY_EVERY_OPENS = 25;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OpenMetrics.class);
+
+    /** Measured phases of an open, in the order they run. */
+    public enum Phase {
+        PROPERTIES("properties"),
+        COUNT_CHECK("count-check"),
+        FIND_WRITER("find-writer"),
+        SERIALIZATION("serialization"),
+        URL_BUILD("url-build"),
+        BROWSER_LAUNCH("browser-launch");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return name of the phase in logs and command output
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final ThreadMXBean threadBean;
+    private final boolean cpuTimeSupported;
+    private final boolean allocationSupported;
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private final ThreadLocal<Trace> attachedTrace = new ThreadLocal<>();
+    private long opens;
+
+    /** Constructor for OpenMetrics */
+    public OpenMetrics() {
+        this.threadBean = ManagementFactory.getThreadMXBean();
+        this.cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+        this.allocationSupported = isAllocationSupported(threadBean);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+    }
+
+    private static boolean isAllocationSupported(ThreadMXBean threadBean) {
+        try {
+            return threadBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threadBean)
+                            .isThreadAllocatedMemorySupported();
+        } catch (LinkageError e) {
+            // com.sun.management is not visible to the bundle
+            return false;
+        }
+    }
+
+    /**
+     * Starts following a new open.
+     *
+     * @param networkSuid SUID of the network being opened
+     * @return trace to attach while the open's tasks run
+     */
+    public Trace startTrace(long networkSuid) {
+        return new Trace(networkSuid);
+    }
+
+    /**
+     * Starts measuring a phase on the current thread. The sample is added to the histograms, and to
+     * the trace attached to the thread if there is one, when it is closed.
+     *
+     * @param phase the phase being measured
+     * @return sample to close at the end of the phase
+     */
+    public Sample start(Phase phase) {
+        return new Sample(phase, attachedTrace.get());
+    }
+
+    /** Clears all histograms and the open counter. */
+    public synchronized void reset() {
+        opens = 0;
+        for (PhaseStats stats : phases.values()) {
+            stats.reset();
+        }
+    }
+
+    public synchronized long getOpenCount() {
+        return opens;
+    }
+
+    synchronized long getSampleCount(Phase phase) {
+        return phases.get(phase).wallNanos.count;
+    }
+
+    /**
+     * @return aggregated histograms as a JSON object
+     */
+    public synchronized String toJSON() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"opens\":").append(opens).append(",\"phases\":{");
+        boolean first = true;
+        for (Map.Entry<Phase, PhaseStats> entry : phases.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            PhaseStats stats = entry.getValue();
+            json.append('"').append(entry.getKey().getLabel()).append("\":{");
+            json.append("\"count\":").append(stats.wallNanos.count);
+            json.append(",\"wallMillis\":");
+            stats.wallNanos.appendJSON(json, 1e-6);
+            json.append(",\"cpuMillis\":");
+            stats.cpuNanos.appendJSON(json, 1e-6);
+            json.append(",\"allocatedBytes\":");
+            stats.allocatedBytes.appendJSON(json, 1);
+            json.append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * @return aggregated histograms as human readable text, one line per measured phase
+     */
+    public synchronized String toSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Open in Cytoscape Web metrics after ").append(opens).append(" opens");
+        for (Map.Entry<Phase, PhaseStats> entry : phases.entrySet()) {
+            PhaseStats stats = entry.getValue();
+            if (stats.wallNanos.count == 0) {
+                continue;
+            }
+            summary.append(
+                    String.format(
+                            Locale.ROOT,
+                            "%n  %-15s n=%d wall p50=%s p90=%s p99=%s max=%s"
+                                    + " cpu mean=%s alloc mean=%s",
+                            entry.getKey().getLabel(),
+                            stats.wallNanos.count,
+                            millis(stats.wallNanos.percentile(0.5)),
+                            millis(stats.wallNanos.percentile(0.9)),
+                            millis(stats.wallNanos.percentile(0.99)),
+                            millis(stats.wallNanos.max),
+                            millis(stats.cpuNanos.mean()),
+                            bytes(stats.allocatedBytes.mean())));
+        }
+        return summary.toString();
+    }
+
+    private synchronized void record(Phase phase, long wallNanos, long cpuNanos, long allocated) {
+        PhaseStats stats = phases.get(phase);
+        stats.wallNanos.add(wallNanos);
+        stats.cpuNanos.add(cpuNanos);
+        stats.allocatedBytes.add(allocated);
+    }
+
+    private void finished(Trace trace) {
+        boolean logSummary;
+        synchronized (this) {
+            opens++;
+            logSummary = opens % SUMMARY_EVERY_OPENS == 0;
+        }
+        LOGGER.info(trace.toString());
+        if (logSummary) {
+            LOGGER.info(toSummary());
+        }
+    }
+
+    private long cpuTime() {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private long allocatedBytes() {
+        if (!allocationSupported) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threadBean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String millis(double nanos) {
+        return nanos < 0 ? "n/a" : String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+
+    private static String bytes(double bytes) {
+        return bytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1fMB", bytes / (1024 * 1024));
+    }
+
+    /** Resource whose {@link #close()} does not throw, for use in try-with-resources. */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** A phase being measured. Closing it records the elapsed wall and CPU time and allocation. */
+    public final class Sample implements Scope {
+        private final Phase phase;
+        private final Trace trace;
+        private final long startWall;
+        private final long startCpu;
+        private final long startAllocated;
+        private boolean closed;
+
+        private Sample(Phase phase, Trace trace) {
+            this.phase = phase;
+            this.trace = trace;
+            this.startAllocated = allocatedBytes();
+            this.startCpu = cpuTime();
+            this.startWall = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long wall = System.nanoTime() - startWall;
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long cpu = startCpu < 0 ? -1 : cpuTime() - startCpu;
+            long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated;
+            record(phase, wall, cpu, allocated);
+            if (trace != null) {
+                trace.add(phase, wall, cpu, allocated);
+            }
+        }
+    }
+
+    /** The phases of one open, logged as a single line when the open finishes. */
+    public final class Trace {
+        private final long networkSuid;
+        private final long startWall = System.nanoTime();
+        private final Map<Phase, long[]> totals = new EnumMap<>(Phase.class);
+        private String outcome;
+
+        private Trace(long networkSuid) {
+            this.networkSuid = networkSuid;
+        }
+
+        /**
+         * Attaches the trace to the current thread until the returned handle is closed, so that
+         * phases started on this thread are added to it.
+         *
+         * @return handle that restores the previously attached trace
+         */
+        public Scope attach() {
+            Trace previous = attachedTrace.get();
+            attachedTrace.set(this);
+            return () -> {
+                if (previous == null) {
+                    attachedTrace.remove();
+                } else {
+                    attachedTrace.set(previous);
+                }
+            };
+        }
+
+        /**
+         * Starts measuring a phase of this open on the current thread, whether or not the trace is
+         * attached to it.
+         *
+         * @param phase the phase being measured
+         * @return sample to close at the end of the phase
+         */
+        public Sample start(Phase phase) {
+            return new Sample(phase, this);
+        }
+
+        /**
+         * Ends the trace and logs it. Only the first call has an effect.
+         *
+         * @param outcome how the open ended, e.g. "opened" or "rejected"
+         */
+        public void finish(String outcome) {
+            synchronized (this) {
+                if (this.outcome != null) {
+                    return;
+                }
+                this.outcome = outcome;
+            }
+            finished(this);
+        }
+
+        private synchronized void add(Phase phase, long wall, long cpu, long allocated) {
+            long[] total = totals.get(phase);
+            if (total == null) {
+                totals.put(phase, new long[] {wall, cpu, allocated});
+            } else {
+                total[0] += wall;
+                total[1] = total[1] < 0 || cpu < 0 ? -1 : total[1] + cpu;
+                total[2] = total[2] < 0 || allocated < 0 ? -1 : total[2] + allocated;
+            }
+        }
+
+        synchronized long getWallNanos(Phase phase) {
+            long[] total = totals.get(phase);
+            return total == null ? -1 : total[0];
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder line = new StringBuilder();
+            line.append("Open in Cytoscape Web of network SUID ")
+                    .append(networkSuid)
+                    .append(' ')
+                    .append(outcome == null ? "running" : outcome)
+                    .append(" after ")
+                    .append(millis(System.nanoTime() - startWall));
+            for (Map.Entry<Phase, long[]> entry : totals.entrySet()) {
+                long[] total = entry.getValue();
+                line.append(
+                        String.format(
+                                Locale.ROOT,
+                                "; %s %s (cpu %s, alloc %s)",
+                                entry.getKey().getLabel(),
+                                millis(total[0]),
+                                millis(total[1]),
+                                bytes(total[2])));
+            }
+            return line.toString();
+        }
+    }
+
+    private static class PhaseStats {
+        private final Histogram wallNanos = new Histogram();
+        private final Histogram cpuNanos = new Histogram();
+        private final Histogram allocatedBytes = new Histogram();
+
+        void reset() {
+            wallNanos.reset();
+            cpuNanos.reset();
+            allocatedBytes.reset();
+        }
+    }
+
+    /**
+     * Histogram with power of two buckets: bucket {@code i} holds values below {@code 2^i}.
+     * Percentiles are reported as the upper bound of their bucket, capped at the maximum. Negative
+     * (unsupported) values are not recorded.
+     */
+    static class Histogram {
+        private final long[] buckets = new long[64];
+        private long count;
+        private long sum;
+        private long max = -1;
+
+        void add(long value) {
+            if (value < 0) {
+                return;
+            }
+            buckets[64 - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            max = -1;
+        }
+
+        double mean() {
+            return count == 0 ? -1 : (double) sum / count;
+        }
+
+        long percentile(double fraction) {
+            if (count == 0) {
+                return -1;
+            }
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        void appendJSON(StringBuilder json, double scale) {
+            if (count == 0) {
+                json.append("null");
+                return;
+            }
+            json.append(
+                    String.format(
+                            Locale.ROOT,
+                            "{\"mean\":%.3f,\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f,"
+                                    + "\"buckets\":[",
+                            mean() * scale,
+                            percentile(0.5) * scale,
+                            percentile(0.9) * scale,
+                            percentile(0.99) * scale,
+                            max * scale));
+            // Trailing empty buckets are left out
+            int last = buckets.length - 1;
+            while (last > 0 && buckets[last] == 0) {
+                last--;
+            }
+            for (int i = 0; i <= last; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append(buckets[i]);
+            }
+            json.append("]}");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.ObservableTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.json.JSONResult;
+
+/**
+ * Serializes a network to CX2 as Cytoscape Web would import it and reports how many bytes each
+ * aspect and the largest table columns contribute, as text or JSON. The text is also written to the
+ * log.
+ */
+public class ProfileTask extends AbstractTask implements ObservableTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileTask.class);
+
+    @Tunable(
+            description = "Network",
+            longDescription =
+                    "The network to profile, by name or as SUID:<suid>. Defaults to the current"
+                            + " network.",
+            exampleStringValue = "current")
+    public CyNetwork network;
+
+    @Tunable(
+            description = "Number of columns",
+            longDescription = "Maximum number of table columns listed, largest first.",
+            exampleStringValue = "10")
+    public int columns = 10;
+
+    private final CyApplicationManager appManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory;
+    private String summary;
+    private String json;
+
+    /**
+     * Constructor for ProfileTask
+     *
+     * @param appManager Cytoscape application manager, for the current network
+     * @param openFactory factory that serializes networks for Cytoscape Web
+     */
+    public ProfileTask(
+            CyApplicationManager appManager, OpenInCytoscapeWebTaskFactoryImpl openFactory) {
+        this.appManager = appManager;
+        this.openFactory = openFactory;
+    }
+
+    @Override
+    public void run(TaskMonitor taskMonitor) throws Exception {
+        taskMonitor.setTitle("Profile CX2 export size");
+        CyNetwork target = network != null ? network : appManager.getCurrentNetwork();
+        if (target == null) {
+            throw new IllegalArgumentException("No network to profile");
+        }
+        taskMonitor.setStatusMessage("Profiling CX2 export size");
+        Cx2SizeProfile profile =
+                openFactory.profileCx2Export(
+                        target, openFactory.getNetworkView(target), taskMonitor, () -> cancelled);
+        if (cancelled) {
+            return;
+        }
+        if (profile == null) {
+            throw new IllegalStateException(
+                    "The network could not be serialized to CX2. Is the CX Support app"
+                            + " installed?");
+        }
+        summary = "Network SUID " + target.getSUID() + ": " + profile.toSummary(columns);
+        json = "{\"network\":" + target.getSUID() + ",\"profile\":" + profile.toJSON(columns) + "}";
+        LOGGER.info(summary);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R> R getResults(Class<? extends R> type) {
+        if (type == JSONResult.class) {
+            JSONResult result = () -> json;
+            return (R) result;
+        }
+        if (type == String.class) {
+            return (R) summary;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Class<?>> getResultClasses() {
+        return Arrays.asList(String.class, JSONResult.class);
+    }
+}
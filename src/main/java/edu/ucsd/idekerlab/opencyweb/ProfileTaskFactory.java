@@ -0,0 +1,35 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.work.AbstractTaskFactory;
+import org.cytoscape.work.TaskIterator;
+
+/**
+ * Creates the {@link ProfileTask} behind the {@code opencyweb profile} command, which breaks the
+ * CX2 export size of a network down by aspect and column. CyREST exposes the command at {@code
+ * /v1/commands/opencyweb/profile}.
+ */
+public class ProfileTaskFactory extends AbstractTaskFactory {
+
+    static final String COMMAND = "profile";
+
+    private final CyApplicationManager appManager;
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory;
+
+    /**
+     * Constructor for ProfileTaskFactory
+     *
+     * @param appManager Cytoscape application manager, for the current network
+     * @param openFactory factory that serializes networks for Cytoscape Web
+     */
+    public ProfileTaskFactory(
+            CyApplicationManager appManager, OpenInCytoscapeWebTaskFactoryImpl openFactory) {
+        this.appManager = appManager;
+        this.openFactory = openFactory;
+    }
+
+    @Override
+    public TaskIterator createTaskIterator() {
+        return new TaskIterator(new ProfileTask(appManager, openFactory));
+    }
+}
@@ -0,0 +1,139 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} that forwards a CX2 export unchanged and flushes the target each time a
+ * top-level aspect ends, so that with a buffered response Cytoscape Web receives the version
+ * descriptor, {@code metaData}, attribute declarations and nodes while the writer is still busy
+ * with the edges and the visual style. The CX writer already writes the aspects in the order
+ * Cytoscape Web needs to start rendering, so the export is not reordered.
+ *
+ * <p>The JSON is scanned as it is written, like {@link Cx2SizeProfiler}, only to find where each
+ * aspect ends: brackets inside strings do not count. Output that is not a JSON array is forwarded
+ * without intermediate flushes.
+ *
+ * <p>{@link #finish()} flushes the target once the writer is done; closing the stream finishes it
+ * as well. The target is never closed.
+ */
+public class ProgressiveCx2OutputStream extends OutputStream {
+
+    private static final int ROOT_DEPTH = 1;
+    private static final int ASPECT_DEPTH = 2;
+
+    private final OutputStream target;
+    private final byte[] singleByte = new byte[1];
+
+    private boolean started;
+    private boolean passThrough;
+    private boolean finished;
+
+    // Scanner state: nesting and strings
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Constructor for ProgressiveCx2OutputStream
+     *
+     * @param target receives the export
+     */
+    public ProgressiveCx2OutputStream(OutputStream target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        singleByte[0] = (byte) b;
+        write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Progressive CX2 output already finished");
+        }
+        int start = off;
+        for (int i = off; i < off + len; i++) {
+            if (endsAspect(b[i])) {
+                target.write(b, start, i + 1 - start);
+                target.flush();
+                start = i + 1;
+            }
+        }
+        if (start < off + len) {
+            target.write(b, start, off + len - start);
+        }
+    }
+
+    /**
+     * @return true if the byte closes a top-level aspect
+     */
+    private boolean endsAspect(byte b) {
+        if (passThrough) {
+            return false;
+        }
+        if (!started) {
+            if (b == '[') {
+                started = true;
+                depth = ROOT_DEPTH;
+            } else if (!isWhitespace(b)) {
+                passThrough = true;
+            }
+            return false;
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            }
+            return false;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                return false;
+            case '{':
+            case '[':
+                depth++;
+                return false;
+            case '}':
+            case ']':
+                depth--;
+                return depth == ASPECT_DEPTH - 1 && b == '}';
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+
+    /**
+     * Flushes the target once the export is complete.
+     *
+     * @throws IOException if flushing the target fails
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
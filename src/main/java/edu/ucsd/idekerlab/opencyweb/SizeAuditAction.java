@@ -0,0 +1,52 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.awt.event.ActionEvent;
+
+import org.cytoscape.application.swing.AbstractCyAction;
+import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.application.swing.CytoPanel;
+import org.cytoscape.application.swing.CytoPanelName;
+import org.cytoscape.application.swing.CytoPanelState;
+
+/**
+ * Menu action (Tools) that shows the {@link SizeAuditPanel} in the Results panel and starts an
+ * audit of every network, unless one is already running.
+ */
+public class SizeAuditAction extends AbstractCyAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CySwingApplication swingApplication;
+    private final Cx2SizeAudit audit;
+
+    /**
+     * Constructor for SizeAuditAction
+     *
+     * @param swingApplication Cytoscape desktop, holds the Results panel
+     * @param audit measures the networks
+     */
+    public SizeAuditAction(CySwingApplication swingApplication, Cx2SizeAudit audit) {
+        super("Audit Network Sizes for Cytoscape Web");
+        this.swingApplication = swingApplication;
+        this.audit = audit;
+        setPreferredMenu("Tools");
+        putValue(
+                SHORT_DESCRIPTION,
+                "Measure every network and list which ones can be opened in Cytoscape Web");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        CytoPanel resultsPanel = swingApplication.getCytoPanel(CytoPanelName.EAST);
+        if (resultsPanel.getState() == CytoPanelState.HIDE) {
+            resultsPanel.setState(CytoPanelState.DOCK);
+        }
+        int index = resultsPanel.indexOfComponent(SizeAuditPanel.IDENTIFIER);
+        if (index >= 0) {
+            resultsPanel.setSelectedIndex(index);
+        }
+        if (!audit.isRunning()) {
+            audit.start();
+        }
+    }
+}
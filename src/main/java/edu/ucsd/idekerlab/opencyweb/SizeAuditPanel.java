@@ -0,0 +1,172 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.util.List;
+
+import javax.swing.Icon;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableRowSorter;
+
+import org.cytoscape.application.swing.CytoPanelComponent2;
+import org.cytoscape.application.swing.CytoPanelName;
+import org.cytoscape.model.CyNetwork;
+
+/**
+ * Results panel tab listing every network of the session with its CX2 export size and whether it
+ * can be opened in Cytoscape Web. Rows are filled in as the {@link Cx2SizeAudit} measures the
+ * networks, and every column can be sorted by clicking its header.
+ */
+public class SizeAuditPanel extends JPanel implements CytoPanelComponent2, Cx2SizeAudit.Listener {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String IDENTIFIER = "edu.ucsd.idekerlab.opencyweb.SizeAuditPanel";
+    static final String TITLE = "Cytoscape Web Sizes";
+
+    private final SizeAuditTableModel model = new SizeAuditTableModel();
+    private final JLabel statusLabel = new JLabel("Not measured yet");
+    private final JButton measureButton = new JButton("Measure All");
+    private final JButton stopButton = new JButton("Stop");
+    private boolean running;
+
+    /**
+     * Constructor for SizeAuditPanel
+     *
+     * @param audit measures the networks; the panel registers itself as its listener
+     */
+    public SizeAuditPanel(final Cx2SizeAudit audit) {
+        super(new BorderLayout());
+
+        JTable table = new JTable(model);
+        TableRowSorter<SizeAuditTableModel> sorter = new TableRowSorter<>(model);
+        // Keep the chosen order while results arrive
+        sorter.setSortsOnUpdates(true);
+        table.setRowSorter(sorter);
+        table.setFillsViewportHeight(true);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        measureButton.setToolTipText(
+                "Measure the CX2 export size of every network; unchanged networks are not"
+                        + " measured again");
+        measureButton.addActionListener(e -> audit.start());
+        stopButton.addActionListener(e -> audit.stop());
+        stopButton.setEnabled(false);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(measureButton);
+        buttons.add(stopButton);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        bottom.add(buttons, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
+
+        audit.addListener(this);
+    }
+
+    @Override
+    public void auditStarted(final List<CyNetwork> networks) {
+        SwingUtilities.invokeLater(
+                () -> {
+                    running = true;
+                    model.reset(networks);
+                    updateStatus();
+                });
+    }
+
+    @Override
+    public void networkMeasured(final Cx2SizeAudit.Result result) {
+        SwingUtilities.invokeLater(
+                () -> {
+                    model.update(result);
+                    updateStatus();
+                });
+    }
+
+    @Override
+    public void auditFinished(boolean stopped) {
+        SwingUtilities.invokeLater(
+                () -> {
+                    running = false;
+                    updateStatus();
+                });
+    }
+
+    @Override
+    public void networkRemoved(final long networkSuid) {
+        SwingUtilities.invokeLater(
+                () -> {
+                    model.remove(networkSuid);
+                    updateStatus();
+                });
+    }
+
+    SizeAuditTableModel getModel() {
+        return model;
+    }
+
+    String getStatus() {
+        return statusLabel.getText();
+    }
+
+    private void updateStatus() {
+        int total = model.getRowCount();
+        int pending = model.count(SizeAuditTableModel.PENDING);
+        StringBuilder status = new StringBuilder();
+        if (running) {
+            status.append("Measured ")
+                    .append(total - pending)
+                    .append(" of ")
+                    .append(total)
+                    .append(" networks: ");
+        } else {
+            status.append(total).append(" networks: ");
+        }
+        status.append(model.count(SizeAuditTableModel.FITS))
+                .append(" fit, ")
+                .append(
+                        model.count(SizeAuditTableModel.TOO_LARGE)
+                                + model.count(SizeAuditTableModel.TOO_MANY_ELEMENTS))
+                .append(" too large");
+        int failed = model.count(SizeAuditTableModel.FAILED);
+        if (failed > 0) {
+            status.append(", ").append(failed).append(" failed");
+        }
+        if (!running && pending > 0) {
+            status.append(", ").append(pending).append(" not measured");
+        }
+        statusLabel.setText(status.toString());
+        measureButton.setEnabled(!running);
+        stopButton.setEnabled(running);
+    }
+
+    @Override
+    public Component getComponent() {
+        return this;
+    }
+
+    @Override
+    public CytoPanelName getCytoPanelName() {
+        return CytoPanelName.EAST;
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+
+    @Override
+    public Icon getIcon() {
+        return null;
+    }
+
+    @Override
+    public String getIdentifier() {
+        return IDENTIFIER;
+    }
+}
@@ -0,0 +1,168 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+
+import org.cytoscape.model.CyNetwork;
+
+/**
+ * Rows of the size audit panel, one per network. Networks are added as pending when an audit starts
+ * and filled in as their results arrive. Numeric columns report their class, so a {@link
+ * javax.swing.table.TableRowSorter} sorts them by value. Only used on the event dispatch thread.
+ */
+public class SizeAuditTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int NAME_COLUMN = 0;
+    static final int SUID_COLUMN = 1;
+    static final int NODES_COLUMN = 2;
+    static final int EDGES_COLUMN = 3;
+    static final int SIZE_COLUMN = 4;
+    static final int STATUS_COLUMN = 5;
+    static final int TIME_COLUMN = 6;
+    static final int DETAILS_COLUMN = 7;
+
+    static final String PENDING = "Pending";
+    static final String FITS = "Fits";
+    static final String TOO_LARGE = "Too large";
+    static final String TOO_MANY_ELEMENTS = "Too many elements";
+    static final String FAILED = "Failed";
+
+    private static final String[] COLUMN_NAMES = {
+        "Network", "SUID", "Nodes", "Edges", "CX2 size (MB)", "Status", "Time (ms)", "Details"
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+        String.class,
+        Long.class,
+        Integer.class,
+        Integer.class,
+        Double.class,
+        String.class,
+        Long.class,
+        String.class
+    };
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private final Map<Long, Integer> rowIndexes = new HashMap<>();
+
+    /**
+     * Replaces the rows with the networks of a new audit, all pending.
+     *
+     * @param networks the networks of the audit
+     */
+    void reset(List<CyNetwork> networks) {
+        rows.clear();
+        rowIndexes.clear();
+        for (CyNetwork network : networks) {
+            rowIndexes.put(network.getSUID(), rows.size());
+            rows.add(
+                    new Object[] {
+                        BatchOpenTask.networkName(network),
+                        network.getSUID(),
+                        network.getNodeCount(),
+                        network.getEdgeCount(),
+                        null,
+                        PENDING,
+                        null,
+                        ""
+                    });
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Fills in the row of a measured network, if the network is listed.
+     *
+     * @param result the result of the network
+     */
+    void update(Cx2SizeAudit.Result result) {
+        Integer index = rowIndexes.get(result.getNetworkSuid());
+        if (index == null) {
+            return;
+        }
+        NetworkMeasurement measurement = result.getMeasurement();
+        long maxBytes = result.getMaxFileSizeBytes();
+        Cx2ExportSize size = measurement.getSize();
+        Object[] row = rows.get(index);
+        row[NAME_COLUMN] = measurement.getName() != null ? measurement.getName() : row[NAME_COLUMN];
+        row[NODES_COLUMN] = measurement.getNodeCount();
+        row[EDGES_COLUMN] = measurement.getEdgeCount();
+        row[SIZE_COLUMN] =
+                size != null && size.isKnown() ? size.getBytes() / (1024.0 * 1024.0) : null;
+        row[TIME_COLUMN] = measurement.getElapsedNanos() / 1000000L;
+        if (result.getFailure() != null) {
+            row[STATUS_COLUMN] = FAILED;
+            row[DETAILS_COLUMN] = result.getFailure();
+        } else {
+            row[STATUS_COLUMN] =
+                    measurement.passed(maxBytes)
+                            ? FITS
+                            : measurement.hasCountError() ? TOO_MANY_ELEMENTS : TOO_LARGE;
+            row[DETAILS_COLUMN] = String.join("; ", measurement.errors(maxBytes));
+        }
+        fireTableRowsUpdated(index, index);
+    }
+
+    /**
+     * Removes the row of a network, if listed.
+     *
+     * @param networkSuid SUID of the network
+     */
+    void remove(long networkSuid) {
+        Integer index = rowIndexes.remove(networkSuid);
+        if (index == null) {
+            return;
+        }
+        rows.remove((int) index);
+        for (Map.Entry<Long, Integer> entry : rowIndexes.entrySet()) {
+            if (entry.getValue() > index) {
+                entry.setValue(entry.getValue() - 1);
+            }
+        }
+        fireTableRowsDeleted(index, index);
+    }
+
+    /**
+     * @param status one of the status values
+     * @return number of rows with that status
+     */
+    int count(String status) {
+        int count = 0;
+        for (Object[] row : rows) {
+            if (status.equals(row[STATUS_COLUMN])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return rows.get(row)[column];
+    }
+}
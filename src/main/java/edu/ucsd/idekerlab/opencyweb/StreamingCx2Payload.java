@@ -0,0 +1,238 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.io.write.CyNetworkViewWriterManager;
+import org.cytoscape.io.write.CyWriter;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+
+/**
+ * A CX2 export that is serialized only when Cytoscape Web requests it, straight into the HTTP
+ * response. The writer runs on the request thread and writes through a fixed {@link
+ * #BUFFER_SIZE_BYTES} buffer, so memory use does not grow with the network: when the browser reads
+ * slower than the writer produces, the blocking response stream holds the writer back.
+ *
+ * <p>The output is counted against the size limit on the way. Headers are already sent by then, so
+ * crossing the limit (the network grew after validation) aborts the response rather than returning
+ * an error status.
+ *
+ * <p>With the {@link Cx2Encoding#CBOR} encoding the JSON produced by the writer is transcoded on
+ * the way, and the limit applies to the CBOR bytes sent.
+ */
+public class StreamingCx2Payload implements Cx2Payload {
+
+    static final int BUFFER_SIZE_BYTES = 64 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingCx2Payload.class);
+
+    private final CyNetworkViewWriterManager writerManager;
+    private final CyFileFilter cxFilter;
+    private final long networkSuid;
+    private final long limitBytes;
+    private final Cx2Encoding encoding;
+    private volatile boolean progressive;
+    private volatile Cx2MemoryGuard memoryGuard;
+
+    private volatile CyNetwork network;
+    private volatile CyNetworkView networkView;
+    private volatile long bytesWritten = -1;
+
+    /**
+     * Constructor for StreamingCx2Payload
+     *
+     * @param writerManager Cytoscape network view writer manager
+     * @param cxFilter file filter of the CX2 writer
+     * @param networkView the network view to export
+     * @param limitBytes size limit in bytes; the response is aborted once it is exceeded
+     */
+    public StreamingCx2Payload(
+            CyNetworkViewWriterManager writerManager,
+            CyFileFilter cxFilter,
+            CyNetworkView networkView,
+            long limitBytes) {
+        this(writerManager, cxFilter, networkView.getModel(), networkView, limitBytes);
+    }
+
+    /**
+     * Constructor for StreamingCx2Payload
+     *
+     * @param writerManager Cytoscape network view writer manager
+     * @param cxFilter file filter of the CX2 writer
+     * @param network the network to export
+     * @param networkView the view to export, or null to export the network without a view
+     * @param limitBytes size limit in bytes; the response is aborted once it is exceeded
+     */
+    public StreamingCx2Payload(
+            CyNetworkViewWriterManager writerManager,
+            CyFileFilter cxFilter,
+            CyNetwork network,
+            CyNetworkView networkView,
+            long limitBytes) {
+        this(writerManager, cxFilter, network, networkView, limitBytes, Cx2Encoding.JSON);
+    }
+
+    /**
+     * Constructor for StreamingCx2Payload
+     *
+     * @param writerManager Cytoscape network view writer manager
+     * @param cxFilter file filter of the CX2 writer
+     * @param network the network to export
+     * @param networkView the view to export, or null to export the network without a view
+     * @param limitBytes size limit in bytes of the encoded export
+     * @param encoding encoding the export is sent in
+     */
+    public StreamingCx2Payload(
+            CyNetworkViewWriterManager writerManager,
+            CyFileFilter cxFilter,
+            CyNetwork network,
+            CyNetworkView networkView,
+            long limitBytes,
+            Cx2Encoding encoding) {
+        this.writerManager = writerManager;
+        this.cxFilter = cxFilter;
+        this.network = network;
+        this.networkView = networkView;
+        this.networkSuid = network.getSUID();
+        this.limitBytes = limitBytes;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public long getNetworkSuid() {
+        return networkSuid;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public Cx2Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Flushes the response after each aspect with {@link ProgressiveCx2OutputStream}, so that
+     * Cytoscape Web receives the nodes before the bulk of the export has been written.
+     */
+    public void enableProgressiveDelivery() {
+        progressive = true;
+    }
+
+    /**
+     * Stops the export at its next write when the guard reports that the heap runs low.
+     *
+     * @param memoryGuard the guard, or null to never stop for memory
+     */
+    public void setMemoryGuard(Cx2MemoryGuard memoryGuard) {
+        this.memoryGuard = memoryGuard;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // Read the view first: once release() has cleared the network, the view is cleared too
+        CyNetworkView view = networkView;
+        CyNetwork model = network;
+        if (model == null) {
+            throw new IOException("Export of network SUID " + networkSuid + " was released");
+        }
+        CountingOutputStream countingStream =
+                new CountingOutputStream(
+                        new BufferedOutputStream(out, BUFFER_SIZE_BYTES), limitBytes);
+        Cx2MemoryGuard guard = memoryGuard;
+        Cx2MemoryGuard.Watch memoryWatch = guard != null ? guard.watch() : null;
+        if (memoryWatch != null) {
+            countingStream.setCancelCheck(memoryWatch::isTripped);
+        }
+        try {
+            writeCx2(writerManager, cxFilter, model, view, countingStream, encoding, progressive);
+            countingStream.flush();
+        } catch (OutOfMemoryError e) {
+            if (guard != null) {
+                guard.reportOutOfMemory();
+            }
+            throw new IOException(
+                    "Ran out of memory streaming CX2 for network SUID " + networkSuid);
+        } catch (Exception e) {
+            if (memoryWatch != null && memoryWatch.isTripped()) {
+                throw new IOException(
+                        "Stopped streaming CX2 for network SUID "
+                                + networkSuid
+                                + ", Java heap is running low");
+            }
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("Failed to stream CX2 for network SUID " + networkSuid, e);
+        } finally {
+            bytesWritten = countingStream.getByteCount();
+        }
+        if (countingStream.isLimitExceeded()) {
+            // The writer swallowed the abort; do not let a truncated export look complete
+            throw new CountingOutputStream.LimitExceededException(bytesWritten, limitBytes);
+        }
+        LOGGER.debug("Streamed " + bytesWritten + " bytes of CX2 for network SUID: " + networkSuid);
+    }
+
+    /**
+     * Runs the CX writer for a network or its view into {@code target}, transcoding the JSON to
+     * {@code encoding} and flushing after each aspect for progressive delivery if requested.
+     *
+     * @param writerManager Cytoscape network view writer manager
+     * @param cxFilter file filter of the CX2 writer
+     * @param network the network to export
+     * @param view the view to export, or null to export the network without a view
+     * @param target receives the encoded export; it is not flushed or closed
+     * @param encoding encoding of the export
+     * @param progressive true to flush after each aspect with {@link ProgressiveCx2OutputStream}
+     * @throws Exception if the writer cannot be created or fails
+     */
+    static void writeCx2(
+            CyNetworkViewWriterManager writerManager,
+            CyFileFilter cxFilter,
+            CyNetwork network,
+            CyNetworkView view,
+            OutputStream target,
+            Cx2Encoding encoding,
+            boolean progressive)
+            throws Exception {
+        CborTranscodingOutputStream transcoder =
+                encoding == Cx2Encoding.CBOR ? new CborTranscodingOutputStream(target) : null;
+        OutputStream encodedStream = transcoder != null ? transcoder : target;
+        ProgressiveCx2OutputStream flushing =
+                progressive ? new ProgressiveCx2OutputStream(encodedStream) : null;
+        OutputStream writerStream = flushing != null ? flushing : encodedStream;
+        CyWriter writer =
+                view != null
+                        ? writerManager.getWriter(view, cxFilter, writerStream)
+                        : writerManager.getWriter(network, cxFilter, writerStream);
+        writer.run(null);
+        if (flushing != null) {
+            flushing.finish();
+        }
+        if (transcoder != null) {
+            transcoder.finish();
+        }
+    }
+
+    /**
+     * @return bytes written by the last {@link #writeTo(OutputStream)}, or -1 if not streamed yet
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void release() {
+        network = null;
+        networkView = null;
+    }
+}
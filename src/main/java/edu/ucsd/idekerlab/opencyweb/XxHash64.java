@@ -0,0 +1,137 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+/**
+ * Streaming 64-bit xxHash (XXH64, seed 0) of the bytes passed to {@link #update}. Used by {@link
+ * CountingOutputStream} to fingerprint a CX2 export in the same pass that counts it, at a cost well
+ * below that of the writer producing the bytes.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_BYTES = 32;
+
+    private long v1 = PRIME1 + PRIME2;
+    private long v2 = PRIME2;
+    private long v3 = 0;
+    private long v4 = -PRIME1;
+    private long totalBytes;
+
+    // Bytes of the current, incomplete stripe
+    private final byte[] stripe = new byte[STRIPE_BYTES];
+    private int stripeLength;
+
+    /**
+     * @param b byte to add
+     */
+    public void update(int b) {
+        stripe[stripeLength++] = (byte) b;
+        totalBytes++;
+        if (stripeLength == STRIPE_BYTES) {
+            consumeStripe(stripe, 0);
+            stripeLength = 0;
+        }
+    }
+
+    /**
+     * @param b bytes to add
+     * @param off offset of the first byte
+     * @param len number of bytes
+     */
+    public void update(byte[] b, int off, int len) {
+        totalBytes += len;
+        int end = off + len;
+        if (stripeLength > 0) {
+            int fill = Math.min(STRIPE_BYTES - stripeLength, len);
+            System.arraycopy(b, off, stripe, stripeLength, fill);
+            stripeLength += fill;
+            off += fill;
+            if (stripeLength < STRIPE_BYTES) {
+                return;
+            }
+            consumeStripe(stripe, 0);
+            stripeLength = 0;
+        }
+        for (; off + STRIPE_BYTES <= end; off += STRIPE_BYTES) {
+            consumeStripe(b, off);
+        }
+        stripeLength = end - off;
+        System.arraycopy(b, off, stripe, 0, stripeLength);
+    }
+
+    private void consumeStripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    /**
+     * @return hash of all bytes added so far; more bytes may be added afterwards
+     */
+    public long getValue() {
+        long h;
+        if (totalBytes >= STRIPE_BYTES) {
+            h =
+                    Long.rotateLeft(v1, 1)
+                            + Long.rotateLeft(v2, 7)
+                            + Long.rotateLeft(v3, 12)
+                            + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME5;
+        }
+        h += totalBytes;
+
+        int i = 0;
+        for (; i + 8 <= stripeLength; i += 8) {
+            h ^= round(0, readLong(stripe, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= stripeLength) {
+            h ^= (readInt(stripe, i) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < stripeLength; i++) {
+            h ^= (stripe[i] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return (readInt(b, off) & 0xFFFFFFFFL) | ((long) readInt(b, off + 4) << 32);
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xFF)
+                | (b[off + 1] & 0xFF) << 8
+                | (b[off + 2] & 0xFF) << 16
+                | (b[off + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,114 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+public class CborTranscodingOutputStreamTest {
+
+    private static final String CX2 =
+            "[{\"CXVersion\":\"2.0\",\"hasFragments\":false},"
+                    + "{\"metaData\":[{\"name\":\"nodes\",\"elementCount\":2}]},"
+                    + "{\"nodes\":[{\"id\":0,\"v\":{\"name\":\"né\",\"score\":1.5}},"
+                    + "{\"id\":1,\"v\":{\"name\":\"b\",\"big\":12345678901234,\"ok\":true,"
+                    + "\"none\":null}}]},"
+                    + "{\"status\":[{\"error\":\"\",\"success\":true}]}]";
+
+    /** CBOR of {@code json} produced by a blocking parser, as a reference. */
+    private static byte[] toCbor(String json) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (JsonParser parser = new JsonFactory().createParser(json);
+                JsonGenerator generator = new CBORFactory().createGenerator(expected)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        return expected.toByteArray();
+    }
+
+    private static byte[] transcode(byte[] json, int chunkBytes) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CborTranscodingOutputStream transcoder = new CborTranscodingOutputStream(target);
+        for (int off = 0; off < json.length; off += chunkBytes) {
+            int len = Math.min(chunkBytes, json.length - off);
+            if (len == 1) {
+                transcoder.write(json[off]);
+            } else {
+                transcoder.write(json, off, len);
+            }
+        }
+        transcoder.finish();
+        return target.toByteArray();
+    }
+
+    @Test
+    public void testTranscodesWholeDocument() throws Exception {
+        byte[] json = CX2.getBytes(StandardCharsets.UTF_8);
+        byte[] cbor = transcode(json, json.length);
+
+        assertArrayEquals(toCbor(CX2), cbor);
+        assertTrue(cbor.length < json.length);
+    }
+
+    @Test
+    public void testTranscodesTokensSplitAcrossWrites() throws Exception {
+        byte[] json = CX2.getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(toCbor(CX2), transcode(json, 1));
+        assertArrayEquals(toCbor(CX2), transcode(json, 7));
+    }
+
+    @Test
+    public void testFlushLeavesIncompleteTokenPending() throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CborTranscodingOutputStream transcoder = new CborTranscodingOutputStream(target);
+
+        transcoder.write("[1234".getBytes(StandardCharsets.UTF_8));
+        transcoder.flush();
+        int beforeEnd = target.size();
+        transcoder.write("5]".getBytes(StandardCharsets.UTF_8));
+        transcoder.close();
+
+        assertEquals("Only the array start is complete", 1, beforeEnd);
+        assertArrayEquals(toCbor("[12345]"), target.toByteArray());
+    }
+
+    @Test
+    public void testFinishFailsOnTruncatedJson() throws Exception {
+        CborTranscodingOutputStream transcoder =
+                new CborTranscodingOutputStream(new ByteArrayOutputStream());
+        transcoder.write("[{\"nodes\":\"unterminated".getBytes(StandardCharsets.UTF_8));
+        try {
+            transcoder.finish();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteAfterFinishFails() throws Exception {
+        CborTranscodingOutputStream transcoder =
+                new CborTranscodingOutputStream(new ByteArrayOutputStream());
+        transcoder.write("[]".getBytes(StandardCharsets.UTF_8));
+        transcoder.finish();
+        transcoder.finish();
+        try {
+            transcoder.write('[');
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class CountingOutputStreamTest {
+
+    @Test
+    public void testCountsSingleBytesAndArrays() throws IOException {
+        CountingOutputStream stream = new CountingOutputStream();
+        stream.write(1);
+        stream.write(new byte[100]);
+        stream.write(new byte[100], 10, 50);
+
+        assertEquals(151L, stream.getByteCount());
+        assertFalse(stream.isLimitExceeded());
+    }
+
+    @Test
+    public void testWritesUpToLimitAreAccepted() throws IOException {
+        CountingOutputStream stream = new CountingOutputStream(100);
+        stream.write(new byte[60]);
+        stream.write(new byte[40]);
+
+        assertEquals(100L, stream.getByteCount());
+        assertFalse(stream.isLimitExceeded());
+    }
+
+    @Test
+    public void testWriteCrossingLimitThrows() throws IOException {
+        CountingOutputStream stream = new CountingOutputStream(100);
+        stream.write(new byte[60]);
+        try {
+            stream.write(new byte[60]);
+            fail("Expected LimitExceededException");
+        } catch (CountingOutputStream.LimitExceededException e) {
+            assertEquals(120L, stream.getByteCount());
+            assertTrue(stream.isLimitExceeded());
+        }
+    }
+
+    @Test(expected = CountingOutputStream.LimitExceededException.class)
+    public void testSingleByteWriteCrossingLimitThrows() throws IOException {
+        CountingOutputStream stream = new CountingOutputStream(0);
+        stream.write(1);
+    }
+
+    @Test
+    public void testProgressReportedAtInterval() throws IOException {
+        List<Long> reported = new ArrayList<>();
+        CountingOutputStream stream = new CountingOutputStream();
+        stream.setProgressListener(reported::add, 100);
+        stream.write(new byte[50]);
+        stream.write(new byte[60]);
+        stream.write(new byte[50]);
+        stream.write(new byte[50]);
+
+        assertEquals(Arrays.asList(110L, 210L), reported);
+    }
+
+    @Test
+    public void testCancelledStreamRejectsWrites() throws IOException {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CountingOutputStream stream = new CountingOutputStream();
+        stream.setCancelCheck(cancelled::get);
+        stream.write(new byte[10]);
+        assertFalse(stream.isCancelled());
+
+        cancelled.set(true);
+        try {
+            stream.write(new byte[10]);
+            fail("Expected InterruptedIOException");
+        } catch (InterruptedIOException e) {
+            assertEquals(10L, stream.getByteCount());
+            assertTrue(stream.isCancelled());
+        }
+    }
+
+    @Test
+    public void testContentHashCoversAcceptedBytes() throws IOException {
+        byte[] bytes = "Nobody inspects the spammish repetition".getBytes("UTF-8");
+        CountingOutputStream stream = new CountingOutputStream();
+        stream.enableContentHash();
+        stream.write(bytes[0]);
+        stream.write(bytes, 1, bytes.length - 1);
+
+        assertEquals(0xFBCEA83C8A378BF1L, stream.getContentHash());
+    }
+
+    @Test
+    public void testAcceptedBytesArePassedToTarget() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CountingOutputStream stream = new CountingOutputStream(target, 100);
+        stream.write(7);
+        stream.write(new byte[99]);
+        try {
+            stream.write(new byte[10]);
+            fail("Expected LimitExceededException");
+        } catch (CountingOutputStream.LimitExceededException e) {
+            assertEquals(110L, stream.getByteCount());
+            assertEquals(100, target.size());
+            assertEquals(7, target.toByteArray()[0]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class Cx2DiskCacheTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Cx2Buffer createBuffer(int size, byte fill) {
+        Cx2Buffer buffer = new Cx2Buffer(1L, size);
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, fill);
+        buffer.write(bytes, 0, size);
+        buffer.markComplete(fill, 0);
+        return buffer;
+    }
+
+    private File cacheDirectory() {
+        return new File(folder.getRoot(), "cx2-cache");
+    }
+
+    @Test
+    public void testExportIsWrittenOnceAndFoundAfterRestart() throws IOException {
+        Cx2DiskCache cache = new Cx2DiskCache(cacheDirectory());
+        Cx2Buffer buffer = createBuffer(10, (byte) 1);
+        File file = cache.write(buffer.getContentKey(), buffer);
+        assertTrue(file.setLastModified(0));
+
+        assertEquals(file, cache.write(buffer.getContentKey(), createBuffer(20, (byte) 1)));
+        assertEquals(10, file.length());
+        assertTrue("Writing marks the file as used", file.lastModified() > 0);
+
+        Map<String, File> loaded = new Cx2DiskCache(cacheDirectory()).load();
+        assertEquals(Collections.singletonMap(buffer.getContentKey(), file), loaded);
+        byte[] expected = new byte[10];
+        Arrays.fill(expected, (byte) 1);
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testLoadOrdersByUseAndDropsTemporaryFiles() throws IOException {
+        Cx2DiskCache cache = new Cx2DiskCache(cacheDirectory());
+        File first = cache.write("0000000000000001-1", createBuffer(1, (byte) 1));
+        File second = cache.write("0000000000000002-1", createBuffer(1, (byte) 2));
+        assertTrue(first.setLastModified(2000));
+        assertTrue(second.setLastModified(1000));
+        File temp = new File(cacheDirectory(), "0000000000000003-1123.tmp");
+        assertTrue(temp.createNewFile());
+        assertTrue(new File(cacheDirectory(), "notes.txt").createNewFile());
+
+        Map<String, File> loaded = new Cx2DiskCache(cacheDirectory()).load();
+
+        assertEquals(
+                Arrays.asList("0000000000000002-1", "0000000000000001-1"),
+                Arrays.asList(loaded.keySet().toArray()));
+        assertFalse(temp.exists());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedExportsAreDeleted() throws IOException {
+        Cx2DiskCache cache = new Cx2DiskCache(cacheDirectory());
+        File oldest = cache.write("0000000000000001-10", createBuffer(10, (byte) 1));
+        File middle = cache.write("0000000000000002-10", createBuffer(10, (byte) 2));
+        File newest = cache.write("0000000000000003-10", createBuffer(10, (byte) 3));
+        cache.get("0000000000000001-10");
+
+        assertEquals(Arrays.asList("0000000000000002-10"), cache.evict(25, 10));
+        assertFalse(middle.exists());
+        assertNull(cache.get("0000000000000002-10"));
+        assertEquals(20, cache.getTotalBytes());
+
+        assertEquals(Arrays.asList("0000000000000003-10"), cache.evict(100, 1));
+        assertFalse(newest.exists());
+        assertTrue(oldest.exists());
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,98 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.view.model.CyNetworkView;
+
+public class Cx2ExportPlannerTest {
+
+    private static final long ESTIMATED_BYTES = 3000;
+
+    private final Cx2MemoryGuard memoryGuard = mock(Cx2MemoryGuard.class);
+    private final Cx2SizeCache sizeCache =
+            new Cx2SizeCache(new NetworkChangeTracker(mock(CyNetworkTableManager.class)));
+    private final Cx2SizeEstimator sizeEstimator = mock(Cx2SizeEstimator.class);
+    private final Cx2ExportPlanner planner =
+            new Cx2ExportPlanner(memoryGuard, sizeCache, sizeEstimator);
+
+    private static CyNetwork createMockNetwork(long suid, int nodeCount, int edgeCount) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        when(network.getNodeCount()).thenReturn(nodeCount);
+        when(network.getEdgeCount()).thenReturn(edgeCount);
+        return network;
+    }
+
+    private void estimate(CyNetwork network, CyNetworkView networkView) {
+        Cx2SizeEstimator.Estimate estimate =
+                new Cx2SizeEstimator.Estimate(
+                        ESTIMATED_BYTES, ESTIMATED_BYTES, ESTIMATED_BYTES, ESTIMATED_BYTES, false);
+        when(sizeEstimator.estimate(network, networkView)).thenReturn(estimate);
+    }
+
+    @Test
+    public void testWriterHeapGrowsWithElements() {
+        CyNetwork network = createMockNetwork(1L, 100, 300);
+
+        assertEquals(
+                400 * Cx2MemoryGuard.WRITER_BYTES_PER_ELEMENT,
+                Cx2ExportPlanner.predictWriterHeapBytes(network));
+    }
+
+    @Test
+    public void testBufferNeedsTwoCopiesOfTheEstimatedExport() {
+        CyNetwork network = createMockNetwork(1L, 10, 0);
+        CyNetworkView networkView = mock(CyNetworkView.class);
+        estimate(network, networkView);
+        Cx2MemoryGuard.Plan plan = new Cx2MemoryGuard.Plan(Cx2MemoryGuard.Strategy.BUFFER, 0, 0, 0);
+        long streamBytes = 10 * Cx2MemoryGuard.WRITER_BYTES_PER_ELEMENT;
+        when(memoryGuard.plan(streamBytes + 2 * ESTIMATED_BYTES, streamBytes, true))
+                .thenReturn(plan);
+
+        assertSame(plan, planner.plan(network, networkView, true));
+    }
+
+    @Test
+    public void testCachedExactSizeReplacesEstimate() {
+        CyNetwork network = createMockNetwork(1L, 10, 0);
+        sizeCache.put(1L, sizeCache.currentStamp(1L), Cx2ExportSize.exact(5000));
+
+        planner.plan(network, null, false);
+
+        long streamBytes = 10 * Cx2MemoryGuard.WRITER_BYTES_PER_ELEMENT;
+        verify(memoryGuard).plan(streamBytes + 2 * 5000, streamBytes, false);
+        verify(sizeEstimator, never()).estimate(any(), any());
+    }
+
+    @Test
+    public void testLowerBoundIsNotAnExpectedSize() {
+        CyNetwork network = createMockNetwork(1L, 10, 0);
+        estimate(network, null);
+        sizeCache.put(1L, sizeCache.currentStamp(1L), Cx2ExportSize.atLeast(5000));
+
+        assertEquals(ESTIMATED_BYTES, planner.getExpectedExportBytes(network, null));
+    }
+
+    @Test
+    public void testWriterHeadroomIsAskedOfTheGuard() {
+        CyNetwork network = createMockNetwork(1L, 2, 1);
+
+        planner.hasWriterHeadroom(network);
+
+        verify(memoryGuard).hasHeadroomFor(eq(3 * Cx2MemoryGuard.WRITER_BYTES_PER_ELEMENT));
+        verify(memoryGuard, never()).plan(anyLong(), anyLong(), anyBoolean());
+    }
+}
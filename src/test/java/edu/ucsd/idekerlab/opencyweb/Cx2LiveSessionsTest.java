@@ -0,0 +1,292 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AboutToRemoveEdgesEvent;
+import org.cytoscape.model.events.AboutToRemoveNodesEvent;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedEvent;
+
+public class Cx2LiveSessionsTest {
+
+    private static final long NETWORK_SUID = 1L;
+
+    private final CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+    private final Cx2LiveSessions sessions = new Cx2LiveSessions(tableManager);
+    private final CyNetwork network = createNetwork(NETWORK_SUID);
+
+    private static CyNetwork createNetwork(long suid) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        return network;
+    }
+
+    private static <T extends CyIdentifiable> T element(Class<T> type, long suid) {
+        T element = mock(type);
+        when(element.getSUID()).thenReturn(suid);
+        return element;
+    }
+
+    private static CyRow row(Map<String, Object> values) {
+        CyRow row = mock(CyRow.class);
+        when(row.getAllValues()).thenReturn(values);
+        when(row.getRaw(CyIdentifiable.SUID)).thenReturn(values.get(CyIdentifiable.SUID));
+        return row;
+    }
+
+    private Cx2LiveSessions.Subscription subscribe() {
+        sessions.open(NETWORK_SUID);
+        return sessions.subscribe(NETWORK_SUID);
+    }
+
+    /** Closes the subscription and returns everything it wrote. */
+    private static String drain(Cx2LiveSessions.Subscription subscription) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        subscription.close();
+        subscription.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private RowsSetEvent rowsSet(CyNetwork owner, Class<? extends CyIdentifiable> type) {
+        CyTable table = mock(CyTable.class);
+        when(tableManager.getNetworkForTable(table)).thenReturn(owner);
+        doReturn(type).when(tableManager).getTableType(table);
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put(CyIdentifiable.SUID, 10L);
+        CyRow changed = row(values);
+        return new RowsSetEvent(
+                table,
+                Arrays.asList(
+                        new RowSetRecord(changed, "name", "b", "b"),
+                        new RowSetRecord(changed, CyNetwork.SELECTED, true, true),
+                        new RowSetRecord(changed, "score", Double.NaN, Double.NaN)));
+    }
+
+    @Test
+    public void testSubscribeNeedsOpenedChannel() {
+        assertNull(sessions.subscribe(NETWORK_SUID));
+        assertFalse(sessions.isConnected(NETWORK_SUID));
+
+        sessions.open(NETWORK_SUID);
+        assertFalse("Opened but nobody listens", sessions.isConnected(NETWORK_SUID));
+        assertNotNull(sessions.subscribe(NETWORK_SUID));
+        assertTrue(sessions.isConnected(NETWORK_SUID));
+    }
+
+    @Test
+    public void testEventsWithoutSubscribersAreNotEncoded() {
+        sessions.open(NETWORK_SUID);
+
+        sessions.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(element(CyNode.class, 10))));
+
+        verify(network, never()).getRow(any());
+        assertFalse(sessions.sendOpen(NETWORK_SUID));
+    }
+
+    @Test
+    public void testAddedNodesAndEdgesAreSentAsCx2Elements() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+        CyNode source = element(CyNode.class, 10);
+        CyNode target = element(CyNode.class, 11);
+        CyEdge edge = element(CyEdge.class, 20);
+        when(edge.getSource()).thenReturn(source);
+        when(edge.getTarget()).thenReturn(target);
+        Map<String, Object> nodeValues = new LinkedHashMap<>();
+        nodeValues.put(CyIdentifiable.SUID, 10L);
+        nodeValues.put("name", "a \"quoted\"\nname");
+        nodeValues.put(CyNetwork.SELECTED, false);
+        nodeValues.put("score", 1.5);
+        nodeValues.put("tags", Arrays.asList("x", "y"));
+        nodeValues.put("empty", null);
+        CyRow nodeRow = row(nodeValues);
+        when(network.getRow(source)).thenReturn(nodeRow);
+        CyRow edgeRow = row(Collections.singletonMap(CyIdentifiable.SUID, 20L));
+        when(network.getRow(edge)).thenReturn(edgeRow);
+
+        sessions.handleEvent(new AddedNodesEvent(network, Collections.singletonList(source)));
+        sessions.handleEvent(new AddedEdgesEvent(network, Collections.singletonList(edge)));
+
+        assertEquals(
+                ": connected\n\n"
+                        + "id: 1\nevent: nodes\ndata: [{\"id\":10,\"v\":{\"name\":"
+                        + "\"a \\\"quoted\\\"\\nname\",\"score\":1.5,\"tags\":[\"x\",\"y\"]}}]\n\n"
+                        + "id: 2\nevent: edges\ndata: [{\"id\":20,\"s\":10,\"t\":11}]\n\n",
+                drain(subscription));
+    }
+
+    @Test
+    public void testRemovedElementsAreSentAsIds() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        sessions.handleEvent(
+                new AboutToRemoveEdgesEvent(
+                        network, Collections.singletonList(element(CyEdge.class, 20))));
+        sessions.handleEvent(
+                new AboutToRemoveNodesEvent(
+                        network,
+                        Arrays.asList(element(CyNode.class, 10), element(CyNode.class, 11))));
+
+        String events = drain(subscription);
+        assertTrue(events.contains("event: removedEdges\ndata: [20]\n\n"));
+        assertTrue(events.contains("event: removedNodes\ndata: [10,11]\n\n"));
+    }
+
+    @Test
+    public void testChangedValuesAreGroupedByRow() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        sessions.handleEvent(rowsSet(network, CyNode.class));
+
+        // Selection is not sent and NaN is not valid JSON
+        assertTrue(
+                drain(subscription)
+                        .contains(
+                                "event: nodeAttributes\n"
+                                        + "data: [{\"id\":10,\"v\":{\"name\":\"b\",\"score\":null}}]\n\n"));
+    }
+
+    @Test
+    public void testNetworkAttributesHaveNoIds() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        sessions.handleEvent(rowsSet(network, CyNetwork.class));
+
+        assertTrue(
+                drain(subscription)
+                        .contains(
+                                "event: networkAttributes\n"
+                                        + "data: [{\"name\":\"b\",\"score\":null}]\n\n"));
+    }
+
+    @Test
+    public void testSharedColumnsReachSubnetworks() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+        CyRootNetwork root = mock(CyRootNetwork.class);
+        CySubNetwork subNetwork = mock(CySubNetwork.class);
+        when(subNetwork.getSUID()).thenReturn(NETWORK_SUID);
+        CySubNetwork otherSubNetwork = mock(CySubNetwork.class);
+        when(otherSubNetwork.getSUID()).thenReturn(2L);
+        when(root.getSubNetworkList()).thenReturn(Arrays.asList(subNetwork, otherSubNetwork));
+
+        sessions.handleEvent(rowsSet(root, CyEdge.class));
+
+        assertTrue(drain(subscription).contains("event: edgeAttributes\n"));
+    }
+
+    @Test
+    public void testStyleChangeAndLargeBatchRequestReload() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        sessions.handleEvent(new VisualStyleChangedEvent(mock(VisualStyle.class)));
+        sessions.handleEvent(
+                new AddedNodesEvent(
+                        network,
+                        Collections.nCopies(
+                                Cx2LiveSessions.MAX_EVENT_ELEMENTS + 1,
+                                element(CyNode.class, 10))));
+
+        assertEquals(
+                ": connected\n\n"
+                        + "id: 1\nevent: reload\ndata: {\"reason\":\"style\"}\n\n"
+                        + "id: 2\nevent: reload\ndata: {\"reason\":\"nodes\"}\n\n",
+                drain(subscription));
+        verify(network, never()).getRow(any());
+    }
+
+    @Test
+    public void testSubscriberFallingBehindGetsOneReload() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+        AboutToRemoveEdgesEvent removed =
+                new AboutToRemoveEdgesEvent(
+                        network, Collections.singletonList(element(CyEdge.class, 20)));
+
+        for (int i = 0; i <= Cx2LiveSessions.MAX_PENDING_EVENTS; i++) {
+            sessions.handleEvent(removed);
+        }
+
+        assertEquals(
+                ": connected\n\nevent: reload\ndata: {\"reason\":\"overflow\"}\n\n",
+                drain(subscription));
+    }
+
+    @Test
+    public void testSendOpen() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        assertTrue(sessions.sendOpen(NETWORK_SUID));
+
+        assertTrue(drain(subscription).contains("event: open\ndata: {}\n\n"));
+    }
+
+    @Test
+    public void testDestroyedNetworkEndsSession() throws Exception {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+
+        sessions.handleEvent(
+                new NetworkAboutToBeDestroyedEvent(mock(CyNetworkManager.class), network));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Returns without close(): the session ended the subscription
+        subscription.writeTo(out);
+        assertTrue(out.toString("UTF-8").endsWith("event: closed\ndata: {}\n\n"));
+        assertNull(sessions.subscribe(NETWORK_SUID));
+    }
+
+    @Test
+    public void testDisconnectedClientIsUnsubscribed() {
+        Cx2LiveSessions.Subscription subscription = subscribe();
+        OutputStream disconnected =
+                new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                };
+
+        try {
+            subscription.writeTo(disconnected);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(sessions.isConnected(NETWORK_SUID));
+    }
+}
@@ -0,0 +1,700 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.property.CyProperty;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+
+/**
+ * Load test of the localhost CX2 endpoint. The harness builds the factory the way {@link
+ * CyActivator} does, over {@link SyntheticNetworks}, and serves {@link Cx2PayloadResource} from an
+ * in-process {@link HttpServer} on an ephemeral port, which stands in for CyREST and is set as
+ * {@code rest.port}. Each simulated client then opens networks in a loop: it validates the network
+ * and builds its URL like an open from the toolbar, takes the import URL out of the Cytoscape Web
+ * URL and pulls the export over HTTP. Every concurrency level reports throughput, first byte and
+ * total latency percentiles, and the high-water marks of the heap and of direct memory, sampled
+ * while the level runs.
+ *
+ * <p>Run with {@code make loadtest}, passing {@code key=value} settings in {@code LOAD_ARGS}, e.g.
+ * {@code make loadtest LOAD_ARGS="transport=streaming clients=1,8,32 nodes=100000"}. See {@link
+ * Config} for the keys.
+ */
+public final class Cx2LoadHarness implements AutoCloseable {
+
+    private static final long NETWORK_SUID_BASE = 1000L;
+    private static final long SAMPLE_INTERVAL_MILLIS = 5;
+
+    /** Settings of a load test, parsed from {@code key=value} arguments. */
+    static final class Config {
+        /** {@code transport}: buffered or streaming. */
+        String transport = Cx2Transport.TRANSPORT_BUFFERED;
+
+        /** {@code encoding}: json or cbor. */
+        String encoding = "json";
+
+        /** {@code progressive}: send exports aspect by aspect. */
+        boolean progressive;
+
+        /** {@code clients}: comma-separated concurrency levels, run in this order. */
+        int[] clients = {1, 2, 4, 8, 16, 32};
+
+        /** {@code requests}: opens per client at each level. */
+        int requests = 20;
+
+        /** {@code warmup}: opens of a single client before the first level, not reported. */
+        int warmup = 20;
+
+        /** {@code networks}: distinct networks the clients take turns opening. */
+        int networks = 8;
+
+        /** {@code nodes}: nodes of each network. */
+        int nodes = 10000;
+
+        /** {@code edges}: edges of each network. */
+        int edges = 20000;
+
+        /** {@code columns}: attribute columns of the node and edge tables. */
+        int columns = 5;
+
+        /** {@code value-length}: characters of every attribute value. */
+        int valueLength = 16;
+
+        /** {@code server-threads}: request threads of the endpoint, as in CyREST's pool. */
+        int serverThreads = 16;
+
+        /** {@code dedup-mb}: {@code transport.dedup-max-mb}, 0 to serve one-time tokens only. */
+        int dedupMaxMb = 64;
+
+        static Config parse(String... args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected key=value: " + arg);
+                }
+                String key = arg.substring(0, equals).trim();
+                String value = arg.substring(equals + 1).trim();
+                switch (key) {
+                    case "transport":
+                        config.transport = value;
+                        break;
+                    case "encoding":
+                        config.encoding = value;
+                        break;
+                    case "progressive":
+                        config.progressive = Boolean.parseBoolean(value);
+                        break;
+                    case "clients":
+                        config.clients =
+                                Arrays.stream(value.split(","))
+                                        .mapToInt(level -> Integer.parseInt(level.trim()))
+                                        .toArray();
+                        break;
+                    case "requests":
+                        config.requests = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        config.warmup = Integer.parseInt(value);
+                        break;
+                    case "networks":
+                        config.networks = Integer.parseInt(value);
+                        break;
+                    case "nodes":
+                        config.nodes = Integer.parseInt(value);
+                        break;
+                    case "edges":
+                        config.edges = Integer.parseInt(value);
+                        break;
+                    case "columns":
+                        config.columns = Integer.parseInt(value);
+                        break;
+                    case "value-length":
+                        config.valueLength = Integer.parseInt(value);
+                        break;
+                    case "server-threads":
+                        config.serverThreads = Integer.parseInt(value);
+                        break;
+                    case "dedup-mb":
+                        config.dedupMaxMb = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown setting: " + key);
+                }
+            }
+            return config;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.ROOT,
+                    "transport=%s encoding=%s progressive=%s dedup-mb=%d server-threads=%d,"
+                            + " %d networks of %d nodes, %d edges, %d columns x %d chars",
+                    transport,
+                    encoding,
+                    progressive,
+                    dedupMaxMb,
+                    serverThreads,
+                    networks,
+                    nodes,
+                    edges,
+                    columns,
+                    valueLength);
+        }
+    }
+
+    /** Outcome of one concurrency level. */
+    static final class LevelResult {
+        private final int clients;
+        private final long elapsedNanos;
+        private final long[] firstByteNanos;
+        private final long[] totalNanos;
+        private final Map<String, Long> failures;
+        private final long bytes;
+        private final long heapPeakBytes;
+        private final long directPeakBytes;
+
+        LevelResult(
+                int clients,
+                long elapsedNanos,
+                long[] firstByteNanos,
+                long[] totalNanos,
+                Map<String, Long> failures,
+                long bytes,
+                long heapPeakBytes,
+                long directPeakBytes) {
+            this.clients = clients;
+            this.elapsedNanos = elapsedNanos;
+            this.firstByteNanos = firstByteNanos;
+            this.totalNanos = totalNanos;
+            this.failures = new TreeMap<>(failures);
+            this.bytes = bytes;
+            this.heapPeakBytes = heapPeakBytes;
+            this.directPeakBytes = directPeakBytes;
+            Arrays.sort(firstByteNanos);
+            Arrays.sort(totalNanos);
+        }
+
+        int getClients() {
+            return clients;
+        }
+
+        /**
+         * @return number of opens that received their complete export
+         */
+        int getCompleted() {
+            return totalNanos.length;
+        }
+
+        long getFailures() {
+            long count = 0;
+            for (long reasonCount : failures.values()) {
+                count += reasonCount;
+            }
+            return count;
+        }
+
+        /**
+         * @return number of failed opens by reason, e.g. the HTTP status of the response
+         */
+        Map<String, Long> getFailureReasons() {
+            return failures;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        double getOpensPerSecond() {
+            return totalNanos.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return total latency of an open at that percentile in nanoseconds, or -1 without opens
+         */
+        long getTotalNanos(double percentile) {
+            return percentile(totalNanos, percentile);
+        }
+
+        long getFirstByteNanos(double percentile) {
+            return percentile(firstByteNanos, percentile);
+        }
+
+        long getHeapPeakBytes() {
+            return heapPeakBytes;
+        }
+
+        long getDirectPeakBytes() {
+            return directPeakBytes;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return -1;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        static String header() {
+            return String.format(
+                    Locale.ROOT,
+                    "%7s %8s %6s %8s %8s %18s %28s %9s %9s",
+                    "clients",
+                    "opens",
+                    "failed",
+                    "opens/s",
+                    "MB/s",
+                    "first byte p50/p99",
+                    "total p50/p90/p99/max (ms)",
+                    "heap MB",
+                    "direct MB");
+        }
+
+        @Override
+        public String toString() {
+            String line =
+                    String.format(
+                            Locale.ROOT,
+                            "%7d %8d %6d %8.1f %8.1f %8.1f/%-9.1f %6.1f/%6.1f/%6.1f/%-7.1f %9.1f %9.1f",
+                            clients,
+                            totalNanos.length,
+                            getFailures(),
+                            getOpensPerSecond(),
+                            bytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9),
+                            millis(getFirstByteNanos(50)),
+                            millis(getFirstByteNanos(99)),
+                            millis(getTotalNanos(50)),
+                            millis(getTotalNanos(90)),
+                            millis(getTotalNanos(99)),
+                            millis(getTotalNanos(100)),
+                            heapPeakBytes / (1024.0 * 1024.0),
+                            directPeakBytes / (1024.0 * 1024.0));
+            return failures.isEmpty() ? line : line + "\n        failed: " + failures;
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    private final Config config;
+    private final HttpServer server;
+    private final ExecutorService serverExecutor;
+    private final Cx2PayloadStore payloadStore = new Cx2PayloadStore();
+    private final Cx2PayloadResource resource = new Cx2PayloadResource(payloadStore);
+    private final OpenInCytoscapeWebTaskFactoryImpl factory;
+    private final List<CyNetworkView> networkViews = new ArrayList<>();
+
+    /**
+     * Starts the endpoint and builds the networks.
+     *
+     * @param config settings of the load test
+     * @throws IOException if the endpoint cannot be bound
+     */
+    Cx2LoadHarness(Config config) throws IOException {
+        this.config = config;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Cx2PayloadResource.BASE_PATH, this::serve);
+        serverExecutor =
+                Executors.newFixedThreadPool(
+                        config.serverThreads, daemonThreads("opencyweb-load-server"));
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        Properties props = new Properties();
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_ELEMENTS, "2000000000");
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_EDGES, "2000000000");
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_FILESIZE_MB, "100000");
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_MODE, config.transport);
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_ENCODING, config.encoding);
+        props.setProperty(
+                Cx2Transport.PROP_TRANSPORT_PROGRESSIVE, Boolean.toString(config.progressive));
+        props.setProperty(Cx2Transport.PROP_DEDUP_MAX_MB, Integer.toString(config.dedupMaxMb));
+        Properties coreProps = new Properties();
+        coreProps.setProperty(
+                Cx2Transport.PROP_CYREST_PORT, Integer.toString(server.getAddress().getPort()));
+
+        NetworkChangeTracker changeTracker =
+                new NetworkChangeTracker(
+                        SyntheticNetworks.proxy(
+                                CyNetworkTableManager.class, Collections.emptyMap()));
+        Cx2SizeEstimator sizeEstimator =
+                new Cx2SizeEstimator(
+                        SyntheticNetworks.proxy(
+                                RenderingEngineManager.class, Collections.emptyMap()));
+        CyProperty<Properties> cyProperties = SyntheticNetworks.createProperties(props);
+        Cx2SizeCache sizeCache = new Cx2SizeCache(changeTracker);
+        OpenMetrics metrics = new OpenMetrics();
+        factory =
+                new OpenInCytoscapeWebTaskFactoryImpl(
+                        null,
+                        null,
+                        null,
+                        new ShowDialogUtil(),
+                        cyProperties,
+                        SyntheticNetworks.createWriterManager(),
+                        sizeCache,
+                        sizeEstimator,
+                        new Cx2SizeTracker(null, sizeEstimator),
+                        metrics,
+                        new Cx2Transport(
+                                cyProperties,
+                                SyntheticNetworks.createProperties(coreProps),
+                                payloadStore,
+                                new Cx2LiveSessions(null),
+                                metrics),
+                        new Cx2ExportPlanner(
+                                new Cx2MemoryGuard(cyProperties), sizeCache, sizeEstimator));
+
+        for (int i = 0; i < config.networks; i++) {
+            networkViews.add(
+                    SyntheticNetworks.createNetworkView(
+                            NETWORK_SUID_BASE + 2 * i,
+                            config.nodes,
+                            config.edges,
+                            config.columns,
+                            config.valueLength));
+        }
+    }
+
+    /** Routes a request the way CyREST routes it to {@link Cx2PayloadResource}. */
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            String key = Cx2PayloadResource.stripEncodingSuffix(name);
+            Cx2Payload payload;
+            StreamingOutput output;
+            if (path.startsWith(Cx2PayloadResource.CONTENT_PATH + "/")) {
+                Cx2Buffer content = payloadStore.getContent(key);
+                payload = content;
+                output = content != null ? resource.contentOutput(content) : null;
+            } else {
+                payload = payloadStore.take(key);
+                output = payload != null ? resource.output(payload) : null;
+            }
+            if (payload == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", payload.getEncoding().getMediaType());
+            long contentLength = payload.getContentLength();
+            // 0 selects chunked transfer encoding, like a streamed CyREST response
+            exchange.sendResponseHeaders(200, contentLength > 0 ? contentLength : 0);
+            try (OutputStream body = new SkipEmptyWrites(exchange.getResponseBody())) {
+                output.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Drops empty writes, which the JDK server rejects once a fixed-length body is complete; Jersey
+     * accepts them.
+     */
+    private static final class SkipEmptyWrites extends FilterOutputStream {
+        SkipEmptyWrites(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.write(b, off, len);
+            }
+        }
+    }
+
+    /**
+     * Runs the warm-up and then every concurrency level of the configuration.
+     *
+     * @param listener receives the result of each level as soon as it is known
+     * @return the result of each level, in order
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    List<LevelResult> run(Consumer<LevelResult> listener) throws InterruptedException {
+        if (config.warmup > 0) {
+            runLevel(1, config.warmup);
+        }
+        List<LevelResult> results = new ArrayList<>();
+        for (int clients : config.clients) {
+            LevelResult result = runLevel(clients, config.requests);
+            listener.accept(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Lets {@code clients} clients open {@code requests} networks each, all starting at once.
+     *
+     * @return throughput, latencies and memory high-water marks of the level
+     */
+    LevelResult runLevel(int clients, int requests) throws InterruptedException {
+        System.gc();
+        MemorySampler sampler = new MemorySampler();
+        Thread samplerThread = new Thread(sampler, "opencyweb-load-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        long[][] firstByteNanos = new long[clients][requests];
+        long[][] totalNanos = new long[clients][requests];
+        int[] completed = new int[clients];
+        Map<String, Long> failures = new ConcurrentHashMap<>();
+        AtomicLong bytes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clientExecutor =
+                Executors.newFixedThreadPool(clients, daemonThreads("opencyweb-load-client"));
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            clientExecutor.execute(
+                    () -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int r = 0; r < requests; r++) {
+                            CyNetworkView networkView =
+                                    networkViews.get((client + r) % networkViews.size());
+                            long[] timing = new long[2];
+                            long received = open(networkView, timing, failures);
+                            if (received < 0) {
+                                continue;
+                            }
+                            bytes.addAndGet(received);
+                            firstByteNanos[client][completed[client]] = timing[0];
+                            totalNanos[client][completed[client]] = timing[1];
+                            completed[client]++;
+                        }
+                    });
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        clientExecutor.shutdown();
+        if (!clientExecutor.awaitTermination(1, TimeUnit.HOURS)) {
+            clientExecutor.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        sampler.stop();
+        samplerThread.join();
+
+        return new LevelResult(
+                clients,
+                elapsedNanos,
+                flatten(firstByteNanos, completed),
+                flatten(totalNanos, completed),
+                failures,
+                bytes.get(),
+                sampler.heapPeakBytes,
+                sampler.directPeakBytes);
+    }
+
+    /**
+     * Opens a network like the toolbar button and pulls its export from the import URL.
+     *
+     * @param timing receives the nanoseconds until the first and the last byte
+     * @param failures counts the reason of a failed open
+     * @return bytes received, or -1 if the open failed
+     */
+    private long open(CyNetworkView networkView, long[] timing, Map<String, Long> failures) {
+        long startNanos = System.nanoTime();
+        CyNetwork network = networkView.getModel();
+        try {
+            if (factory.checkElementCounts(network) != null) {
+                return fail(failures, "element counts");
+            }
+            Cx2MemoryGuard.Plan plan = factory.planExport(network, networkView);
+            if (plan.getStrategy() == Cx2MemoryGuard.Strategy.REFUSE) {
+                return fail(failures, "refused for memory");
+            }
+            Cx2Buffer capture =
+                    factory.createCaptureBuffer(
+                            network,
+                            networkView,
+                            plan.getStrategy() == Cx2MemoryGuard.Strategy.BUFFER);
+            if (factory.checkExportSize(network, networkView, null, () -> false, capture) != null) {
+                return fail(failures, "size check");
+            }
+            URI uri =
+                    factory.createCytoscapeWebURI(
+                            network, networkView, capture, plan.getStrategy());
+            if (uri == null) {
+                return fail(failures, "invalid URL");
+            }
+            HttpURLConnection connection =
+                    (HttpURLConnection) new URL(importUrl(uri)).openConnection();
+            try {
+                int status = connection.getResponseCode();
+                if (status != 200) {
+                    return fail(failures, "HTTP " + status);
+                }
+                long received = 0;
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream in = connection.getInputStream()) {
+                    int read = in.read(buffer);
+                    timing[0] = System.nanoTime() - startNanos;
+                    while (read >= 0) {
+                        received += read;
+                        read = in.read(buffer);
+                    }
+                }
+                timing[1] = System.nanoTime() - startNanos;
+                long expected = connection.getContentLengthLong();
+                if (expected >= 0 && received != expected) {
+                    return fail(failures, "truncated");
+                }
+                return received;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException | RuntimeException e) {
+            return fail(failures, e.getClass().getSimpleName());
+        }
+    }
+
+    private static long fail(Map<String, Long> failures, String reason) {
+        failures.merge(reason, 1L, Long::sum);
+        return -1;
+    }
+
+    /** Takes the URL Cytoscape Web would import from out of the Cytoscape Web URL. */
+    static String importUrl(URI cytoscapeWebUri) {
+        String url = cytoscapeWebUri.toString();
+        int start = url.indexOf("import=");
+        if (start < 0) {
+            throw new IllegalArgumentException("No import URL in " + url);
+        }
+        int end = url.indexOf('&', start);
+        return url.substring(start + "import=".length(), end < 0 ? url.length() : end);
+    }
+
+    /** Daemon threads, so an interrupted run does not keep the JVM alive. */
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static long[] flatten(long[][] perClient, int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < perClient.length; c++) {
+            System.arraycopy(perClient[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        return all;
+    }
+
+    /** Samples the used heap and direct memory until stopped, keeping the maximum of each. */
+    private static final class MemorySampler implements Runnable {
+        private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        private final List<BufferPoolMXBean> bufferPools =
+                ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        private volatile boolean stopped;
+        private volatile long heapPeakBytes;
+        private volatile long directPeakBytes;
+
+        @Override
+        public void run() {
+            do {
+                sample();
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } while (!stopped);
+            sample();
+        }
+
+        private void sample() {
+            heapPeakBytes = Math.max(heapPeakBytes, memoryBean.getHeapMemoryUsage().getUsed());
+            for (BufferPoolMXBean pool : bufferPools) {
+                if ("direct".equals(pool.getName())) {
+                    directPeakBytes = Math.max(directPeakBytes, pool.getMemoryUsed());
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a load test and prints one line per concurrency level.
+     *
+     * @param args {@code key=value} settings, see {@link Config}
+     * @throws Exception if the endpoint cannot be started
+     * @throws IllegalStateException if any open failed, so that {@code make loadtest} fails
+     */
+    public static void main(String[] args) throws Exception {
+        Config config = Config.parse(args);
+        System.out.println(config);
+        System.out.println(LevelResult.header());
+        List<LevelResult> results;
+        try (Cx2LoadHarness harness = new Cx2LoadHarness(config)) {
+            results = harness.run(System.out::println);
+        }
+        long failures = 0;
+        for (LevelResult result : results) {
+            failures += result.getFailures();
+        }
+        if (failures > 0) {
+            throw new IllegalStateException(failures + " opens failed");
+        }
+    }
+}
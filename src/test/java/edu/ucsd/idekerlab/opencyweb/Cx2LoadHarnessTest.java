@@ -0,0 +1,131 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class Cx2LoadHarnessTest {
+
+    /** A small run, so the harness keeps working as the export path changes. */
+    private static List<Cx2LoadHarness.LevelResult> run(String... args) throws Exception {
+        Cx2LoadHarness.Config config = Cx2LoadHarness.Config.parse(args);
+        List<Cx2LoadHarness.LevelResult> reported = new ArrayList<>();
+        List<Cx2LoadHarness.LevelResult> results;
+        try (Cx2LoadHarness harness = new Cx2LoadHarness(config)) {
+            results = harness.run(reported::add);
+        }
+        assertEquals(results, reported);
+        return results;
+    }
+
+    private static void assertAllServed(Cx2LoadHarness.LevelResult result, int requests) {
+        assertEquals(0, result.getFailures());
+        assertEquals(result.getClients() * requests, result.getCompleted());
+        assertTrue(result.getBytes() > 0);
+        assertTrue(result.getOpensPerSecond() > 0);
+        assertTrue(result.getFirstByteNanos(50) <= result.getTotalNanos(50));
+        assertTrue(result.getTotalNanos(50) <= result.getTotalNanos(99));
+        assertTrue(result.getTotalNanos(99) <= result.getTotalNanos(100));
+        assertTrue(result.getHeapPeakBytes() > 0);
+    }
+
+    @Test
+    public void testBufferedClientsPullEveryExport() throws Exception {
+        List<Cx2LoadHarness.LevelResult> results =
+                run(
+                        "clients=1,4",
+                        "requests=5",
+                        "warmup=2",
+                        "networks=3",
+                        "nodes=200",
+                        "edges=400");
+
+        assertEquals(2, results.size());
+        assertEquals(4, results.get(1).getClients());
+        for (Cx2LoadHarness.LevelResult result : results) {
+            assertAllServed(result, 5);
+        }
+        // The networks export to the same size: every open received a complete export
+        assertEquals(results.get(0).getBytes() / 5, results.get(1).getBytes() / 20);
+    }
+
+    @Test
+    public void testStreamingTokensAreServedOnce() throws Exception {
+        List<Cx2LoadHarness.LevelResult> results =
+                run(
+                        "transport=streaming",
+                        "encoding=cbor",
+                        "clients=3",
+                        "requests=4",
+                        "warmup=0",
+                        "networks=1",
+                        "nodes=100",
+                        "edges=100");
+
+        assertAllServed(results.get(0), 4);
+    }
+
+    @Test
+    public void testMoreStreamingClientsThanTokensOnceKept() throws Exception {
+        // Every client holds an unfetched token while the next one opens
+        List<Cx2LoadHarness.LevelResult> results =
+                run(
+                        "transport=streaming",
+                        "clients=8",
+                        "requests=3",
+                        "warmup=0",
+                        "networks=2",
+                        "nodes=100",
+                        "edges=100");
+
+        assertAllServed(results.get(0), 3);
+    }
+
+    @Test
+    public void testMoreBufferedClientsThanTokensOnceKept() throws Exception {
+        List<Cx2LoadHarness.LevelResult> results =
+                run(
+                        "dedup-mb=0",
+                        "clients=8",
+                        "requests=3",
+                        "warmup=0",
+                        "networks=2",
+                        "nodes=100",
+                        "edges=100");
+
+        assertAllServed(results.get(0), 3);
+    }
+
+    @Test
+    public void testParsesSettings() {
+        Cx2LoadHarness.Config config =
+                Cx2LoadHarness.Config.parse("clients=2, 8", "value-length=64", "dedup-mb=0");
+
+        assertArrayEquals(new int[] {2, 8}, config.clients);
+        assertEquals(64, config.valueLength);
+        assertEquals(0, config.dedupMaxMb);
+        assertEquals(Cx2Transport.TRANSPORT_BUFFERED, config.transport);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownSetting() {
+        Cx2LoadHarness.Config.parse("threads=4");
+    }
+
+    @Test
+    public void testImportUrlIsTakenFromCytoscapeWebUrl() {
+        assertEquals(
+                "http://localhost:1234/opencyweb/v1/cx2/abc.cbor",
+                Cx2LoadHarness.importUrl(
+                        URI.create(
+                                "https://web.cytoscape.org?import=http://localhost:1234"
+                                        + "/opencyweb/v1/cx2/abc.cbor&live=http://localhost:1234"
+                                        + "/opencyweb/v1/live/5")));
+    }
+}
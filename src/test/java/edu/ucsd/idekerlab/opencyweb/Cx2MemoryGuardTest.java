@@ -0,0 +1,170 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+
+import org.junit.Test;
+
+import org.cytoscape.property.CyProperty;
+
+public class Cx2MemoryGuardTest {
+
+    private static final long MB = 1024L * 1024;
+    private static final long MAX_HEAP = 100 * MB;
+
+    private final Properties props = new Properties();
+    private final MemoryMXBean memoryBean =
+            mock(MemoryMXBean.class, withSettings().extraInterfaces(NotificationEmitter.class));
+    private final MemoryPoolMXBean oldGen = mock(MemoryPoolMXBean.class);
+    private final MemoryPoolMXBean metaspace = mock(MemoryPoolMXBean.class);
+
+    private Cx2MemoryGuard createGuard(long usedAfterCollection) {
+        when(memoryBean.getHeapMemoryUsage())
+                .thenReturn(new MemoryUsage(0, usedAfterCollection, MAX_HEAP, MAX_HEAP));
+        when(oldGen.getType()).thenReturn(MemoryType.HEAP);
+        when(oldGen.getUsage()).thenReturn(new MemoryUsage(0, MAX_HEAP, MAX_HEAP, MAX_HEAP));
+        when(oldGen.getCollectionUsage())
+                .thenReturn(new MemoryUsage(0, usedAfterCollection, MAX_HEAP, MAX_HEAP));
+        when(oldGen.isCollectionUsageThresholdSupported()).thenReturn(true);
+        when(metaspace.getType()).thenReturn(MemoryType.NON_HEAP);
+        @SuppressWarnings("unchecked")
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        return new Cx2MemoryGuard(memoryBean, Arrays.asList(oldGen, metaspace), cyProperties);
+    }
+
+    private static Notification lowMemoryNotification() {
+        return new Notification(
+                MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED, "Old Gen", 1L);
+    }
+
+    @Test
+    public void testHeadroomIgnoresGarbageAwaitingCollection() {
+        // The pool is full, but only 40 MB survived the last collection
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+
+        assertEquals(MAX_HEAP / 100 * 90 - 40 * MB, guard.getHeadroomBytes());
+    }
+
+    @Test
+    public void testPlanBuffersWhenTheExportFits() {
+        Cx2MemoryGuard.Plan plan = createGuard(40 * MB).plan(30 * MB, 5 * MB, false);
+
+        assertEquals(Cx2MemoryGuard.Strategy.BUFFER, plan.getStrategy());
+        assertNull(plan.getRefusal());
+    }
+
+    @Test
+    public void testPlanStreamsWhenOnlyTheWriterFits() {
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+
+        assertEquals(
+                Cx2MemoryGuard.Strategy.STREAM, guard.plan(60 * MB, 5 * MB, false).getStrategy());
+        // Streaming transport never buffers
+        assertEquals(Cx2MemoryGuard.Strategy.STREAM, guard.plan(MB, MB, true).getStrategy());
+    }
+
+    @Test
+    public void testPlanRefusesWithExplanation() {
+        Cx2MemoryGuard.Plan plan = createGuard(80 * MB).plan(60 * MB, 20 * MB, false);
+
+        assertEquals(Cx2MemoryGuard.Strategy.REFUSE, plan.getStrategy());
+        assertTrue(
+                plan.getRefusal(),
+                plan.getRefusal()
+                        .contains("Memory needed: about 20.0 MB (free: 10.0 MB of 100.0 MB)"));
+    }
+
+    @Test
+    public void testZeroPercentDisablesGuard() {
+        props.setProperty(Cx2MemoryGuard.PROP_GUARD_PERCENT, "0");
+        Cx2MemoryGuard guard = createGuard(99 * MB);
+
+        assertEquals(
+                Cx2MemoryGuard.Strategy.BUFFER,
+                guard.plan(Long.MAX_VALUE, Long.MAX_VALUE, false).getStrategy());
+        assertTrue(guard.hasHeadroomFor(Long.MAX_VALUE));
+        guard.start();
+        verify(oldGen, never()).setCollectionUsageThreshold(anyLong());
+    }
+
+    @Test
+    public void testInvalidPercentFallsBackToDefault() {
+        props.setProperty(Cx2MemoryGuard.PROP_GUARD_PERCENT, "most");
+        assertEquals(Cx2MemoryGuard.DEFAULT_GUARD_PERCENT, createGuard(0).getGuardPercent());
+        props.setProperty(Cx2MemoryGuard.PROP_GUARD_PERCENT, "150");
+        assertEquals(100, createGuard(0).getGuardPercent());
+    }
+
+    @Test
+    public void testLowMemoryNotificationTripsWatches() {
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+        Cx2MemoryGuard.Watch watch = guard.watch();
+        assertFalse(watch.isTripped());
+
+        guard.handleNotification(
+                new Notification(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED, "Old Gen", 1L),
+                null);
+        assertFalse("Usage thresholds count garbage as well", watch.isTripped());
+
+        guard.handleNotification(lowMemoryNotification(), null);
+        assertTrue(watch.isTripped());
+        assertFalse("Later exports start afresh", guard.watch().isTripped());
+    }
+
+    @Test
+    public void testOutOfMemoryTripsWatches() {
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+        Cx2MemoryGuard.Watch watch = guard.watch();
+
+        guard.reportOutOfMemory();
+
+        assertTrue(watch.isTripped());
+    }
+
+    @Test
+    public void testStartSetsThresholdsThatDisposeClears() throws Exception {
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+
+        guard.start();
+        verify(oldGen).setCollectionUsageThreshold(MAX_HEAP / 100 * 90);
+        verify((NotificationEmitter) memoryBean).addNotificationListener(guard, null, null);
+
+        guard.dispose();
+        verify(oldGen).setCollectionUsageThreshold(0);
+        verify((NotificationEmitter) memoryBean).removeNotificationListener(guard);
+    }
+
+    @Test
+    public void testStartKeepsThresholdSetByOthers() throws Exception {
+        Cx2MemoryGuard guard = createGuard(40 * MB);
+        when(oldGen.getCollectionUsageThreshold()).thenReturn(50 * MB);
+
+        guard.start();
+        guard.dispose();
+
+        verify(oldGen, never()).setCollectionUsageThreshold(anyLong());
+        verify((NotificationEmitter) memoryBean).addNotificationListener(eq(guard), any(), any());
+    }
+}
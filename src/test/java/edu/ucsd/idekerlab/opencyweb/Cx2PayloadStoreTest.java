@@ -0,0 +1,261 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class Cx2PayloadStoreTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Cx2Buffer createBuffer(int size) {
+        Cx2Buffer buffer = new Cx2Buffer(1L, size);
+        buffer.write(new byte[size], 0, size);
+        buffer.markComplete();
+        return buffer;
+    }
+
+    @Test
+    public void testTokenCanBeTakenOnce() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer buffer = createBuffer(10);
+        String token = store.register(buffer);
+
+        assertTrue(token.matches("[0-9a-f]{32}"));
+        assertSame(buffer, store.take(token));
+        assertNull(store.take(token));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testUnknownTokenReturnsNull() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        store.register(createBuffer(10));
+        assertNull(store.take("0123456789abcdef0123456789abcdef"));
+    }
+
+    @Test
+    public void testTokensAreUnique() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        assertFalse(store.register(createBuffer(1)).equals(store.register(createBuffer(1))));
+    }
+
+    @Test
+    public void testExpiredExportIsReleased() {
+        Cx2PayloadStore store = new Cx2PayloadStore(0, Cx2PayloadStore.DEFAULT_MAX_ENTRIES);
+        Cx2Buffer buffer = createBuffer(10);
+        String token = store.register(buffer);
+
+        assertNull(store.take(token));
+        assertFalse(buffer.isComplete());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFullStoreRefusesInsteadOfDroppingUnfetchedExports() {
+        Cx2PayloadStore store = new Cx2PayloadStore(Cx2PayloadStore.DEFAULT_TTL_MILLIS, 2);
+        Cx2Buffer oldest = createBuffer(10);
+        String oldestToken = store.register(oldest);
+        String middleToken = store.register(createBuffer(10));
+        Cx2Buffer refused = createBuffer(10);
+
+        assertNull(store.register(refused));
+        assertEquals(10, refused.size());
+        assertEquals(2, store.size());
+        assertSame(oldest, store.take(oldestToken));
+        assertEquals(10, store.take(middleToken).getContentLength());
+        assertTrue("Fetching makes room", store.register(refused) != null);
+    }
+
+    @Test
+    public void testWaitingBytesAreBounded() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        String first = store.register(createBuffer(60), 100);
+        store.register(createBuffer(30), 100);
+
+        assertNull(store.register(createBuffer(20), 100));
+        assertEquals(90, store.getPendingBytes());
+        store.take(first);
+        assertTrue(store.register(createBuffer(20), 100) != null);
+        assertEquals(50, store.getPendingBytes());
+    }
+
+    @Test
+    public void testExpiredExportsMakeRoom() {
+        Cx2PayloadStore store = new Cx2PayloadStore(0, 1);
+        store.register(createBuffer(10));
+
+        assertTrue(store.register(createBuffer(10)) != null);
+        assertEquals(10, store.getPendingBytes());
+    }
+
+    private static Cx2Buffer createHashedBuffer(long networkSuid, int size, long stamp) {
+        Cx2Buffer buffer = new Cx2Buffer(networkSuid, size);
+        buffer.write(new byte[size], 0, size);
+        buffer.markComplete(size, stamp);
+        return buffer;
+    }
+
+    @Test
+    public void testIdenticalContentIsIndexedOnce() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer first = createHashedBuffer(1L, 10, 0);
+        Cx2Buffer copy = createHashedBuffer(2L, 10, 5);
+
+        assertSame(first, store.registerContent(first, 100));
+        assertSame(first, store.registerContent(copy, 100));
+
+        assertEquals(1, store.contentSize());
+        assertEquals(0, copy.size());
+        assertSame(first, store.getContent(first.getContentKey()));
+        assertSame(first, store.findContent(1L, 0, Cx2Encoding.JSON));
+        assertSame(first, store.findContent(2L, 5, Cx2Encoding.JSON));
+        assertNull("Network changed since", store.findContent(1L, 1, Cx2Encoding.JSON));
+        assertNull(store.findContent(3L, 0, Cx2Encoding.JSON));
+    }
+
+    @Test
+    public void testIndexedContentSurvivesRelease() throws Exception {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer buffer = createHashedBuffer(1L, 10, 0);
+        store.registerContent(buffer, 100);
+
+        buffer.release();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        store.getContent(buffer.getContentKey()).writeTo(response);
+
+        assertEquals(10, response.size());
+    }
+
+    @Test
+    public void testContentLargerThanBudgetIsNotIndexed() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer buffer = createHashedBuffer(1L, 10, 0);
+
+        assertNull(store.registerContent(buffer, 9));
+        assertNull(store.registerContent(createBuffer(10), 100));
+        assertEquals(0, store.contentSize());
+        assertTrue(buffer.isComplete());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedContentIsEvicted() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer oldest = createHashedBuffer(1L, 10, 0);
+        Cx2Buffer middle = createHashedBuffer(2L, 20, 0);
+        store.registerContent(oldest, 40);
+        store.registerContent(middle, 40);
+        store.getContent(oldest.getContentKey());
+
+        Cx2Buffer newest = createHashedBuffer(3L, 30, 0);
+        store.registerContent(newest, 40);
+
+        assertEquals(2, store.contentSize());
+        assertNull(store.findContent(2L, 0, Cx2Encoding.JSON));
+        assertFalse(middle.isComplete());
+        assertEquals(0, middle.size());
+        assertSame(oldest, store.findContent(1L, 0, Cx2Encoding.JSON));
+        assertSame(newest, store.findContent(3L, 0, Cx2Encoding.JSON));
+    }
+
+    @Test
+    public void testPersistedContentIsServedFromDisk() throws Exception {
+        File directory = folder.newFolder("cx2-cache");
+        Cx2PayloadStore store = new Cx2PayloadStore(new Cx2DiskCache(directory));
+        Cx2Buffer buffer = createHashedBuffer(1L, 1000, 0);
+        store.registerContent(buffer, 10000);
+        assertEquals(1000, store.heapContentBytes());
+
+        store.persistContent(buffer, 10000, 10);
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(0, store.heapContentBytes());
+        assertEquals(1000, buffer.getContentLength());
+        assertEquals(1000, new File(directory, buffer.getContentKey() + ".cx2").length());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        store.getContent(buffer.getContentKey()).writeTo(response);
+        assertEquals(1000, response.size());
+    }
+
+    @Test
+    public void testPersistedContentSurvivesRestart() throws Exception {
+        File directory = folder.newFolder("cx2-cache");
+        Cx2Buffer buffer = createHashedBuffer(1L, 1000, 0);
+        Cx2PayloadStore store = new Cx2PayloadStore(new Cx2DiskCache(directory));
+        store.registerContent(buffer, 10000);
+        store.persistContent(buffer, 10000, 10);
+
+        Cx2PayloadStore restarted = new Cx2PayloadStore(new Cx2DiskCache(directory));
+        Cx2Buffer persisted = restarted.getContent(buffer.getContentKey());
+        assertEquals(1000, persisted.getContentLength());
+        assertNull(
+                "Network SUIDs do not survive a restart",
+                restarted.findContent(1L, 0, Cx2Encoding.JSON));
+
+        // The same bytes serialized again in the new session are not kept twice
+        Cx2Buffer again = createHashedBuffer(7L, 1000, 3);
+        assertSame(persisted, restarted.registerContent(again, 10000));
+        assertEquals(0, again.size());
+        assertSame(persisted, restarted.findContent(7L, 3, Cx2Encoding.JSON));
+        assertEquals(0, restarted.heapContentBytes());
+    }
+
+    @Test
+    public void testPersistedContentIsEvictedOverDiskLimit() throws Exception {
+        File directory = folder.newFolder("cx2-cache");
+        Cx2PayloadStore store = new Cx2PayloadStore(new Cx2DiskCache(directory));
+        Cx2Buffer first = createHashedBuffer(1L, 100, 0);
+        Cx2Buffer second = createHashedBuffer(2L, 200, 0);
+        store.registerContent(first, 10000);
+        store.persistContent(first, 250, 10);
+        store.registerContent(second, 10000);
+        store.persistContent(second, 250, 10);
+
+        assertNull(store.getContent(first.getContentKey()));
+        assertFalse(first.isComplete());
+        assertFalse(new File(directory, first.getContentKey() + ".cx2").exists());
+        assertSame(second, store.getContent(second.getContentKey()));
+    }
+
+    @Test
+    public void testResourceStreamsAndReleasesExport() throws Exception {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer buffer = createBuffer(1000);
+        Cx2PayloadResource resource = new Cx2PayloadResource(store);
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        resource.output(buffer).write(response);
+
+        assertEquals(1000, response.size());
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.isComplete());
+    }
+
+    @Test
+    public void testResourceStripsEncodingSuffix() {
+        assertEquals("abc123", Cx2PayloadResource.stripEncodingSuffix("abc123"));
+        assertEquals("abc123", Cx2PayloadResource.stripEncodingSuffix("abc123.cbor"));
+        assertEquals("00ff-12", Cx2PayloadResource.stripEncodingSuffix("00ff-12.cbor"));
+    }
+
+    @Test
+    public void testFindContentMatchesEncoding() {
+        Cx2PayloadStore store = new Cx2PayloadStore();
+        Cx2Buffer buffer = new Cx2Buffer(1L, 100);
+        buffer.write(new byte[100], 0, 100);
+        buffer.markComplete(42L, 0, Cx2Encoding.CBOR);
+        store.registerContent(buffer, Long.MAX_VALUE);
+
+        assertSame(buffer, store.findContent(1L, 0, Cx2Encoding.CBOR));
+        assertNull(store.findContent(1L, 0, Cx2Encoding.JSON));
+    }
+}
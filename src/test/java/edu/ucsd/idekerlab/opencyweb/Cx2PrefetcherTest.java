@@ -0,0 +1,102 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.property.CyProperty;
+
+public class Cx2PrefetcherTest {
+
+    private final CyApplicationManager appManager = mock(CyApplicationManager.class);
+    private final OpenInCytoscapeWebTaskFactoryImpl taskFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+    private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+    private final ScheduledFuture<?> future = mock(ScheduledFuture.class);
+
+    @SuppressWarnings("unchecked")
+    private Cx2Prefetcher createPrefetcher(Properties props) {
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        doReturn(future)
+                .when(executor)
+                .schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(1L);
+        when(appManager.getCurrentNetwork()).thenReturn(network);
+        return new Cx2Prefetcher(appManager, taskFactory, cyProperties, executor);
+    }
+
+    private static Properties enabledProps() {
+        Properties props = new Properties();
+        props.setProperty(Cx2Prefetcher.PROP_PREFETCH_ENABLED, "true");
+        return props;
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        Cx2Prefetcher prefetcher = createPrefetcher(new Properties());
+        prefetcher.networkChanged(1L);
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testChangeSchedulesPrefetchAfterDelay() {
+        Properties props = enabledProps();
+        props.setProperty(Cx2Prefetcher.PROP_PREFETCH_DELAY_MS, "500");
+        Cx2Prefetcher prefetcher = createPrefetcher(props);
+
+        prefetcher.networkChanged(1L);
+
+        ArgumentCaptor<Runnable> job = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(job.capture(), eq(500L), eq(TimeUnit.MILLISECONDS));
+        job.getValue().run();
+        verify(taskFactory).prefetch(eq(appManager.getCurrentNetwork()), any());
+    }
+
+    @Test
+    public void testChangeToOtherNetworkIsIgnored() {
+        Cx2Prefetcher prefetcher = createPrefetcher(enabledProps());
+        prefetcher.networkChanged(2L);
+        verify(executor, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testFurtherChangeCancelsRunningPrefetch() {
+        Cx2Prefetcher prefetcher = createPrefetcher(enabledProps());
+        prefetcher.networkChanged(1L);
+        ArgumentCaptor<Runnable> job = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor)
+                .schedule(job.capture(), eq(Cx2Prefetcher.DEFAULT_DELAY_MS), any(TimeUnit.class));
+        job.getValue().run();
+        ArgumentCaptor<BooleanSupplier> cancelled = ArgumentCaptor.forClass(BooleanSupplier.class);
+        verify(taskFactory).prefetch(any(CyNetwork.class), cancelled.capture());
+        assertFalse(cancelled.getValue().getAsBoolean());
+
+        prefetcher.networkChanged(null);
+
+        verify(future).cancel(false);
+        verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        assertTrue(cancelled.getValue().getAsBoolean());
+    }
+}
@@ -0,0 +1,248 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.property.CyProperty;
+
+public class Cx2SizeAuditTest {
+
+    private static final long MAX_BYTES = 10L * 1024 * 1024;
+
+    private final CyNetworkManager networkManager = mock(CyNetworkManager.class);
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+    private final NetworkChangeTracker changeTracker =
+            new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+    private final Properties props = new Properties();
+    private final List<Integer> poolSizes = new ArrayList<>();
+    private final RecordingListener listener = new RecordingListener();
+
+    /** Records the reported events and lets a test wait for the end of an audit. */
+    private static class RecordingListener implements Cx2SizeAudit.Listener {
+        private final List<Long> measured = new ArrayList<>();
+        private final List<Long> removed = new ArrayList<>();
+        private List<CyNetwork> started;
+        private CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public synchronized void auditStarted(List<CyNetwork> networks) {
+            started = networks;
+            measured.clear();
+        }
+
+        @Override
+        public synchronized void networkMeasured(Cx2SizeAudit.Result result) {
+            measured.add(result.getNetworkSuid());
+        }
+
+        @Override
+        public void auditFinished(boolean stopped) {
+            finished.countDown();
+        }
+
+        @Override
+        public void networkRemoved(long networkSuid) {
+            removed.add(networkSuid);
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            finished = new CountDownLatch(1);
+        }
+    }
+
+    private Cx2SizeAudit createAudit() {
+        @SuppressWarnings("unchecked")
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        when(openFactory.getMaxFileSizeBytes()).thenReturn(MAX_BYTES);
+        when(openFactory.getBatchParallelism(anyInt())).thenReturn(8);
+        Cx2SizeAudit audit =
+                new Cx2SizeAudit(
+                        networkManager,
+                        openFactory,
+                        changeTracker,
+                        cyProperties,
+                        threads -> {
+                            poolSizes.add(threads);
+                            // One thread so the measurement order is observable
+                            return Executors.newSingleThreadExecutor();
+                        });
+        audit.addListener(listener);
+        return audit;
+    }
+
+    private CyNetwork createNetwork(long suid, int nodes, int edges) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        when(network.getNodeCount()).thenReturn(nodes);
+        when(network.getEdgeCount()).thenReturn(edges);
+        when(network.getRow(network)).thenReturn(mock(CyRow.class));
+        when(openFactory.measureExportSize(eq(network), any(), any()))
+                .thenReturn(Cx2ExportSize.exact(nodes * 100L));
+        return network;
+    }
+
+    @Test
+    public void testMeasuresSmallestFirstOnBoundedPool() throws Exception {
+        CyNetwork large = createNetwork(1L, 5000, 9000);
+        CyNetwork small = createNetwork(2L, 10, 20);
+        CyNetwork medium = createNetwork(3L, 300, 400);
+        when(networkManager.getNetworkSet())
+                .thenReturn(new HashSet<>(Arrays.asList(large, small, medium)));
+        Cx2SizeAudit audit = createAudit();
+
+        audit.start();
+        listener.await();
+
+        assertEquals(Arrays.asList(small, medium, large), listener.started);
+        assertEquals(Arrays.asList(2L, 3L, 1L), listener.measured);
+        assertEquals(Arrays.asList(Cx2SizeAudit.DEFAULT_THREADS), poolSizes);
+        assertFalse(audit.isRunning());
+        assertEquals(30000L, audit.getResult(3L, MAX_BYTES).getMeasurement().getSize().getBytes());
+    }
+
+    @Test
+    public void testPoolIsBoundedByMemory() throws Exception {
+        CyNetwork network = createNetwork(1L, 10, 20);
+        when(networkManager.getNetworkSet()).thenReturn(new HashSet<>(Arrays.asList(network)));
+        props.setProperty(Cx2SizeAudit.PROP_AUDIT_THREADS, "4");
+        Cx2SizeAudit audit = createAudit();
+        when(openFactory.getBatchParallelism(1)).thenReturn(1);
+
+        audit.start();
+        listener.await();
+
+        assertEquals(Arrays.asList(1), poolSizes);
+    }
+
+    @Test
+    public void testUnchangedNetworksAreNotMeasuredAgain() throws Exception {
+        CyNetwork unchanged = createNetwork(1L, 10, 20);
+        CyNetwork edited = createNetwork(2L, 30, 40);
+        when(networkManager.getNetworkSet())
+                .thenReturn(new HashSet<>(Arrays.asList(unchanged, edited)));
+        Cx2SizeAudit audit = createAudit();
+        audit.start();
+        listener.await();
+
+        changeTracker.markChanged(2L);
+        audit.start();
+        listener.await();
+
+        assertEquals(Arrays.asList(1L, 2L), listener.measured);
+        assertEquals(Arrays.asList(2, 2), poolSizes);
+        verify(openFactory, times(1)).measureExportSize(eq(unchanged), any(), any());
+        verify(openFactory, times(2)).measureExportSize(eq(edited), any(), any());
+
+        // Nothing left to measure: reported at once without a pool
+        audit.start();
+        listener.await();
+        assertEquals(2, poolSizes.size());
+        assertEquals(Arrays.asList(1L, 2L), listener.measured);
+    }
+
+    @Test
+    public void testNewLimitMeasuresAgain() throws Exception {
+        CyNetwork network = createNetwork(1L, 10, 20);
+        when(networkManager.getNetworkSet()).thenReturn(new HashSet<>(Arrays.asList(network)));
+        Cx2SizeAudit audit = createAudit();
+        audit.start();
+        listener.await();
+
+        assertNull(audit.getResult(1L, MAX_BYTES / 2));
+    }
+
+    @Test
+    public void testFailedMeasurementIsReportedButNotKept() throws Exception {
+        CyNetwork network = createNetwork(1L, 10, 20);
+        when(networkManager.getNetworkSet()).thenReturn(new HashSet<>(Arrays.asList(network)));
+        Cx2SizeAudit audit = createAudit();
+        when(openFactory.measureExportSize(eq(network), any(), any()))
+                .thenThrow(new IllegalStateException("writer failed"));
+
+        audit.start();
+        listener.await();
+
+        assertEquals(Arrays.asList(1L), listener.measured);
+        assertNull(audit.getResult(1L, MAX_BYTES));
+    }
+
+    @Test
+    public void testStopEndsAudit() throws Exception {
+        CyNetwork network = createNetwork(1L, 10, 20);
+        when(networkManager.getNetworkSet()).thenReturn(new HashSet<>(Arrays.asList(network)));
+        CountDownLatch measuring = new CountDownLatch(1);
+        when(openFactory.measureExportSize(eq(network), any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            measuring.countDown();
+                            // Returns once the audit asks the writer to stop
+                            BooleanSupplier cancelled = invocation.getArgument(2);
+                            while (!cancelled.getAsBoolean()) {
+                                Thread.yield();
+                            }
+                            return Cx2ExportSize.UNKNOWN;
+                        });
+        Cx2SizeAudit audit = createAudit();
+
+        audit.start();
+        assertTrue(measuring.await(10, TimeUnit.SECONDS));
+        assertTrue(audit.isRunning());
+        audit.stop();
+        listener.await();
+
+        assertFalse(audit.isRunning());
+        assertTrue(listener.measured.isEmpty());
+        assertNull(audit.getResult(1L, MAX_BYTES));
+    }
+
+    @Test
+    public void testDestroyedNetworkIsDropped() throws Exception {
+        CyNetwork network = createNetwork(1L, 10, 20);
+        when(networkManager.getNetworkSet()).thenReturn(new HashSet<>(Arrays.asList(network)));
+        Cx2SizeAudit audit = createAudit();
+        audit.start();
+        listener.await();
+
+        audit.handleEvent(new NetworkAboutToBeDestroyedEvent(networkManager, network));
+
+        assertEquals(Arrays.asList(1L), listener.removed);
+        assertNull(audit.getResult(1L, MAX_BYTES));
+    }
+
+    @Test
+    public void testInvalidThreadsFallsBackToDefault() {
+        props.setProperty(Cx2SizeAudit.PROP_AUDIT_THREADS, "many");
+        assertEquals(Cx2SizeAudit.DEFAULT_THREADS, createAudit().getMaxThreads());
+        props.setProperty(Cx2SizeAudit.PROP_AUDIT_THREADS, "0");
+        assertEquals(1, createAudit().getMaxThreads());
+    }
+}
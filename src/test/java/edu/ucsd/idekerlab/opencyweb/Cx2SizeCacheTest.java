@@ -0,0 +1,106 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+
+public class Cx2SizeCacheTest {
+
+    private final NetworkChangeTracker changeTracker =
+            new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+
+    @Test
+    public void testGetReturnsSizeWhileNetworkUnchanged() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.exact(1234L));
+
+        assertEquals(1234L, cache.get(1L).getBytes());
+        assertEquals(1234L, cache.get(1L).getBytes());
+    }
+
+    @Test
+    public void testGetReturnsNullForUnknownNetwork() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    public void testLowerBoundIsKeptAsLowerBound() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.atLeast(4096L));
+
+        Cx2ExportSize cached = cache.get(1L);
+        assertEquals(4096L, cached.getBytes());
+        assertFalse(cached.isExact());
+    }
+
+    @Test
+    public void testNetworkChangeInvalidatesEntry() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.exact(1234L));
+        cache.put(2L, cache.currentStamp(2L), Cx2ExportSize.exact(5678L));
+
+        changeTracker.markChanged(1L);
+
+        assertNull(cache.get(1L));
+        assertEquals(5678L, cache.get(2L).getBytes());
+    }
+
+    @Test
+    public void testChangeDuringMeasurementLeavesEntryStale() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        long stamp = cache.currentStamp(1L);
+        changeTracker.markChanged(1L); // edit lands while the writer is running
+        cache.put(1L, stamp, Cx2ExportSize.exact(1234L));
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    public void testGlobalChangeInvalidatesAllEntries() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.exact(1234L));
+        cache.put(2L, cache.currentStamp(2L), Cx2ExportSize.exact(5678L));
+
+        changeTracker.markAllChanged();
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker, 2);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.exact(100L));
+        cache.put(2L, cache.currentStamp(2L), Cx2ExportSize.exact(200L));
+        cache.get(1L); // touch 1 so 2 becomes the eldest
+        cache.put(3L, cache.currentStamp(3L), Cx2ExportSize.exact(300L));
+
+        assertEquals(2, cache.size());
+        assertEquals(100L, cache.get(1L).getBytes());
+        assertNull(cache.get(2L));
+        assertEquals(300L, cache.get(3L).getBytes());
+    }
+
+    @Test
+    public void testDestroyedNetworkIsEvicted() {
+        Cx2SizeCache cache = new Cx2SizeCache(changeTracker);
+        cache.put(1L, cache.currentStamp(1L), Cx2ExportSize.exact(1234L));
+
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(1L);
+        cache.handleEvent(
+                new NetworkAboutToBeDestroyedEvent(mock(CyNetworkManager.class), network));
+
+        assertEquals(0, cache.size());
+    }
+}
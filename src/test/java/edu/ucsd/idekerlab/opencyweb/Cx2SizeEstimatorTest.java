@@ -0,0 +1,221 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualLexicon;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+
+public class Cx2SizeEstimatorTest {
+
+    // Raw estimate of a network without tables, views or lexicon: 4096 + 100 * 60 + 200 * 40
+    private static final long BARE_ESTIMATE = 18096L;
+
+    private static CyNetworkView createMockNetworkView(int nodeCount, int edgeCount) {
+        CyNetwork mockNetwork = mock(CyNetwork.class);
+        when(mockNetwork.getNodeCount()).thenReturn(nodeCount);
+        when(mockNetwork.getEdgeCount()).thenReturn(edgeCount);
+
+        CyNetworkView mockView = mock(CyNetworkView.class);
+        when(mockView.getModel()).thenReturn(mockNetwork);
+        return mockView;
+    }
+
+    static CyTable createMockTable(String columnName, List<Object> values) {
+        CyColumn column = mock(CyColumn.class);
+        when(column.getName()).thenReturn(columnName);
+        CyColumn suidColumn = mock(CyColumn.class);
+        when(suidColumn.getName()).thenReturn("SUID");
+
+        List<CyRow> rows = new ArrayList<>();
+        for (Object value : values) {
+            CyRow row = mock(CyRow.class);
+            when(row.getRaw(columnName)).thenReturn(value);
+            when(row.getRaw("SUID")).thenReturn(123456L);
+            rows.add(row);
+        }
+        CyTable table = mock(CyTable.class);
+        when(table.getColumns()).thenReturn(Arrays.asList(suidColumn, column));
+        when(table.getAllRows()).thenReturn(rows);
+        when(table.getRowCount()).thenReturn(rows.size());
+        return table;
+    }
+
+    private static Cx2SizeEstimator createEstimator() {
+        return new Cx2SizeEstimator(mock(RenderingEngineManager.class));
+    }
+
+    private static void calibrate(Cx2SizeEstimator estimator, CyNetworkView view, double ratio) {
+        Cx2SizeEstimator.Estimate estimate = estimator.estimate(view);
+        estimator.calibrate(estimate, Math.round(estimate.getRawBytes() * ratio));
+    }
+
+    @Test
+    public void testRawEstimateFromElementCounts() {
+        Cx2SizeEstimator estimator = createEstimator();
+        assertEquals(BARE_ESTIMATE, estimator.rawEstimate(createMockNetworkView(100, 200)));
+    }
+
+    @Test
+    public void testRawEstimateIncludesSampledColumnValues() {
+        CyNetworkView view = createMockNetworkView(100, 200);
+        // "name" + 4 overhead + "abcdef" + 2 quotes = 16 bytes on half of the rows
+        CyTable nodeTable = createMockTable("name", Arrays.asList("abcdef", null));
+        when(view.getModel().getDefaultNodeTable()).thenReturn(nodeTable);
+
+        Cx2SizeEstimator estimator = createEstimator();
+        assertEquals(BARE_ESTIMATE + 100 * 8, estimator.rawEstimate(view));
+    }
+
+    @Test
+    public void testRawEstimateIncludesListAndNumberValues() {
+        CyNetworkView view = createMockNetworkView(100, 200);
+        // "w" + 4 overhead + "1.5" = 8 bytes per edge, SUID column is ignored
+        CyTable edgeTable = createMockTable("w", Collections.singletonList(1.5));
+        when(view.getModel().getDefaultEdgeTable()).thenReturn(edgeTable);
+        // "l" + 4 overhead + ["a","b"] = 14 bytes once for the network
+        CyTable networkTable =
+                createMockTable("l", Collections.singletonList(Arrays.asList("a", "b")));
+        when(view.getModel().getDefaultNetworkTable()).thenReturn(networkTable);
+
+        Cx2SizeEstimator estimator = createEstimator();
+        assertEquals(BARE_ESTIMATE + 200 * 8 + 14, estimator.rawEstimate(view));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRawEstimateIncludesBypasses() {
+        VisualProperty<Object> nodeColor = mock(VisualProperty.class);
+        when(nodeColor.getTargetDataType()).thenReturn((Class) CyNode.class);
+        VisualProperty<Object> nodeShape = mock(VisualProperty.class);
+        when(nodeShape.getTargetDataType()).thenReturn((Class) CyNode.class);
+        VisualProperty<Object> edgeWidth = mock(VisualProperty.class);
+        when(edgeWidth.getTargetDataType()).thenReturn((Class) CyEdge.class);
+        VisualLexicon lexicon = mock(VisualLexicon.class);
+        when(lexicon.getAllVisualProperties())
+                .thenReturn(new HashSet<>(Arrays.asList(nodeColor, nodeShape, edgeWidth)));
+        RenderingEngineManager renderingEngineManager = mock(RenderingEngineManager.class);
+        when(renderingEngineManager.getDefaultVisualLexicon()).thenReturn(lexicon);
+
+        // One node view with both node properties bypassed, one without bypasses
+        View<CyNode> bypassed = mock(View.class);
+        when(bypassed.isDirectlyLocked(nodeColor)).thenReturn(true);
+        when(bypassed.isDirectlyLocked(nodeShape)).thenReturn(true);
+        View<CyNode> plain = mock(View.class);
+        CyNetworkView view = createMockNetworkView(100, 200);
+        when(view.getNodeViews()).thenReturn(Arrays.asList(bypassed, plain));
+
+        Cx2SizeEstimator estimator = new Cx2SizeEstimator(renderingEngineManager);
+        assertEquals(BARE_ESTIMATE + 100 * 32, estimator.rawEstimate(view));
+    }
+
+    @Test
+    public void testEstimateWithoutViewCountsNoBypasses() {
+        RenderingEngineManager renderingEngineManager = mock(RenderingEngineManager.class);
+        Cx2SizeEstimator estimator = new Cx2SizeEstimator(renderingEngineManager);
+        CyNetwork network = createMockNetworkView(100, 200).getModel();
+
+        assertEquals(BARE_ESTIMATE, estimator.estimate(network, null).getRawBytes());
+        verify(renderingEngineManager, never()).getDefaultVisualLexicon();
+    }
+
+    @Test
+    public void testUncalibratedEstimateIsNeverConfident() {
+        Cx2SizeEstimator estimator = createEstimator();
+        CyNetworkView view = createMockNetworkView(100, 200);
+        calibrate(estimator, view, 2.0);
+        calibrate(estimator, view, 2.0);
+
+        Cx2SizeEstimator.Estimate estimate = estimator.estimate(view);
+        assertFalse(estimate.isCalibrated());
+        assertEquals(2 * BARE_ESTIMATE, estimate.getBytes());
+        assertFalse(estimate.isConfidentlyWithin(Long.MAX_VALUE - 1));
+        assertFalse(estimate.isConfidentlyAbove(0));
+    }
+
+    @Test
+    public void testCalibratedEstimateScalesByMeasuredRatio() {
+        Cx2SizeEstimator estimator = createEstimator();
+        CyNetworkView view = createMockNetworkView(100, 200);
+        for (int i = 0; i < Cx2SizeEstimator.MIN_CALIBRATION_SAMPLES; i++) {
+            calibrate(estimator, view, 2.0);
+        }
+
+        Cx2SizeEstimator.Estimate estimate = estimator.estimate(view);
+        assertTrue(estimate.isCalibrated());
+        assertEquals(2 * BARE_ESTIMATE, estimate.getBytes());
+        // Consistent ratios leave only the fixed margin as error band
+        assertEquals(Math.round(2 * BARE_ESTIMATE / 1.25), estimate.getLowBytes());
+        assertEquals(Math.round(2 * BARE_ESTIMATE * 1.25), estimate.getHighBytes());
+        assertTrue(estimate.isConfidentlyWithin(estimate.getHighBytes()));
+        assertFalse(estimate.isConfidentlyWithin(estimate.getHighBytes() - 1));
+        // Too few measurements to reject a network on the estimate alone
+        assertFalse(estimate.isConfidentlyAbove(0));
+    }
+
+    @Test
+    public void testRejectionNeedsMoreSamplesAndWiderMargin() {
+        Cx2SizeEstimator estimator = createEstimator();
+        CyNetworkView view = createMockNetworkView(100, 200);
+        for (int i = 0; i < Cx2SizeEstimator.REJECT_CALIBRATION_SAMPLES; i++) {
+            calibrate(estimator, view, 2.0);
+        }
+
+        Cx2SizeEstimator.Estimate estimate = estimator.estimate(view);
+        long rejectLowBytes = Math.round(2 * BARE_ESTIMATE / 2.0);
+        assertFalse(estimate.isConfidentlyAbove(estimate.getLowBytes() - 1));
+        assertTrue(estimate.isConfidentlyAbove(rejectLowBytes - 1));
+        assertFalse(estimate.isConfidentlyAbove(rejectLowBytes));
+    }
+
+    @Test
+    public void testInconsistentCalibrationWidensErrorBand() {
+        Cx2SizeEstimator estimator = createEstimator();
+        CyNetworkView view = createMockNetworkView(100, 200);
+        calibrate(estimator, view, 1.0);
+        calibrate(estimator, view, 4.0);
+        calibrate(estimator, view, 2.0);
+
+        // Geometric mean ratio is 2, the worst sample is off by a factor of 2
+        Cx2SizeEstimator.Estimate estimate = estimator.estimate(view);
+        assertEquals(2 * BARE_ESTIMATE, estimate.getBytes());
+        assertEquals(Math.round(2 * BARE_ESTIMATE * 2 * 1.25), estimate.getHighBytes());
+    }
+
+    @Test
+    public void testOnlyRecentCalibrationSamplesAreKept() {
+        Cx2SizeEstimator estimator = createEstimator();
+        CyNetworkView view = createMockNetworkView(100, 200);
+        for (int i = 0; i < Cx2SizeEstimator.MAX_CALIBRATION_SAMPLES; i++) {
+            calibrate(estimator, view, 8.0);
+        }
+        for (int i = 0; i < Cx2SizeEstimator.MAX_CALIBRATION_SAMPLES; i++) {
+            calibrate(estimator, view, 2.0);
+        }
+
+        assertEquals(Cx2SizeEstimator.MAX_CALIBRATION_SAMPLES, estimator.getCalibrationCount());
+        assertEquals(2 * BARE_ESTIMATE, estimator.estimate(view).getBytes());
+    }
+}
@@ -0,0 +1,130 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class Cx2SizeProfilerTest {
+
+    private static final String VERSION = "[{\"CXVersion\":\"2.0\",\"hasFragments\":false},";
+    private static final String NETWORK_ATTRIBUTES =
+            "{\"networkAttributes\":[{\"name\":\"net\",\"description\":\"a \\\"quoted\\\" text\"}]},";
+    private static final String NODES =
+            "{\"nodes\":[{\"id\":1,\"x\":1.5,\"y\":-2.0,\"v\":{\"name\":\"a\",\"seq\":\"ACGT\"}},"
+                    + "{\"id\":2,\"x\":0.0,\"y\":0.0,\"v\":{\"name\":\"b\",\"seq\":\"[{,}]\"}}]},";
+    private static final String EDGES =
+            "{\"edges\":[{\"id\":3,\"s\":1,\"t\":2,\"v\":{\"weight\":0.5,\"tags\":[\"x\",\"y\"]}}]},";
+    private static final String STYLE =
+            "{\"visualProperties\":[{\"default\":{\"network\":{\"NETWORK_BACKGROUND_COLOR\":\"#FFFFFF\"}}}]},"
+                    + "{\"nodeBypasses\":[{\"id\":1,\"v\":{\"NODE_FILL_COLOR\":\"#FF0000\"}}]},";
+    private static final String STATUS = "{\"status\":[{\"error\":\"\",\"success\":true}]}]";
+    private static final String DOCUMENT =
+            VERSION + NETWORK_ATTRIBUTES + NODES + EDGES + STYLE + STATUS;
+
+    private static Cx2SizeProfile profile(String json, int chunkBytes) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Cx2SizeProfiler profiler = new Cx2SizeProfiler();
+        for (int off = 0; off < bytes.length; off += chunkBytes) {
+            int len = Math.min(chunkBytes, bytes.length - off);
+            if (len == 1) {
+                profiler.write(bytes[off]);
+            } else {
+                profiler.write(bytes, off, len);
+            }
+        }
+        return profiler.getProfile();
+    }
+
+    private static Map<String, Long> columnBytes(Cx2SizeProfile profile) {
+        Map<String, Long> bytes = new HashMap<>();
+        for (Cx2SizeProfile.ColumnSize column : profile.getColumns()) {
+            bytes.put(column.getTable() + "." + column.getName(), column.getBytes());
+        }
+        return bytes;
+    }
+
+    private static long length(String json) {
+        return json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Test
+    public void testEveryByteIsAttributedToOneAspect() {
+        Cx2SizeProfile profile = profile(DOCUMENT, 8192);
+
+        long sum = 0;
+        for (Cx2SizeProfile.Aspect aspect : Cx2SizeProfile.Aspect.values()) {
+            sum += profile.getBytes(aspect);
+        }
+        assertEquals(length(DOCUMENT), profile.getTotalBytes());
+        assertEquals(profile.getTotalBytes(), sum);
+    }
+
+    @Test
+    public void testBytesAreAttributedToAspects() {
+        Cx2SizeProfile profile = profile(DOCUMENT, 8192);
+
+        // "x":1.5, "y":-2.0, "x":0.0, "y":0.0, each with its separating comma
+        assertEquals(
+                length("\"x\":1.5,\"y\":-2.0,\"x\":0.0,\"y\":0.0,"),
+                profile.getBytes(Cx2SizeProfile.Aspect.LAYOUT));
+        // Everything of the bypass aspect object but its opening brace
+        assertEquals(
+                length("\"nodeBypasses\":[{\"id\":1,\"v\":{\"NODE_FILL_COLOR\":\"#FF0000\"}}]}"),
+                profile.getBytes(Cx2SizeProfile.Aspect.BYPASSES));
+        // The closing brace of the edge goes to its last field, the attributes
+        assertEquals(
+                length("\"edges\":[{\"id\":3,\"s\":1,\"t\":2,]}"),
+                profile.getBytes(Cx2SizeProfile.Aspect.EDGES));
+        assertTrue(profile.getBytes(Cx2SizeProfile.Aspect.VISUAL_PROPERTIES) > 0);
+    }
+
+    @Test
+    public void testBytesAreAttributedToColumns() {
+        Map<String, Long> columns = columnBytes(profile(DOCUMENT, 8192));
+
+        assertEquals(length("\"seq\":\"ACGT\"}\"seq\":\"[{,}]\"}"), (long) columns.get("node.seq"));
+        assertEquals(length("\"name\":\"a\",\"name\":\"b\","), (long) columns.get("node.name"));
+        assertEquals(length("\"tags\":[\"x\",\"y\"]}"), (long) columns.get("edge.tags"));
+        assertEquals(length("\"weight\":0.5,"), (long) columns.get("edge.weight"));
+        assertEquals(
+                length("\"description\":\"a \\\"quoted\\\" text\"}"),
+                (long) columns.get("network.description"));
+        assertEquals(length("\"name\":\"net\","), (long) columns.get("network.name"));
+        // Visual property names in bypasses are not columns
+        assertEquals(6, columns.size());
+    }
+
+    @Test
+    public void testResultDoesNotDependOnWriteSizes() {
+        Cx2SizeProfile whole = profile(DOCUMENT, 8192);
+        for (int chunkBytes : new int[] {1, 3, 7}) {
+            Cx2SizeProfile chunked = profile(DOCUMENT, chunkBytes);
+            for (Cx2SizeProfile.Aspect aspect : Cx2SizeProfile.Aspect.values()) {
+                assertEquals(whole.getBytes(aspect), chunked.getBytes(aspect));
+            }
+            assertEquals(columnBytes(whole), columnBytes(chunked));
+        }
+    }
+
+    @Test
+    public void testSummaryAndJsonListLargestFirst() {
+        Cx2SizeProfile profile = profile(DOCUMENT, 8192);
+
+        String summary = profile.toSummary(1);
+        assertTrue(summary.startsWith("Largest contributors to the CX2 export ("));
+        assertTrue(summary.contains("\n    network column \"description\": "));
+        assertTrue(!summary.contains("column \"seq\""));
+        String json = profile.toJSON(2);
+        assertTrue(json.startsWith("{\"totalBytes\":" + length(DOCUMENT) + ",\"aspects\":{"));
+        assertTrue(
+                json.contains(
+                        "\"columns\":[{\"table\":\"network\",\"name\":\"description\","
+                                + "\"bytes\":34},{\"table\":\"node\",\"name\":\"seq\","
+                                + "\"bytes\":27}]}"));
+    }
+}
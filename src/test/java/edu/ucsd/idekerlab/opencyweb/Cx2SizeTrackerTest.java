@@ -0,0 +1,268 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.model.events.ViewChangeRecord;
+import org.cytoscape.view.model.events.ViewChangedEvent;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+import org.cytoscape.view.vizmap.VisualStyle;
+import org.cytoscape.view.vizmap.events.VisualStyleChangedEvent;
+
+public class Cx2SizeTrackerTest {
+
+    // Raw estimate of the bare fixture is 4096 + 100 * 60 + 200 * 40 = 18096 bytes, so rebasing at
+    // ten times that scales the node cost to 600 and the edge cost to 400 bytes
+    private static final long EXACT_BYTES = 180960L;
+    private static final long NODE_BYTES = 600L;
+    private static final long EDGE_BYTES = 400L;
+
+    private final CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+    private final Cx2SizeTracker tracker =
+            new Cx2SizeTracker(
+                    tableManager, new Cx2SizeEstimator(mock(RenderingEngineManager.class)));
+
+    private static CyNetworkView createMockNetworkView(CyNetwork network) {
+        when(network.getSUID()).thenReturn(1L);
+        when(network.getNodeCount()).thenReturn(100);
+        when(network.getEdgeCount()).thenReturn(200);
+        CyNetworkView view = mock(CyNetworkView.class);
+        when(view.getModel()).thenReturn(network);
+        return view;
+    }
+
+    private CyNetworkView rebasedView() {
+        CyNetworkView view = createMockNetworkView(mock(CyNetwork.class));
+        tracker.rebase(view, EXACT_BYTES);
+        return view;
+    }
+
+    private CyNetworkView rebasedView(CyTable nodeTable) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getDefaultNodeTable()).thenReturn(nodeTable);
+        CyNetworkView view = createMockNetworkView(network);
+        tracker.rebase(view, EXACT_BYTES);
+        return view;
+    }
+
+    private void setValues(CyNetwork network, String column, Object... values) {
+        CyTable table = mock(CyTable.class);
+        when(tableManager.getNetworkForTable(table)).thenReturn(network);
+        List<RowSetRecord> records = new ArrayList<>();
+        for (Object value : values) {
+            records.add(new RowSetRecord(mock(CyRow.class), column, value, value));
+        }
+        tracker.handleEvent(new RowsSetEvent(table, records));
+    }
+
+    @Test
+    public void testUntrackedNetworkHasNoSize() {
+        assertNull(tracker.get(1L));
+    }
+
+    @Test
+    public void testRebasedSizeIsExact() {
+        rebasedView();
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        assertEquals(EXACT_BYTES, size.getBytes());
+        assertEquals(EXACT_BYTES, size.getLowBytes());
+        assertEquals(EXACT_BYTES, size.getHighBytes());
+    }
+
+    @Test
+    public void testAddedElementsMoveSizeByTheirCost() {
+        CyNetwork network = rebasedView().getModel();
+        when(network.getNodeCount()).thenReturn(102);
+        tracker.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class))));
+        when(network.getEdgeCount()).thenReturn(201);
+        tracker.handleEvent(
+                new AddedEdgesEvent(network, Collections.singletonList(mock(CyEdge.class))));
+
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        long delta = 2 * NODE_BYTES + EDGE_BYTES;
+        assertEquals(EXACT_BYTES + delta, size.getBytes());
+        assertEquals(EXACT_BYTES + delta + delta / 2, size.getHighBytes());
+        assertEquals(EXACT_BYTES + delta / 2, size.getLowBytes());
+    }
+
+    @Test
+    public void testRemovedNodesAreCountedWithTheirEdges() {
+        CyNetwork network = rebasedView().getModel();
+        // Removing a node also removed three of its edges
+        when(network.getNodeCount()).thenReturn(99);
+        when(network.getEdgeCount()).thenReturn(197);
+        tracker.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class))));
+
+        assertEquals(EXACT_BYTES - NODE_BYTES - 3 * EDGE_BYTES, tracker.get(1L).getBytes());
+    }
+
+    @Test
+    public void testSetValueOfUnsampledColumnCountsHalfItsCost() {
+        CyNetwork network = rebasedView().getModel();
+        CyTable table = mock(CyTable.class);
+        when(tableManager.getNetworkForTable(table)).thenReturn(network);
+
+        // "name" + 4 overhead + "abcdefgh" + 2 quotes = 18 bytes, "selected" + 4 + "true" = 16
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        table,
+                        Arrays.asList(
+                                new RowSetRecord(mock(CyRow.class), "name", "abcdefgh", "abcdefgh"),
+                                new RowSetRecord(
+                                        mock(CyRow.class), CyNetwork.SELECTED, true, true))));
+
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        assertEquals(EXACT_BYTES + 17, size.getBytes());
+        assertEquals(EXACT_BYTES + 34, size.getHighBytes());
+        assertEquals(EXACT_BYTES, size.getLowBytes());
+    }
+
+    @Test
+    public void testShortValueReplacingWideOnesIsWithinBand() {
+        // Sampled "name" values are 104 bytes or missing: 52 bytes on average
+        char[] wide = new char[94];
+        Arrays.fill(wide, 'x');
+        CyTable nodeTable =
+                Cx2SizeEstimatorTest.createMockTable("name", Arrays.asList(new String(wide), null));
+        CyNetwork network = rebasedView(nodeTable).getModel();
+
+        // "name" + 4 overhead + "ab" + 2 quotes = 12 bytes, which may have replaced 104 bytes
+        setValues(network, "name", "ab");
+
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        assertEquals(EXACT_BYTES - 40, size.getBytes());
+        assertTrue(size.getLowBytes() <= EXACT_BYTES - 92);
+        assertTrue(size.getHighBytes() >= EXACT_BYTES + 12);
+
+        // The new value joins the range: replacing it with the widest value stays in the band
+        setValues(network, "name", new String(wide));
+        assertTrue(tracker.get(1L).getHighBytes() >= EXACT_BYTES - 92 + 2 * 104);
+    }
+
+    @Test
+    public void testSelectionChangesAreCounted() {
+        // "selected" + 4 overhead + "false" = 17 bytes, or 16 with "true"
+        CyTable nodeTable =
+                Cx2SizeEstimatorTest.createMockTable(
+                        CyNetwork.SELECTED, Arrays.asList(false, true));
+        CyNetwork network = rebasedView(nodeTable).getModel();
+        Object[] selected = new Object[1000];
+        Arrays.fill(selected, true);
+
+        setValues(network, CyNetwork.SELECTED, selected);
+
+        // Selecting 1000 unselected nodes shrinks the export by 1000 bytes
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        assertEquals(EXACT_BYTES - 500, size.getBytes());
+        assertEquals(EXACT_BYTES - 1000, size.getLowBytes());
+        assertEquals(EXACT_BYTES, size.getHighBytes());
+    }
+
+    @Test
+    public void testSharedValueAppliesToEverySubnetwork() {
+        CySubNetwork subNetwork = mock(CySubNetwork.class);
+        tracker.rebase(createMockNetworkView(subNetwork), EXACT_BYTES);
+        CyRootNetwork root = mock(CyRootNetwork.class);
+        when(root.getSubNetworkList()).thenReturn(Collections.singletonList(subNetwork));
+        CyTable sharedTable = mock(CyTable.class);
+        when(tableManager.getNetworkForTable(sharedTable)).thenReturn(root);
+
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        sharedTable,
+                        Collections.singletonList(
+                                new RowSetRecord(mock(CyRow.class), "name", "ab", "ab"))));
+
+        assertEquals(EXACT_BYTES + 6, tracker.get(1L).getBytes());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testBypassesAreCounted() {
+        CyNetworkView view = rebasedView();
+        View<CyNode> nodeView = mock(View.class);
+        VisualProperty<Object> color = mock(VisualProperty.class);
+
+        tracker.handleEvent(
+                new ViewChangedEvent(
+                        view,
+                        Arrays.asList(
+                                new ViewChangeRecord<>(nodeView, color, "#FF0000", true),
+                                new ViewChangeRecord<>(nodeView, color, "#00FF00", true),
+                                new ViewChangeRecord<>(nodeView, color, null, true))));
+
+        Cx2SizeEstimator.Estimate size = tracker.get(1L);
+        assertEquals(EXACT_BYTES + 32, size.getBytes());
+        assertEquals(EXACT_BYTES + 32 + 3 * 16, size.getHighBytes());
+    }
+
+    @Test
+    public void testDriftBeyondFractionRequiresRebase() {
+        CyNetwork network = rebasedView().getModel();
+        // 80 more nodes cost 48000 bytes with 24000 bytes uncertainty, over 10% of the size
+        when(network.getNodeCount()).thenReturn(180);
+        tracker.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class))));
+
+        assertNull(tracker.get(1L));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testStyleChangeDropsAllEntries() {
+        rebasedView();
+        tracker.handleEvent(new VisualStyleChangedEvent(mock(VisualStyle.class)));
+        assertNull(tracker.get(1L));
+    }
+
+    @Test
+    public void testDestroyedNetworkIsDropped() {
+        CyNetwork network = rebasedView().getModel();
+        tracker.handleEvent(
+                new NetworkAboutToBeDestroyedEvent(mock(CyNetworkManager.class), network));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testRebaseResetsUncertainty() {
+        CyNetworkView view = rebasedView();
+        when(view.getModel().getNodeCount()).thenReturn(110);
+        tracker.handleEvent(
+                new AddedNodesEvent(
+                        view.getModel(), Collections.singletonList(mock(CyNode.class))));
+        assertTrue(tracker.get(1L).getHighBytes() > tracker.get(1L).getBytes());
+
+        tracker.rebase(view, EXACT_BYTES);
+
+        assertEquals(EXACT_BYTES, tracker.get(1L).getHighBytes());
+    }
+}
@@ -0,0 +1,165 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.property.CyProperty;
+
+public class Cx2TransportTest {
+
+    private final Properties props = new Properties();
+    private final Properties coreProps = new Properties();
+    private final Cx2PayloadStore payloadStore = new Cx2PayloadStore();
+
+    @SuppressWarnings("unchecked")
+    private Cx2Transport createTransport() {
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        CyProperty<Properties> coreProperties = mock(CyProperty.class);
+        when(coreProperties.getProperties()).thenReturn(coreProps);
+        return new Cx2Transport(
+                cyProperties,
+                coreProperties,
+                payloadStore,
+                new Cx2LiveSessions(mock(CyNetworkTableManager.class)),
+                new OpenMetrics());
+    }
+
+    private static CyNetwork createMockNetwork(long suid) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        return network;
+    }
+
+    private static Cx2Buffer createCapture(long suid) {
+        Cx2Buffer capture = new Cx2Buffer(suid, 16);
+        capture.write("[]".getBytes(StandardCharsets.UTF_8), 0, 2);
+        capture.markComplete(1L, 0L, Cx2Encoding.JSON);
+        return capture;
+    }
+
+    // --- URL building tests ---
+
+    @Test
+    public void testBuildCytoscapeWebURIWithDefaults() {
+        String url = createTransport().buildCytoscapeWebURI(12345L);
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:1234/v1/networks/12345.cx?version=2",
+                url);
+    }
+
+    @Test
+    public void testBuildCytoscapeWebURIWithCustomProperties() {
+        props.setProperty("cytoscapeweb.baseurl", "https://custom.example.com");
+        coreProps.setProperty("rest.port", "5678");
+
+        String url = createTransport().buildCytoscapeWebURI(42L);
+        assertEquals(
+                "https://custom.example.com?import=http://localhost:5678/v1/networks/42.cx?version=2",
+                url);
+    }
+
+    @Test
+    public void testBuildCytoscapeWebURIWithCustomPort() {
+        coreProps.setProperty("rest.port", "9999");
+
+        String url = createTransport().buildCytoscapeWebURI(100L);
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:9999/v1/networks/100.cx?version=2",
+                url);
+    }
+
+    @Test
+    public void testBuildBufferedWebURI() {
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:1234/opencyweb/v1/cx2/abc123",
+                createTransport().buildBufferedWebURI("abc123"));
+    }
+
+    @Test
+    public void testBuildContentWebURI() {
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:1234"
+                        + "/opencyweb/v1/cx2/content/00ff-12",
+                createTransport().buildContentWebURI("00ff-12"));
+    }
+
+    // --- Transport settings tests ---
+
+    @Test
+    public void testCyrestServesJsonWhateverTheEncoding() {
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_ENCODING, "cbor");
+        Cx2Transport transport = createTransport();
+        assertEquals(Cx2Encoding.JSON, transport.getEncoding());
+
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_MODE, " Buffered ");
+        assertTrue(transport.isBuffered());
+        assertFalse(transport.isStreaming());
+        assertEquals(Cx2Encoding.CBOR, transport.getEncoding());
+
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_ENCODING, "xml");
+        assertEquals(Cx2Encoding.JSON, transport.getEncoding());
+    }
+
+    @Test
+    public void testInvalidMegabytesDisableTheBudget() {
+        props.setProperty(Cx2Transport.PROP_OFFHEAP_MAX_MB, "lots");
+        assertEquals(0, createTransport().getOffHeapMaxBytes());
+
+        props.setProperty(Cx2Transport.PROP_OFFHEAP_MAX_MB, "0.5");
+        assertEquals(512 * 1024, createTransport().getOffHeapMaxBytes());
+    }
+
+    // --- Import URL tests ---
+
+    @Test
+    public void testWithoutExportTheNetworkIsImportedFromCyrest() throws Exception {
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:1234/v1/networks/7.cx?version=2",
+                createTransport()
+                        .createImportURI(createMockNetwork(7L), null, () -> null)
+                        .toString());
+    }
+
+    @Test
+    public void testCaptureIsServedFromTheContentIndex() throws Exception {
+        Cx2Buffer capture = createCapture(7L);
+
+        String url =
+                createTransport()
+                        .createImportURI(createMockNetwork(7L), capture, () -> null)
+                        .toString();
+
+        assertTrue(url, url.contains("/opencyweb/v1/cx2/content/"));
+        assertEquals(1, payloadStore.contentSize());
+        assertEquals(0, payloadStore.size());
+    }
+
+    @Test
+    public void testInvalidBaseUrlLeavesNothingRegistered() {
+        props.setProperty(Cx2Transport.PROP_DEDUP_MAX_MB, "0");
+        props.setProperty(Cx2Transport.PROP_CYTOSCAPE_WEB_BASE_URL, "not a url");
+
+        try {
+            createTransport().createImportURI(createMockNetwork(7L), createCapture(7L), () -> null);
+            fail("Expected URISyntaxException");
+        } catch (URISyntaxException e) {
+            assertTrue(e.getInput(), e.getInput().startsWith("not a url?import="));
+        }
+        assertEquals(0, payloadStore.size());
+        assertNull(payloadStore.findContent(7L, 0L, Cx2Encoding.JSON));
+    }
+}
@@ -0,0 +1,102 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.SavePolicy;
+import org.cytoscape.property.CyProperty;
+
+public class Cx2WarmUpTest {
+
+    private final CyNetworkFactory networkFactory = mock(CyNetworkFactory.class);
+    private final CyNetwork network = mock(CyNetwork.class, RETURNS_DEEP_STUBS);
+    private final OpenInCytoscapeWebTaskFactoryImpl taskFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+    private final NetworkChangeTracker changeTracker = mock(NetworkChangeTracker.class);
+    private final ExecutorService executor = mock(ExecutorService.class);
+
+    @SuppressWarnings("unchecked")
+    private Cx2WarmUp createWarmUp(Properties props) {
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        when(networkFactory.createNetworkWithPrivateTables(SavePolicy.DO_NOT_SAVE))
+                .thenReturn(network);
+        return new Cx2WarmUp(networkFactory, taskFactory, changeTracker, cyProperties, executor);
+    }
+
+    @Test
+    public void testEnabledByDefault() {
+        createWarmUp(new Properties()).start();
+
+        verify(executor).execute(any(Runnable.class));
+        verify(executor).shutdown();
+    }
+
+    @Test
+    public void testDisabled() {
+        Properties props = new Properties();
+        props.setProperty(Cx2WarmUp.PROP_WARMUP_ENABLED, "false");
+
+        createWarmUp(props).start();
+
+        verify(executor, never()).execute(any(Runnable.class));
+        verify(executor).shutdown();
+    }
+
+    @Test
+    public void testExportsSyntheticNetworkRepeatedly() {
+        when(taskFactory.warmUpExport(network)).thenReturn(1000L);
+
+        createWarmUp(new Properties()).warmUp();
+
+        verify(network, times(Cx2WarmUp.WARM_UP_NODES)).addNode();
+        verify(network, times(Cx2WarmUp.WARM_UP_EDGES)).addEdge(any(), any(), any(Boolean.class));
+        verify(taskFactory, times(Cx2WarmUp.WARM_UP_ROUNDS)).warmUpExport(network);
+    }
+
+    @Test
+    public void testSyntheticNetworkIsExcludedBeforeItChanges() {
+        when(taskFactory.warmUpExport(network)).thenReturn(1000L);
+
+        createWarmUp(new Properties()).warmUp();
+
+        InOrder inOrder = inOrder(changeTracker, network);
+        inOrder.verify(changeTracker).exclude(network);
+        inOrder.verify(network).addNode();
+    }
+
+    @Test
+    public void testStopsWithoutWriter() {
+        when(taskFactory.warmUpExport(network)).thenReturn(-1L);
+
+        createWarmUp(new Properties()).warmUp();
+
+        verify(taskFactory, times(1)).warmUpExport(network);
+    }
+
+    @Test
+    public void testDisposedWarmUpDoesNothing() {
+        Cx2WarmUp warmUp = createWarmUp(new Properties());
+        warmUp.dispose();
+
+        warmUp.warmUp();
+
+        verify(executor).shutdownNow();
+        verify(networkFactory, never()).createNetworkWithPrivateTables(any());
+        verify(taskFactory, never()).warmUpExport(any());
+    }
+}
@@ -0,0 +1,183 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectBufferPoolTest {
+
+    private static final int SEGMENT_BYTES = 16;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] sequence(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static DirectBufferPool createPool(int segments) {
+        DirectBufferPool pool = new DirectBufferPool(SEGMENT_BYTES);
+        pool.setMaxBytes(segments * SEGMENT_BYTES);
+        return pool;
+    }
+
+    @Test
+    public void testSegmentsAreAllocatedUpToBudgetAndRecycled() {
+        DirectBufferPool pool = createPool(2);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+
+        assertTrue(first.isDirect());
+        assertNotNull(second);
+        assertNull(pool.acquire());
+        assertEquals(2 * SEGMENT_BYTES, pool.getUsedBytes());
+
+        first.put((byte) 1);
+        pool.release(first);
+        ByteBuffer recycled = pool.acquire();
+        assertSame(first, recycled);
+        assertEquals(0, recycled.position());
+        assertEquals(2 * SEGMENT_BYTES, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void testLoweredBudgetDropsReleasedSegments() {
+        DirectBufferPool pool = createPool(2);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+
+        pool.setMaxBytes(0);
+        assertEquals(SEGMENT_BYTES, pool.getAllocatedBytes());
+        pool.release(second);
+
+        assertEquals(0, pool.getAllocatedBytes());
+        assertNull(pool.acquire());
+    }
+
+    @Test
+    public void testBufferContinuesOnHeapWhenBudgetIsUsedUp() throws Exception {
+        DirectBufferPool pool = createPool(2);
+        Cx2Buffer buffer = new Cx2Buffer(1L, 0, pool);
+        byte[] bytes = sequence(50);
+        buffer.write(bytes[0]);
+        buffer.write(bytes, 1, 49);
+        buffer.markComplete();
+
+        assertEquals(50, buffer.size());
+        assertEquals(2 * SEGMENT_BYTES, buffer.getOffHeapBytes());
+        assertArrayEquals(bytes, buffer.toByteArray());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        buffer.writeTo(response);
+        assertArrayEquals(bytes, response.toByteArray());
+    }
+
+    @Test
+    public void testReleasedBufferReturnsSegments() {
+        DirectBufferPool pool = createPool(4);
+        Cx2Buffer buffer = new Cx2Buffer(1L, 0, pool);
+        buffer.write(sequence(40), 0, 40);
+        assertEquals(3 * SEGMENT_BYTES, pool.getUsedBytes());
+
+        buffer.release();
+
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testSpilledBufferReturnsSegments() throws Exception {
+        DirectBufferPool pool = createPool(4);
+        Cx2Buffer buffer = new Cx2Buffer(1L, 0, pool);
+        byte[] bytes = sequence(40);
+        buffer.write(bytes, 0, 40);
+        buffer.markComplete(0, 0);
+        File file = new Cx2DiskCache(folder.getRoot()).write(buffer.getContentKey(), buffer);
+
+        buffer.spillTo(file);
+
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(40, buffer.size());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        buffer.writeTo(response);
+        assertArrayEquals(bytes, response.toByteArray());
+    }
+
+    @Test
+    public void testReleaseDuringResponseKeepsSegmentsUntilItEnds() throws Exception {
+        DirectBufferPool pool = createPool(4);
+        Cx2Buffer buffer = new Cx2Buffer(1L, 0, pool);
+        byte[] bytes = sequence(40);
+        buffer.write(bytes, 0, 40);
+        buffer.markComplete();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        ByteArrayOutputStream response =
+                new ByteArrayOutputStream() {
+                    @Override
+                    public synchronized void write(byte[] b, int off, int len) {
+                        writing.countDown();
+                        try {
+                            released.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.write(b, off, len);
+                    }
+                };
+        Thread client =
+                new Thread(
+                        () -> {
+                            try {
+                                buffer.writeTo(response);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+        client.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // The response does not hold the lock, and its segments stay out of the pool
+        buffer.release();
+        assertEquals(0, buffer.getContentLength());
+        assertEquals(3 * SEGMENT_BYTES, pool.getUsedBytes());
+        released.countDown();
+        client.join(5000);
+
+        assertArrayEquals(bytes, response.toByteArray());
+        assertEquals(0, pool.getUsedBytes());
+    }
+
+    @Test
+    public void testContentLengthOfLargeExportIsNotTruncated() throws Exception {
+        File file = folder.newFile("large.cx2");
+        // Sparse, so it takes no space on disk
+        try (RandomAccessFile large = new RandomAccessFile(file, "rw")) {
+            large.setLength(3L * Integer.MAX_VALUE);
+        }
+
+        Cx2Buffer buffer = Cx2Buffer.ofFile("0-0", file);
+
+        assertEquals(3L * Integer.MAX_VALUE, buffer.getContentLength());
+        assertEquals(Integer.MAX_VALUE, buffer.size());
+    }
+}
@@ -1,5 +1,7 @@
 package edu.ucsd.idekerlab.opencyweb;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
@@ -62,4 +64,22 @@ public class DoTaskTest {
         verify(mockMonitor)
                 .showMessage(eq(TaskMonitor.Level.ERROR), contains("could not be opened"));
     }
+
+    @Test
+    public void testRunFinishesTraceWithBrowserLaunch() throws Exception {
+        OpenMetrics metrics = new OpenMetrics();
+        OpenMetrics.Trace trace = metrics.startTrace(12345L);
+
+        DoTask task =
+                new DoTask(
+                        mock(Desktop.class),
+                        createMockNetwork(12345L),
+                        new URI("http://example.com"),
+                        trace);
+        task.run(mock(TaskMonitor.class));
+
+        assertEquals(1, metrics.getOpenCount());
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.BROWSER_LAUNCH));
+        assertTrue(trace.toString().contains("opened"));
+    }
 }
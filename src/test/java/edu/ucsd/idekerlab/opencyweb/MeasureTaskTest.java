@@ -0,0 +1,207 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.work.Task;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.json.JSONResult;
+
+public class MeasureTaskTest {
+
+    private static final long MAX_BYTES = 10L * 1024 * 1024;
+
+    private final CyNetworkManager networkManager = mock(CyNetworkManager.class);
+    private final CyApplicationManager appManager = mock(CyApplicationManager.class);
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+
+    private CyNetwork createNetwork(long suid, String name, int nodes, int edges) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        when(network.getNodeCount()).thenReturn(nodes);
+        when(network.getEdgeCount()).thenReturn(edges);
+        CyRow row = mock(CyRow.class);
+        when(row.get(CyNetwork.NAME, String.class)).thenReturn(name);
+        when(network.getRow(network)).thenReturn(row);
+        when(networkManager.getNetwork(suid)).thenReturn(network);
+        return network;
+    }
+
+    private MeasureTask createTask(String networks) {
+        when(openFactory.getMaxFileSizeBytes()).thenReturn(MAX_BYTES);
+        Task task =
+                new MeasureTaskFactory(networkManager, appManager, openFactory)
+                        .createTaskIterator()
+                        .next();
+        MeasureTask measureTask = (MeasureTask) task;
+        measureTask.networks = networks;
+        return measureTask;
+    }
+
+    @Test
+    public void testReportsEveryNetwork() throws Exception {
+        CyNetwork small = createNetwork(2L, "small \"one\"", 10, 20);
+        CyNetwork large = createNetwork(1L, "large", 100, 200);
+        CyNetwork dense = createNetwork(3L, "dense", 10, 30000);
+        when(networkManager.getNetworkSet())
+                .thenReturn(new HashSet<>(Arrays.asList(small, large, dense)));
+        when(openFactory.measureExportSize(eq(small), any(), any()))
+                .thenReturn(Cx2ExportSize.exact(2048));
+        when(openFactory.measureExportSize(eq(large), any(), any()))
+                .thenReturn(Cx2ExportSize.atLeast(MAX_BYTES + 1));
+        when(openFactory.checkElementCounts(dense))
+                .thenReturn(
+                        "The selected network exceeds the threshold limits for web-based"
+                                + " rendering.\n  Edges: 30000 (max: 20000)\n\nYou can adjust"
+                                + " these limits.");
+        MeasureTask task = createTask("all");
+        task.concurrency = 2;
+
+        task.run(mock(TaskMonitor.class));
+
+        String json = task.getResults(JSONResult.class).getJSON();
+        assertTrue(json, json.startsWith("{\"concurrency\":2,\"millis\":"));
+        assertTrue(json, json.contains("\"maxFileSizeBytes\":10485760,\"networks\":[{\"suid\":1,"));
+        assertTrue(
+                json,
+                json.contains(
+                        "{\"suid\":1,\"name\":\"large\",\"nodes\":100,\"edges\":200,"
+                                + "\"passed\":false,\"size\":{\"bytes\":10485761,"
+                                + "\"exact\":false},\"millis\":"));
+        assertTrue(
+                json,
+                json.contains(
+                        "\"errors\":[\"CX2 export size: at least 10.000 MB (max: 10.000 MB)\"]"));
+        assertTrue(
+                json,
+                json.contains(
+                        "{\"suid\":2,\"name\":\"small \\\"one\\\"\",\"nodes\":10,\"edges\":20,"
+                                + "\"passed\":true,\"size\":{\"bytes\":2048,\"exact\":true},"));
+        assertTrue(
+                json,
+                json.contains(
+                        "{\"suid\":3,\"name\":\"dense\",\"nodes\":10,\"edges\":30000,"
+                                + "\"passed\":false,\"size\":null,"));
+        assertTrue(json, json.contains("\"errors\":[\"Edges: 30000 (max: 20000)\"]}]}"));
+        // Networks failing the count checks are not serialized
+        verify(openFactory, never()).measureExportSize(eq(dense), any(), any());
+
+        String summary = task.getResults(String.class);
+        assertTrue(summary, summary.startsWith("Measured 3 networks on 2 threads in "));
+        assertTrue(summary, summary.contains(": 1 passed, 2 failed"));
+        assertTrue(summary, summary.contains("\n  - small \"one\" (SUID 2): passed, 10 nodes"));
+    }
+
+    @Test
+    public void testMeasuresListedNetworksInParallel() throws Exception {
+        CyNetwork first = createNetwork(7L, "first", 1, 1);
+        CyNetwork second = createNetwork(8L, "second", 1, 1);
+        // Each measurement waits until both have started, so they have to run at once
+        CountDownLatch started = new CountDownLatch(2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(openFactory.measureExportSize(any(), any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            threads.add(Thread.currentThread().getName());
+                            started.countDown();
+                            assertTrue(started.await(10, TimeUnit.SECONDS));
+                            return Cx2ExportSize.exact(100);
+                        });
+        MeasureTask task = createTask("8, 7");
+        task.concurrency = 2;
+
+        task.run(mock(TaskMonitor.class));
+
+        String json = task.getResults(JSONResult.class).getJSON();
+        assertTrue(json, json.indexOf("\"suid\":8") < json.indexOf("\"suid\":7"));
+        assertEquals(2, threads.size());
+        assertTrue(threads.iterator().next().startsWith("opencyweb-measure-"));
+        verify(openFactory).measureExportSize(eq(first), any(), any());
+        verify(openFactory).measureExportSize(eq(second), any(), any());
+    }
+
+    @Test
+    public void testUnknownSizePasses() throws Exception {
+        CyNetwork network = createNetwork(5L, "no writer", 1, 1);
+        when(appManager.getCurrentNetwork()).thenReturn(network);
+        when(openFactory.measureExportSize(eq(network), any(), any()))
+                .thenReturn(Cx2ExportSize.UNKNOWN);
+        when(openFactory.getBatchParallelism(1)).thenReturn(1);
+        MeasureTask task = createTask(MeasureTask.CURRENT_NETWORK);
+
+        task.run(mock(TaskMonitor.class));
+
+        String json = task.getResults(JSONResult.class).getJSON();
+        assertTrue(json, json.contains("\"passed\":true,\"size\":null,"));
+    }
+
+    @Test
+    public void testNamesAndErrorsAreEscaped() throws Exception {
+        String name = "tab\tquote\"back\\slash\u0001line\nsep\u2028\uD83E\uDDEC";
+        String error = "Too many nodes\n  Nodes: 9 \"of\" 8";
+        CyNetwork network = createNetwork(4L, name, 9, 1);
+        when(appManager.getCurrentNetwork()).thenReturn(network);
+        when(openFactory.checkElementCounts(network)).thenReturn(error);
+        when(openFactory.getBatchParallelism(1)).thenReturn(1);
+        MeasureTask task = createTask(MeasureTask.CURRENT_NETWORK);
+
+        task.run(mock(TaskMonitor.class));
+
+        List<String> strings = new ArrayList<>();
+        try (JsonParser parser =
+                new JsonFactory().createParser(task.getResults(JSONResult.class).getJSON())) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token == JsonToken.VALUE_STRING) {
+                    strings.add(parser.getText());
+                }
+            }
+        }
+        assertEquals(Arrays.asList(name, "Nodes: 9 \"of\" 8"), strings);
+    }
+
+    @Test
+    public void testResolvesNetworks() {
+        CyNetwork network = createNetwork(5L, "a", 1, 1);
+        when(appManager.getCurrentNetwork()).thenReturn(network);
+
+        List<CyNetwork> resolved = createTask(" 5 ").resolveNetworks();
+        assertEquals(Arrays.asList(network), resolved);
+        assertEquals(Arrays.asList(network), createTask("").resolveNetworks());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSuidFails() {
+        createTask("5,99").resolveNetworks();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSuidFails() {
+        createTask("five").resolveNetworks();
+    }
+}
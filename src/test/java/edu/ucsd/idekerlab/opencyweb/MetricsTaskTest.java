@@ -0,0 +1,45 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Test;
+
+import org.cytoscape.work.Task;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.json.JSONResult;
+
+public class MetricsTaskTest {
+
+    private final OpenMetrics metrics = new OpenMetrics();
+
+    @Test
+    public void testReportsSummaryAndJson() throws Exception {
+        metrics.start(OpenMetrics.Phase.SERIALIZATION).close();
+        TaskIterator iterator = new MetricsTaskFactory(metrics).createTaskIterator();
+        Task task = iterator.next();
+        task.run(mock(TaskMonitor.class));
+
+        MetricsTask metricsTask = (MetricsTask) task;
+        assertTrue(metricsTask.getResults(String.class).contains("serialization"));
+        String json = metricsTask.getResults(JSONResult.class).getJSON();
+        assertTrue(json.contains("\"serialization\":{\"count\":1,"));
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.SERIALIZATION));
+    }
+
+    @Test
+    public void testResetClearsAfterReporting() throws Exception {
+        metrics.start(OpenMetrics.Phase.SERIALIZATION).close();
+        MetricsTask task = new MetricsTask(metrics);
+        task.reset = true;
+        task.run(mock(TaskMonitor.class));
+
+        assertTrue(
+                task.getResults(JSONResult.class)
+                        .getJSON()
+                        .contains("\"serialization\":{\"count\":1,"));
+        assertEquals(0, metrics.getSampleCount(OpenMetrics.Phase.SERIALIZATION));
+    }
+}
@@ -0,0 +1,193 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.subnetwork.CyRootNetwork;
+import org.cytoscape.model.subnetwork.CySubNetwork;
+
+public class NetworkChangeTrackerTest {
+
+    private static CyNetwork createMockNetwork(long suid) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        return network;
+    }
+
+    @Test
+    public void testUnchangedNetworkHasStampZero() {
+        NetworkChangeTracker tracker = new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+        assertEquals(0L, tracker.getStamp(1L));
+    }
+
+    @Test
+    public void testAddedNodesAdvanceOnlyThatNetwork() {
+        NetworkChangeTracker tracker = new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+        CyNetwork network = createMockNetwork(1L);
+
+        tracker.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class))));
+
+        assertTrue(tracker.getStamp(1L) > 0L);
+        assertEquals(0L, tracker.getStamp(2L));
+    }
+
+    @Test
+    public void testRowsSetAdvancesOwningNetwork() {
+        CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+        CyTable table = mock(CyTable.class);
+        CyNetwork network = createMockNetwork(1L);
+        when(tableManager.getNetworkForTable(table)).thenReturn(network);
+        NetworkChangeTracker tracker = new NetworkChangeTracker(tableManager);
+
+        long before = tracker.getStamp(1L);
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        table,
+                        Arrays.asList(new RowSetRecord(mock(CyRow.class), "name", "a", "a"))));
+
+        assertNotEquals(before, tracker.getStamp(1L));
+    }
+
+    @Test
+    public void testSelectionChangeAdvancesOwningNetwork() {
+        CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+        CyTable table = mock(CyTable.class);
+        CyNetwork network = createMockNetwork(1L);
+        when(tableManager.getNetworkForTable(table)).thenReturn(network);
+        NetworkChangeTracker tracker = new NetworkChangeTracker(tableManager);
+
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        table,
+                        Arrays.asList(
+                                new RowSetRecord(
+                                        mock(CyRow.class), CyNetwork.SELECTED, true, true))));
+
+        assertTrue(tracker.getStamp(1L) > 0L);
+        assertEquals(0L, tracker.getStamp(2L));
+    }
+
+    @Test
+    public void testSharedTableChangeAdvancesOnlySubnetworksOfRoot() {
+        CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+        CyTable table = mock(CyTable.class);
+        CySubNetwork first = mock(CySubNetwork.class);
+        when(first.getSUID()).thenReturn(1L);
+        CySubNetwork second = mock(CySubNetwork.class);
+        when(second.getSUID()).thenReturn(2L);
+        CyRootNetwork root = mock(CyRootNetwork.class);
+        when(root.getSUID()).thenReturn(99L);
+        when(root.getSubNetworkList()).thenReturn(Arrays.asList(first, second));
+        when(tableManager.getNetworkForTable(table)).thenReturn(root);
+        NetworkChangeTracker tracker = new NetworkChangeTracker(tableManager);
+        List<Long> changed = new ArrayList<>();
+        tracker.addChangeListener(changed::add);
+
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        table,
+                        Arrays.asList(
+                                new RowSetRecord(mock(CyRow.class), "shared name", "x", "x"))));
+
+        assertTrue(tracker.getStamp(1L) > 0L);
+        assertTrue(tracker.getStamp(2L) > 0L);
+        assertEquals(0L, tracker.getStamp(3L));
+        assertEquals(Arrays.asList(1L, 2L), changed);
+    }
+
+    @Test
+    public void testUnownedTableChangeIsIgnored() {
+        CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+        CyTable table = mock(CyTable.class);
+        NetworkChangeTracker tracker = new NetworkChangeTracker(tableManager);
+        List<Long> changed = new ArrayList<>();
+        tracker.addChangeListener(changed::add);
+
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        table,
+                        Arrays.asList(new RowSetRecord(mock(CyRow.class), "name", "a", "a"))));
+
+        assertEquals(0L, tracker.getStamp(1L));
+        assertTrue(changed.isEmpty());
+    }
+
+    @Test
+    public void testExcludedNetworkAndItsRootAreIgnored() {
+        CyNetworkTableManager tableManager = mock(CyNetworkTableManager.class);
+        CyRootNetwork root = mock(CyRootNetwork.class);
+        when(root.getSUID()).thenReturn(6L);
+        CySubNetwork network = mock(CySubNetwork.class);
+        when(network.getSUID()).thenReturn(5L);
+        when(network.getRootNetwork()).thenReturn(root);
+        when(root.getSubNetworkList()).thenReturn(Collections.singletonList(network));
+        CyTable sharedTable = mock(CyTable.class);
+        when(tableManager.getNetworkForTable(sharedTable)).thenReturn(root);
+        NetworkChangeTracker tracker = new NetworkChangeTracker(tableManager);
+        List<Long> changed = new ArrayList<>();
+        tracker.addChangeListener(changed::add);
+        tracker.markChanged(5L);
+
+        tracker.exclude(network);
+        tracker.handleEvent(
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class))));
+        // Names set on the network also set the shared name in the root's table
+        tracker.handleEvent(
+                new RowsSetEvent(
+                        sharedTable,
+                        Arrays.asList(
+                                new RowSetRecord(mock(CyRow.class), "shared name", "x", "x"))));
+
+        assertEquals(0L, tracker.getStamp(5L));
+        assertEquals(0L, tracker.getStamp(1L));
+        assertEquals(Collections.singletonList(5L), changed);
+    }
+
+    @Test
+    public void testStampsNeverRepeat() {
+        NetworkChangeTracker tracker = new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+        tracker.markChanged(1L);
+        long first = tracker.getStamp(1L);
+        tracker.markAllChanged();
+        long second = tracker.getStamp(1L);
+        tracker.markChanged(1L);
+        long third = tracker.getStamp(1L);
+
+        assertTrue(first < second);
+        assertTrue(second < third);
+    }
+
+    @Test
+    public void testListenersAreNotifiedOfChanges() {
+        NetworkChangeTracker tracker = new NetworkChangeTracker(mock(CyNetworkTableManager.class));
+        List<Long> changed = new ArrayList<>();
+        NetworkChangeTracker.ChangeListener listener = changed::add;
+        tracker.addChangeListener(listener);
+
+        tracker.markChanged(1L);
+        tracker.markAllChanged();
+        tracker.removeChangeListener(listener);
+        tracker.markChanged(2L);
+
+        assertEquals(Arrays.asList(1L, null), changed);
+    }
+}
@@ -12,7 +12,7 @@ import org.junit.Test;
 
 import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CySwingApplication;
-import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.model.CyNetwork;
 import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.swing.DialogTaskManager;
 
@@ -20,7 +20,7 @@ import org.cytoscape.work.swing.DialogTaskManager;
 public class OpenInCytoscapeWebActionTest {
 
     @Test
-    public void testActionPerformedWithNullCurrentNetworkView() {
+    public void testActionPerformedWithNullCurrentNetwork() {
         // Set up mocks
         CyApplicationManager mockAppManager = mock(CyApplicationManager.class);
         CySwingApplication mockSwingApp = mock(CySwingApplication.class);
@@ -29,8 +29,8 @@ public class OpenInCytoscapeWebActionTest {
         DialogTaskManager mockTaskManager = mock(DialogTaskManager.class);
         ActionEvent mockEvent = mock(ActionEvent.class);
 
-        // Configure mock to return null for current network view
-        when(mockAppManager.getCurrentNetworkView()).thenReturn(null);
+        // Configure mock to return null for current network
+        when(mockAppManager.getCurrentNetwork()).thenReturn(null);
 
         // Create action
         OpenCytoscapeWebToolbar action =
@@ -40,8 +40,8 @@ public class OpenInCytoscapeWebActionTest {
         // Execute actionPerformed
         action.actionPerformed(mockEvent);
 
-        // Verify that taskFactory was never called since network view was null
-        verify(mockTaskFactory, never()).createTaskIterator(any(CyNetworkView.class));
+        // Verify that taskFactory was never called since network was null
+        verify(mockTaskFactory, never()).createTaskIterator(any(CyNetwork.class));
         verify(mockTaskManager, never()).execute(any(TaskIterator.class));
     }
 
@@ -53,15 +53,15 @@ public class OpenInCytoscapeWebActionTest {
         OpenInCytoscapeWebTaskFactoryImpl mockTaskFactory =
                 mock(OpenInCytoscapeWebTaskFactoryImpl.class);
         DialogTaskManager mockTaskManager = mock(DialogTaskManager.class);
-        CyNetworkView mockNetworkView = mock(CyNetworkView.class);
+        CyNetwork mockNetwork = mock(CyNetwork.class);
         ActionEvent mockEvent = mock(ActionEvent.class);
 
         // Create a real TaskIterator (final class, cannot be mocked)
         TaskIterator realTaskIterator = new TaskIterator();
 
         // Configure mock behavior
-        when(mockAppManager.getCurrentNetworkView()).thenReturn(mockNetworkView);
-        when(mockTaskFactory.createTaskIterator(mockNetworkView)).thenReturn(realTaskIterator);
+        when(mockAppManager.getCurrentNetwork()).thenReturn(mockNetwork);
+        when(mockTaskFactory.createTaskIterator(mockNetwork)).thenReturn(realTaskIterator);
 
         // Create action
         OpenCytoscapeWebToolbar action =
@@ -72,7 +72,7 @@ public class OpenInCytoscapeWebActionTest {
         action.actionPerformed(mockEvent);
 
         // Verify that task was created and executed
-        verify(mockTaskFactory).createTaskIterator(mockNetworkView);
+        verify(mockTaskFactory).createTaskIterator(mockNetwork);
         verify(mockTaskManager).execute(realTaskIterator);
     }
 }
@@ -1,50 +1,105 @@
 package edu.ucsd.idekerlab.opencyweb;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JFrame;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
 
 import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
 
 import org.cytoscape.application.CyApplicationManager;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.io.write.CyNetworkViewWriterFactory;
 import org.cytoscape.io.write.CyNetworkViewWriterManager;
 import org.cytoscape.io.write.CyWriter;
 import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.AddedNodesEvent;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
 import org.cytoscape.property.CyProperty;
 import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewManager;
+import org.cytoscape.view.presentation.RenderingEngineManager;
 import org.cytoscape.work.Task;
 import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
 
 public class OpenInCytoscapeWebTaskFactoryImplTest {
 
     // Mock CyWriter always writes this many bytes — tests vary the threshold property
     private static final int FIXTURE_EXPORT_SIZE_BYTES = 5 * 1024 * 1024; // 5 MB
+    private static final String CX2_JSON =
+            "[{\"CXVersion\":\"2.0\",\"hasFragments\":false},"
+                    + "{\"nodes\":[{\"id\":0,\"v\":{\"name\":\"a\"}},{\"id\":1}]},"
+                    + "{\"status\":[{\"error\":\"\",\"success\":true}]}]";
 
     // Static test fixture for file-size tests (small counts, passes all count checks)
     private static final CyNetworkView FILE_SIZE_FIXTURE = createMockNetworkView(1L, 100, 200);
 
     private CyFileFilter mockCxFilter;
 
+    private final CyNetworkTableManager networkTableManager = mock(CyNetworkTableManager.class);
+    private final NetworkChangeTracker changeTracker =
+            new NetworkChangeTracker(networkTableManager);
+
+    private final Cx2SizeEstimator sizeEstimator =
+            new Cx2SizeEstimator(mock(RenderingEngineManager.class));
+
+    private final Cx2SizeTracker sizeTracker =
+            new Cx2SizeTracker(mock(CyNetworkTableManager.class), sizeEstimator);
+
+    private final Cx2PayloadStore payloadStore = new Cx2PayloadStore();
+    private final OpenMetrics metrics = new OpenMetrics();
+    private final Cx2LiveSessions liveSessions =
+            new Cx2LiveSessions(mock(CyNetworkTableManager.class));
+
+    private final CyNetworkViewManager viewManager = mock(CyNetworkViewManager.class);
+
+    // Guards with the heap of the test JVM unless a test replaces it
+    private Cx2MemoryGuard memoryGuard;
+
     private CyNetworkViewWriterManager createMockWriterManager() {
         mockCxFilter = mock(CyFileFilter.class);
         when(mockCxFilter.getExtensions()).thenReturn(new HashSet<>(Arrays.asList("cx")));
@@ -52,6 +107,37 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         CyNetworkViewWriterManager mgr = mock(CyNetworkViewWriterManager.class);
         when(mgr.getAvailableWriterFilters()).thenReturn(Arrays.asList(mockCxFilter));
 
+        Answer<CyWriter> fixtureWriter =
+                invocation -> {
+                    OutputStream os = invocation.getArgument(2);
+                    CyWriter writer = mock(CyWriter.class);
+                    doAnswer(
+                                    run -> {
+                                        os.write(new byte[FIXTURE_EXPORT_SIZE_BYTES]);
+                                        return null;
+                                    })
+                            .when(writer)
+                            .run(any());
+                    return writer;
+                };
+        try {
+            when(mgr.getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class)))
+                    .thenAnswer(fixtureWriter);
+            when(mgr.getWriter(any(CyNetwork.class), eq(mockCxFilter), any(OutputStream.class)))
+                    .thenAnswer(fixtureWriter);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return mgr;
+    }
+
+    /**
+     * Writer manager whose writer emits the fixture size in 1 KB chunks, recording how many chunks
+     * were accepted before the output stream stopped it.
+     */
+    private CyNetworkViewWriterManager createChunkedWriterManager(AtomicInteger chunksWritten) {
+        CyNetworkViewWriterManager mgr = createMockWriterManager();
         try {
             when(mgr.getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class)))
                     .thenAnswer(
@@ -60,7 +146,13 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
                                 CyWriter writer = mock(CyWriter.class);
                                 doAnswer(
                                                 run -> {
-                                                    os.write(new byte[FIXTURE_EXPORT_SIZE_BYTES]);
+                                                    byte[] chunk = new byte[1024];
+                                                    for (int i = 0;
+                                                            i < FIXTURE_EXPORT_SIZE_BYTES / 1024;
+                                                            i++) {
+                                                        os.write(chunk);
+                                                        chunksWritten.incrementAndGet();
+                                                    }
                                                     return null;
                                                 })
                                         .when(writer)
@@ -70,7 +162,26 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        return mgr;
+    }
 
+    /** Writer manager whose writer emits {@link #CX2_JSON}, so that it can be transcoded. */
+    private CyNetworkViewWriterManager createJsonWriterManager() throws Exception {
+        CyNetworkViewWriterManager mgr = createMockWriterManager();
+        when(mgr.getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class)))
+                .thenAnswer(
+                        invocation -> {
+                            OutputStream os = invocation.getArgument(2);
+                            CyWriter writer = mock(CyWriter.class);
+                            doAnswer(
+                                            run -> {
+                                                os.write(CX2_JSON.getBytes(StandardCharsets.UTF_8));
+                                                return null;
+                                            })
+                                    .when(writer)
+                                    .run(any());
+                            return writer;
+                        });
         return mgr;
     }
 
@@ -93,8 +204,23 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         CyProperty<Properties> mockCoreCyProps = mock(CyProperty.class);
         when(mockCoreCyProps.getProperties()).thenReturn(coreProps);
 
+        Cx2SizeCache sizeCache = new Cx2SizeCache(changeTracker);
         return new OpenInCytoscapeWebTaskFactoryImpl(
-                mockAppManager, swingApp, dialogUtil, mockCyProps, mockCoreCyProps, writerManager);
+                mockAppManager,
+                viewManager,
+                swingApp,
+                dialogUtil,
+                mockCyProps,
+                writerManager,
+                sizeCache,
+                sizeEstimator,
+                sizeTracker,
+                metrics,
+                new Cx2Transport(mockCyProps, mockCoreCyProps, payloadStore, liveSessions, metrics),
+                new Cx2ExportPlanner(
+                        memoryGuard != null ? memoryGuard : new Cx2MemoryGuard(mockCyProps),
+                        sizeCache,
+                        sizeEstimator));
     }
 
     private OpenInCytoscapeWebTaskFactoryImpl createFactory(
@@ -123,6 +249,31 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         return createFactory(props, new Properties());
     }
 
+    /**
+     * Runs the validation tasks of the iterator the way the task manager would, stopping at the
+     * DoTask so that no browser is launched.
+     *
+     * @return the DoTask inserted by validation, or null if validation failed
+     */
+    private static Task runValidation(TaskIterator iterator, TaskMonitor monitor) {
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+            if (task instanceof DoTask) {
+                return task;
+            }
+            try {
+                task.run(monitor);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return null;
+    }
+
+    private static Task runValidation(TaskIterator iterator) {
+        return runValidation(iterator, mock(TaskMonitor.class));
+    }
+
     private static CyNetworkView createMockNetworkView(long suid, int nodeCount, int edgeCount) {
         CyNetwork mockNetwork = mock(CyNetwork.class);
         when(mockNetwork.getSUID()).thenReturn(suid);
@@ -134,46 +285,6 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         return mockView;
     }
 
-    // --- URL building tests ---
-
-    @Test
-    public void testBuildCytoscapeWebURIWithDefaults() {
-        Properties props = new Properties();
-        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props);
-
-        String url = factory.buildCytoscapeWebURI(12345L);
-        assertEquals(
-                "https://web.cytoscape.org?import=http://localhost:1234/v1/networks/12345.cx?version=2",
-                url);
-    }
-
-    @Test
-    public void testBuildCytoscapeWebURIWithCustomProperties() {
-        Properties props = new Properties();
-        props.setProperty("cytoscapeweb.baseurl", "https://custom.example.com");
-        Properties coreProps = new Properties();
-        coreProps.setProperty("rest.port", "5678");
-        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props, coreProps);
-
-        String url = factory.buildCytoscapeWebURI(42L);
-        assertEquals(
-                "https://custom.example.com?import=http://localhost:5678/v1/networks/42.cx?version=2",
-                url);
-    }
-
-    @Test
-    public void testBuildCytoscapeWebURIWithCustomPort() {
-        Properties props = new Properties();
-        Properties coreProps = new Properties();
-        coreProps.setProperty("rest.port", "9999");
-        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props, coreProps);
-
-        String url = factory.buildCytoscapeWebURI(100L);
-        assertEquals(
-                "https://web.cytoscape.org?import=http://localhost:9999/v1/networks/100.cx?version=2",
-                url);
-    }
-
     // --- Network element count validation tests ---
 
     @Test
@@ -184,10 +295,9 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
                 createFactory(new Properties(), mockDialogUtil, mockSwingApp);
 
         CyNetworkView mockView = createMockNetworkView(1L, 100, 200);
-        TaskIterator result = factory.createTaskIterator(mockView);
+        Task task = runValidation(factory.createTaskIterator(mockView));
 
         verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
-        Task task = result.next();
         assertEquals(DoTask.class, task.getClass());
     }
 
@@ -201,13 +311,12 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
 
         // 14000 nodes + 13000 edges = 27000 total elements > 26000 max, but edges under 20000
         CyNetworkView mockView = createMockNetworkView(1L, 14000, 13000);
-        TaskIterator result = factory.createTaskIterator(mockView);
+        Task task = runValidation(factory.createTaskIterator(mockView));
 
         verify(mockDialogUtil)
                 .showMessageDialog(any(), contains("Total elements (nodes + edges): 27000"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 26000"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
     }
 
     @Test
@@ -220,12 +329,11 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
 
         // 100 nodes + 20001 edges = 20101 total elements < 26000, but edges > 20000
         CyNetworkView mockView = createMockNetworkView(1L, 100, 20001);
-        TaskIterator result = factory.createTaskIterator(mockView);
+        Task task = runValidation(factory.createTaskIterator(mockView));
 
         verify(mockDialogUtil).showMessageDialog(any(), contains("Edges: 20001"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 20000"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
     }
 
     @Test
@@ -238,13 +346,12 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
 
         // 6001 nodes + 20001 edges = 26002 total > 26000, and edges > 20000
         CyNetworkView mockView = createMockNetworkView(1L, 6001, 20001);
-        TaskIterator result = factory.createTaskIterator(mockView);
+        Task task = runValidation(factory.createTaskIterator(mockView));
 
         verify(mockDialogUtil)
                 .showMessageDialog(any(), contains("Total elements (nodes + edges): 26002"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("Edges: 20001"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
     }
 
     @Test
@@ -261,18 +368,16 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
 
         // Within custom limits: 400 nodes + 500 edges = 900 < 1000, edges 500 <= 500
         CyNetworkView withinLimits = createMockNetworkView(1L, 400, 500);
-        TaskIterator resultOk = factory.createTaskIterator(withinLimits);
-        Task taskOk = resultOk.next();
+        Task taskOk = runValidation(factory.createTaskIterator(withinLimits));
         assertEquals(DoTask.class, taskOk.getClass());
 
         // Exceeds custom limits: 600 + 501 = 1101 > 1000, and edges 501 > 500
         CyNetworkView exceedsLimits = createMockNetworkView(2L, 600, 501);
-        TaskIterator resultFail = factory.createTaskIterator(exceedsLimits);
+        Task taskFail = runValidation(factory.createTaskIterator(exceedsLimits));
 
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 1000"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 500"));
-        Task taskFail = resultFail.next();
-        assertFalse("Expected no-op task, not DoTask", taskFail instanceof DoTask);
+        assertNull("Expected no DoTask", taskFail);
     }
 
     // --- File size validation tests (all use FILE_SIZE_FIXTURE producing 5 MB) ---
@@ -285,13 +390,48 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(new Properties(), mockDialogUtil, mockSwingApp);
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
-        Task task = result.next();
         assertEquals(DoTask.class, task.getClass());
     }
 
+    @Test
+    public void testOpenRecordsEveryValidationPhase() {
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class));
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(DoTask.class, task.getClass());
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.COUNT_CHECK));
+        assertTrue(metrics.getSampleCount(OpenMetrics.Phase.PROPERTIES) >= 2);
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.FIND_WRITER));
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.SERIALIZATION));
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.URL_BUILD));
+        // The open is counted once the browser has been launched
+        assertEquals(0, metrics.getOpenCount());
+    }
+
+    @Test
+    public void testRejectedOpenIsCounted() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "4");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp);
+
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(1, metrics.getOpenCount());
+        assertEquals(0, metrics.getSampleCount(OpenMetrics.Phase.URL_BUILD));
+    }
+
     @Test
     public void testCreateTaskIteratorExceedsMaxFileSize() {
         ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
@@ -303,12 +443,37 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(props, mockDialogUtil, mockSwingApp);
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 4.000 MB"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
+    }
+
+    @Test
+    public void testRejectionListsSizeProfileWhenEnabled() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "4");
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_FILESIZE_PROFILE, "true");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        // The fixture writer emits zero bytes, which belong to no aspect of the CX2 structure
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(mockDialogUtil).showMessageDialog(any(), message.capture());
+        assertTrue(
+                message.getValue()
+                        .contains(
+                                "(max: 4.000 MB)\n\nLargest contributors to the CX2 export"
+                                        + " (5.000 MB):\n    other: 5.000 MB (100.0%)\n\nYou"
+                                        + " can adjust"));
+        assertNull("Expected no DoTask", task);
     }
 
     @Test
@@ -321,10 +486,9 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(props, mockDialogUtil, mockSwingApp);
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
-        Task task = result.next();
         assertEquals(DoTask.class, task.getClass());
     }
 
@@ -340,12 +504,11 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(props, mockDialogUtil, mockSwingApp);
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size"));
         verify(mockDialogUtil).showMessageDialog(any(), contains("max: 4.999 MB"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
     }
 
     @Test
@@ -359,10 +522,9 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(props, mockDialogUtil, mockSwingApp);
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
-        Task task = result.next();
         assertEquals(DoTask.class, task.getClass());
     }
 
@@ -376,42 +538,42 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
         props.setProperty("network.max-filesize-mb", "10");
         OpenInCytoscapeWebTaskFactoryImpl factory =
                 createFactory(props, mockDialogUtil, mockSwingApp);
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("10.000", props.getProperty("network.max-filesize-mb"));
 
         // One decimal place should be normalized
         props.setProperty("network.max-filesize-mb", "4.5");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("4.500", props.getProperty("network.max-filesize-mb"));
 
         // Two decimal places should be normalized
         props.setProperty("network.max-filesize-mb", "10.25");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("10.250", props.getProperty("network.max-filesize-mb"));
 
         // Three decimal places should be kept as-is
         props.setProperty("network.max-filesize-mb", "4.999");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("4.999", props.getProperty("network.max-filesize-mb"));
 
         // More than three decimal places should be kept as-is
         props.setProperty("network.max-filesize-mb", "5.12345");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("5.12345", props.getProperty("network.max-filesize-mb"));
 
         // Sub-1.0 value should have leading zero and 3 decimal places
         props.setProperty("network.max-filesize-mb", "0.5");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("0.500", props.getProperty("network.max-filesize-mb"));
 
         // Missing leading digit should be normalized with leading zero
         props.setProperty("network.max-filesize-mb", ".5");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("0.500", props.getProperty("network.max-filesize-mb"));
 
         // Missing leading digit with 3+ decimals should get leading zero only
         props.setProperty("network.max-filesize-mb", ".12345");
-        factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
         assertEquals("0.12345", props.getProperty("network.max-filesize-mb"));
     }
 
@@ -424,13 +586,997 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
                 createFactory(
                         new Properties(), mockDialogUtil, mockSwingApp, createEmptyWriterManager());
 
-        TaskIterator result = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
 
         verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
-        Task task = result.next();
         assertEquals(DoTask.class, task.getClass());
     }
 
+    @Test
+    public void testExceedsMaxFileSizeStopsSerializationAtLimit() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "1"); // 5 MB fixture > 1 MB limit
+        AtomicInteger chunksWritten = new AtomicInteger();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mockDialogUtil,
+                        mockSwingApp,
+                        createChunkedWriterManager(chunksWritten));
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        // 1 MB = 1024 chunks accepted, the 1025th crosses the limit and aborts the writer
+        assertEquals(1024, chunksWritten.get());
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size: at least"));
+        verify(mockDialogUtil).showMessageDialog(any(), contains("max: 1.000 MB"));
+        assertNull("Expected no DoTask", task);
+    }
+
+    @Test
+    public void testMeasureCx2ExportSizeReportsLowerBound() {
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createChunkedWriterManager(new AtomicInteger()));
+
+        long limit = 10 * 1024;
+        long measured = factory.measureCx2ExportSize(FILE_SIZE_FIXTURE, limit);
+        assertEquals(limit + 1024, measured);
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, factory.measureCx2ExportSize(FILE_SIZE_FIXTURE));
+    }
+
+    @Test
+    public void testCachedLowerBoundIsRemeasuredForHigherLimit() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "1");
+        CyNetworkViewWriterManager writerManager = createChunkedWriterManager(new AtomicInteger());
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        runValidation(factory.createTaskIterator(mockView)); // lower bound still above 1 MB, reused
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+
+        props.setProperty("network.max-filesize-mb", "6");
+        Task task = runValidation(factory.createTaskIterator(mockView));
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+        assertEquals(DoTask.class, task.getClass());
+    }
+
+    @Test
+    public void testExportSizeProgressIsReported() {
+        AtomicInteger chunksWritten = new AtomicInteger();
+        Properties props = new Properties();
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_FILESIZE_ESTIMATE, "false");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createChunkedWriterManager(chunksWritten));
+        // Expect the 5 MB the writer produces
+        for (int i = 0; i < Cx2SizeEstimator.MIN_CALIBRATION_SAMPLES; i++) {
+            Cx2SizeEstimator.Estimate estimate = sizeEstimator.estimate(FILE_SIZE_FIXTURE);
+            sizeEstimator.calibrate(estimate, 5 * 1024 * 1024);
+        }
+        TaskMonitor monitor = mock(TaskMonitor.class);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE), monitor);
+
+        // Reported every 256 KB against the expected size, not the 10 MB limit
+        assertEquals(DoTask.class, task.getClass());
+        verify(monitor).setStatusMessage("Measuring CX2 export size");
+        ArgumentCaptor<Double> progress = ArgumentCaptor.forClass(Double.class);
+        verify(monitor, atLeastOnce()).setProgress(progress.capture());
+        List<Double> values = progress.getAllValues();
+        assertTrue(values.toString(), values.get(values.size() - 1) > 0.95);
+        assertTrue(
+                values.toString(), values.stream().anyMatch(value -> value > 0.45 && value < 0.55));
+    }
+
+    @Test
+    public void testCancelledExportSizeMeasurementReleasesCapture() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+        CyNetwork network = mock(CyNetwork.class);
+        Cx2Buffer capture = new Cx2Buffer(1L, 16);
+        capture.write(new byte[] {'{', '}'}, 0, 2);
+        when(factory.planExport(network, null))
+                .thenReturn(new Cx2MemoryGuard.Plan(Cx2MemoryGuard.Strategy.BUFFER, 0, 0, 0));
+        when(factory.createCaptureBuffer(network, null, true)).thenReturn(capture);
+        MeasureExportSizeTask task =
+                new MeasureExportSizeTask(factory, network, null, metrics.startTrace(1L));
+        // Cancelled after the writer finished, so the capture is left for the task to release
+        when(factory.checkExportSize(eq(network), eq(null), any(), any(), eq(capture)))
+                .thenAnswer(
+                        invocation -> {
+                            task.cancel();
+                            return null;
+                        });
+
+        task.run(mock(TaskMonitor.class));
+
+        assertEquals(0, capture.size());
+        verify(factory, never()).createCytoscapeWebURI(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testCancelStopsExportSizeMeasurement() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        AtomicInteger chunksWritten = new AtomicInteger();
+        CyNetworkViewWriterManager writerManager = createChunkedWriterManager(chunksWritten);
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mockSwingApp, writerManager);
+
+        TaskIterator iterator = factory.createTaskIterator(FILE_SIZE_FIXTURE);
+        iterator.next().run(mock(TaskMonitor.class));
+        Task measureTask = iterator.next();
+        assertEquals(MeasureExportSizeTask.class, measureTask.getClass());
+
+        // Cancel from the progress callback, as the task manager would while the writer runs
+        TaskMonitor monitor = mock(TaskMonitor.class);
+        doAnswer(
+                        invocation -> {
+                            if ((double) invocation.getArgument(0) > 0.0) {
+                                measureTask.cancel();
+                            }
+                            return null;
+                        })
+                .when(monitor)
+                .setProgress(anyDouble());
+        measureTask.run(monitor);
+
+        assertEquals(256, chunksWritten.get());
+        assertFalse("Expected no DoTask after cancel", iterator.hasNext());
+        verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
+
+        // A cancelled measurement is not cached
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    // --- File size estimate tests ---
+
+    /** Calibrates the estimator so that it predicts ten times the raw estimate of the fixture. */
+    private void calibrateEstimator() {
+        calibrateEstimator(Cx2SizeEstimator.MIN_CALIBRATION_SAMPLES);
+    }
+
+    private void calibrateEstimator(int samples) {
+        for (int i = 0; i < samples; i++) {
+            Cx2SizeEstimator.Estimate estimate = sizeEstimator.estimate(FILE_SIZE_FIXTURE);
+            sizeEstimator.calibrate(estimate, estimate.getRawBytes() * 10);
+        }
+    }
+
+    @Test
+    public void testConfidentlySmallEstimateSkipsSerialization() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mockSwingApp, writerManager);
+        calibrateEstimator();
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(DoTask.class, task.getClass());
+        verify(writerManager, never()).getWriter(any(CyNetworkView.class), any(), any());
+    }
+
+    @Test
+    public void testConfidentlyLargeEstimateSkipsSerialization() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+
+        // Fixture estimate is about 0.17 MB, at least 0.086 MB with the rejection margin
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "0.05");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+        calibrateEstimator(Cx2SizeEstimator.REJECT_CALIBRATION_SAMPLES);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertNull("Expected no DoTask", task);
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size: about"));
+        verify(writerManager, never()).getWriter(any(CyNetworkView.class), any(), any());
+    }
+
+    @Test
+    public void testLargeEstimateIsMeasuredBeforeEnoughSamplesToReject() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "0.05");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+        calibrateEstimator();
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        // Rejected from the measurement, not the estimate
+        assertNull("Expected no DoTask", task);
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size: at least"));
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testEstimateNearLimitIsMeasured() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+
+        // Error band of the fixture estimate spans 0.138 MB to 0.216 MB
+        Properties props = new Properties();
+        props.setProperty("network.max-filesize-mb", "0.2");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+        calibrateEstimator();
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertNull("Expected no DoTask", task);
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size: at least"));
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testExactMeasurementCalibratesEstimator() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(new Properties());
+
+        runValidation(factory.createTaskIterator(createMockNetworkView(1L, 100, 200)));
+        runValidation(factory.createTaskIterator(createMockNetworkView(2L, 100, 200)));
+
+        assertEquals(2, sizeEstimator.getCalibrationCount());
+        assertEquals(
+                FIXTURE_EXPORT_SIZE_BYTES, sizeEstimator.estimate(FILE_SIZE_FIXTURE).getBytes());
+    }
+
+    @Test
+    public void testEstimateDisabledByProperty() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("network.filesize-estimate", "false");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+        calibrateEstimator();
+
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+        assertEquals(Cx2SizeEstimator.MIN_CALIBRATION_SAMPLES, sizeEstimator.getCalibrationCount());
+    }
+
+    // --- Buffered transport tests ---
+
+    private static Properties bufferedTransportProps() {
+        Properties props = new Properties();
+        props.setProperty("transport.mode", "buffered");
+        return props;
+    }
+
+    private static Properties tokenTransportProps() {
+        Properties props = bufferedTransportProps();
+        props.setProperty("transport.dedup-max-mb", "0");
+        return props;
+    }
+
+    private static String tokenOf(Task task) {
+        String uri = ((DoTask) task).getUri().toString();
+        return uri.substring(uri.lastIndexOf('/') + 1);
+    }
+
+    /** Takes the export of a one-time token URL, or looks up the export of a content URL. */
+    private Cx2Payload servedPayload(Task task) {
+        String uri = ((DoTask) task).getUri().toString();
+        return uri.contains("/cx2/content/")
+                ? payloadStore.getContent(tokenOf(task))
+                : payloadStore.take(tokenOf(task));
+    }
+
+    @Test
+    public void testBufferedTransportServesValidationBytes() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        tokenTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(
+                ((DoTask) task).getUri().toString().contains("localhost:1234/opencyweb/v1/cx2/"));
+        Cx2Buffer served = (Cx2Buffer) payloadStore.take(tokenOf(task));
+        assertTrue(served.isComplete());
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, served.size());
+        assertNull("Token is single use", payloadStore.take(tokenOf(task)));
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testExportsOpenedBeforeAnyIsFetchedAreAllServed() throws Exception {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(tokenTransportProps());
+        List<Task> opened = new ArrayList<>();
+        for (long suid = 1; suid <= 6; suid++) {
+            opened.add(
+                    runValidation(
+                            factory.createTaskIterator(createMockNetworkView(suid, 100, 200))));
+        }
+
+        assertEquals(6, payloadStore.size());
+        for (Task task : opened) {
+            CountingOutputStream response = new CountingOutputStream();
+            payloadStore.take(tokenOf(task)).writeTo(response);
+            assertEquals(FIXTURE_EXPORT_SIZE_BYTES, response.getByteCount());
+        }
+    }
+
+    @Test
+    public void testCaptureOverWaitingBudgetIsStreamedInstead() throws Exception {
+        Properties props = tokenTransportProps();
+        props.setProperty(Cx2Transport.PROP_PENDING_MAX_MB, "8");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task first = runValidation(factory.createTaskIterator(createMockNetworkView(1L, 100, 200)));
+        Task second =
+                runValidation(factory.createTaskIterator(createMockNetworkView(2L, 100, 200)));
+
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, payloadStore.getPendingBytes());
+        assertTrue(payloadStore.take(tokenOf(first)) instanceof Cx2Buffer);
+        Cx2Payload streamed = payloadStore.take(tokenOf(second));
+        assertTrue(streamed instanceof StreamingCx2Payload);
+        CountingOutputStream response = new CountingOutputStream();
+        streamed.writeTo(response);
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, response.getByteCount());
+    }
+
+    @Test
+    public void testBufferedTransportSerializesEvenWhenSizeIsCached() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        tokenTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task first = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        Task second = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertFalse(tokenOf(first).equals(tokenOf(second)));
+        assertEquals(2, payloadStore.size());
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testBufferedTransportReusesIndexedExportOfUnchangedNetwork() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        bufferedTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task first = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        Task second = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        URI uri = ((DoTask) first).getUri();
+        assertTrue(uri.toString().contains("localhost:1234/opencyweb/v1/cx2/content/"));
+        assertEquals(uri, ((DoTask) second).getUri());
+        assertEquals(0, payloadStore.size());
+        assertEquals(1, payloadStore.contentSize());
+        Cx2Buffer served = payloadStore.getContent(tokenOf(first));
+        assertTrue(served.isComplete());
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, served.size());
+        assertEquals("Held off the heap", FIXTURE_EXPORT_SIZE_BYTES, served.getOffHeapBytes());
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+
+        // An edit makes the indexed export stale; identical bytes still map to the same URL
+        changeTracker.markChanged(1L);
+        Task third = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(uri, ((DoTask) third).getUri());
+        assertEquals(1, payloadStore.contentSize());
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testBufferedTransportServesNewSelectionAfterSelectionChange() throws Exception {
+        AtomicBoolean selected = new AtomicBoolean();
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        when(writerManager.getWriter(
+                        any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class)))
+                .thenAnswer(
+                        invocation -> {
+                            OutputStream os = invocation.getArgument(2);
+                            CyWriter writer = mock(CyWriter.class);
+                            doAnswer(
+                                            run -> {
+                                                String json =
+                                                        "[{\"nodes\":[{\"id\":0,\"v\":{\"selected\":"
+                                                                + selected.get()
+                                                                + "}}]}]";
+                                                os.write(json.getBytes(StandardCharsets.UTF_8));
+                                                return null;
+                                            })
+                                    .when(writer)
+                                    .run(any());
+                            return writer;
+                        });
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        bufferedTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+        CyNetwork network = FILE_SIZE_FIXTURE.getModel();
+        CyTable nodeTable = mock(CyTable.class);
+        when(networkTableManager.getNetworkForTable(nodeTable)).thenReturn(network);
+
+        Task first = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        selected.set(true);
+        changeTracker.handleEvent(
+                new RowsSetEvent(
+                        nodeTable,
+                        Arrays.asList(
+                                new RowSetRecord(
+                                        mock(CyRow.class), CyNetwork.SELECTED, true, true))));
+        Task second = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertFalse(((DoTask) first).getUri().equals(((DoTask) second).getUri()));
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        servedPayload(second).writeTo(response);
+        assertTrue(
+                response.toString("UTF-8"),
+                response.toString("UTF-8").contains("\"selected\":true"));
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testBufferedTransportKeepsExportOnHeapWithoutOffHeapBudget() throws Exception {
+        Properties props = tokenTransportProps();
+        props.setProperty("transport.offheap-max-mb", "0");
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        Cx2Buffer served = (Cx2Buffer) payloadStore.take(tokenOf(task));
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, served.size());
+        assertEquals(0, served.getOffHeapBytes());
+    }
+
+    @Test
+    public void testBufferedTransportFallsBackToCyrestWhenMeasurementFails() {
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        bufferedTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createEmptyWriterManager());
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(((DoTask) task).getUri().toString().contains("/v1/networks/1.cx?version=2"));
+        assertEquals(0, payloadStore.size());
+    }
+
+    @Test
+    public void testBufferedTransportDropsOversizedExport() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        Properties props = bufferedTransportProps();
+        props.setProperty("network.max-filesize-mb", "1");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertNull("Expected no DoTask", task);
+        assertEquals(0, payloadStore.size());
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size"));
+    }
+
+    @Test
+    public void testStreamingTransportSerializesOnRequest() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("transport.mode", "streaming");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(
+                ((DoTask) task).getUri().toString().contains("localhost:1234/opencyweb/v1/cx2/"));
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+
+        // Nothing is retained until Cytoscape Web requests the export
+        StreamingCx2Payload payload = (StreamingCx2Payload) payloadStore.take(tokenOf(task));
+        assertEquals(-1, payload.getBytesWritten());
+        CountingOutputStream response = new CountingOutputStream();
+        payload.writeTo(response);
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, response.getByteCount());
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    /** A guard over a 100 MB heap of which {@code usedBytes} survived the last collection. */
+    private static Cx2MemoryGuard createMemoryGuard(Properties props, AtomicLong usedBytes) {
+        long maxHeap = 100L * 1024 * 1024;
+        MemoryMXBean memoryBean = mock(MemoryMXBean.class);
+        when(memoryBean.getHeapMemoryUsage())
+                .thenAnswer(invocation -> new MemoryUsage(0, usedBytes.get(), maxHeap, maxHeap));
+        @SuppressWarnings("unchecked")
+        CyProperty<Properties> cyProperties = mock(CyProperty.class);
+        when(cyProperties.getProperties()).thenReturn(props);
+        return new Cx2MemoryGuard(memoryBean, Collections.emptyList(), cyProperties);
+    }
+
+    @Test
+    public void testLowHeapStreamsInsteadOfBuffering() throws Exception {
+        // No content index, which would share the first export instead of capturing another
+        Properties props = tokenTransportProps();
+        AtomicLong usedBytes = new AtomicLong();
+        memoryGuard = createMemoryGuard(props, usedBytes);
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mock(ShowDialogUtil.class), mock(CySwingApplication.class));
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        // 5 MB free: enough for the writer, not for two copies of the 5 MB export
+        usedBytes.set(85L * 1024 * 1024);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(payloadStore.take(tokenOf(task)) instanceof StreamingCx2Payload);
+    }
+
+    @Test
+    public void testExhaustedHeapRefusesExport() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        Properties props = new Properties();
+        memoryGuard = createMemoryGuard(props, new AtomicLong(90L * 1024 * 1024));
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertNull("Expected no DoTask", task);
+        verify(mockDialogUtil).showMessageDialog(any(), contains("not enough free memory"));
+        verify(writerManager, never())
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testStreamingTransportFallsBackToCyrestWithoutWriter() {
+        Properties props = new Properties();
+        props.setProperty("transport.mode", "streaming");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createEmptyWriterManager());
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(((DoTask) task).getUri().toString().contains("/v1/networks/1.cx?version=2"));
+        assertEquals(0, payloadStore.size());
+    }
+
+    // --- Live session tests ---
+
+    @Test
+    public void testLiveSessionIsAdvertisedInUrl() {
+        Properties props = new Properties();
+        props.setProperty(Cx2Transport.PROP_LIVE_ENABLED, "true");
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(
+                "https://web.cytoscape.org?import=http://localhost:1234/v1/networks/1.cx?version=2"
+                        + "&live=http://localhost:1234/opencyweb/v1/live/1",
+                ((DoTask) task).getUri().toString());
+        assertNotNull("Channel is open for the tab", liveSessions.subscribe(1L));
+    }
+
+    @Test
+    public void testNoLiveSessionByDefault() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(new Properties());
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertFalse(((DoTask) task).getUri().toString().contains("live="));
+        assertNull(liveSessions.subscribe(1L));
+    }
+
+    @Test
+    public void testConnectedLiveSessionIsNotOpenedAgain() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(Cx2Transport.PROP_LIVE_ENABLED, "true");
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+        liveSessions.open(1L);
+        Cx2LiveSessions.Subscription subscription = liveSessions.subscribe(1L);
+        TaskMonitor monitor = mock(TaskMonitor.class);
+
+        assertNull(runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE), monitor));
+
+        verify(monitor).showMessage(eq(TaskMonitor.Level.INFO), contains("already open"));
+        verify(writerManager, never()).getWriter(any(CyNetworkView.class), any(), any());
+        subscription.close();
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        subscription.writeTo(events);
+        assertTrue(events.toString("UTF-8").contains("event: open\n"));
+    }
+
+    // --- Transport encoding tests ---
+
+    private static byte[] toCbor(String json) throws IOException {
+        ByteArrayOutputStream cbor = new ByteArrayOutputStream();
+        CborTranscodingOutputStream transcoder = new CborTranscodingOutputStream(cbor);
+        transcoder.write(json.getBytes(StandardCharsets.UTF_8));
+        transcoder.finish();
+        return cbor.toByteArray();
+    }
+
+    @Test
+    public void testBufferedTransportCapturesCborExport() throws Exception {
+        Properties props = bufferedTransportProps();
+        props.setProperty("transport.encoding", "cbor");
+        CyNetworkViewWriterManager writerManager = createJsonWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        Task first = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        Task second = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        String uri = ((DoTask) first).getUri().toString();
+        assertTrue(uri, uri.contains("/opencyweb/v1/cx2/content/") && uri.endsWith(".cbor"));
+        assertEquals(uri, ((DoTask) second).getUri().toString());
+        Cx2Buffer served =
+                payloadStore.getContent(Cx2PayloadResource.stripEncodingSuffix(tokenOf(first)));
+        assertEquals(Cx2Encoding.CBOR, served.getEncoding());
+        assertArrayEquals(toCbor(CX2_JSON), served.toByteArray());
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+
+        // Switching back to JSON does not reuse the CBOR export
+        props.setProperty("transport.encoding", "json");
+        Task json = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+        assertFalse(((DoTask) json).getUri().toString().endsWith(".cbor"));
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testStreamingTransportSendsCborExport() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("transport.mode", "streaming");
+        props.setProperty("transport.encoding", "CBOR");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        props,
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createJsonWriterManager());
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        String uri = ((DoTask) task).getUri().toString();
+        assertTrue(uri, uri.endsWith(".cbor"));
+        Cx2Payload payload =
+                payloadStore.take(Cx2PayloadResource.stripEncodingSuffix(tokenOf(task)));
+        assertEquals(Cx2Encoding.CBOR, payload.getEncoding());
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        payload.writeTo(response);
+        assertArrayEquals(toCbor(CX2_JSON), response.toByteArray());
+    }
+
+    @Test
+    public void testCyrestTransportIgnoresCborEncoding() {
+        Properties props = new Properties();
+        props.setProperty("transport.encoding", "cbor");
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(props);
+
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertTrue(((DoTask) task).getUri().toString().contains("/v1/networks/1.cx?version=2"));
+    }
+
+    // --- File size cache tests ---
+
+    @Test
+    public void testUnchangedNetworkIsMeasuredOnce() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mockSwingApp, writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        runValidation(factory.createTaskIterator(mockView));
+        Task task = runValidation(factory.createTaskIterator(mockView));
+
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+        assertEquals(DoTask.class, task.getClass());
+    }
+
+    @Test
+    public void testChangedNetworkIsMeasuredAgain() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        // Without estimates the running size of the edited network is not used either
+        Properties props = new Properties();
+        props.setProperty("network.filesize-estimate", "false");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp, writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        changeTracker.markChanged(7L);
+        runValidation(factory.createTaskIterator(mockView));
+
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    // --- Tracked size tests ---
+
+    /** Adds nodes to the network view and delivers the event to both trackers. */
+    private void addNodes(CyNetworkView networkView, int nodeCount) {
+        CyNetwork network = networkView.getModel();
+        int newNodeCount = network.getNodeCount() + nodeCount;
+        when(network.getNodeCount()).thenReturn(newNodeCount);
+        AddedNodesEvent event =
+                new AddedNodesEvent(network, Collections.singletonList(mock(CyNode.class)));
+        changeTracker.handleEvent(event);
+        sizeTracker.handleEvent(event);
+    }
+
+    @Test
+    public void testTrackedSizeSkipsSerializationAfterSmallEdit() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        addNodes(mockView, 5);
+        Task task = runValidation(factory.createTaskIterator(mockView));
+
+        assertEquals(DoTask.class, task.getClass());
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testTrackedSizeIsRebasedAfterLargeEdit() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        addNodes(mockView, 100);
+        runValidation(factory.createTaskIterator(mockView));
+        addNodes(mockView, 5);
+        runValidation(factory.createTaskIterator(mockView));
+
+        // Measured at first, again after drifting too far, then tracked from the new base
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    // --- Prefetch tests ---
+
+    @Test
+    public void testPrefetchedSizeIsUsedByValidation() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        factory.prefetch(FILE_SIZE_FIXTURE, () -> false);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(DoTask.class, task.getClass());
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testPrefetchedCaptureIsServedByBufferedTransport() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        bufferedTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        factory.prefetch(FILE_SIZE_FIXTURE, () -> false);
+        factory.prefetch(FILE_SIZE_FIXTURE, () -> false);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, servedPayload(task).getContentLength());
+        verify(writerManager, times(1))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testStalePrefetchedCaptureIsSerializedAgain() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        bufferedTransportProps(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        factory.prefetch(FILE_SIZE_FIXTURE, () -> false);
+        changeTracker.markChanged(1L);
+        Task task = runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, servedPayload(task).getContentLength());
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testCancelledPrefetchIsNotCached() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        factory.prefetch(FILE_SIZE_FIXTURE, () -> true);
+        runValidation(factory.createTaskIterator(FILE_SIZE_FIXTURE));
+
+        verify(writerManager, times(2))
+                .getWriter(any(CyNetworkView.class), eq(mockCxFilter), any(OutputStream.class));
+    }
+
+    @Test
+    public void testCxFilterIsResolvedOnceUntilWritersChange() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+
+        factory.measureCx2ExportSize(FILE_SIZE_FIXTURE);
+        factory.measureCx2ExportSize(FILE_SIZE_FIXTURE);
+        verify(writerManager, times(1)).getAvailableWriterFilters();
+
+        factory.addWriterFactory(mock(CyNetworkViewWriterFactory.class), Collections.emptyMap());
+        factory.measureCx2ExportSize(FILE_SIZE_FIXTURE);
+        factory.removeWriterFactory(mock(CyNetworkViewWriterFactory.class), Collections.emptyMap());
+        factory.measureCx2ExportSize(FILE_SIZE_FIXTURE);
+        verify(writerManager, times(3)).getAvailableWriterFilters();
+    }
+
+    @Test
+    public void testWarmUpExportIsNotMeasured() throws Exception {
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        writerManager);
+        CyNetwork network = FILE_SIZE_FIXTURE.getModel();
+
+        assertEquals(FIXTURE_EXPORT_SIZE_BYTES, factory.warmUpExport(network));
+        verify(writerManager).getWriter(eq(network), eq(mockCxFilter), any(OutputStream.class));
+        assertTrue(metrics.toJSON().contains("\"serialization\":{\"count\":0,"));
+    }
+
+    @Test
+    public void testWarmUpExportWithoutWriter() {
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mock(ShowDialogUtil.class),
+                        mock(CySwingApplication.class),
+                        createEmptyWriterManager());
+
+        assertEquals(-1, factory.warmUpExport(FILE_SIZE_FIXTURE.getModel()));
+    }
+
+    @Test
+    public void testFailedMeasurementIsNotCached() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        CyNetworkViewWriterManager writerManager = createEmptyWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mockSwingApp, writerManager);
+
+        CyNetworkView mockView = createMockNetworkView(7L, 100, 200);
+        runValidation(factory.createTaskIterator(mockView));
+        runValidation(factory.createTaskIterator(mockView));
+
+        verify(writerManager, times(2)).getAvailableWriterFilters();
+    }
+
     // --- URL validation test ---
 
     @Test
@@ -445,10 +1591,166 @@ public class OpenInCytoscapeWebTaskFactoryImplTest {
                 createFactory(props, mockDialogUtil, mockSwingApp);
 
         CyNetworkView mockView = createMockNetworkView(1L, 100, 200);
-        TaskIterator result = factory.createTaskIterator(mockView);
+        Task task = runValidation(factory.createTaskIterator(mockView));
 
         verify(mockDialogUtil).showMessageDialog(any(), contains("Invalid URL"));
-        Task task = result.next();
-        assertFalse("Expected no-op task, not DoTask", task instanceof DoTask);
+        assertNull("Expected no DoTask", task);
+    }
+
+    // --- Multi-network selection tests ---
+
+    private CyNetworkView createNamedNetworkView(
+            long suid, String name, int nodeCount, int edgeCount) {
+        CyNetworkView view = createMockNetworkView(suid, nodeCount, edgeCount);
+        CyNetwork network = view.getModel();
+        CyRow row = mock(CyRow.class);
+        when(row.get(CyNetwork.NAME, String.class)).thenReturn(name);
+        when(network.getRow(network)).thenReturn(row);
+        when(viewManager.getNetworkViews(network)).thenReturn(Collections.singletonList(view));
+        return view;
+    }
+
+    /** Runs the batch task of the iterator and returns the DoTasks it inserted, without them. */
+    private static List<Task> runBatch(TaskIterator iterator) throws Exception {
+        return runBatch(iterator, mock(TaskMonitor.class));
+    }
+
+    /** Runs the batch task of the iterator with the given monitor and returns its DoTasks. */
+    private static List<Task> runBatch(TaskIterator iterator, TaskMonitor taskMonitor)
+            throws Exception {
+        iterator.next().run(taskMonitor);
+        List<Task> openTasks = new ArrayList<>();
+        while (iterator.hasNext()) {
+            openTasks.add(iterator.next());
+        }
+        return openTasks;
+    }
+
+    @Test
+    public void testIsReadyForAnyNonEmptySelection() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory(new Properties());
+        assertTrue(factory.isReady(Arrays.asList(mock(CyNetwork.class), mock(CyNetwork.class))));
+        assertFalse(factory.isReady(Collections.emptyList()));
+    }
+
+    @Test
+    public void testSingleSelectedNetworkOpensItsOwnView() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mock(CySwingApplication.class));
+        CyNetworkView view = createNamedNetworkView(7L, "selected", 100, 200);
+
+        Task task =
+                runValidation(
+                        factory.createTaskIterator(Collections.singletonList(view.getModel())));
+
+        assertEquals(DoTask.class, task.getClass());
+        assertTrue(((DoTask) task).getUri().toString().contains("/v1/networks/7.cx"));
+        verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
+    }
+
+    @Test
+    public void testBatchOpensNetworksThatPassAndReportsAll() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mockSwingApp);
+        CyNetworkView first = createNamedNetworkView(1L, "first", 100, 200);
+        CyNetworkView tooManyEdges = createNamedNetworkView(2L, "dense", 100, 25000);
+        CyNetworkView second = createNamedNetworkView(3L, "second", 100, 200);
+        CyNetwork withoutView = mock(CyNetwork.class);
+        when(withoutView.getSUID()).thenReturn(4L);
+
+        List<Task> openTasks =
+                runBatch(
+                        factory.createTaskIterator(
+                                Arrays.asList(
+                                        first.getModel(),
+                                        tooManyEdges.getModel(),
+                                        second.getModel(),
+                                        withoutView)));
+
+        assertEquals(3, openTasks.size());
+        assertTrue(((DoTask) openTasks.get(0)).getUri().toString().contains("/1.cx"));
+        assertTrue(((DoTask) openTasks.get(1)).getUri().toString().contains("/3.cx"));
+        assertTrue(((DoTask) openTasks.get(2)).getUri().toString().contains("/4.cx"));
+        ArgumentCaptor<String> report = ArgumentCaptor.forClass(String.class);
+        verify(mockDialogUtil).showMessageDialog(any(), report.capture());
+        assertTrue(report.getValue().contains("3 passed, 1 failed"));
+        assertTrue(report.getValue().contains("  - first\n  - second\n  - Network SUID 4"));
+        assertTrue(report.getValue().contains("  - dense: Edges: 25000 (max: 20000)"));
+        assertEquals(1, metrics.getOpenCount());
+    }
+
+    @Test
+    public void testBatchOfPassingNetworksShowsReportWithoutDialog() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(new Properties(), mockDialogUtil, mock(CySwingApplication.class));
+        CyNetworkView first = createNamedNetworkView(1L, "first", 100, 200);
+        CyNetworkView second = createNamedNetworkView(3L, "second", 100, 200);
+        TaskMonitor taskMonitor = mock(TaskMonitor.class);
+
+        List<Task> openTasks =
+                runBatch(
+                        factory.createTaskIterator(
+                                Arrays.asList(first.getModel(), second.getModel())),
+                        taskMonitor);
+
+        assertEquals(2, openTasks.size());
+        verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
+        verify(taskMonitor).showMessage(eq(TaskMonitor.Level.INFO), contains("2 passed, 0 failed"));
+    }
+
+    // --- Networks without a view ---
+
+    @Test
+    public void testNetworkWithoutViewOpensThroughNetworkWriter() throws Exception {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CyNetworkViewWriterManager writerManager = createMockWriterManager();
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(
+                        new Properties(),
+                        mockDialogUtil,
+                        mock(CySwingApplication.class),
+                        writerManager);
+        CyNetwork network = createMockNetworkView(9L, 100, 200).getModel();
+        when(viewManager.getNetworkViews(network)).thenReturn(Collections.emptyList());
+
+        Task task = runValidation(factory.createTaskIterator(network));
+
+        assertEquals(DoTask.class, task.getClass());
+        assertTrue(((DoTask) task).getUri().toString().contains("/v1/networks/9.cx"));
+        verify(writerManager).getWriter(eq(network), eq(mockCxFilter), any(OutputStream.class));
+        verify(writerManager, never()).getWriter(any(CyNetworkView.class), any(), any());
+        verify(mockDialogUtil, never()).showMessageDialog(any(), anyString());
+    }
+
+    @Test
+    public void testNetworkWithoutViewIsRejectedWhenExportIsTooLarge() {
+        ShowDialogUtil mockDialogUtil = mock(ShowDialogUtil.class);
+        CySwingApplication mockSwingApp = mock(CySwingApplication.class);
+        when(mockSwingApp.getJFrame()).thenReturn(mock(JFrame.class));
+        Properties props = new Properties();
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_FILESIZE_MB, "1");
+        OpenInCytoscapeWebTaskFactoryImpl factory =
+                createFactory(props, mockDialogUtil, mockSwingApp);
+        CyNetwork network = createMockNetworkView(9L, 100, 200).getModel();
+
+        Task task = runValidation(factory.createTaskIterator(network));
+
+        assertNull("Expected no DoTask", task);
+        verify(mockDialogUtil).showMessageDialog(any(), contains("CX2 export size"));
+    }
+
+    @Test
+    public void testBatchParallelismIsBoundedByCoresAndMemory() {
+        long mb = 1024 * 1024;
+        assertEquals(8, OpenInCytoscapeWebTaskFactoryImpl.batchParallelism(20, 8, 4096 * mb, mb));
+        assertEquals(3, OpenInCytoscapeWebTaskFactoryImpl.batchParallelism(3, 8, 4096 * mb, mb));
+        assertEquals(
+                2, OpenInCytoscapeWebTaskFactoryImpl.batchParallelism(20, 8, 40 * mb, 10 * mb));
+        assertEquals(1, OpenInCytoscapeWebTaskFactoryImpl.batchParallelism(20, 8, 0, 10 * mb));
     }
 }
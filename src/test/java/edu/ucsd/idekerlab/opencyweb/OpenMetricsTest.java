@@ -0,0 +1,93 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OpenMetricsTest {
+
+    private final OpenMetrics metrics = new OpenMetrics();
+
+    @Test
+    public void testHistogramPercentilesUseBucketUpperBounds() {
+        OpenMetrics.Histogram histogram = new OpenMetrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.add(5);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.add(1000);
+        }
+
+        assertEquals(7, histogram.percentile(0.5));
+        assertEquals(7, histogram.percentile(0.9));
+        // 1000 falls in the [512, 1024) bucket, capped at the maximum
+        assertEquals(1000, histogram.percentile(0.99));
+        assertEquals(104.5, histogram.mean(), 0.001);
+    }
+
+    @Test
+    public void testUnsupportedValuesAreNotRecorded() {
+        OpenMetrics.Histogram histogram = new OpenMetrics.Histogram();
+        histogram.add(-1);
+        assertEquals(-1, histogram.percentile(0.5));
+        assertEquals(-1, histogram.mean(), 0);
+    }
+
+    @Test
+    public void testSampleRecordsPhase() {
+        try (OpenMetrics.Sample sample = metrics.start(OpenMetrics.Phase.SERIALIZATION)) {
+            assertEquals(0, metrics.getSampleCount(OpenMetrics.Phase.SERIALIZATION));
+        }
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.SERIALIZATION));
+        assertEquals(0, metrics.getSampleCount(OpenMetrics.Phase.URL_BUILD));
+    }
+
+    @Test
+    public void testAttachedTraceCollectsPhasesOfItsThread() {
+        OpenMetrics.Trace trace = metrics.startTrace(7L);
+        try (OpenMetrics.Scope scope = trace.attach()) {
+            metrics.start(OpenMetrics.Phase.FIND_WRITER).close();
+        }
+        metrics.start(OpenMetrics.Phase.URL_BUILD).close();
+
+        assertTrue(trace.getWallNanos(OpenMetrics.Phase.FIND_WRITER) >= 0);
+        assertEquals(-1, trace.getWallNanos(OpenMetrics.Phase.URL_BUILD));
+        assertEquals(1, metrics.getSampleCount(OpenMetrics.Phase.URL_BUILD));
+    }
+
+    @Test
+    public void testFinishCountsOpenOnce() {
+        OpenMetrics.Trace trace = metrics.startTrace(7L);
+        trace.start(OpenMetrics.Phase.BROWSER_LAUNCH).close();
+        trace.finish("opened");
+        trace.finish("opened");
+
+        assertEquals(1, metrics.getOpenCount());
+        assertTrue(trace.toString().contains("network SUID 7 opened"));
+        assertTrue(trace.toString().contains("browser-launch"));
+    }
+
+    @Test
+    public void testJsonListsEveryPhase() {
+        metrics.start(OpenMetrics.Phase.COUNT_CHECK).close();
+        metrics.startTrace(1L).finish("rejected");
+
+        String json = metrics.toJSON();
+        assertTrue(json.startsWith("{\"opens\":1,\"phases\":{\"properties\":{\"count\":0,"));
+        assertTrue(json.contains("\"count-check\":{\"count\":1,\"wallMillis\":{\"mean\":"));
+        assertTrue(json.contains("\"browser-launch\":{\"count\":0,\"wallMillis\":null"));
+    }
+
+    @Test
+    public void testResetClearsEverything() {
+        metrics.start(OpenMetrics.Phase.COUNT_CHECK).close();
+        metrics.startTrace(1L).finish("rejected");
+        metrics.reset();
+
+        assertEquals(0, metrics.getOpenCount());
+        assertEquals(0, metrics.getSampleCount(OpenMetrics.Phase.COUNT_CHECK));
+        assertFalse(metrics.toSummary().contains("count-check"));
+    }
+}
@@ -0,0 +1,63 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import org.cytoscape.application.CyApplicationManager;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.work.Task;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.json.JSONResult;
+
+public class ProfileTaskTest {
+
+    private final CyApplicationManager appManager = mock(CyApplicationManager.class);
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+
+    private static Cx2SizeProfile createProfile() {
+        byte[] cx2 =
+                "[{\"nodes\":[{\"id\":1,\"v\":{\"name\":\"a\"}}]}]"
+                        .getBytes(StandardCharsets.UTF_8);
+        Cx2SizeProfiler profiler = new Cx2SizeProfiler();
+        profiler.write(cx2, 0, cx2.length);
+        return profiler.getProfile();
+    }
+
+    @Test
+    public void testProfilesCurrentNetworkByDefault() throws Exception {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(52L);
+        when(appManager.getCurrentNetwork()).thenReturn(network);
+        Cx2SizeProfile profile = createProfile();
+        when(openFactory.profileCx2Export(eq(network), any(), any(), any())).thenReturn(profile);
+
+        Task task = new ProfileTaskFactory(appManager, openFactory).createTaskIterator().next();
+        task.run(mock(TaskMonitor.class));
+
+        ProfileTask profileTask = (ProfileTask) task;
+        assertTrue(
+                profileTask
+                        .getResults(String.class)
+                        .startsWith("Network SUID 52: Largest contributors"));
+        assertEquals(
+                "{\"network\":52,\"profile\":" + profile.toJSON(10) + "}",
+                profileTask.getResults(JSONResult.class).getJSON());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailsWhenNetworkCannotBeSerialized() throws Exception {
+        CyNetwork network = mock(CyNetwork.class);
+        ProfileTask task = new ProfileTask(appManager, openFactory);
+        task.network = network;
+        task.run(mock(TaskMonitor.class));
+    }
+}
@@ -0,0 +1,140 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProgressiveCx2OutputStreamTest {
+
+    private static final String DESCRIPTOR = "{\"CXVersion\":\"2.0\",\"hasFragments\":false}";
+    private static final String META_DATA =
+            "{\"metaData\":[{\"name\":\"nodes\",\"elementCount\":2},"
+                    + "{\"name\":\"edges\",\"elementCount\":1},"
+                    + "{\"name\":\"nodeBypasses\",\"elementCount\":1}]}";
+    private static final String NODES =
+            "{\"nodes\":[{\"id\":0,\"x\":1.5,\"y\":-2.0,\"v\":{\"name\":\"a}\"}},{\"id\":1}]}";
+    private static final String EDGES = "{\"edges\":[{\"id\":0,\"s\":0,\"t\":1}]}";
+    private static final String VISUAL_PROPERTIES =
+            "{\"visualProperties\":[{\"default\":{\"network\":{}}}]}";
+    private static final String BYPASSES =
+            "{\"nodeBypasses\":[{\"id\":0,\"v\":{\"NODE_FILL_COLOR\":\"#FF0000\"}}]}";
+    private static final String STATUS = "{\"status\":[{\"error\":\"\",\"success\":true}]}";
+
+    /** Records the bytes written up to each flush. */
+    private static class FlushRecorder extends ByteArrayOutputStream {
+        private final List<String> flushed = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            String sent = new String(toByteArray(), StandardCharsets.UTF_8);
+            if (flushed.isEmpty() || !flushed.get(flushed.size() - 1).equals(sent)) {
+                flushed.add(sent);
+            }
+        }
+    }
+
+    private static String cx2(String... aspects) {
+        return "[" + String.join(",", aspects) + "]";
+    }
+
+    private static String forward(String json, int chunkBytes) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        ProgressiveCx2OutputStream out = new ProgressiveCx2OutputStream(target);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < bytes.length; off += chunkBytes) {
+            int len = Math.min(chunkBytes, bytes.length - off);
+            if (len == 1) {
+                out.write(bytes[off]);
+            } else {
+                out.write(bytes, off, len);
+            }
+        }
+        out.finish();
+        return new String(target.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testExportIsForwardedUnchanged() throws Exception {
+        String json = cx2(DESCRIPTOR, META_DATA, NODES, EDGES, VISUAL_PROPERTIES, BYPASSES, STATUS);
+        String spaced = "[\n  " + DESCRIPTOR + " ,\n  " + NODES + "\n]\n";
+
+        assertEquals(json, forward(json, json.length()));
+        assertEquals(json, forward(json, 1));
+        assertEquals(json, forward(json, 3));
+        assertEquals(spaced, forward(spaced, 1));
+    }
+
+    @Test
+    public void testNonArrayOutputIsForwardedUnchanged() throws Exception {
+        assertEquals("{\"a\":[1,2]}", forward("{\"a\":[1,2]}", 1));
+        assertEquals("\0\0\0", forward("\0\0\0", 3));
+    }
+
+    @Test
+    public void testTargetIsFlushedAfterEachAspect() throws Exception {
+        FlushRecorder target = new FlushRecorder();
+        ProgressiveCx2OutputStream out = new ProgressiveCx2OutputStream(target);
+        String json = cx2(DESCRIPTOR, META_DATA, NODES, BYPASSES, EDGES);
+
+        out.write(json.getBytes(StandardCharsets.UTF_8));
+        out.finish();
+
+        String prefix = "[" + DESCRIPTOR;
+        assertEquals(
+                Arrays.asList(
+                        prefix,
+                        prefix + "," + META_DATA,
+                        prefix + "," + META_DATA + "," + NODES,
+                        prefix + "," + META_DATA + "," + NODES + "," + BYPASSES,
+                        prefix + "," + META_DATA + "," + NODES + "," + BYPASSES + "," + EDGES,
+                        json),
+                target.flushed);
+    }
+
+    @Test
+    public void testFlushesFollowWriterOrder() throws Exception {
+        FlushRecorder target = new FlushRecorder();
+        ProgressiveCx2OutputStream out = new ProgressiveCx2OutputStream(target);
+        // Brackets in strings and nested arrays do not end an aspect
+        String json = cx2(DESCRIPTOR, BYPASSES, NODES);
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            out.write(b);
+        }
+        out.finish();
+
+        String prefix = "[" + DESCRIPTOR;
+        assertEquals(
+                Arrays.asList(
+                        prefix,
+                        prefix + "," + BYPASSES,
+                        prefix + "," + BYPASSES + "," + NODES,
+                        json),
+                target.flushed);
+    }
+
+    @Test
+    public void testNothingIsWrittenAfterFinish() throws Exception {
+        ProgressiveCx2OutputStream out =
+                new ProgressiveCx2OutputStream(new ByteArrayOutputStream());
+        out.finish();
+        out.close();
+
+        try {
+            out.write('[');
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("finished"));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyRow;
+
+public class SizeAuditPanelTest {
+
+    private static final long MAX_BYTES = 1024L * 1024;
+
+    private final OpenInCytoscapeWebTaskFactoryImpl openFactory =
+            mock(OpenInCytoscapeWebTaskFactoryImpl.class);
+    private final SizeAuditPanel panel = new SizeAuditPanel(mock(Cx2SizeAudit.class));
+    private final SizeAuditTableModel model = panel.getModel();
+
+    private static CyNetwork createNetwork(long suid, String name, int nodes, int edges) {
+        CyNetwork network = mock(CyNetwork.class);
+        when(network.getSUID()).thenReturn(suid);
+        when(network.getNodeCount()).thenReturn(nodes);
+        when(network.getEdgeCount()).thenReturn(edges);
+        CyRow row = mock(CyRow.class);
+        when(row.get(CyNetwork.NAME, String.class)).thenReturn(name);
+        when(network.getRow(network)).thenReturn(row);
+        return network;
+    }
+
+    private Cx2SizeAudit.Result measure(CyNetwork network, Cx2ExportSize size) {
+        when(openFactory.measureExportSize(eq(network), any(), any())).thenReturn(size);
+        NetworkMeasurement measurement = new NetworkMeasurement(network);
+        measurement.run(openFactory, () -> false);
+        return new Cx2SizeAudit.Result(0L, MAX_BYTES, measurement, null);
+    }
+
+    /** Runs the updates the panel posted to the event dispatch thread. */
+    private static void flush() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {});
+    }
+
+    @Test
+    public void testRowsFillInAsResultsArrive() throws Exception {
+        CyNetwork small = createNetwork(1L, "small", 10, 20);
+        CyNetwork large = createNetwork(2L, "large", 1000, 2000);
+        CyNetwork dense = createNetwork(3L, "dense", 10, 30000);
+        when(openFactory.checkElementCounts(dense))
+                .thenReturn("Too many.\n  Edges: 30000 (max: 20000)\n\nAdjust the limits.");
+
+        panel.auditStarted(Arrays.asList(small, large, dense));
+        flush();
+        assertEquals(3, model.getRowCount());
+        assertEquals("large", model.getValueAt(1, SizeAuditTableModel.NAME_COLUMN));
+        assertEquals(
+                SizeAuditTableModel.PENDING,
+                model.getValueAt(1, SizeAuditTableModel.STATUS_COLUMN));
+        assertNull(model.getValueAt(1, SizeAuditTableModel.SIZE_COLUMN));
+        assertEquals("Measured 0 of 3 networks: 0 fit, 0 too large", panel.getStatus());
+
+        panel.networkMeasured(measure(small, Cx2ExportSize.exact(MAX_BYTES / 4)));
+        panel.networkMeasured(measure(large, Cx2ExportSize.atLeast(MAX_BYTES + 1)));
+        flush();
+        assertEquals(0.25, (Double) model.getValueAt(0, SizeAuditTableModel.SIZE_COLUMN), 1e-9);
+        assertEquals(
+                SizeAuditTableModel.FITS, model.getValueAt(0, SizeAuditTableModel.STATUS_COLUMN));
+        assertEquals(
+                SizeAuditTableModel.TOO_LARGE,
+                model.getValueAt(1, SizeAuditTableModel.STATUS_COLUMN));
+        assertEquals(
+                "CX2 export size: at least 1.000 MB (max: 1.000 MB)",
+                model.getValueAt(1, SizeAuditTableModel.DETAILS_COLUMN));
+        assertEquals("Measured 2 of 3 networks: 1 fit, 1 too large", panel.getStatus());
+
+        panel.networkMeasured(measure(dense, null));
+        panel.auditFinished(false);
+        flush();
+        assertEquals(
+                SizeAuditTableModel.TOO_MANY_ELEMENTS,
+                model.getValueAt(2, SizeAuditTableModel.STATUS_COLUMN));
+        assertEquals(
+                "Edges: 30000 (max: 20000)",
+                model.getValueAt(2, SizeAuditTableModel.DETAILS_COLUMN));
+        assertEquals("3 networks: 1 fit, 2 too large", panel.getStatus());
+    }
+
+    @Test
+    public void testNumericColumnsSortByValue() {
+        assertEquals(Integer.class, model.getColumnClass(SizeAuditTableModel.NODES_COLUMN));
+        assertEquals(Double.class, model.getColumnClass(SizeAuditTableModel.SIZE_COLUMN));
+        assertEquals(Long.class, model.getColumnClass(SizeAuditTableModel.TIME_COLUMN));
+    }
+
+    @Test
+    public void testRemovedNetworkLosesItsRow() throws Exception {
+        CyNetwork first = createNetwork(1L, "first", 1, 1);
+        CyNetwork second = createNetwork(2L, "second", 2, 2);
+        CyNetwork third = createNetwork(3L, "third", 3, 3);
+        panel.auditStarted(Arrays.asList(first, second, third));
+        panel.auditFinished(true);
+
+        panel.networkRemoved(2L);
+        panel.networkMeasured(measure(third, Cx2ExportSize.exact(100)));
+        flush();
+
+        assertEquals(2, model.getRowCount());
+        assertEquals("third", model.getValueAt(1, SizeAuditTableModel.NAME_COLUMN));
+        assertEquals(
+                SizeAuditTableModel.FITS, model.getValueAt(1, SizeAuditTableModel.STATUS_COLUMN));
+        assertEquals("2 networks: 1 fit, 0 too large, 1 not measured", panel.getStatus());
+    }
+}
@@ -0,0 +1,184 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.io.write.CyNetworkViewWriterManager;
+import org.cytoscape.io.write.CyWriter;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.view.model.CyNetworkView;
+
+public class StreamingCx2PayloadTest {
+
+    private static final int CHUNK_BYTES = 1024;
+
+    private final CyFileFilter cxFilter = mock(CyFileFilter.class);
+
+    private static CyNetworkView createMockNetworkView() {
+        CyNetwork mockNetwork = mock(CyNetwork.class);
+        when(mockNetwork.getSUID()).thenReturn(1L);
+        CyNetworkView mockView = mock(CyNetworkView.class);
+        when(mockView.getModel()).thenReturn(mockNetwork);
+        return mockView;
+    }
+
+    /**
+     * Writer manager whose writer emits {@code chunks} 1 KB chunks, recording after each chunk how
+     * many bytes the response had received so far.
+     */
+    private CyNetworkViewWriterManager createWriterManager(
+            int chunks, CountingOutputStream response, List<Long> receivedAfterChunk)
+            throws Exception {
+        CyNetworkViewWriterManager mgr = mock(CyNetworkViewWriterManager.class);
+        when(mgr.getWriter(any(CyNetworkView.class), eq(cxFilter), any(OutputStream.class)))
+                .thenAnswer(
+                        invocation -> {
+                            OutputStream os = invocation.getArgument(2);
+                            CyWriter writer = mock(CyWriter.class);
+                            doAnswer(
+                                            run -> {
+                                                byte[] chunk = new byte[CHUNK_BYTES];
+                                                for (int i = 0; i < chunks; i++) {
+                                                    os.write(chunk);
+                                                    receivedAfterChunk.add(response.getByteCount());
+                                                }
+                                                return null;
+                                            })
+                                    .when(writer)
+                                    .run(any());
+                            return writer;
+                        });
+        return mgr;
+    }
+
+    @Test
+    public void testWriterOutputReachesResponseWhileWriting() throws Exception {
+        CountingOutputStream response = new CountingOutputStream();
+        List<Long> receivedAfterChunk = new ArrayList<>();
+        int chunks = 1024;
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(
+                        createWriterManager(chunks, response, receivedAfterChunk),
+                        cxFilter,
+                        createMockNetworkView(),
+                        Long.MAX_VALUE);
+
+        payload.writeTo(response);
+
+        assertEquals((long) chunks * CHUNK_BYTES, response.getByteCount());
+        assertEquals((long) chunks * CHUNK_BYTES, payload.getBytesWritten());
+        // Never more than one buffer of written output is held back from the response
+        for (int i = 0; i < chunks; i++) {
+            long written = (long) (i + 1) * CHUNK_BYTES;
+            assertTrue(
+                    written - receivedAfterChunk.get(i) <= StreamingCx2Payload.BUFFER_SIZE_BYTES);
+        }
+    }
+
+    @Test
+    public void testExceedingLimitAbortsResponse() throws Exception {
+        CountingOutputStream response = new CountingOutputStream();
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(
+                        createWriterManager(1024, response, new ArrayList<>()),
+                        cxFilter,
+                        createMockNetworkView(),
+                        100 * CHUNK_BYTES);
+
+        try {
+            payload.writeTo(response);
+            fail("Expected LimitExceededException");
+        } catch (CountingOutputStream.LimitExceededException e) {
+            assertEquals(101 * CHUNK_BYTES, payload.getBytesWritten());
+            assertTrue(response.getByteCount() <= 100 * CHUNK_BYTES);
+        }
+    }
+
+    @Test
+    public void testNetworkWithoutViewIsWrittenByNetworkWriter() throws Exception {
+        CyNetwork network = createMockNetworkView().getModel();
+        CyWriter writer = mock(CyWriter.class);
+        CyNetworkViewWriterManager mgr = mock(CyNetworkViewWriterManager.class);
+        when(mgr.getWriter(eq(network), eq(cxFilter), any(OutputStream.class))).thenReturn(writer);
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(mgr, cxFilter, network, null, Long.MAX_VALUE);
+
+        payload.writeTo(new CountingOutputStream());
+
+        verify(writer).run(any());
+        verify(mgr, never()).getWriter(any(CyNetworkView.class), any(), any());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReleasedPayloadCannotBeWritten() throws Exception {
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(
+                        mock(CyNetworkViewWriterManager.class),
+                        cxFilter,
+                        createMockNetworkView(),
+                        Long.MAX_VALUE);
+        payload.release();
+        payload.writeTo(new CountingOutputStream());
+    }
+
+    @Test
+    public void testProgressiveDeliveryFlushesAfterEachAspect() throws Exception {
+        String nodes = "{\"nodes\":[{\"id\":0,\"x\":0.0,\"y\":0.0}]}";
+        String bypasses = "{\"nodeBypasses\":[{\"id\":0,\"v\":{}}]}";
+        String metaData = "{\"metaData\":[{\"name\":\"nodes\"},{\"name\":\"nodeBypasses\"}]}";
+        String json = "[" + metaData + "," + bypasses + "," + nodes + "]";
+        CyNetworkView view = createMockNetworkView();
+        CyWriter writer = mock(CyWriter.class);
+        CyNetworkViewWriterManager mgr = mock(CyNetworkViewWriterManager.class);
+        when(mgr.getWriter(eq(view), eq(cxFilter), any(OutputStream.class)))
+                .thenAnswer(
+                        invocation -> {
+                            OutputStream os = invocation.getArgument(2);
+                            doAnswer(
+                                            run -> {
+                                                os.write(json.getBytes(StandardCharsets.UTF_8));
+                                                return null;
+                                            })
+                                    .when(writer)
+                                    .run(any());
+                            return writer;
+                        });
+        StreamingCx2Payload payload =
+                new StreamingCx2Payload(mgr, cxFilter, view.getModel(), view, Long.MAX_VALUE);
+        payload.enableProgressiveDelivery();
+
+        List<String> flushed = new ArrayList<>();
+        ByteArrayOutputStream response =
+                new ByteArrayOutputStream() {
+                    @Override
+                    public void flush() {
+                        flushed.add(new String(toByteArray(), StandardCharsets.UTF_8));
+                    }
+                };
+        payload.writeTo(response);
+
+        // Sent in the writer's order, each aspect as soon as it is complete
+        assertEquals(json, new String(response.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(flushed.toString(), flushed.contains("[" + metaData));
+        assertTrue(flushed.toString(), flushed.contains("[" + metaData + "," + bypasses));
+        assertEquals(json, flushed.get(flushed.size() - 1));
+    }
+}
@@ -0,0 +1,358 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import org.cytoscape.io.CyFileFilter;
+import org.cytoscape.io.write.CyNetworkViewWriterManager;
+import org.cytoscape.io.write.CyWriter;
+import org.cytoscape.model.CyColumn;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.property.CyProperty;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.TaskMonitor;
+
+/**
+ * Synthetic networks for the benchmarks, the load test and the scaling tests. Cytoscape services
+ * are {@link Proxy} instances answering only the methods the app calls, instead of Mockito mocks.
+ * Rows and edges are created when they are read and not kept, and attribute values come from a
+ * fixed pool per column, so a network with ten million elements takes no more heap than one with a
+ * thousand.
+ */
+final class SyntheticNetworks {
+
+    private static final int VALUE_POOL_SIZE = 1024;
+
+    /** How edge endpoints are spread over the nodes. */
+    enum Degree {
+        /** Every node has about the same degree. */
+        UNIFORM,
+        /**
+         * Edge sources are drawn with a density falling off as a power of the node index, so a few
+         * hub nodes have many of the edges, as in biological networks; targets are uniform.
+         */
+        SCALE_FREE
+    }
+
+    private SyntheticNetworks() {}
+
+    /**
+     * Creates a network view with string attribute columns on its nodes and edges.
+     *
+     * @param suid SUID of the network
+     * @param nodeCount number of nodes
+     * @param edgeCount number of edges
+     * @param columns number of attribute columns in the node and edge tables
+     * @param valueLength length of every attribute value
+     * @return the network view
+     */
+    static CyNetworkView createNetworkView(
+            long suid, int nodeCount, int edgeCount, int columns, int valueLength) {
+        return createNetworkView(suid, nodeCount, edgeCount, columns, valueLength, Degree.UNIFORM);
+    }
+
+    /**
+     * Creates a network view with string attribute columns on its nodes and edges. Node and edge
+     * SUIDs are their row indices; {@link CyNetwork#getEdge(long)} returns the edge with its
+     * endpoints.
+     *
+     * @param suid SUID of the network
+     * @param nodeCount number of nodes
+     * @param edgeCount number of edges
+     * @param columns number of attribute columns in the node and edge tables
+     * @param valueLength length of every attribute value
+     * @param degree how edge endpoints are spread over the nodes
+     * @return the network view
+     */
+    static CyNetworkView createNetworkView(
+            long suid, int nodeCount, int edgeCount, int columns, int valueLength, Degree degree) {
+        CyTable nodeTable = createTable(nodeCount, columns, valueLength);
+        CyTable edgeTable = createTable(edgeCount, columns, valueLength);
+        CyTable networkTable = createTable(1, 1, valueLength);
+
+        Map<String, Function<Object[], Object>> networkAnswers = new HashMap<>();
+        networkAnswers.put("getSUID", args -> suid);
+        networkAnswers.put("getNodeCount", args -> nodeCount);
+        networkAnswers.put("getEdgeCount", args -> edgeCount);
+        networkAnswers.put("getDefaultNodeTable", args -> nodeTable);
+        networkAnswers.put("getDefaultEdgeTable", args -> edgeTable);
+        networkAnswers.put("getDefaultNetworkTable", args -> networkTable);
+        networkAnswers.put(
+                "getEdge",
+                args -> {
+                    long edgeSuid = (Long) args[0];
+                    return edgeSuid < 0 || edgeSuid >= edgeCount
+                            ? null
+                            : createEdge(edgeSuid, nodeCount, degree);
+                });
+        CyNetwork network = proxy(CyNetwork.class, networkAnswers);
+
+        Map<String, Function<Object[], Object>> viewAnswers = new HashMap<>();
+        viewAnswers.put("getSUID", args -> suid + 1);
+        viewAnswers.put("getModel", args -> network);
+        viewAnswers.put("getNodeViews", args -> Collections.emptyList());
+        viewAnswers.put("getEdgeViews", args -> Collections.emptyList());
+        return proxy(CyNetworkView.class, viewAnswers);
+    }
+
+    /**
+     * Creates a writer manager offering a "cx" filter whose writer emits CX2-shaped JSON for the
+     * nodes and edges of the view, with every attribute value, through an 8 KB buffer like the
+     * Jackson generator of the CX writer.
+     *
+     * @return the writer manager
+     */
+    static CyNetworkViewWriterManager createWriterManager() {
+        Map<String, Function<Object[], Object>> filterAnswers = new HashMap<>();
+        filterAnswers.put("getExtensions", args -> new HashSet<>(Arrays.asList("cx", "cx2")));
+        CyFileFilter cxFilter = proxy(CyFileFilter.class, filterAnswers);
+
+        Map<String, Function<Object[], Object>> managerAnswers = new HashMap<>();
+        managerAnswers.put(
+                "getAvailableWriterFilters", args -> Collections.singletonList(cxFilter));
+        managerAnswers.put(
+                "getWriter",
+                args -> new SyntheticCx2Writer((CyNetworkView) args[0], (OutputStream) args[2]));
+        return proxy(CyNetworkViewWriterManager.class, managerAnswers);
+    }
+
+    /**
+     * @param properties properties to return
+     * @return property service holding {@code properties}
+     */
+    @SuppressWarnings("unchecked")
+    static CyProperty<Properties> createProperties(Properties properties) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getProperties", args -> properties);
+        return proxy(CyProperty.class, answers);
+    }
+
+    /**
+     * Creates a proxy that answers the named methods and returns null, false or zero from all
+     * others.
+     *
+     * @param type interface to implement
+     * @param answers answer for each method name, given the call arguments
+     * @return the proxy
+     */
+    static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object proxy =
+                Proxy.newProxyInstance(
+                        SyntheticNetworks.class.getClassLoader(),
+                        new Class<?>[] {type},
+                        (self, method, args) -> {
+                            Function<Object[], Object> answer = answers.get(method.getName());
+                            if (answer != null) {
+                                return answer.apply(args);
+                            }
+                            switch (method.getName()) {
+                                case "equals":
+                                    return self == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(self);
+                                case "toString":
+                                    return type.getSimpleName() + "@" + answers.get("getSUID");
+                                default:
+                                    return defaultValue(method.getReturnType());
+                            }
+                        });
+        return type.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+
+    private static CyTable createTable(int rowCount, int columnCount, int valueLength) {
+        List<CyColumn> columns = new ArrayList<>();
+        columns.add(createColumn(CyIdentifiable.SUID, Long.class));
+        Map<String, String[]> valuesByColumn = new HashMap<>();
+        for (int c = 0; c < columnCount; c++) {
+            String name = "attribute" + c;
+            columns.add(createColumn(name, String.class));
+            String[] values = new String[VALUE_POOL_SIZE];
+            for (int v = 0; v < VALUE_POOL_SIZE; v++) {
+                values[v] = value(c, v, valueLength);
+            }
+            valuesByColumn.put(name, values);
+        }
+        List<CyRow> rows =
+                new AbstractList<CyRow>() {
+                    @Override
+                    public CyRow get(int index) {
+                        if (index < 0 || index >= rowCount) {
+                            throw new IndexOutOfBoundsException("Row " + index);
+                        }
+                        return createRow(index, valuesByColumn);
+                    }
+
+                    @Override
+                    public int size() {
+                        return rowCount;
+                    }
+                };
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getColumns", args -> columns);
+        answers.put("getAllRows", args -> rows);
+        answers.put("getRowCount", args -> rowCount);
+        return proxy(CyTable.class, answers);
+    }
+
+    private static CyColumn createColumn(String name, Class<?> type) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getName", args -> name);
+        answers.put("getType", args -> type);
+        return proxy(CyColumn.class, answers);
+    }
+
+    private static CyRow createRow(long suid, Map<String, String[]> valuesByColumn) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        Function<Object[], Object> getRaw =
+                args -> {
+                    if (CyIdentifiable.SUID.equals(args[0])) {
+                        return suid;
+                    }
+                    String[] values = valuesByColumn.get(args[0]);
+                    return values == null ? null : values[(int) (suid % VALUE_POOL_SIZE)];
+                };
+        answers.put("getRaw", getRaw);
+        answers.put("get", getRaw);
+        answers.put("isSet", args -> getRaw.apply(args) != null);
+        return proxy(CyRow.class, answers);
+    }
+
+    private static CyEdge createEdge(long suid, int nodeCount, Degree degree) {
+        long source;
+        long target;
+        if (degree == Degree.SCALE_FREE) {
+            // Cubing a uniform draw gives node i a share of sources falling off like i^(-2/3)
+            double draw = (mix(suid) >>> 11) * 0x1.0p-53;
+            source = Math.min(nodeCount - 1, (long) (nodeCount * draw * draw * draw));
+            target = Long.remainderUnsigned(mix(~suid), nodeCount);
+        } else {
+            source = suid % nodeCount;
+            target = (suid * 7 + 1) % nodeCount;
+        }
+        CyNode sourceNode = createNode(source);
+        CyNode targetNode = createNode(target);
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getSUID", args -> suid);
+        answers.put("getSource", args -> sourceNode);
+        answers.put("getTarget", args -> targetNode);
+        answers.put("isDirected", args -> true);
+        return proxy(CyEdge.class, answers);
+    }
+
+    private static CyNode createNode(long suid) {
+        Map<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getSUID", args -> suid);
+        return proxy(CyNode.class, answers);
+    }
+
+    /** SplitMix64 finalizer, so endpoints look random but are the same on every read. */
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String value(int column, int index, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(column).append('-').append(index);
+        while (sb.length() < length) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    /** Writes nodes and edges with their attributes as CX2-shaped JSON. */
+    private static final class SyntheticCx2Writer implements CyWriter {
+        private final CyNetworkView networkView;
+        private final OutputStream outputStream;
+
+        SyntheticCx2Writer(CyNetworkView networkView, OutputStream outputStream) {
+            this.networkView = networkView;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void run(TaskMonitor taskMonitor) throws Exception {
+            CyNetwork network = networkView.getModel();
+            Writer out =
+                    new BufferedWriter(
+                            new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 8000);
+            out.write("[{\"CXVersion\":\"2.0\",\"hasFragments\":false},{\"nodes\":[");
+            writeElements(out, network, network.getDefaultNodeTable(), false);
+            out.write("]},{\"edges\":[");
+            writeElements(out, network, network.getDefaultEdgeTable(), true);
+            out.write("]},{\"status\":[{\"error\":\"\",\"success\":true}]}]");
+            out.flush();
+        }
+
+        private static void writeElements(
+                Writer out, CyNetwork network, CyTable table, boolean edges) throws Exception {
+            List<CyColumn> columns = new ArrayList<>(table.getColumns());
+            boolean first = true;
+            for (CyRow row : table.getAllRows()) {
+                long id = (Long) row.getRaw(CyIdentifiable.SUID);
+                out.write(first ? "{\"id\":" : ",{\"id\":");
+                first = false;
+                out.write(Long.toString(id));
+                if (edges) {
+                    CyEdge edge = network.getEdge(id);
+                    out.write(",\"s\":");
+                    out.write(Long.toString(edge.getSource().getSUID()));
+                    out.write(",\"t\":");
+                    out.write(Long.toString(edge.getTarget().getSUID()));
+                }
+                out.write(",\"v\":{");
+                boolean firstValue = true;
+                for (CyColumn column : columns) {
+                    if (CyIdentifiable.SUID.equals(column.getName())) {
+                        continue;
+                    }
+                    out.write(firstValue ? "\"" : ",\"");
+                    firstValue = false;
+                    out.write(column.getName());
+                    out.write("\":\"");
+                    out.write((String) row.getRaw(column.getName()));
+                    out.write('"');
+                }
+                out.write("}}");
+            }
+        }
+
+        @Override
+        public void cancel() {}
+    }
+}
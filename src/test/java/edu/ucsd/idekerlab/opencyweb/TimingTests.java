@@ -0,0 +1,7 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+/**
+ * JUnit category of tests that assert wall-clock bounds. They depend on the machine and its load,
+ * so {@code mvn test} excludes them; {@code make timing} runs them with the rest.
+ */
+public interface TimingTests {}
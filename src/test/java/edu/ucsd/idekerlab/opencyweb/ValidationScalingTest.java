@@ -0,0 +1,259 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import edu.ucsd.idekerlab.opencyweb.util.ShowDialogUtil;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkTableManager;
+import org.cytoscape.property.CyProperty;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.presentation.RenderingEngineManager;
+
+/**
+ * Checks how validation cost grows with the network, on {@link SyntheticNetworks} with up to ten
+ * million elements. Allocations are per thread and times are the fastest of several runs, and the
+ * bounds leave room for noise: they catch a cost that grows faster than the network, not small
+ * regressions, which are for the JMH benchmarks. Bounds on times are {@link TimingTests}, which
+ * {@code mvn test} leaves out.
+ */
+public class ValidationScalingTest {
+
+    private static final int SMALL = 25_000;
+    private static final int LARGE = 4 * SMALL;
+    private static final int HUGE = 10_000_000;
+    private static final int RUNS = 3;
+
+    private final NetworkChangeTracker changeTracker =
+            new NetworkChangeTracker(
+                    SyntheticNetworks.proxy(CyNetworkTableManager.class, Collections.emptyMap()));
+
+    private OpenInCytoscapeWebTaskFactoryImpl createFactory(String maxElements) {
+        Properties props = new Properties();
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_ELEMENTS, maxElements);
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_EDGES, maxElements);
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_MAX_FILESIZE_MB, "100000");
+        // Serialize every network instead of trusting the estimate
+        props.setProperty(OpenInCytoscapeWebTaskFactoryImpl.PROP_FILESIZE_ESTIMATE, "false");
+        props.setProperty(Cx2Transport.PROP_TRANSPORT_MODE, Cx2Transport.TRANSPORT_CYREST);
+        CyProperty<Properties> cyProperties = SyntheticNetworks.createProperties(props);
+        Cx2SizeEstimator sizeEstimator =
+                new Cx2SizeEstimator(
+                        SyntheticNetworks.proxy(
+                                RenderingEngineManager.class, Collections.emptyMap()));
+        Cx2SizeCache sizeCache = new Cx2SizeCache(changeTracker);
+        OpenMetrics metrics = new OpenMetrics();
+        return new OpenInCytoscapeWebTaskFactoryImpl(
+                null,
+                null,
+                null,
+                new ShowDialogUtil(),
+                cyProperties,
+                SyntheticNetworks.createWriterManager(),
+                sizeCache,
+                sizeEstimator,
+                new Cx2SizeTracker(null, sizeEstimator),
+                metrics,
+                new Cx2Transport(
+                        cyProperties,
+                        SyntheticNetworks.createProperties(new Properties()),
+                        new Cx2PayloadStore(),
+                        new Cx2LiveSessions(null),
+                        metrics),
+                new Cx2ExportPlanner(new Cx2MemoryGuard(cyProperties), sizeCache, sizeEstimator));
+    }
+
+    private static CyNetworkView createNetworkView(
+            long suid, int elements, SyntheticNetworks.Degree degree) {
+        int nodeCount = elements / 3;
+        return SyntheticNetworks.createNetworkView(
+                suid, nodeCount, elements - nodeCount, 2, 8, degree);
+    }
+
+    /** Cost of the cheapest of {@link #RUNS} calls, after as many warm-up calls. */
+    private static final class Cost {
+        long nanos = Long.MAX_VALUE;
+        long allocatedBytes = Long.MAX_VALUE;
+
+        static Cost of(Supplier<?> call) {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            Cost cost = new Cost();
+            for (int i = 0; i < 2 * RUNS; i++) {
+                long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                call.get();
+                long nanos = System.nanoTime() - start;
+                long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+                if (i >= RUNS) {
+                    cost.nanos = Math.min(cost.nanos, nanos);
+                    cost.allocatedBytes = Math.min(cost.allocatedBytes, allocated);
+                }
+            }
+            return cost;
+        }
+    }
+
+    private static void assumeAllocationIsMeasured() {
+        assumeTrue(
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                                .isThreadAllocatedMemoryEnabled());
+    }
+
+    private Cost validationCost(OpenInCytoscapeWebTaskFactoryImpl factory, CyNetworkView view) {
+        long suid = view.getModel().getSUID();
+        return Cost.of(
+                () -> {
+                    // Edited since the last check, so the size is measured again
+                    changeTracker.markChanged(suid);
+                    assertNull(factory.validateNetwork(view));
+                    return null;
+                });
+    }
+
+    /** Validation costs of a {@link #SMALL} and a {@link #LARGE} network with each degree. */
+    private Cost[][] validationCosts() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory("100000000");
+        SyntheticNetworks.Degree[] degrees = SyntheticNetworks.Degree.values();
+        Cost[][] costs = new Cost[degrees.length][];
+        for (int i = 0; i < degrees.length; i++) {
+            costs[i] =
+                    new Cost[] {
+                        validationCost(factory, createNetworkView(1L, SMALL, degrees[i])),
+                        validationCost(factory, createNetworkView(3L, LARGE, degrees[i]))
+                    };
+        }
+        return costs;
+    }
+
+    /** Count check costs of a 1,000 and a {@link #HUGE} element network. */
+    private Cost[] countCheckCosts() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory("100000000");
+        CyNetwork small = createNetworkView(1L, 1000, SyntheticNetworks.Degree.UNIFORM).getModel();
+        CyNetwork huge = createNetworkView(3L, HUGE, SyntheticNetworks.Degree.UNIFORM).getModel();
+        assertNull(factory.checkElementCounts(huge));
+        return new Cost[] {
+            Cost.of(() -> factory.checkElementCounts(small)),
+            Cost.of(() -> factory.checkElementCounts(huge))
+        };
+    }
+
+    private static String sizes(int degree) {
+        return SyntheticNetworks.Degree.values()[degree] + ": " + SMALL + " elements vs " + LARGE;
+    }
+
+    @Test
+    public void testValidationAllocatesAtMostLinearly() {
+        assumeAllocationIsMeasured();
+        Cost[][] costs = validationCosts();
+        for (int i = 0; i < costs.length; i++) {
+            Cost small = costs[i][0];
+            Cost large = costs[i][1];
+            assertTrue(
+                    sizes(i) + " allocated " + small.allocatedBytes + " vs " + large.allocatedBytes,
+                    large.allocatedBytes <= LARGE / SMALL * small.allocatedBytes * 5 / 4);
+        }
+    }
+
+    @Test
+    @Category(TimingTests.class)
+    public void testValidationTimeGrowsAtMostLinearly() {
+        Cost[][] costs = validationCosts();
+        for (int i = 0; i < costs.length; i++) {
+            Cost small = costs[i][0];
+            Cost large = costs[i][1];
+            assertTrue(
+                    sizes(i) + " took " + small.nanos + " ns vs " + large.nanos,
+                    large.nanos <= LARGE / SMALL * small.nanos * 2);
+        }
+    }
+
+    @Test
+    public void testCountCheckAllocatesNothingPerElement() {
+        assumeAllocationIsMeasured();
+        Cost[] costs = countCheckCosts();
+
+        // Only the counts are read: no row, edge or value of the network is touched
+        assertTrue(
+                "allocated " + costs[0].allocatedBytes + " vs " + costs[1].allocatedBytes,
+                costs[1].allocatedBytes <= costs[0].allocatedBytes + 1024);
+    }
+
+    @Test
+    @Category(TimingTests.class)
+    public void testCountCheckIsConstantTime() {
+        Cost[] costs = countCheckCosts();
+
+        assertTrue(
+                "took " + costs[0].nanos + " ns vs " + costs[1].nanos,
+                costs[1].nanos <= costs[0].nanos * 10 + 100_000);
+    }
+
+    @Test
+    public void testHugeNetworkIsRejectedByCountsAlone() {
+        assumeAllocationIsMeasured();
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory("26000");
+        CyNetworkView huge = createNetworkView(1L, HUGE, SyntheticNetworks.Degree.SCALE_FREE);
+
+        String error = factory.validateNetwork(huge);
+        Cost cost = Cost.of(() -> factory.validateNetwork(huge));
+
+        assertNotNull(error);
+        assertTrue(error, error.contains("Total elements (nodes + edges): " + HUGE));
+        // Serializing ten million elements would allocate far more than the counts need
+        assertTrue(cost.allocatedBytes + " bytes", cost.allocatedBytes < 1024 * 1024);
+    }
+
+    @Test
+    @Category(TimingTests.class)
+    public void testHugeNetworkIsRejectedQuickly() {
+        OpenInCytoscapeWebTaskFactoryImpl factory = createFactory("26000");
+        CyNetworkView huge = createNetworkView(1L, HUGE, SyntheticNetworks.Degree.SCALE_FREE);
+
+        long start = System.nanoTime();
+        assertNotNull(factory.validateNetwork(huge));
+        long nanos = System.nanoTime() - start;
+
+        // Serializing ten million elements takes seconds
+        assertTrue(nanos + " ns", nanos < 500_000_000L);
+    }
+
+    @Test
+    public void testScaleFreeEdgesConcentrateOnHubs() {
+        int nodeCount = 10_000;
+        int edgeCount = 50_000;
+        CyNetwork network =
+                SyntheticNetworks.createNetworkView(
+                                1L, nodeCount, edgeCount, 0, 0, SyntheticNetworks.Degree.SCALE_FREE)
+                        .getModel();
+        int[] sources = new int[nodeCount];
+        for (long suid = 0; suid < edgeCount; suid++) {
+            sources[network.getEdge(suid).getSource().getSUID().intValue()]++;
+        }
+        int hubSources = 0;
+        for (int i = 0; i < nodeCount / 100; i++) {
+            hubSources += sources[i];
+        }
+
+        // The first 1% of the nodes are the source of about a fifth of the edges, not 1%
+        assertTrue(hubSources + " of " + edgeCount, hubSources > edgeCount * 15 / 100);
+        // Endpoints do not change between reads
+        assertEquals(
+                network.getEdge(7L).getTarget().getSUID(),
+                network.getEdge(7L).getTarget().getSUID());
+    }
+}
@@ -0,0 +1,45 @@
+package edu.ucsd.idekerlab.opencyweb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class XxHash64Test {
+
+    private static long hash(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        XxHash64 hash = new XxHash64();
+        hash.update(bytes, 0, bytes.length);
+        return hash.getValue();
+    }
+
+    @Test
+    public void testReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void testChunkedUpdatesMatchSingleUpdate() {
+        byte[] bytes = new byte[1000];
+        new Random(42).nextBytes(bytes);
+        XxHash64 whole = new XxHash64();
+        whole.update(bytes, 0, bytes.length);
+
+        XxHash64 chunked = new XxHash64();
+        int off = 0;
+        for (int len = 1; off + len <= bytes.length; off += len, len = len % 37 + 1) {
+            chunked.update(bytes, off, len);
+        }
+        for (; off < bytes.length; off++) {
+            chunked.update(bytes[off]);
+        }
+
+        assertEquals(whole.getValue(), chunked.getValue());
+    }
+}